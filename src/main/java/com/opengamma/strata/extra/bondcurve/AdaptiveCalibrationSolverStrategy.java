@@ -0,0 +1,451 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.collect.Guavate.toImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.array.DoubleMatrix;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.CurveParameterSize;
+import com.opengamma.strata.math.impl.matrix.CommonsMatrixAlgebra;
+import com.opengamma.strata.math.impl.matrix.MatrixAlgebra;
+import com.opengamma.strata.math.impl.rootfinding.newton.NewtonDefaultVectorRootFinder;
+import com.opengamma.strata.math.rootfind.NewtonVectorRootFinder;
+
+/**
+ * A solver strategy choosing the method for each set of curves from its size and past convergence.
+ * <p>
+ * The method used for a set of curves is chosen as follows:
+ * <ul>
+ * <li>if the last calibration of the same curves failed, the next more robust method is used
+ * <li>if the last calibration converged, using Broyden with more evaluations than the Broyden evaluation limit,
+ *  the Newton method is used
+ * <li>if the last calibration converged otherwise, the same method is used
+ * <li>for curves not calibrated before, the damped Newton method is used if the group has issuer curves,
+ *  the Newton method if the number of parameters is at most the Newton size limit, and Broyden otherwise
+ * </ul>
+ * If the chosen method fails, the next more robust method is tried from the initial guess.
+ * <p>
+ * The outcome of each calibration is recorded, keyed by the names of the curves solved,
+ * and is available using {@link #findRecord(List)}.
+ * When Jacobian reuse is enabled, the derivative at or near the root is also recorded, and is used
+ * as the initial Jacobian of Broyden in the next calibration of the same curves, avoiding the initial evaluation.
+ * No derivative is evaluated for the purpose of the record: the Newton methods record their last derivative,
+ * and the derivative at the root is taken from the calibrator when it computes the Jacobian of the curves,
+ * see {@link #onRootDerivative(List, DoubleMatrix)}. Broyden keeps the previous derivative until then.
+ * <p>
+ * This class is thread-safe. The records are shared by all the calibrators using the strategy.
+ */
+public final class AdaptiveCalibrationSolverStrategy implements CalibrationSolverStrategy {
+
+  /**
+   * The default maximum number of parameters for which the Newton method is used.
+   */
+  private static final int DEFAULT_NEWTON_SIZE_LIMIT = 40;
+  /**
+   * The number of function evaluations above which Broyden is considered slow.
+   */
+  private static final int BROYDEN_EVALUATION_LIMIT = 10;
+  /**
+   * The smallest step fraction of the damped Newton method.
+   */
+  private static final double DAMPING_MINIMUM = 1e-8;
+  /**
+   * The sufficient decrease factor of the damped Newton method.
+   */
+  private static final double SUFFICIENT_DECREASE = 1e-4;
+  /**
+   * The matrix algebra.
+   */
+  private static final MatrixAlgebra MATRIX_ALGEBRA = new CommonsMatrixAlgebra();
+
+  /**
+   * The absolute tolerance.
+   */
+  private final double toleranceAbs;
+  /**
+   * The relative tolerance.
+   */
+  private final double toleranceRel;
+  /**
+   * The maximum number of steps.
+   */
+  private final int stepMaximum;
+  /**
+   * The maximum number of parameters for which the Newton method is used.
+   */
+  private final int newtonSizeLimit;
+  /**
+   * Whether the derivative at the root is reused as the initial Jacobian of Broyden.
+   */
+  private final boolean jacobianReuse;
+  /**
+   * The records, keyed by the names of the curves solved.
+   */
+  private final ConcurrentMap<List<CurveName>, Record> records = new ConcurrentHashMap<>();
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance specifying the tolerances, with the default Newton size limit and Jacobian reuse.
+   *
+   * @param toleranceAbs  the absolute tolerance
+   * @param toleranceRel  the relative tolerance
+   * @param stepMaximum  the maximum steps
+   * @return the strategy
+   */
+  public static AdaptiveCalibrationSolverStrategy of(double toleranceAbs, double toleranceRel, int stepMaximum) {
+    return of(toleranceAbs, toleranceRel, stepMaximum, DEFAULT_NEWTON_SIZE_LIMIT, true);
+  }
+
+  /**
+   * Obtains an instance.
+   *
+   * @param toleranceAbs  the absolute tolerance
+   * @param toleranceRel  the relative tolerance
+   * @param stepMaximum  the maximum steps
+   * @param newtonSizeLimit  the maximum number of parameters for which the Newton method is used
+   * @param jacobianReuse  true to reuse the derivative at or near the root as the initial Jacobian of Broyden
+   * @return the strategy
+   */
+  public static AdaptiveCalibrationSolverStrategy of(
+      double toleranceAbs,
+      double toleranceRel,
+      int stepMaximum,
+      int newtonSizeLimit,
+      boolean jacobianReuse) {
+
+    return new AdaptiveCalibrationSolverStrategy(
+        toleranceAbs, toleranceRel, stepMaximum, newtonSizeLimit, jacobianReuse);
+  }
+
+  // restricted constructor
+  private AdaptiveCalibrationSolverStrategy(
+      double toleranceAbs,
+      double toleranceRel,
+      int stepMaximum,
+      int newtonSizeLimit,
+      boolean jacobianReuse) {
+
+    this.toleranceAbs = ArgChecker.notNegativeOrZero(toleranceAbs, "toleranceAbs");
+    this.toleranceRel = ArgChecker.notNegativeOrZero(toleranceRel, "toleranceRel");
+    this.stepMaximum = ArgChecker.notNegativeOrZero(stepMaximum, "stepMaximum");
+    this.newtonSizeLimit = ArgChecker.notNegative(newtonSizeLimit, "newtonSizeLimit");
+    this.jacobianReuse = jacobianReuse;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Finds the record of the last calibration of a set of curves.
+   *
+   * @param curveNames  the names of the curves solved, in the order of the parameters
+   * @return the record, empty if the curves have not been calibrated using this strategy
+   */
+  public Optional<Record> findRecord(List<CurveName> curveNames) {
+    return Optional.ofNullable(records.get(curveNames));
+  }
+
+  /**
+   * Gets the records of the last calibration of each set of curves.
+   *
+   * @return the records, keyed by the names of the curves solved
+   */
+  public ImmutableMap<List<CurveName>, Record> getRecords() {
+    return ImmutableMap.copyOf(records);
+  }
+
+  /**
+   * Removes all the records.
+   */
+  public void clear() {
+    records.clear();
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public double getToleranceAbs() {
+    return toleranceAbs;
+  }
+
+  @Override
+  public DoubleArray solve(
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      List<CurveParameterSize> curveOrder,
+      Function<DoubleArray, DoubleArray> valueFunction,
+      Function<DoubleArray, DoubleMatrix> derivativeFunction,
+      DoubleArray initialGuess) {
+
+    ImmutableList<CurveName> key = curveOrder.stream().map(CurveParameterSize::getName).collect(toImmutableList());
+    int size = initialGuess.size();
+    Record previous = records.get(key);
+    if (previous != null && previous.getParameterCount() != size) {
+      previous = null;
+    }
+    CalibrationSolver solver = select(groupDefn, size, previous);
+    RuntimeException failure = null;
+    while (solver != null) {
+      AtomicInteger evaluations = new AtomicInteger();
+      AtomicReference<DoubleMatrix> lastDerivative = new AtomicReference<>();
+      Function<DoubleArray, DoubleArray> countedValue = x -> {
+        evaluations.incrementAndGet();
+        return valueFunction.apply(x);
+      };
+      Function<DoubleArray, DoubleMatrix> recordedDerivative = x -> {
+        DoubleMatrix derivative = derivativeFunction.apply(x);
+        lastDerivative.set(derivative);
+        return derivative;
+      };
+      try {
+        DoubleArray root = solve(solver, countedValue, recordedDerivative, initialGuess, previous);
+        DoubleMatrix jacobian = null;
+        if (jacobianReuse) {
+          // Broyden only evaluates the derivative at the start, thus keep the previous one, nearer the root
+          jacobian = solver != CalibrationSolver.BROYDEN ? lastDerivative.get() :
+              previous != null ? previous.jacobian : null;
+        }
+        records.put(key, new Record(solver, size, evaluations.get(), true, jacobian));
+        return root;
+      } catch (RuntimeException ex) {
+        failure = ex;
+        records.put(key, new Record(solver, size, evaluations.get(), false, null));
+        solver = solver.fallback();
+      }
+    }
+    throw failure;
+  }
+
+  /**
+   * Records the derivative at the root as the Jacobian of the curves, if Jacobian reuse is enabled.
+   * <p>
+   * The record of the last calibration of the curves is updated if it converged.
+   *
+   * @param curveOrder  the curves solved, in the order of the parameters
+   * @param derivative  the derivative of the values with respect to the parameters at the root
+   */
+  @Override
+  public void onRootDerivative(List<CurveParameterSize> curveOrder, DoubleMatrix derivative) {
+    if (!jacobianReuse) {
+      return;
+    }
+    ImmutableList<CurveName> key = curveOrder.stream().map(CurveParameterSize::getName).collect(toImmutableList());
+    records.computeIfPresent(key, (k, record) -> record.isConverged() &&
+        record.getParameterCount() == derivative.rowCount() &&
+        record.getParameterCount() == derivative.columnCount() ? record.withJacobian(derivative) : record);
+  }
+
+  // selects the method from the group and the previous record
+  private CalibrationSolver select(LegalEntityDiscountingCurveGroupDefinition groupDefn, int size, Record previous) {
+    if (previous != null) {
+      if (!previous.isConverged()) {
+        CalibrationSolver fallback = previous.getSolver().fallback();
+        return fallback != null ? fallback : previous.getSolver();
+      }
+      if (previous.getSolver() == CalibrationSolver.BROYDEN &&
+          previous.getFunctionEvaluations() > BROYDEN_EVALUATION_LIMIT) {
+        return CalibrationSolver.NEWTON;
+      }
+      return previous.getSolver();
+    }
+    if (!groupDefn.getIssuerCurveEntries().isEmpty()) {
+      return CalibrationSolver.DAMPED_NEWTON;
+    }
+    return size <= newtonSizeLimit ? CalibrationSolver.NEWTON : CalibrationSolver.BROYDEN;
+  }
+
+  // solves using a method
+  private DoubleArray solve(
+      CalibrationSolver solver,
+      Function<DoubleArray, DoubleArray> valueFunction,
+      Function<DoubleArray, DoubleMatrix> derivativeFunction,
+      DoubleArray initialGuess,
+      Record previous) {
+
+    switch (solver) {
+      case BROYDEN: {
+        NewtonVectorRootFinder broyden = NewtonVectorRootFinder.broyden(toleranceAbs, toleranceRel, stepMaximum);
+        if (previous != null && previous.jacobian != null) {
+          // the derivative is only evaluated once, at the start, use the previous one instead
+          DoubleMatrix initialJacobian = previous.jacobian;
+          AtomicInteger calls = new AtomicInteger();
+          return broyden.findRoot(
+              valueFunction,
+              x -> calls.getAndIncrement() == 0 ? initialJacobian : derivativeFunction.apply(x),
+              initialGuess);
+        }
+        return broyden.findRoot(valueFunction, derivativeFunction, initialGuess);
+      }
+      case NEWTON:
+        return new NewtonDefaultVectorRootFinder(toleranceAbs, toleranceRel, stepMaximum)
+            .findRoot(valueFunction, derivativeFunction, initialGuess);
+      default:
+        return dampedNewton(valueFunction, derivativeFunction, initialGuess);
+    }
+  }
+
+  // the damped Newton method, halving the step until the sum of squared values decreases sufficiently
+  private DoubleArray dampedNewton(
+      Function<DoubleArray, DoubleArray> valueFunction,
+      Function<DoubleArray, DoubleMatrix> derivativeFunction,
+      DoubleArray initialGuess) {
+
+    DoubleArray x = initialGuess;
+    DoubleArray value = valueFunction.apply(x);
+    for (int step = 0; step < stepMaximum; step++) {
+      if (maxAbs(value) <= toleranceAbs) {
+        return x;
+      }
+      DoubleMatrix inverse = MATRIX_ALGEBRA.getInverse(derivativeFunction.apply(x));
+      DoubleArray direction = (DoubleArray) MATRIX_ALGEBRA.multiply(inverse, value);
+      double norm = value.dotProduct(value);
+      double lambda = 1d;
+      while (true) {
+        DoubleArray candidate = x.minus(direction.multipliedBy(lambda));
+        DoubleArray candidateValue = valueFunction.apply(candidate);
+        if (candidateValue.dotProduct(candidateValue) <= (1d - 2d * SUFFICIENT_DECREASE * lambda) * norm) {
+          x = candidate;
+          value = candidateValue;
+          break;
+        }
+        lambda *= 0.5;
+        if (lambda < DAMPING_MINIMUM) {
+          throw new IllegalStateException(Messages.format(
+              "Damped Newton failed to decrease the residual at step {}", step));
+        }
+      }
+    }
+    if (maxAbs(value) <= toleranceAbs) {
+      return x;
+    }
+    throw new IllegalStateException(Messages.format("Damped Newton failed to converge in {} steps", stepMaximum));
+  }
+
+  // the maximum absolute value
+  private static double maxAbs(DoubleArray array) {
+    double max = 0d;
+    for (int i = 0; i < array.size(); i++) {
+      max = Math.max(max, Math.abs(array.get(i)));
+    }
+    return max;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "AdaptiveCalibrationSolverStrategy[newtonSizeLimit=" + newtonSizeLimit +
+        ", jacobianReuse=" + jacobianReuse + ", records=" + records.size() + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The record of the calibration of a set of curves.
+   */
+  public static final class Record {
+    /**
+     * The method used.
+     */
+    private final CalibrationSolver solver;
+    /**
+     * The number of parameters.
+     */
+    private final int parameterCount;
+    /**
+     * The number of evaluations of the value function.
+     */
+    private final int functionEvaluations;
+    /**
+     * Whether the method converged.
+     */
+    private final boolean converged;
+    /**
+     * The derivative at or near the root, null if not recorded.
+     */
+    private final DoubleMatrix jacobian;
+
+    // restricted constructor
+    private Record(
+        CalibrationSolver solver,
+        int parameterCount,
+        int functionEvaluations,
+        boolean converged,
+        DoubleMatrix jacobian) {
+
+      this.solver = solver;
+      this.parameterCount = parameterCount;
+      this.functionEvaluations = functionEvaluations;
+      this.converged = converged;
+      this.jacobian = jacobian;
+    }
+
+    // returns a copy with the derivative
+    private Record withJacobian(DoubleMatrix jacobian) {
+      return new Record(solver, parameterCount, functionEvaluations, converged, jacobian);
+    }
+
+    /**
+     * Gets the method used.
+     *
+     * @return the method
+     */
+    public CalibrationSolver getSolver() {
+      return solver;
+    }
+
+    /**
+     * Gets the number of parameters.
+     *
+     * @return the number of parameters
+     */
+    public int getParameterCount() {
+      return parameterCount;
+    }
+
+    /**
+     * Gets the number of evaluations of the value function.
+     *
+     * @return the number of evaluations
+     */
+    public int getFunctionEvaluations() {
+      return functionEvaluations;
+    }
+
+    /**
+     * Checks if the method converged.
+     *
+     * @return true if converged
+     */
+    public boolean isConverged() {
+      return converged;
+    }
+
+    /**
+     * Finds the derivative recorded at or near the root.
+     *
+     * @return the derivative, empty if not recorded
+     */
+    public Optional<DoubleMatrix> findJacobian() {
+      return Optional.ofNullable(jacobian);
+    }
+
+    @Override
+    public String toString() {
+      return "Record[" + solver + ", parameters=" + parameterCount + ", evaluations=" + functionEvaluations +
+          ", converged=" + converged + "]";
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.array.DoubleMatrix;
+import com.opengamma.strata.extra.internal.ChunkedForEach;
+
+/**
+ * Assembles a matrix from independently computed rows, such as the derivative of the calibration trades.
+ * <p>
+ * The rows are computed using {@link ChunkedForEach}. Below the threshold number of rows,
+ * the rows are computed in order on the calling thread. At or above the threshold, the rows are split
+ * into contiguous chunks which are computed using the executor, the first chunk being computed by the calling thread.
+ * Each row is stored at its own index, thus the result does not depend on the order of completion.
+ * <p>
+ * The same executor also processes independent tasks, such as the blocks of a level of a curve group,
+ * in parallel whenever there are at least two, see {@link #forEachTask(int, IntConsumer)}.
+ * <p>
+ * The row function must be safe to call from several threads at once.
+ */
+final class CalibrationRowAssembler {
+
+  /**
+   * The instance computing all the rows on the calling thread.
+   */
+  static final CalibrationRowAssembler SEQUENTIAL = new CalibrationRowAssembler(ChunkedForEach.SEQUENTIAL);
+
+  /**
+   * The processing of the rows, in parallel chunks if large enough.
+   */
+  private final ChunkedForEach chunks;
+  /**
+   * The processing of independent tasks, in parallel chunks if at least two.
+   */
+  private final ChunkedForEach tasks;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance assembling the rows in parallel at or above a threshold.
+   * <p>
+   * The number of chunks is the number of available processors.
+   *
+   * @param threshold  the minimum number of rows for the parallel assembly
+   * @param executor  the executor used to compute the chunks
+   * @return the assembler
+   */
+  static CalibrationRowAssembler of(int threshold, Executor executor) {
+    return of(threshold, executor, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Obtains an instance assembling the rows in parallel at or above a threshold, with a maximum number of chunks.
+   *
+   * @param threshold  the minimum number of rows for the parallel assembly
+   * @param executor  the executor used to compute the chunks
+   * @param parallelism  the maximum number of chunks
+   * @return the assembler
+   */
+  static CalibrationRowAssembler of(int threshold, Executor executor, int parallelism) {
+    return new CalibrationRowAssembler(ChunkedForEach.of(threshold, executor, parallelism));
+  }
+
+  // restricted constructor
+  private CalibrationRowAssembler(ChunkedForEach chunks) {
+    this.chunks = chunks;
+    this.tasks = chunks.withThreshold(2);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the minimum number of rows for the parallel assembly.
+   *
+   * @return the threshold
+   */
+  int getThreshold() {
+    return chunks.getThreshold();
+  }
+
+  /**
+   * Checks if the rows can be assembled in parallel.
+   *
+   * @return true if an executor is used above the threshold
+   */
+  boolean isParallel() {
+    return chunks.isParallel();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Assembles the matrix.
+   *
+   * @param rowCount  the number of rows
+   * @param columnCount  the number of columns
+   * @param rowFunction  the function computing each row
+   * @return the matrix
+   * @throws IllegalArgumentException if a row does not have the number of columns
+   */
+  DoubleMatrix assemble(int rowCount, int columnCount, IntFunction<DoubleArray> rowFunction) {
+    double[][] rows = new double[rowCount][];
+    chunks.forEach(rowCount, i -> {
+      DoubleArray row = rowFunction.apply(i);
+      if (row.size() != columnCount) {
+        throw new IllegalArgumentException(Messages.format(
+            "Row {} has {} columns, expected {}", i, row.size(), columnCount));
+      }
+      rows[i] = row.toArrayUnsafe();
+    });
+    return DoubleMatrix.ofUnsafe(rows);
+  }
+
+  /**
+   * Processes independent tasks, in parallel if there are at least two and an executor is used.
+   * <p>
+   * The tasks are split into at most one chunk per unit of parallelism, as for the rows.
+   * A task must not use this assembler, as it could wait for chunks queued behind it on the executor.
+   *
+   * @param taskCount  the number of tasks
+   * @param task  the task, called with each index from zero inclusive to the number of tasks exclusive
+   */
+  void forEachTask(int taskCount, IntConsumer task) {
+    tasks.forEach(taskCount, task);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return chunks.isParallel() ?
+        "CalibrationRowAssembler[threshold=" + chunks.getThreshold() +
+            ", parallelism=" + chunks.getParallelism() + "]" :
+        "CalibrationRowAssembler[sequential]";
+  }
+
+}
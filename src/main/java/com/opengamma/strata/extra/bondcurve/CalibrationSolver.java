@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+/**
+ * The methods available to solve for the parameters of a curve group.
+ */
+public enum CalibrationSolver {
+
+  /**
+   * The Broyden method, which updates an estimate of the Jacobian at each step.
+   * <p>
+   * The derivative is evaluated once, at the start. This suits large groups where the derivative is expensive,
+   * at the cost of more steps.
+   */
+  BROYDEN,
+  /**
+   * The Newton method, which evaluates the analytic Jacobian at each step.
+   * <p>
+   * Well-conditioned groups typically converge in two or three steps.
+   */
+  NEWTON,
+  /**
+   * The damped Newton method, where each Newton step is shortened until the residual decreases.
+   * <p>
+   * This avoids the divergence of the full step for badly conditioned groups.
+   */
+  DAMPED_NEWTON;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the more robust method to try after this method has failed.
+   *
+   * @return the next method, null if this is the most robust method
+   */
+  CalibrationSolver fallback() {
+    switch (this) {
+      case BROYDEN:
+        return NEWTON;
+      case NEWTON:
+        return DAMPED_NEWTON;
+      default:
+        return null;
+    }
+  }
+
+}
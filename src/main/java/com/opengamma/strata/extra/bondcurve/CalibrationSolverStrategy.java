@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.util.List;
+import java.util.function.Function;
+
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.array.DoubleMatrix;
+import com.opengamma.strata.market.curve.CurveParameterSize;
+import com.opengamma.strata.math.rootfind.NewtonVectorRootFinder;
+
+/**
+ * The strategy used to solve for the parameters of a curve group during calibration.
+ * <p>
+ * The strategy is called once for each group, or each block of a group, that is not calibrated by bootstrap.
+ * Implementations may choose the method used to find the root for each call.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface CalibrationSolverStrategy {
+
+  /**
+   * Obtains a strategy that always uses the specified root finder.
+   * <p>
+   * The absolute tolerance is the default of {@link #getToleranceAbs()}.
+   *
+   * @param rootFinder  the root finder
+   * @return the strategy
+   */
+  public static CalibrationSolverStrategy of(NewtonVectorRootFinder rootFinder) {
+    ArgChecker.notNull(rootFinder, "rootFinder");
+    return (groupDefn, curveOrder, valueFunction, derivativeFunction, initialGuess) ->
+        rootFinder.findRoot(valueFunction, derivativeFunction, initialGuess);
+  }
+
+  /**
+   * Obtains a strategy that always uses the specified root finder, specifying its absolute tolerance.
+   *
+   * @param rootFinder  the root finder
+   * @param toleranceAbs  the absolute tolerance of the root finder
+   * @return the strategy
+   */
+  public static CalibrationSolverStrategy of(NewtonVectorRootFinder rootFinder, double toleranceAbs) {
+    ArgChecker.notNull(rootFinder, "rootFinder");
+    ArgChecker.notNegativeOrZero(toleranceAbs, "toleranceAbs");
+    return new CalibrationSolverStrategy() {
+      @Override
+      public DoubleArray solve(
+          LegalEntityDiscountingCurveGroupDefinition groupDefn,
+          List<CurveParameterSize> curveOrder,
+          Function<DoubleArray, DoubleArray> valueFunction,
+          Function<DoubleArray, DoubleMatrix> derivativeFunction,
+          DoubleArray initialGuess) {
+
+        return rootFinder.findRoot(valueFunction, derivativeFunction, initialGuess);
+      }
+
+      @Override
+      public double getToleranceAbs() {
+        return toleranceAbs;
+      }
+    };
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Finds the parameters for which the values of the trades are zero.
+   * <p>
+   * The parameters are those of the curves in the curve order, which may be a subset of the curves of the group.
+   *
+   * @param groupDefn  the curve group definition
+   * @param curveOrder  the curves solved, in the order of the parameters
+   * @param valueFunction  the function calculating the value of each trade from the parameters
+   * @param derivativeFunction  the function calculating the derivative of the values with respect to the parameters
+   * @param initialGuess  the initial guess of the parameters
+   * @return the parameters
+   * @throws RuntimeException if the root cannot be found
+   */
+  public abstract DoubleArray solve(
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      List<CurveParameterSize> curveOrder,
+      Function<DoubleArray, DoubleArray> valueFunction,
+      Function<DoubleArray, DoubleMatrix> derivativeFunction,
+      DoubleArray initialGuess);
+
+  /**
+   * Receives the derivative at the root found by the last call to {@code solve} for the same curves.
+   * <p>
+   * The calibrator computes the derivative at the root of a group when the Jacobian of the group is required.
+   * It then calls this method for each set of curves solved, with the rows and columns of those curves.
+   * The default implementation does nothing.
+   *
+   * @param curveOrder  the curves solved, in the order of the parameters
+   * @param derivative  the derivative of the values with respect to the parameters at the root
+   */
+  public default void onRootDerivative(List<CurveParameterSize> curveOrder, DoubleMatrix derivative) {
+  }
+
+  /**
+   * Gets the absolute tolerance of the values at the root.
+   * <p>
+   * When the curves of a group are solved as separate blocks, the values of all the trades of the group
+   * are checked against this tolerance once the blocks are solved, the group being solved as a whole if not.
+   * The default implementation returns 1e-9, the standard tolerance of the calibrator.
+   *
+   * @return the absolute tolerance
+   */
+  public default double getToleranceAbs() {
+    return 1e-9;
+  }
+
+}
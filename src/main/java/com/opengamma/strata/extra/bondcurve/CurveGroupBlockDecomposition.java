@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+import com.google.common.collect.ImmutableList;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.market.curve.CurveParameterSize;
+
+/**
+ * The decomposition of a curve group into blocks of curves that can be calibrated separately.
+ * <p>
+ * Each curve of the group is associated with the trades of its nodes.
+ * A curve depends on another curve if the value of any of its trades is sensitive to the parameters of the other curve.
+ * The blocks are the strongly connected components of this dependency graph,
+ * thus the curves within a block have to be solved together, while a block only
+ * depends on the blocks that are solved before it.
+ * <p>
+ * The blocks are arranged in levels. The blocks of a level only depend on the blocks of the previous levels,
+ * thus the blocks of a level are independent of each other. The calibrator solves them in parallel
+ * when it has an executor, see {@link LegalEntityDiscountingCurveCalibrator#withParallelDerivatives(int, Executor)}.
+ */
+final class CurveGroupBlockDecomposition {
+
+  /**
+   * The blocks, arranged in levels.
+   */
+  private final ImmutableList<ImmutableList<Block>> levels;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance from the sensitivity of the trades to the parameters of the group.
+   * <p>
+   * The trades must be in the same order as the parameters, the trades of each curve being the nodes of the curve.
+   * The sensitivity of each trade is the concatenated array of the sensitivities to the parameters of all the curves,
+   * in the curve order.
+   *
+   * @param curveOrder  the curve order
+   * @param tradeSensitivity  the sensitivity of each trade, indexed by trade
+   * @return the decomposition
+   */
+  static CurveGroupBlockDecomposition of(
+      List<CurveParameterSize> curveOrder,
+      IntFunction<DoubleArray> tradeSensitivity) {
+
+    int curveCount = curveOrder.size();
+    int[] starts = new int[curveCount + 1];
+    for (int c = 0; c < curveCount; c++) {
+      starts[c + 1] = starts[c] + curveOrder.get(c).getParameterCount();
+    }
+    // curve incidence, dependencies[c][d] is true if a trade of curve c is sensitive to curve d
+    boolean[][] dependencies = new boolean[curveCount][curveCount];
+    for (int c = 0; c < curveCount; c++) {
+      for (int t = starts[c]; t < starts[c + 1]; t++) {
+        DoubleArray sensitivity = tradeSensitivity.apply(t);
+        for (int d = 0; d < curveCount; d++) {
+          for (int p = starts[d]; p < starts[d + 1] && !dependencies[c][d]; p++) {
+            dependencies[c][d] = sensitivity.get(p) != 0d;
+          }
+        }
+      }
+    }
+    // strongly connected components, each component is found after the components it depends on
+    List<int[]> components = new StronglyConnectedComponents(dependencies).find();
+    int[] componentOfCurve = new int[curveCount];
+    for (int b = 0; b < components.size(); b++) {
+      for (int c : components.get(b)) {
+        componentOfCurve[c] = b;
+      }
+    }
+    // levels
+    int[] levelOfComponent = new int[components.size()];
+    int levelCount = 0;
+    for (int b = 0; b < components.size(); b++) {
+      int level = 0;
+      for (int c : components.get(b)) {
+        for (int d = 0; d < curveCount; d++) {
+          if (dependencies[c][d] && componentOfCurve[d] != b) {
+            level = Math.max(level, levelOfComponent[componentOfCurve[d]] + 1);
+          }
+        }
+      }
+      levelOfComponent[b] = level;
+      levelCount = Math.max(levelCount, level + 1);
+    }
+    List<ImmutableList.Builder<Block>> levelBuilders = new ArrayList<>();
+    for (int l = 0; l < levelCount; l++) {
+      levelBuilders.add(ImmutableList.builder());
+    }
+    for (int b = 0; b < components.size(); b++) {
+      levelBuilders.get(levelOfComponent[b]).add(Block.of(components.get(b), curveOrder, starts));
+    }
+    ImmutableList.Builder<ImmutableList<Block>> levels = ImmutableList.builder();
+    for (ImmutableList.Builder<Block> levelBuilder : levelBuilders) {
+      levels.add(levelBuilder.build());
+    }
+    return new CurveGroupBlockDecomposition(levels.build());
+  }
+
+  // restricted constructor
+  private CurveGroupBlockDecomposition(ImmutableList<ImmutableList<Block>> levels) {
+    this.levels = levels;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the blocks, arranged in levels.
+   * <p>
+   * The blocks of each level only depend on the blocks of the previous levels.
+   *
+   * @return the levels of blocks
+   */
+  ImmutableList<ImmutableList<Block>> getLevels() {
+    return levels;
+  }
+
+  /**
+   * Gets the number of blocks.
+   *
+   * @return the number of blocks
+   */
+  int getBlockCount() {
+    return levels.stream().mapToInt(List::size).sum();
+  }
+
+  @Override
+  public String toString() {
+    return "CurveGroupBlockDecomposition" + levels;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A block of curves that are solved together.
+   */
+  static final class Block {
+    /**
+     * The curve order of the block, in the order of the group.
+     */
+    private final ImmutableList<CurveParameterSize> curveOrder;
+    /**
+     * The indices of the parameters of the block in the group, which are also the indices of the trades.
+     */
+    private final int[] parameterIndices;
+
+    /**
+     * Obtains the block of all the curves of a group.
+     *
+     * @param groupOrder  the curve order of the group
+     * @return the block
+     */
+    static Block ofGroup(List<CurveParameterSize> groupOrder) {
+      int size = groupOrder.stream().mapToInt(CurveParameterSize::getParameterCount).sum();
+      int[] parameterIndices = new int[size];
+      for (int p = 0; p < size; p++) {
+        parameterIndices[p] = p;
+      }
+      return new Block(ImmutableList.copyOf(groupOrder), parameterIndices);
+    }
+
+    // obtains an instance from the curve indices
+    private static Block of(int[] curves, List<CurveParameterSize> groupOrder, int[] starts) {
+      int[] sorted = curves.clone();
+      Arrays.sort(sorted);
+      ImmutableList.Builder<CurveParameterSize> curveOrder = ImmutableList.builder();
+      int size = 0;
+      for (int c : sorted) {
+        curveOrder.add(groupOrder.get(c));
+        size += starts[c + 1] - starts[c];
+      }
+      int[] parameterIndices = new int[size];
+      int index = 0;
+      for (int c : sorted) {
+        for (int p = starts[c]; p < starts[c + 1]; p++) {
+          parameterIndices[index++] = p;
+        }
+      }
+      return new Block(curveOrder.build(), parameterIndices);
+    }
+
+    // restricted constructor
+    private Block(ImmutableList<CurveParameterSize> curveOrder, int[] parameterIndices) {
+      this.curveOrder = curveOrder;
+      this.parameterIndices = parameterIndices;
+    }
+
+    /**
+     * Gets the curve order of the block.
+     *
+     * @return the curve order
+     */
+    ImmutableList<CurveParameterSize> getCurveOrder() {
+      return curveOrder;
+    }
+
+    /**
+     * Gets the indices of the parameters of the block in the group.
+     * <p>
+     * These are also the indices of the trades of the block.
+     *
+     * @return the parameter indices
+     */
+    int[] getParameterIndices() {
+      return parameterIndices.clone();
+    }
+
+    @Override
+    public String toString() {
+      return curveOrder.toString();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Tarjan's algorithm for the strongly connected components of a directed graph.
+   */
+  private static final class StronglyConnectedComponents {
+    // the edges, edges[v][w] is true if v depends on w
+    private final boolean[][] edges;
+    // the discovery index of each vertex, -1 if not visited
+    private final int[] index;
+    // the smallest discovery index reachable from each vertex
+    private final int[] lowLink;
+    // whether each vertex is on the stack
+    private final boolean[] onStack;
+    // the stack of vertices
+    private final Deque<Integer> stack = new ArrayDeque<>();
+    // the components found
+    private final List<int[]> components = new ArrayList<>();
+    // the next discovery index
+    private int nextIndex;
+
+    private StronglyConnectedComponents(boolean[][] edges) {
+      this.edges = edges;
+      this.index = new int[edges.length];
+      this.lowLink = new int[edges.length];
+      this.onStack = new boolean[edges.length];
+      Arrays.fill(index, -1);
+    }
+
+    // finds the components, each component being after the components it depends on
+    private List<int[]> find() {
+      for (int v = 0; v < edges.length; v++) {
+        if (index[v] < 0) {
+          visit(v);
+        }
+      }
+      return components;
+    }
+
+    // visits a vertex
+    private void visit(int v) {
+      index[v] = nextIndex;
+      lowLink[v] = nextIndex;
+      nextIndex++;
+      stack.push(v);
+      onStack[v] = true;
+      for (int w = 0; w < edges.length; w++) {
+        if (edges[v][w]) {
+          if (index[w] < 0) {
+            visit(w);
+            lowLink[v] = Math.min(lowLink[v], lowLink[w]);
+          } else if (onStack[w]) {
+            lowLink[v] = Math.min(lowLink[v], index[w]);
+          }
+        }
+      }
+      if (lowLink[v] == index[v]) {
+        List<Integer> component = new ArrayList<>();
+        int w;
+        do {
+          w = stack.pop();
+          onStack[w] = false;
+          component.add(w);
+        } while (w != v);
+        components.add(component.stream().mapToInt(Integer::intValue).toArray());
+      }
+    }
+  }
+
+}
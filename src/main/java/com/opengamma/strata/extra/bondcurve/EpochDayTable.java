@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * A table of distinct dates, keyed by epoch day, assigning each date a dense index.
+ * <p>
+ * The dates are held as primitive keys using linear probing. The index of a date is its position
+ * in the order the dates were added, thus values may be held by the caller in arrays of {@link #maxSize()}.
+ * The table never grows in place, the caller replacing it by {@link #grown()} once full,
+ * which keeps the load factor below one half so that a lookup always finds a free slot.
+ * <p>
+ * This class is mutable and not thread-safe. A lookup only reads the arrays of the table,
+ * thus a reader may validate a lookup that raced with a writer, as done by {@link RepoDiscountFactorCache}.
+ */
+final class EpochDayTable {
+
+  /**
+   * The key of an empty slot.
+   */
+  private static final int EMPTY = Integer.MIN_VALUE;
+  /**
+   * The initial capacity, a power of two.
+   */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The epoch day of each slot, EMPTY if the slot is free.
+   */
+  private final int[] keys;
+  /**
+   * The index of the date of each slot.
+   */
+  private final int[] indices;
+  /**
+   * The number of dates.
+   */
+  private int size;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an empty table.
+   *
+   * @return the table
+   */
+  static EpochDayTable create() {
+    return new EpochDayTable(INITIAL_CAPACITY);
+  }
+
+  // restricted constructor
+  private EpochDayTable(int capacity) {
+    this.keys = new int[capacity];
+    this.indices = new int[capacity];
+    Arrays.fill(keys, EMPTY);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of dates.
+   *
+   * @return the size
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of dates that can be added before the table is full.
+   * <p>
+   * The indices of the dates are always less than this.
+   *
+   * @return the maximum size
+   */
+  int maxSize() {
+    return keys.length / 2;
+  }
+
+  /**
+   * Checks if the table is full, in which case it must be {@linkplain #grown() grown} before adding a date.
+   *
+   * @return true if full
+   */
+  boolean isFull() {
+    return size >= maxSize();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the epoch day of a date, as used by the table.
+   *
+   * @param date  the date
+   * @return the epoch day
+   */
+  static int day(LocalDate date) {
+    return Math.toIntExact(date.toEpochDay());
+  }
+
+  /**
+   * Finds the index of a date.
+   *
+   * @param day  the epoch day of the date
+   * @return the index, -1 if the date has not been added
+   */
+  int find(int day) {
+    int mask = keys.length - 1;
+    int slot = hash(day) & mask;
+    while (true) {
+      int existing = keys[slot];
+      if (existing == day) {
+        return indices[slot];
+      }
+      if (existing == EMPTY) {
+        return -1;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /**
+   * Adds a date that has not been added, the table not being full.
+   * <p>
+   * The index is written before the key, thus a concurrent lookup finding the key reads a valid index
+   * once its own validation succeeds.
+   *
+   * @param day  the epoch day of the date
+   * @return the index of the date, which is the previous size
+   */
+  int add(int day) {
+    int mask = keys.length - 1;
+    int slot = hash(day) & mask;
+    while (keys[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    int index = size;
+    indices[slot] = index;
+    keys[slot] = day;
+    size++;
+    return index;
+  }
+
+  /**
+   * Creates a table with twice the capacity holding the same dates and indices.
+   *
+   * @return the grown table
+   */
+  EpochDayTable grown() {
+    EpochDayTable grown = new EpochDayTable(keys.length * 2);
+    int mask = grown.keys.length - 1;
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != EMPTY) {
+        int slot = hash(keys[i]) & mask;
+        while (grown.keys[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        grown.keys[slot] = keys[i];
+        grown.indices[slot] = indices[i];
+      }
+    }
+    grown.size = size;
+    return grown;
+  }
+
+  // spreads consecutive days across the table
+  private static int hash(int day) {
+    int hash = day * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  @Override
+  public String toString() {
+    return "EpochDayTable[size=" + size + "]";
+  }
+
+}
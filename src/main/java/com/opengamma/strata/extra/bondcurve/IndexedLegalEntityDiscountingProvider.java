@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.data.MarketDataName;
+import com.opengamma.strata.data.MarketDataNotFoundException;
+import com.opengamma.strata.market.curve.LegalEntityGroup;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
+import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.pricer.DiscountFactors;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.IssuerCurveDiscountFactors;
+import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+
+/**
+ * A legal entity discounting provider with a compiled lookup index.
+ * <p>
+ * This wraps a calibrated {@link ImmutableLegalEntityDiscountingProvider}.
+ * The groups and currencies are interned to {@code int} identifiers,
+ * and the repo and issuer discount factors are stored in arrays indexed by group and currency.
+ * The discount factors objects are created once, when the index is compiled.
+ * <p>
+ * The legal entity and security identifiers are not interned. They are mapped directly to their group index,
+ * thus resolving an identifier is one hash map lookup for the identifier and one for the currency,
+ * rather than the lookup of the group followed by the lookup of a {@code Pair} key of the immutable provider.
+ * <p>
+ * A curve index can be obtained once per trade, using {@link #repoCurveIndex(LegalEntityId, Currency)}.
+ * Only once the curve index is known are the discount factors resolved by a single array access,
+ * using {@link #repoCurveDiscountFactors(int)}.
+ * The standard provider methods are also available, with no allocation of keys.
+ */
+public final class IndexedLegalEntityDiscountingProvider
+    implements LegalEntityDiscountingProvider, Serializable {
+
+  /**
+   * The serialization version id.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * The index used when no entry is found.
+   */
+  private static final int NOT_FOUND = -1;
+
+  /**
+   * The underlying provider.
+   */
+  private final ImmutableLegalEntityDiscountingProvider underlying;
+  /**
+   * The interned currencies.
+   */
+  private final ImmutableMap<Currency, Integer> currencyIndices;
+  /**
+   * The interned securities, mapping to the repo group index.
+   */
+  private final ImmutableMap<SecurityId, Integer> securityRepoGroups;
+  /**
+   * The interned legal entities, mapping to the repo group index.
+   */
+  private final ImmutableMap<LegalEntityId, Integer> legalEntityRepoGroups;
+  /**
+   * The interned legal entities, mapping to the issuer group index.
+   */
+  private final ImmutableMap<LegalEntityId, Integer> legalEntityIssuerGroups;
+  /**
+   * The interned repo groups, indexed by repo group index.
+   */
+  private final RepoGroup[] repoGroups;
+  /**
+   * The interned legal entity groups, indexed by issuer group index.
+   */
+  private final LegalEntityGroup[] issuerGroups;
+  /**
+   * The repo curve discount factors, indexed by {@code repoGroupIndex * currencyCount + currencyIndex}.
+   */
+  private final RepoCurveDiscountFactors[] repoCurves;
+  /**
+   * The issuer curve discount factors, indexed by {@code issuerGroupIndex * currencyCount + currencyIndex}.
+   */
+  private final IssuerCurveDiscountFactors[] issuerCurves;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Compiles the index for the specified provider.
+   * <p>
+   * The provider is converted to an immutable provider before being indexed.
+   *
+   * @param provider  the provider, typically the result of calibration
+   * @return the indexed provider
+   */
+  public static IndexedLegalEntityDiscountingProvider of(LegalEntityDiscountingProvider provider) {
+    ArgChecker.notNull(provider, "provider");
+    if (provider instanceof IndexedLegalEntityDiscountingProvider) {
+      return (IndexedLegalEntityDiscountingProvider) provider;
+    }
+    return new IndexedLegalEntityDiscountingProvider(provider.toImmutableLegalEntityDiscountingProvider());
+  }
+
+  // restricted constructor
+  private IndexedLegalEntityDiscountingProvider(ImmutableLegalEntityDiscountingProvider underlying) {
+    this.underlying = underlying;
+    // intern the currencies and groups used by the curves
+    Map<Currency, Integer> currencies = new HashMap<>();
+    Map<RepoGroup, Integer> repoGroups = new HashMap<>();
+    Map<LegalEntityGroup, Integer> issuerGroups = new HashMap<>();
+    for (Pair<RepoGroup, Currency> key : underlying.getRepoCurves().keySet()) {
+      intern(currencies, key.getSecond());
+      intern(repoGroups, key.getFirst());
+    }
+    for (Pair<LegalEntityGroup, Currency> key : underlying.getIssuerCurves().keySet()) {
+      intern(currencies, key.getSecond());
+      intern(issuerGroups, key.getFirst());
+    }
+    for (RepoGroup group : underlying.getRepoCurveSecurityGroups().values()) {
+      intern(repoGroups, group);
+    }
+    for (RepoGroup group : underlying.getRepoCurveGroups().values()) {
+      intern(repoGroups, group);
+    }
+    for (LegalEntityGroup group : underlying.getIssuerCurveGroups().values()) {
+      intern(issuerGroups, group);
+    }
+    this.currencyIndices = ImmutableMap.copyOf(currencies);
+    this.repoGroups = new RepoGroup[repoGroups.size()];
+    for (Entry<RepoGroup, Integer> entry : repoGroups.entrySet()) {
+      this.repoGroups[entry.getValue()] = entry.getKey();
+    }
+    this.issuerGroups = new LegalEntityGroup[issuerGroups.size()];
+    for (Entry<LegalEntityGroup, Integer> entry : issuerGroups.entrySet()) {
+      this.issuerGroups[entry.getValue()] = entry.getKey();
+    }
+    // map the identifiers directly to the group index
+    this.securityRepoGroups = toGroupIndices(underlying.getRepoCurveSecurityGroups(), repoGroups);
+    this.legalEntityRepoGroups = toGroupIndices(underlying.getRepoCurveGroups(), repoGroups);
+    this.legalEntityIssuerGroups = toGroupIndices(underlying.getIssuerCurveGroups(), issuerGroups);
+    // build the discount factors tables
+    int currencyCount = currencies.size();
+    this.repoCurves = new RepoCurveDiscountFactors[repoGroups.size() * currencyCount];
+    for (Entry<Pair<RepoGroup, Currency>, DiscountFactors> entry : underlying.getRepoCurves().entrySet()) {
+      RepoGroup group = entry.getKey().getFirst();
+      int slot = repoGroups.get(group) * currencyCount + currencies.get(entry.getKey().getSecond());
+      repoCurves[slot] = RepoCurveDiscountFactors.of(entry.getValue(), group);
+    }
+    this.issuerCurves = new IssuerCurveDiscountFactors[issuerGroups.size() * currencyCount];
+    for (Entry<Pair<LegalEntityGroup, Currency>, DiscountFactors> entry : underlying.getIssuerCurves().entrySet()) {
+      LegalEntityGroup group = entry.getKey().getFirst();
+      int slot = issuerGroups.get(group) * currencyCount + currencies.get(entry.getKey().getSecond());
+      issuerCurves[slot] = IssuerCurveDiscountFactors.of(entry.getValue(), group);
+    }
+  }
+
+  // interns the key, assigning the next available index
+  private static <K> void intern(Map<K, Integer> interned, K key) {
+    interned.putIfAbsent(key, interned.size());
+  }
+
+  // maps each identifier to the index of its group
+  private static <K, G> ImmutableMap<K, Integer> toGroupIndices(Map<K, G> groups, Map<G, Integer> groupIndices) {
+    ImmutableMap.Builder<K, Integer> builder = ImmutableMap.builder();
+    for (Entry<K, G> entry : groups.entrySet()) {
+      builder.put(entry.getKey(), groupIndices.get(entry.getValue()));
+    }
+    return builder.build();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of interned currencies.
+   *
+   * @return the number of currencies
+   */
+  public int getCurrencyCount() {
+    return currencyIndices.size();
+  }
+
+  /**
+   * Gets the number of repo curve indices.
+   * <p>
+   * The repo curve indices range from zero to this count, exclusive.
+   * Not every index refers to a curve, {@link #repoCurveDiscountFactors(int)} returning null for such indices.
+   *
+   * @return the number of repo curve indices
+   */
+  public int getRepoCurveCount() {
+    return repoCurves.length;
+  }
+
+  /**
+   * Finds the index of the repo curve for the legal entity and currency.
+   * <p>
+   * The index is stable for the lifetime of this provider, and may be stored
+   * alongside the trade to avoid repeating the lookup.
+   *
+   * @param issuerId  the legal entity identifier
+   * @param currency  the currency
+   * @return the repo curve index
+   * @throws MarketDataNotFoundException if the curve is not found
+   */
+  public int repoCurveIndex(LegalEntityId issuerId, Currency currency) {
+    Integer groupIndex = legalEntityRepoGroups.get(issuerId);
+    if (groupIndex == null) {
+      throw new MarketDataNotFoundException(Messages.format("Unable to find repo group for ID: {}", issuerId));
+    }
+    return repoCurveIndex(groupIndex, currency);
+  }
+
+  /**
+   * Finds the index of the repo curve for the security, legal entity and currency.
+   * <p>
+   * The security is checked first, then the legal entity.
+   *
+   * @param securityId  the security identifier
+   * @param issuerId  the legal entity identifier
+   * @param currency  the currency
+   * @return the repo curve index
+   * @throws MarketDataNotFoundException if the curve is not found
+   */
+  public int repoCurveIndex(SecurityId securityId, LegalEntityId issuerId, Currency currency) {
+    Integer groupIndex = securityRepoGroups.get(securityId);
+    if (groupIndex == null) {
+      groupIndex = legalEntityRepoGroups.get(issuerId);
+      if (groupIndex == null) {
+        throw new MarketDataNotFoundException(Messages.format(
+            "Unable to find repo group for ID: {}, {}", securityId, issuerId));
+      }
+    }
+    return repoCurveIndex(groupIndex, currency);
+  }
+
+  // finds the slot in the repo table
+  private int repoCurveIndex(int groupIndex, Currency currency) {
+    int slot = slot(groupIndex, currency);
+    if (slot == NOT_FOUND || repoCurves[slot] == null) {
+      throw new MarketDataNotFoundException(Messages.format(
+          "Unable to find repo curve: {}, {}", repoGroups[groupIndex], currency));
+    }
+    return slot;
+  }
+
+  /**
+   * Gets the discount factors of a repo curve by index.
+   *
+   * @param repoCurveIndex  the index, from {@link #repoCurveIndex(LegalEntityId, Currency)}
+   * @return the discount factors, null if the index does not refer to a curve
+   */
+  public RepoCurveDiscountFactors repoCurveDiscountFactors(int repoCurveIndex) {
+    return repoCurves[repoCurveIndex];
+  }
+
+  /**
+   * Finds the index of the issuer curve for the legal entity and currency.
+   *
+   * @param issuerId  the legal entity identifier
+   * @param currency  the currency
+   * @return the issuer curve index
+   * @throws MarketDataNotFoundException if the curve is not found
+   */
+  public int issuerCurveIndex(LegalEntityId issuerId, Currency currency) {
+    Integer groupIndex = legalEntityIssuerGroups.get(issuerId);
+    if (groupIndex == null) {
+      throw new MarketDataNotFoundException(Messages.format("Unable to find legal entity group for ID: {}", issuerId));
+    }
+    int slot = slot(groupIndex, currency);
+    if (slot == NOT_FOUND || issuerCurves[slot] == null) {
+      throw new MarketDataNotFoundException(Messages.format(
+          "Unable to find issuer curve: {}, {}", issuerGroups[groupIndex], currency));
+    }
+    return slot;
+  }
+
+  /**
+   * Gets the discount factors of an issuer curve by index.
+   *
+   * @param issuerCurveIndex  the index, from {@link #issuerCurveIndex(LegalEntityId, Currency)}
+   * @return the discount factors
+   */
+  public IssuerCurveDiscountFactors issuerCurveDiscountFactors(int issuerCurveIndex) {
+    return issuerCurves[issuerCurveIndex];
+  }
+
+  // the slot in a table for the group and currency
+  private int slot(int groupIndex, Currency currency) {
+    Integer currencyIndex = currencyIndices.get(currency);
+    return currencyIndex == null ? NOT_FOUND : groupIndex * currencyIndices.size() + currencyIndex;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public LocalDate getValuationDate() {
+    return underlying.getValuationDate();
+  }
+
+  @Override
+  public RepoCurveDiscountFactors repoCurveDiscountFactors(
+      SecurityId securityId,
+      LegalEntityId issuerId,
+      Currency currency) {
+
+    return repoCurves[repoCurveIndex(securityId, issuerId, currency)];
+  }
+
+  @Override
+  public RepoCurveDiscountFactors repoCurveDiscountFactors(LegalEntityId issuerId, Currency currency) {
+    return repoCurves[repoCurveIndex(issuerId, currency)];
+  }
+
+  @Override
+  public IssuerCurveDiscountFactors issuerCurveDiscountFactors(LegalEntityId issuerId, Currency currency) {
+    return issuerCurves[issuerCurveIndex(issuerId, currency)];
+  }
+
+  @Override
+  public CurrencyParameterSensitivities parameterSensitivity(PointSensitivities pointSensitivities) {
+    return underlying.parameterSensitivity(pointSensitivities);
+  }
+
+  @Override
+  public <T> Optional<T> findData(MarketDataName<T> name) {
+    return underlying.findData(name);
+  }
+
+  @Override
+  public ImmutableLegalEntityDiscountingProvider toImmutableLegalEntityDiscountingProvider() {
+    return underlying;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Replaces this provider by the underlying immutable provider when serialized.
+   *
+   * @return the immutable provider
+   */
+  private Object writeReplace() {
+    return underlying;
+  }
+
+  @Override
+  public String toString() {
+    return Messages.format(
+        "IndexedLegalEntityDiscountingProvider[valuationDate={}, repoCurves={}, issuerCurves={}]",
+        getValuationDate(),
+        Arrays.stream(repoCurves).filter(df -> df != null).count(),
+        Arrays.stream(issuerCurves).filter(df -> df != null).count());
+  }
+
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.data.MarketDataName;
+import com.opengamma.strata.data.MarketDataNotFoundException;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.LegalEntityGroup;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
+import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.market.sensitivity.PointSensitivity;
+import com.opengamma.strata.pricer.DiscountFactors;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.IssuerCurveDiscountFactors;
+import com.opengamma.strata.pricer.bond.IssuerCurveZeroRateSensitivity;
+import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+import com.opengamma.strata.pricer.bond.RepoCurveZeroRateSensitivity;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+
+/**
+ * A legal entity discounting provider formed of layers on top of an immutable base provider.
+ * <p>
+ * Each layer holds the curves and groups added by one step, typically the calibration of one curve group.
+ * The layer sits on top of the parent layer without copying it, so adding a layer costs the size
+ * of the layer rather than the size of the whole provider.
+ * Lookups search the layers from the newest to the oldest, followed by the base provider.
+ * As such, an entry in a newer layer hides an entry with the same key in an older layer,
+ * matching the result of merging the maps in order.
+ * <p>
+ * The equivalent {@link ImmutableLegalEntityDiscountingProvider} is created lazily,
+ * on the first call to {@link #toImmutableLegalEntityDiscountingProvider()}, and then cached.
+ * Serialization writes the flattened immutable provider.
+ */
+public final class LayeredLegalEntityDiscountingProvider
+    implements LegalEntityDiscountingProvider, Serializable {
+
+  /**
+   * The serialization version id.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The base provider, below all the layers.
+   */
+  private final ImmutableLegalEntityDiscountingProvider base;
+  /**
+   * The parent layer, null if this layer sits directly on the base provider.
+   */
+  private final LayeredLegalEntityDiscountingProvider parent;
+  /**
+   * The groups used to find a repo curve by security, added by this layer.
+   */
+  private final ImmutableMap<SecurityId, RepoGroup> repoCurveSecurityGroups;
+  /**
+   * The groups used to find a repo curve by legal entity, added by this layer.
+   */
+  private final ImmutableMap<LegalEntityId, RepoGroup> repoCurveGroups;
+  /**
+   * The repo curves, keyed by repo group and currency, added by this layer.
+   */
+  private final ImmutableMap<Pair<RepoGroup, Currency>, DiscountFactors> repoCurves;
+  /**
+   * The groups used to find an issuer curve by legal entity, added by this layer.
+   */
+  private final ImmutableMap<LegalEntityId, LegalEntityGroup> issuerCurveGroups;
+  /**
+   * The issuer curves, keyed by legal entity group and currency, added by this layer.
+   */
+  private final ImmutableMap<Pair<LegalEntityGroup, Currency>, DiscountFactors> issuerCurves;
+  /**
+   * The flattened provider, created lazily.
+   */
+  private transient volatile ImmutableLegalEntityDiscountingProvider flattened;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance with no layers on top of the specified base provider.
+   *
+   * @param base  the base provider
+   * @return the layered provider
+   */
+  public static LayeredLegalEntityDiscountingProvider of(ImmutableLegalEntityDiscountingProvider base) {
+    ArgChecker.notNull(base, "base");
+    return new LayeredLegalEntityDiscountingProvider(
+        base, null, ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of());
+  }
+
+  // restricted constructor
+  private LayeredLegalEntityDiscountingProvider(
+      ImmutableLegalEntityDiscountingProvider base,
+      LayeredLegalEntityDiscountingProvider parent,
+      Map<SecurityId, RepoGroup> repoCurveSecurityGroups,
+      Map<LegalEntityId, RepoGroup> repoCurveGroups,
+      Map<Pair<RepoGroup, Currency>, DiscountFactors> repoCurves,
+      Map<LegalEntityId, LegalEntityGroup> issuerCurveGroups,
+      Map<Pair<LegalEntityGroup, Currency>, DiscountFactors> issuerCurves) {
+
+    this.base = base;
+    this.parent = parent;
+    this.repoCurveSecurityGroups = ImmutableMap.copyOf(repoCurveSecurityGroups);
+    this.repoCurveGroups = ImmutableMap.copyOf(repoCurveGroups);
+    this.repoCurves = ImmutableMap.copyOf(repoCurves);
+    this.issuerCurveGroups = ImmutableMap.copyOf(issuerCurveGroups);
+    this.issuerCurves = ImmutableMap.copyOf(issuerCurves);
+    this.flattened = parent == null && isEmptyLayer() ? base : null;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns a provider with a new layer on top of this provider.
+   * <p>
+   * The maps are not merged with the maps of this provider.
+   * An entry in the new layer hides any entry with the same key in this provider.
+   *
+   * @param repoCurveSecurityGroups  the groups used to find a repo curve by security
+   * @param repoCurveGroups  the groups used to find a repo curve by legal entity
+   * @param repoCurves  the repo curves, keyed by repo group and currency
+   * @param issuerCurveGroups  the groups used to find an issuer curve by legal entity
+   * @param issuerCurves  the issuer curves, keyed by legal entity group and currency
+   * @return the layered provider
+   */
+  public LayeredLegalEntityDiscountingProvider withLayer(
+      Map<SecurityId, RepoGroup> repoCurveSecurityGroups,
+      Map<LegalEntityId, RepoGroup> repoCurveGroups,
+      Map<Pair<RepoGroup, Currency>, DiscountFactors> repoCurves,
+      Map<LegalEntityId, LegalEntityGroup> issuerCurveGroups,
+      Map<Pair<LegalEntityGroup, Currency>, DiscountFactors> issuerCurves) {
+
+    return new LayeredLegalEntityDiscountingProvider(
+        base,
+        isEmptyLayer() ? parent : this,
+        ArgChecker.notNull(repoCurveSecurityGroups, "repoCurveSecurityGroups"),
+        ArgChecker.notNull(repoCurveGroups, "repoCurveGroups"),
+        ArgChecker.notNull(repoCurves, "repoCurves"),
+        ArgChecker.notNull(issuerCurveGroups, "issuerCurveGroups"),
+        ArgChecker.notNull(issuerCurves, "issuerCurves"));
+  }
+
+  // checks if this layer adds nothing to its parent
+  private boolean isEmptyLayer() {
+    return repoCurveSecurityGroups.isEmpty() && repoCurveGroups.isEmpty() && repoCurves.isEmpty() &&
+        issuerCurveGroups.isEmpty() && issuerCurves.isEmpty();
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public LocalDate getValuationDate() {
+    return base.getValuationDate();
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public RepoCurveDiscountFactors repoCurveDiscountFactors(
+      SecurityId securityId,
+      LegalEntityId issuerId,
+      Currency currency) {
+
+    RepoGroup repoGroup = findRepoGroup(securityId);
+    if (repoGroup == null) {
+      repoGroup = findRepoGroup(issuerId);
+      if (repoGroup == null) {
+        throw new MarketDataNotFoundException(Messages.format(
+            "Unable to find repo group for ID: {}, {}", securityId, issuerId));
+      }
+    }
+    return repoCurveDiscountFactors(repoGroup, currency);
+  }
+
+  @Override
+  public RepoCurveDiscountFactors repoCurveDiscountFactors(LegalEntityId issuerId, Currency currency) {
+    RepoGroup repoGroup = findRepoGroup(issuerId);
+    if (repoGroup == null) {
+      throw new MarketDataNotFoundException(Messages.format("Unable to find repo group for ID: {}", issuerId));
+    }
+    return repoCurveDiscountFactors(repoGroup, currency);
+  }
+
+  // lookup the discount factors for the repo group
+  private RepoCurveDiscountFactors repoCurveDiscountFactors(RepoGroup repoGroup, Currency currency) {
+    Pair<RepoGroup, Currency> key = Pair.of(repoGroup, currency);
+    for (LayeredLegalEntityDiscountingProvider layer = this; layer != null; layer = layer.parent) {
+      DiscountFactors discountFactors = layer.repoCurves.get(key);
+      if (discountFactors != null) {
+        return RepoCurveDiscountFactors.of(discountFactors, repoGroup);
+      }
+    }
+    DiscountFactors discountFactors = base.getRepoCurves().get(key);
+    if (discountFactors == null) {
+      throw new MarketDataNotFoundException(Messages.format(
+          "Unable to find repo curve: {}, {}", repoGroup, currency));
+    }
+    return RepoCurveDiscountFactors.of(discountFactors, repoGroup);
+  }
+
+  // finds the repo group by security, searching the newest layer first
+  private RepoGroup findRepoGroup(SecurityId securityId) {
+    for (LayeredLegalEntityDiscountingProvider layer = this; layer != null; layer = layer.parent) {
+      RepoGroup repoGroup = layer.repoCurveSecurityGroups.get(securityId);
+      if (repoGroup != null) {
+        return repoGroup;
+      }
+    }
+    return base.getRepoCurveSecurityGroups().get(securityId);
+  }
+
+  // finds the repo group by legal entity, searching the newest layer first
+  private RepoGroup findRepoGroup(LegalEntityId issuerId) {
+    for (LayeredLegalEntityDiscountingProvider layer = this; layer != null; layer = layer.parent) {
+      RepoGroup repoGroup = layer.repoCurveGroups.get(issuerId);
+      if (repoGroup != null) {
+        return repoGroup;
+      }
+    }
+    return base.getRepoCurveGroups().get(issuerId);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public IssuerCurveDiscountFactors issuerCurveDiscountFactors(LegalEntityId issuerId, Currency currency) {
+    LegalEntityGroup legalEntityGroup = findIssuerGroup(issuerId);
+    if (legalEntityGroup == null) {
+      throw new MarketDataNotFoundException(Messages.format("Unable to find legal entity group for ID: {}", issuerId));
+    }
+    return issuerCurveDiscountFactors(legalEntityGroup, currency);
+  }
+
+  // lookup the discount factors for the legal entity group
+  private IssuerCurveDiscountFactors issuerCurveDiscountFactors(LegalEntityGroup legalEntityGroup, Currency currency) {
+    Pair<LegalEntityGroup, Currency> key = Pair.of(legalEntityGroup, currency);
+    for (LayeredLegalEntityDiscountingProvider layer = this; layer != null; layer = layer.parent) {
+      DiscountFactors discountFactors = layer.issuerCurves.get(key);
+      if (discountFactors != null) {
+        return IssuerCurveDiscountFactors.of(discountFactors, legalEntityGroup);
+      }
+    }
+    DiscountFactors discountFactors = base.getIssuerCurves().get(key);
+    if (discountFactors == null) {
+      throw new MarketDataNotFoundException(Messages.format(
+          "Unable to find issuer curve: {}, {}", legalEntityGroup, currency));
+    }
+    return IssuerCurveDiscountFactors.of(discountFactors, legalEntityGroup);
+  }
+
+  // finds the issuer group by legal entity, searching the newest layer first
+  private LegalEntityGroup findIssuerGroup(LegalEntityId issuerId) {
+    for (LayeredLegalEntityDiscountingProvider layer = this; layer != null; layer = layer.parent) {
+      LegalEntityGroup legalEntityGroup = layer.issuerCurveGroups.get(issuerId);
+      if (legalEntityGroup != null) {
+        return legalEntityGroup;
+      }
+    }
+    return base.getIssuerCurveGroups().get(issuerId);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public CurrencyParameterSensitivities parameterSensitivity(PointSensitivities pointSensitivities) {
+    CurrencyParameterSensitivities sens = CurrencyParameterSensitivities.empty();
+    for (PointSensitivity point : pointSensitivities.getSensitivities()) {
+      if (point instanceof RepoCurveZeroRateSensitivity) {
+        RepoCurveZeroRateSensitivity pt = (RepoCurveZeroRateSensitivity) point;
+        RepoCurveDiscountFactors factors = repoCurveDiscountFactors(pt.getRepoGroup(), pt.getCurveCurrency());
+        sens = sens.combinedWith(factors.parameterSensitivity(pt));
+      } else if (point instanceof IssuerCurveZeroRateSensitivity) {
+        IssuerCurveZeroRateSensitivity pt = (IssuerCurveZeroRateSensitivity) point;
+        IssuerCurveDiscountFactors factors = issuerCurveDiscountFactors(pt.getLegalEntityGroup(), pt.getCurveCurrency());
+        sens = sens.combinedWith(factors.parameterSensitivity(pt));
+      }
+    }
+    return sens;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public <T> Optional<T> findData(MarketDataName<T> name) {
+    if (name instanceof CurveName) {
+      for (LayeredLegalEntityDiscountingProvider layer = this; layer != null; layer = layer.parent) {
+        Optional<T> found = findData(layer.repoCurves, name);
+        if (!found.isPresent()) {
+          found = findData(layer.issuerCurves, name);
+        }
+        if (found.isPresent()) {
+          return found;
+        }
+      }
+    }
+    return base.findData(name);
+  }
+
+  // finds the data in the curves of one layer
+  private static <T> Optional<T> findData(Map<?, DiscountFactors> curves, MarketDataName<T> name) {
+    for (DiscountFactors discountFactors : curves.values()) {
+      Optional<T> found = discountFactors.findData(name);
+      if (found.isPresent()) {
+        return found;
+      }
+    }
+    return Optional.empty();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns the equivalent immutable provider.
+   * <p>
+   * The layers are merged into the base provider on the first call and the result is cached.
+   *
+   * @return the immutable provider
+   */
+  @Override
+  public ImmutableLegalEntityDiscountingProvider toImmutableLegalEntityDiscountingProvider() {
+    ImmutableLegalEntityDiscountingProvider result = flattened;
+    if (result == null) {
+      result = flatten();
+      flattened = result;
+    }
+    return result;
+  }
+
+  // merges the layers, oldest first, into the base provider
+  private ImmutableLegalEntityDiscountingProvider flatten() {
+    Deque<LayeredLegalEntityDiscountingProvider> layers = new ArrayDeque<>();
+    for (LayeredLegalEntityDiscountingProvider layer = this; layer != null; layer = layer.parent) {
+      layers.push(layer);
+    }
+    Map<SecurityId, RepoGroup> repoCurveSecurityGroupsAll = new HashMap<>(base.getRepoCurveSecurityGroups());
+    Map<LegalEntityId, RepoGroup> repoCurveGroupsAll = new HashMap<>(base.getRepoCurveGroups());
+    Map<Pair<RepoGroup, Currency>, DiscountFactors> repoCurvesAll = new HashMap<>(base.getRepoCurves());
+    Map<LegalEntityId, LegalEntityGroup> issuerCurveGroupsAll = new HashMap<>(base.getIssuerCurveGroups());
+    Map<Pair<LegalEntityGroup, Currency>, DiscountFactors> issuerCurvesAll = new HashMap<>(base.getIssuerCurves());
+    for (LayeredLegalEntityDiscountingProvider layer : layers) {
+      repoCurveSecurityGroupsAll.putAll(layer.repoCurveSecurityGroups);
+      repoCurveGroupsAll.putAll(layer.repoCurveGroups);
+      repoCurvesAll.putAll(layer.repoCurves);
+      issuerCurveGroupsAll.putAll(layer.issuerCurveGroups);
+      issuerCurvesAll.putAll(layer.issuerCurves);
+    }
+    return base.toBuilder()
+        .repoCurveSecurityGroups(repoCurveSecurityGroupsAll)
+        .repoCurveGroups(repoCurveGroupsAll)
+        .repoCurves(repoCurvesAll)
+        .issuerCurveGroups(issuerCurveGroupsAll)
+        .issuerCurves(issuerCurvesAll)
+        .build();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Replaces this provider by the flattened immutable provider when serialized.
+   *
+   * @return the immutable provider
+   */
+  private Object writeReplace() {
+    return toImmutableLegalEntityDiscountingProvider();
+  }
+
+  @Override
+  public String toString() {
+    return Messages.format("LayeredLegalEntityDiscountingProvider[valuationDate={}]", getValuationDate());
+  }
+
+}
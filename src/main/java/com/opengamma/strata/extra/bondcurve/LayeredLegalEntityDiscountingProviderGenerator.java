@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.JacobianCalibrationMatrix;
+import com.opengamma.strata.market.curve.LegalEntityGroup;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.pricer.DiscountFactors;
+
+/**
+ * Generates a layered legal entity discounting provider based on an existing provider.
+ * <p>
+ * This takes a base {@link LayeredLegalEntityDiscountingProvider} and list of curve definitions
+ * to generate a child provider. The child provider holds the generated curves in a new layer
+ * on top of the base provider, thus the maps of the base provider are not copied.
+ */
+public final class LayeredLegalEntityDiscountingProviderGenerator
+    implements LegalEntityDiscountingProviderGenerator {
+
+  /**
+   * The underlying known data.
+   * <p>
+   * This includes known curves.
+   */
+  private final LayeredLegalEntityDiscountingProvider knownProvider;
+  /**
+   * The curves of the group, with the groups they are used for.
+   */
+  private final LegalEntityDiscountingGroupCurves groupCurves;
+
+  /**
+   * Obtains a generator from an existing provider and definition.
+   *
+   * @param knownProvider  the underlying known provider
+   * @param groupDefn  the curve group definition
+   * @param refData  the reference data to use
+   * @return the generator
+   */
+  public static LayeredLegalEntityDiscountingProviderGenerator of(
+      LayeredLegalEntityDiscountingProvider knownProvider,
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      ReferenceData refData) {
+
+    ArgChecker.notNull(knownProvider, "knownProvider");
+    return new LayeredLegalEntityDiscountingProviderGenerator(
+        knownProvider,
+        LegalEntityDiscountingGroupCurves.of(knownProvider.getValuationDate(), groupDefn, refData));
+  }
+
+  // creates an instance
+  private LayeredLegalEntityDiscountingProviderGenerator(
+      LayeredLegalEntityDiscountingProvider knownProvider,
+      LegalEntityDiscountingGroupCurves groupCurves) {
+
+    this.knownProvider = knownProvider;
+    this.groupCurves = groupCurves;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public LayeredLegalEntityDiscountingProvider generate(DoubleArray parameters) {
+    return generate(parameters, ImmutableMap.of(), ImmutableMap.of());
+  }
+
+  @Override
+  public LayeredLegalEntityDiscountingProvider generate(
+      DoubleArray parameters,
+      Map<CurveName, JacobianCalibrationMatrix> jacobians) {
+    return generate(parameters, jacobians, ImmutableMap.of());
+  }
+
+  @Override
+  public LayeredLegalEntityDiscountingProvider generate(
+      DoubleArray parameters,
+      Map<CurveName, JacobianCalibrationMatrix> jacobians,
+      Map<CurveName, DoubleArray> sensitivitiesMarketQuote) {
+
+    // collect only the curves of this group, the known curves stay in the lower layers
+    Map<Pair<RepoGroup, Currency>, DiscountFactors> repoCurves = new HashMap<>();
+    Map<Pair<LegalEntityGroup, Currency>, DiscountFactors> issuerCurves = new HashMap<>();
+    groupCurves.generate(parameters, jacobians, sensitivitiesMarketQuote, repoCurves, issuerCurves);
+    return knownProvider.withLayer(
+        groupCurves.getRepoCurveSecurityGroups(),
+        groupCurves.getRepoCurveGroups(),
+        repoCurves,
+        groupCurves.getIssuerCurveGroups(),
+        issuerCurves);
+  }
+
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableList;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.data.MarketData;
+import com.opengamma.strata.data.MarketDataId;
+import com.opengamma.strata.market.curve.CurveDefinition;
+import com.opengamma.strata.market.curve.CurveNode;
+import com.opengamma.strata.market.curve.NodalCurveDefinition;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+
+/**
+ * A cache of calibrated providers, keyed by the content of the calibration inputs.
+ * <p>
+ * The key is formed from the curve group definition, the valuation date, the version of the reference data
+ * and the values of the market data required by the nodes of the curves, in node order.
+ * Two calibrations with equal keys produce the same provider, thus the solve is only performed once.
+ * The values are compared exactly, any change in a quote is a different key.
+ * <p>
+ * The reference data is not compared, as it is typically large. Instead, the caller supplies a version
+ * that must change whenever the reference data used to resolve the trades changes.
+ * <p>
+ * The cache is bounded, the least recently used entry being evicted when the maximum size is reached.
+ * <p>
+ * Concurrent requests for the same inputs are deduplicated, only the first request runs the calibration.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class LegalEntityDiscountingCalibrationCache {
+
+  /**
+   * The calibrator.
+   */
+  private final LegalEntityDiscountingCurveCalibrator calibrator;
+  /**
+   * The maximum number of entries.
+   */
+  private final int maximumSize;
+  /**
+   * The entries, in access order.
+   */
+  private final LinkedHashMap<CacheKey, ImmutableLegalEntityDiscountingProvider> entries;
+  /**
+   * The calibrations in progress.
+   */
+  private final ConcurrentHashMap<CacheKey, Flight> flights = new ConcurrentHashMap<>();
+  /**
+   * The number of calibrations found in the cache or in progress.
+   */
+  private final AtomicLong hitCount = new AtomicLong();
+  /**
+   * The number of calibrations performed.
+   */
+  private final AtomicLong missCount = new AtomicLong();
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains a cache.
+   *
+   * @param calibrator  the calibrator
+   * @param maximumSize  the maximum number of calibrated providers held
+   * @return the cache
+   */
+  public static LegalEntityDiscountingCalibrationCache of(
+      LegalEntityDiscountingCurveCalibrator calibrator,
+      int maximumSize) {
+
+    return new LegalEntityDiscountingCalibrationCache(calibrator, maximumSize);
+  }
+
+  // restricted constructor
+  private LegalEntityDiscountingCalibrationCache(LegalEntityDiscountingCurveCalibrator calibrator, int maximumSize) {
+    this.calibrator = ArgChecker.notNull(calibrator, "calibrator");
+    this.maximumSize = ArgChecker.notNegativeOrZero(maximumSize, "maximumSize");
+    this.entries = new LinkedHashMap<CacheKey, ImmutableLegalEntityDiscountingProvider>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CacheKey, ImmutableLegalEntityDiscountingProvider> eldest) {
+        return size() > LegalEntityDiscountingCalibrationCache.this.maximumSize;
+      }
+    };
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Calibrates a curve group, returning the cached provider if the same inputs have been calibrated before.
+   * <p>
+   * The valuation date is defined by the market data.
+   * <p>
+   * If the same inputs are being calibrated by another thread, this method waits for that calibration
+   * instead of running its own. Otherwise, the calibration runs in the calling thread.
+   *
+   * @param groupDefn  the curve group definition
+   * @param marketData  the market data required to build a trade for the instrument
+   * @param refData  the reference data, used to resolve the trades
+   * @param refDataVersion  the version of the reference data
+   * @return the calibrated provider
+   */
+  public ImmutableLegalEntityDiscountingProvider calibrate(
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      MarketData marketData,
+      ReferenceData refData,
+      String refDataVersion) {
+
+    CompletableFuture<ImmutableLegalEntityDiscountingProvider> future =
+        calibrateAsync(groupDefn, marketData, refData, refDataVersion, Runnable::run);
+    try {
+      return future.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      if (ex.getCause() instanceof Error) {
+        throw (Error) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Calibrates a curve group asynchronously, returning the cached provider if the same inputs have been
+   * calibrated before.
+   * <p>
+   * The valuation date is defined by the market data.
+   * <p>
+   * Concurrent requests with the same inputs share a single calibration.
+   * The first request submits the calibration to the executor, later requests wait for its result.
+   * <p>
+   * Each request receives its own future. Cancelling it abandons the request.
+   * Once all the requests sharing a calibration have been abandoned, the calibration is cancelled
+   * if it has not started. A calibration that has started runs to completion and its result is cached.
+   *
+   * @param groupDefn  the curve group definition
+   * @param marketData  the market data required to build a trade for the instrument
+   * @param refData  the reference data, used to resolve the trades
+   * @param refDataVersion  the version of the reference data
+   * @param executor  the executor used to run the calibration
+   * @return the future calibrated provider
+   */
+  public CompletableFuture<ImmutableLegalEntityDiscountingProvider> calibrateAsync(
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      MarketData marketData,
+      ReferenceData refData,
+      String refDataVersion,
+      Executor executor) {
+
+    ArgChecker.notNull(refData, "refData");
+    ArgChecker.notNull(executor, "executor");
+    Optional<CacheKey> keyOpt = CacheKey.of(groupDefn, marketData, refDataVersion);
+    if (!keyOpt.isPresent()) {
+      // some market data is missing, the calibrator reports the error
+      missCount.incrementAndGet();
+      return CompletableFuture.supplyAsync(() -> calibrator.calibrate(groupDefn, marketData, refData), executor);
+    }
+    CacheKey key = keyOpt.get();
+    ImmutableLegalEntityDiscountingProvider cached = find(key);
+    if (cached != null) {
+      hitCount.incrementAndGet();
+      return CompletableFuture.completedFuture(cached);
+    }
+    while (true) {
+      Flight created = new Flight(key);
+      Flight existing = flights.putIfAbsent(key, created);
+      Flight flight = existing != null ? existing : created;
+      if (flight.join()) {
+        if (existing != null) {
+          hitCount.incrementAndGet();
+          return flight.request();
+        }
+        CompletableFuture<ImmutableLegalEntityDiscountingProvider> request = flight.request();
+        try {
+          executor.execute(() -> run(flight, groupDefn, marketData, refData));
+        } catch (RejectedExecutionException ex) {
+          flights.remove(key, flight);
+          flight.result.completeExceptionally(ex);
+        }
+        return request;
+      }
+      // the flight was abandoned concurrently
+      flights.remove(key, flight);
+    }
+  }
+
+  // runs the calibration of a flight
+  private void run(
+      Flight flight,
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      MarketData marketData,
+      ReferenceData refData) {
+
+    try {
+      if (!flight.start()) {
+        return;
+      }
+      // the flight may have been created just after another calibration of the same inputs completed
+      ImmutableLegalEntityDiscountingProvider cached = find(flight.key);
+      if (cached != null) {
+        hitCount.incrementAndGet();
+        flight.result.complete(cached);
+        return;
+      }
+      missCount.incrementAndGet();
+      ImmutableLegalEntityDiscountingProvider calibrated = calibrator.calibrate(groupDefn, marketData, refData);
+      synchronized (entries) {
+        entries.put(flight.key, calibrated);
+      }
+      flight.result.complete(calibrated);
+    } catch (RuntimeException | Error ex) {
+      flight.result.completeExceptionally(ex);
+    } finally {
+      flights.remove(flight.key, flight);
+    }
+  }
+
+  // finds a cached provider, updating the access order
+  private ImmutableLegalEntityDiscountingProvider find(CacheKey key) {
+    synchronized (entries) {
+      return entries.get(key);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of cached providers.
+   *
+   * @return the size
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Gets the number of calibrations found in the cache or in progress.
+   *
+   * @return the hit count
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Gets the number of calibrations performed.
+   *
+   * @return the miss count
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Gets the number of calibrations in progress.
+   *
+   * @return the number of calibrations in progress
+   */
+  public int getInProgressCount() {
+    return flights.size();
+  }
+
+  /**
+   * Removes all the cached providers.
+   * <p>
+   * The calibrations in progress are not affected.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "LegalEntityDiscountingCalibrationCache[size=" + size() + ", maximumSize=" + maximumSize +
+        ", hits=" + hitCount.get() + ", misses=" + missCount.get() + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A calibration in progress, shared by the requests for the same key.
+   */
+  private final class Flight {
+    // the key
+    private final CacheKey key;
+    // the result of the calibration
+    private final CompletableFuture<ImmutableLegalEntityDiscountingProvider> result = new CompletableFuture<>();
+    // the number of requests that have not been abandoned
+    private int requestCount;
+    // whether the calibration has started
+    private boolean started;
+    // whether the calibration has been cancelled
+    private boolean cancelled;
+
+    // restricted constructor
+    private Flight(CacheKey key) {
+      this.key = key;
+    }
+
+    // adds a request, false if the flight has been cancelled
+    private synchronized boolean join() {
+      if (cancelled) {
+        return false;
+      }
+      requestCount++;
+      return true;
+    }
+
+    // marks the calibration as started, false if the flight has been cancelled
+    private synchronized boolean start() {
+      if (cancelled) {
+        return false;
+      }
+      started = true;
+      return true;
+    }
+
+    // removes a request, cancelling the calibration if no request remains and it has not started
+    private synchronized void abandon() {
+      requestCount--;
+      if (requestCount == 0 && !started) {
+        cancelled = true;
+        flights.remove(key, this);
+        result.cancel(false);
+      }
+    }
+
+    // creates the future of a request, completed with the result of the calibration
+    private CompletableFuture<ImmutableLegalEntityDiscountingProvider> request() {
+      CompletableFuture<ImmutableLegalEntityDiscountingProvider> request = new CompletableFuture<>();
+      result.whenComplete((provider, ex) -> {
+        if (ex != null) {
+          request.completeExceptionally(ex);
+        } else {
+          request.complete(provider);
+        }
+      });
+      request.whenComplete((provider, ex) -> {
+        if (request.isCancelled()) {
+          abandon();
+        }
+      });
+      return request;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The key of a calibration, comparing the inputs by content.
+   */
+  static final class CacheKey {
+    // the curve group definition
+    private final LegalEntityDiscountingCurveGroupDefinition groupDefn;
+    // the valuation date
+    private final LocalDate valuationDate;
+    // the version of the reference data
+    private final String refDataVersion;
+    // the values of the market data required by the nodes, in node order
+    private final ImmutableList<Object> values;
+    // the hash code, computed once
+    private final int hashCode;
+
+    // obtains the key, empty if some market data is missing
+    static Optional<CacheKey> of(
+        LegalEntityDiscountingCurveGroupDefinition groupDefn,
+        MarketData marketData,
+        String refDataVersion) {
+
+      ArgChecker.notNull(groupDefn, "groupDefn");
+      ArgChecker.notNull(refDataVersion, "refDataVersion");
+      Set<MarketDataId<?>> ids = new LinkedHashSet<>();
+      for (CurveDefinition curveDefn : groupDefn.getCurveDefinitions()) {
+        if (curveDefn instanceof NodalCurveDefinition) {
+          for (CurveNode node : ((NodalCurveDefinition) curveDefn).getNodes()) {
+            ids.addAll(node.requirements());
+          }
+        }
+      }
+      ImmutableList.Builder<Object> values = ImmutableList.builder();
+      for (MarketDataId<?> id : ids) {
+        Optional<?> value = marketData.findValue(id);
+        if (!value.isPresent()) {
+          return Optional.empty();
+        }
+        values.add(value.get());
+      }
+      return Optional.of(new CacheKey(groupDefn, marketData.getValuationDate(), refDataVersion, values.build()));
+    }
+
+    // restricted constructor
+    private CacheKey(
+        LegalEntityDiscountingCurveGroupDefinition groupDefn,
+        LocalDate valuationDate,
+        String refDataVersion,
+        ImmutableList<Object> values) {
+
+      this.groupDefn = groupDefn;
+      this.valuationDate = valuationDate;
+      this.refDataVersion = refDataVersion;
+      this.values = values;
+      int hash = groupDefn.hashCode();
+      hash = hash * 31 + valuationDate.hashCode();
+      hash = hash * 31 + refDataVersion.hashCode();
+      hash = hash * 31 + values.hashCode();
+      this.hashCode = hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (obj instanceof CacheKey) {
+        CacheKey other = (CacheKey) obj;
+        return hashCode == other.hashCode &&
+            valuationDate.equals(other.valuationDate) &&
+            refDataVersion.equals(other.refDataVersion) &&
+            values.equals(other.values) &&
+            groupDefn.equals(other.groupDefn);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return "CacheKey[" + groupDefn.getName() + ", " + valuationDate + ", " + refDataVersion + "]";
+    }
+  }
+
+}
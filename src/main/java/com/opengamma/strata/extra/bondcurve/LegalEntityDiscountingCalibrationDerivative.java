@@ -11,7 +11,7 @@ import java.util.function.Function;
 import com.opengamma.strata.collect.array.DoubleArray;
 import com.opengamma.strata.collect.array.DoubleMatrix;
 import com.opengamma.strata.market.curve.CurveParameterSize;
-import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
 import com.opengamma.strata.product.ResolvedTrade;
 
 /**
@@ -41,6 +41,10 @@ class LegalEntityDiscountingCalibrationDerivative
    * The expected number of parameters for each curve is also provided.
    */
   private final List<CurveParameterSize> curveOrder;
+  /**
+   * The assembler of the rows of the derivative.
+   */
+  private final CalibrationRowAssembler rowAssembler;
 
   /**
    * Creates an instance.
@@ -56,20 +60,40 @@ class LegalEntityDiscountingCalibrationDerivative
       LegalEntityDiscountingProviderGenerator providerGenerator,
       List<CurveParameterSize> curveOrder) {
 
+    this(trades, measures, providerGenerator, curveOrder, CalibrationRowAssembler.SEQUENTIAL);
+  }
+
+  /**
+   * Creates an instance computing the rows using the specified assembler.
+   * 
+   * @param trades  the trades
+   * @param measures  the calibration measures
+   * @param providerGenerator  the provider generator, used to create child providers
+   * @param curveOrder  the curve order
+   * @param rowAssembler  the assembler of the rows, one row per trade
+   */
+  LegalEntityDiscountingCalibrationDerivative(
+      List<ResolvedTrade> trades,
+      LegalEntityDiscountingCalibrationMeasures measures,
+      LegalEntityDiscountingProviderGenerator providerGenerator,
+      List<CurveParameterSize> curveOrder,
+      CalibrationRowAssembler rowAssembler) {
+
     this.measures = measures;
     this.trades = trades;
     this.providerGenerator = providerGenerator;
     this.curveOrder = curveOrder;
+    this.rowAssembler = rowAssembler;
   }
 
   //-------------------------------------------------------------------------
   @Override
   public DoubleMatrix apply(DoubleArray x) {
     // create child provider from matrix
-    ImmutableLegalEntityDiscountingProvider provider = providerGenerator.generate(x);
+    LegalEntityDiscountingProvider provider = providerGenerator.generate(x);
     // calculate derivative for each trade using the child provider
     int size = trades.size();
-    return DoubleMatrix.ofArrayObjects(size, size, i -> measures.derivative(trades.get(i), provider, curveOrder));
+    return rowAssembler.assemble(size, size, i -> measures.derivative(trades.get(i), provider, curveOrder));
   }
 
 }
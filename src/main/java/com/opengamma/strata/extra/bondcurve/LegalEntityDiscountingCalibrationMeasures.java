@@ -8,6 +8,7 @@ package com.opengamma.strata.extra.bondcurve;
 import static com.opengamma.strata.collect.Guavate.toImmutableMap;
 
 import java.util.List;
+import java.util.Optional;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -185,6 +186,16 @@ public final class LegalEntityDiscountingCalibrationMeasures {
   }
 
   //-------------------------------------------------------------------------
+  /**
+   * Finds the measure used for a trade type.
+   *
+   * @param tradeType  the trade type
+   * @return the measure, empty if the trade type is not supported
+   */
+  Optional<LegalEntityDiscountingCalibrationMeasure<? extends ResolvedTrade>> findMeasure(Class<?> tradeType) {
+    return Optional.ofNullable(measuresByTrade.get(tradeType));
+  }
+
   // finds the correct measure implementation
   @SuppressWarnings("unchecked")
   private <T extends ResolvedTrade> LegalEntityDiscountingCalibrationMeasure<ResolvedTrade>
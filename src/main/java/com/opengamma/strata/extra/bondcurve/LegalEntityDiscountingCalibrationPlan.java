@@ -0,0 +1,526 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableList;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.basics.date.DayCount;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.array.DoubleMatrix;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.extra.repo.CurveNodeBracket;
+import com.opengamma.strata.extra.repo.DiscountingRepoProductPricer;
+import com.opengamma.strata.extra.repo.ResolvedRepo;
+import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
+import com.opengamma.strata.market.ValueType;
+import com.opengamma.strata.market.curve.Curve;
+import com.opengamma.strata.market.curve.CurveDefinition;
+import com.opengamma.strata.market.curve.CurveInfoType;
+import com.opengamma.strata.market.curve.CurveMetadata;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurveDefinition;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.ResolvedTrade;
+
+/**
+ * A calibration plan, compiled once per curve group.
+ * <p>
+ * The plan stores, for each trade of the group, the relative times of its start and end dates and,
+ * for each time, the index of the lower node bracketing the time and the fraction of the bracket.
+ * The value and derivative functions used by the root finder are then loops over these arrays,
+ * the discount factors being interpolated directly from the two bracketing parameters using {@link CurveNodeBracket}.
+ * This avoids the creation of curves, providers, point sensitivities and parameter sensitivities
+ * for every trade at every iteration.
+ * The par spread and its sensitivity to the zero rates are calculated by {@link DiscountingRepoProductPricer}.
+ * <p>
+ * A plan can only be compiled for repo trades calibrated to their par spread, using the standard repo pricer,
+ * where each trade depends on a curve of the group whose y-values are zero rates or discount factors.
+ * The curves must be interpolated nodal curves supported by {@link CurveNodeBracket},
+ * with linear or log-linear interpolation and flat extrapolation.
+ * The results are the same as those of {@link LegalEntityDiscountingCalibrationValue} and
+ * {@link LegalEntityDiscountingCalibrationDerivative}, up to rounding.
+ * <p>
+ * A plan can be {@linkplain #restrictedTo(int[], double[]) restricted} to a subset of the parameters,
+ * the other parameters of the group being fixed. The trades solved are those with the same indices as the parameters.
+ */
+final class LegalEntityDiscountingCalibrationPlan {
+
+  /**
+   * Year fraction below which the discount factor is one and has no sensitivity.
+   */
+  private static final double EFFECTIVE_ZERO = 1e-10;
+  /**
+   * The pricer.
+   */
+  private static final DiscountingRepoProductPricer PRICER = DiscountingRepoProductPricer.DEFAULT;
+
+  /**
+   * Whether the y-values of each curve are discount factors rather than zero rates.
+   */
+  private final boolean[] discountFactorValues;
+  /**
+   * Whether the interpolation of each curve is log-linear rather than linear.
+   */
+  private final boolean[] logLinear;
+  /**
+   * The index of the curve of each trade.
+   */
+  private final int[] tradeCurves;
+  /**
+   * The product of each trade.
+   */
+  private final ResolvedRepo[] products;
+  /**
+   * The relative time of the start date of each trade.
+   */
+  private final double[] timeStarts;
+  /**
+   * The relative time of the end date of each trade.
+   */
+  private final double[] timeEnds;
+  /**
+   * The group parameter index of the lower node bracketing the start date of each trade.
+   */
+  private final int[] lowerStarts;
+  /**
+   * The group parameter index of the lower node bracketing the end date of each trade.
+   */
+  private final int[] lowerEnds;
+  /**
+   * The fraction of the bracket at the start date of each trade.
+   */
+  private final double[] fractionStarts;
+  /**
+   * The fraction of the bracket at the end date of each trade.
+   */
+  private final double[] fractionEnds;
+  /**
+   * The indices of the parameters solved, which are also the indices of the trades.
+   */
+  private final int[] solvedIndices;
+  /**
+   * The parameters of the group, the solved parameters being overwritten at each evaluation.
+   */
+  private final double[] groupParameters;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Compiles the plan of a group.
+   * <p>
+   * The trades must be in the order of the parameters, as returned by the group definition.
+   * The plan is empty if any trade or curve is not supported.
+   *
+   * @param groupDefn  the curve group definition
+   * @param trades  the resolved trades of the group
+   * @param measures  the calibration measures
+   * @param valuationDate  the valuation date
+   * @param refData  the reference data
+   * @return the plan, empty if the group is not supported
+   */
+  static Optional<LegalEntityDiscountingCalibrationPlan> compile(
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      List<ResolvedTrade> trades,
+      LegalEntityDiscountingCalibrationMeasures measures,
+      LocalDate valuationDate,
+      ReferenceData refData) {
+
+    boolean parSpread = measures.findMeasure(ResolvedRepoTrade.class)
+        .map(measure -> measure == LegalEntityDiscountingTradeCalibrationMeasure.REPO_PAR_SPREAD)
+        .orElse(false);
+    if (!parSpread) {
+      return Optional.empty();
+    }
+    // curves
+    ImmutableList<CurveDefinition> curveDefns = groupDefn.getCurveDefinitions();
+    int curveCount = curveDefns.size();
+    DayCount[] dayCounts = new DayCount[curveCount];
+    boolean[] discountFactorValues = new boolean[curveCount];
+    boolean[] logLinear = new boolean[curveCount];
+    double[][] nodeTimes = new double[curveCount][];
+    int[] curveStarts = new int[curveCount + 1];
+    for (int c = 0; c < curveCount; c++) {
+      CurveDefinition curveDefn = curveDefns.get(c);
+      CurveMetadata metadata = curveDefn.metadata(valuationDate, refData);
+      ValueType yValueType = metadata.getYValueType();
+      Optional<DayCount> dayCount = metadata.findInfo(CurveInfoType.DAY_COUNT);
+      if (!metadata.getXValueType().equals(ValueType.YEAR_FRACTION) || !dayCount.isPresent() ||
+          !(yValueType.equals(ValueType.ZERO_RATE) || yValueType.equals(ValueType.DISCOUNT_FACTOR))) {
+        return Optional.empty();
+      }
+      if (!(curveDefn instanceof InterpolatedNodalCurveDefinition) || curveDefn.getParameterCount() < 2) {
+        return Optional.empty();
+      }
+      InterpolatedNodalCurveDefinition interpolatedDefn = (InterpolatedNodalCurveDefinition) curveDefn;
+      if (!CurveNodeBracket.isSupported(
+          interpolatedDefn.getInterpolator(),
+          interpolatedDefn.getExtrapolatorLeft(),
+          interpolatedDefn.getExtrapolatorRight())) {
+        return Optional.empty();
+      }
+      // the times of the nodes do not depend on the parameters
+      Curve curve = curveDefn.curve(valuationDate, metadata, DoubleArray.filled(curveDefn.getParameterCount(), 1d));
+      nodeTimes[c] = ((InterpolatedNodalCurve) curve).getXValues().toArray();
+      dayCounts[c] = dayCount.get();
+      discountFactorValues[c] = yValueType.equals(ValueType.DISCOUNT_FACTOR);
+      logLinear[c] = CurveNodeBracket.isLogLinear(interpolatedDefn.getInterpolator());
+      curveStarts[c + 1] = curveStarts[c] + curveDefn.getParameterCount();
+    }
+    // trades
+    int tradeCount = trades.size();
+    int[] tradeCurves = new int[tradeCount];
+    ResolvedRepo[] products = new ResolvedRepo[tradeCount];
+    double[] timeStarts = new double[tradeCount];
+    double[] timeEnds = new double[tradeCount];
+    int[] lowerStarts = new int[tradeCount];
+    int[] lowerEnds = new int[tradeCount];
+    double[] fractionStarts = new double[tradeCount];
+    double[] fractionEnds = new double[tradeCount];
+    for (int i = 0; i < tradeCount; i++) {
+      ResolvedTrade trade = trades.get(i);
+      if (!(trade instanceof ResolvedRepoTrade)) {
+        return Optional.empty();
+      }
+      ResolvedRepo product = ((ResolvedRepoTrade) trade).getProduct();
+      int c = curveIndex(groupDefn, product.getLegalEntityId(), product.getCurrency());
+      if (c < 0) {
+        return Optional.empty();
+      }
+      tradeCurves[i] = c;
+      products[i] = product;
+      double timeStart = dayCounts[c].relativeYearFraction(valuationDate, product.getStartDate());
+      double timeEnd = dayCounts[c].relativeYearFraction(valuationDate, product.getEndDate());
+      int lowerStart = CurveNodeBracket.lowerIndex(nodeTimes[c], timeStart);
+      int lowerEnd = CurveNodeBracket.lowerIndex(nodeTimes[c], timeEnd);
+      timeStarts[i] = timeStart;
+      timeEnds[i] = timeEnd;
+      lowerStarts[i] = curveStarts[c] + lowerStart;
+      lowerEnds[i] = curveStarts[c] + lowerEnd;
+      fractionStarts[i] = CurveNodeBracket.fraction(nodeTimes[c], lowerStart, timeStart);
+      fractionEnds[i] = CurveNodeBracket.fraction(nodeTimes[c], lowerEnd, timeEnd);
+    }
+    int[] solvedIndices = new int[curveStarts[curveCount]];
+    for (int p = 0; p < solvedIndices.length; p++) {
+      solvedIndices[p] = p;
+    }
+    return Optional.of(new LegalEntityDiscountingCalibrationPlan(
+        discountFactorValues,
+        logLinear,
+        tradeCurves,
+        products,
+        timeStarts,
+        timeEnds,
+        lowerStarts,
+        lowerEnds,
+        fractionStarts,
+        fractionEnds,
+        solvedIndices,
+        new double[curveStarts[curveCount]]));
+  }
+
+  // finds the index of the curve of the group used by the legal entity, -1 if the curve is not in the group
+  private static int curveIndex(
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      LegalEntityId legalEntityId,
+      Currency currency) {
+
+    RepoGroup repoGroup = groupDefn.getRepoCurveGroups().get(legalEntityId);
+    if (repoGroup == null) {
+      return -1;
+    }
+    Pair<RepoGroup, Currency> key = Pair.of(repoGroup, currency);
+    List<CurveDefinition> curveDefns = groupDefn.getCurveDefinitions();
+    for (int c = 0; c < curveDefns.size(); c++) {
+      Optional<RepoCurveEntry> entry = groupDefn.findRepoCurveEntry(curveDefns.get(c).getName());
+      if (entry.isPresent() && entry.get().getRepoCurveGroups().contains(key)) {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  // restricted constructor
+  private LegalEntityDiscountingCalibrationPlan(
+      boolean[] discountFactorValues,
+      boolean[] logLinear,
+      int[] tradeCurves,
+      ResolvedRepo[] products,
+      double[] timeStarts,
+      double[] timeEnds,
+      int[] lowerStarts,
+      int[] lowerEnds,
+      double[] fractionStarts,
+      double[] fractionEnds,
+      int[] solvedIndices,
+      double[] groupParameters) {
+
+    this.discountFactorValues = discountFactorValues;
+    this.logLinear = logLinear;
+    this.tradeCurves = tradeCurves;
+    this.products = products;
+    this.timeStarts = timeStarts;
+    this.timeEnds = timeEnds;
+    this.lowerStarts = lowerStarts;
+    this.lowerEnds = lowerEnds;
+    this.fractionStarts = fractionStarts;
+    this.fractionEnds = fractionEnds;
+    this.solvedIndices = solvedIndices;
+    this.groupParameters = groupParameters;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns a plan solving a subset of the parameters of the group.
+   * <p>
+   * The other parameters are fixed to the specified values.
+   *
+   * @param indices  the indices of the parameters solved, which are also the indices of the trades
+   * @param groupParams  the parameters of the group
+   * @return the restricted plan
+   */
+  LegalEntityDiscountingCalibrationPlan restrictedTo(int[] indices, double[] groupParams) {
+    return new LegalEntityDiscountingCalibrationPlan(
+        discountFactorValues,
+        logLinear,
+        tradeCurves,
+        products,
+        timeStarts,
+        timeEnds,
+        lowerStarts,
+        lowerEnds,
+        fractionStarts,
+        fractionEnds,
+        indices.clone(),
+        groupParams.clone());
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the function calculating the value of the trades solved.
+   * <p>
+   * The input is the array of solved parameters and the output is the par spread of each trade solved.
+   *
+   * @return the value function
+   */
+  Function<DoubleArray, DoubleArray> valueFunction() {
+    return this::values;
+  }
+
+  /**
+   * Gets the function calculating the derivative of the value of the trades solved.
+   * <p>
+   * The input is the array of solved parameters and the output is the sensitivity of the par spread
+   * of each trade solved to each parameter solved.
+   * The rows are computed on the calling thread.
+   *
+   * @return the derivative function
+   */
+  Function<DoubleArray, DoubleMatrix> derivativeFunction() {
+    return derivativeFunction(CalibrationRowAssembler.SEQUENTIAL);
+  }
+
+  /**
+   * Gets the function calculating the derivative of the value of the trades solved,
+   * assembling the rows using the specified assembler.
+   * <p>
+   * The input is the array of solved parameters and the output is the sensitivity of the par spread
+   * of each trade solved to each parameter solved.
+   * Each row only reads the parameters of the evaluation, thus the rows can be computed in parallel.
+   *
+   * @param rowAssembler  the assembler of the rows
+   * @return the derivative function
+   */
+  Function<DoubleArray, DoubleMatrix> derivativeFunction(CalibrationRowAssembler rowAssembler) {
+    return solvedParams -> derivatives(solvedParams, rowAssembler);
+  }
+
+  // calculates the values
+  private DoubleArray values(DoubleArray solvedParams) {
+    double[] params = groupParameters(solvedParams);
+    int size = solvedIndices.length;
+    double[] values = new double[size];
+    for (int k = 0; k < size; k++) {
+      values[k] = value(k, params);
+    }
+    return DoubleArray.ofUnsafe(values);
+  }
+
+  // calculates the derivatives
+  private DoubleMatrix derivatives(DoubleArray solvedParams, CalibrationRowAssembler rowAssembler) {
+    double[] params = groupParameters(solvedParams);
+    int size = solvedIndices.length;
+    // the column of each group parameter, -1 if the parameter is fixed
+    int[] columns = new int[groupParameters.length];
+    Arrays.fill(columns, -1);
+    for (int k = 0; k < size; k++) {
+      columns[solvedIndices[k]] = k;
+    }
+    return rowAssembler.assemble(size, size, k -> derivativeRow(k, params, columns));
+  }
+
+  // calculates the derivative of a trade solved
+  private DoubleArray derivativeRow(int k, double[] params, int[] columns) {
+    double[] row = new double[solvedIndices.length];
+    int i = solvedIndices[k];
+    int c = tradeCurves[i];
+    double timeStart = timeStarts[i];
+    double timeEnd = timeEnds[i];
+    double yStart = yValue(params, c, lowerStarts[i], fractionStarts[i]);
+    double yEnd = yValue(params, c, lowerEnds[i], fractionEnds[i]);
+    double dfStart = discountFactor(c, yStart, timeStart);
+    double dfEnd = discountFactor(c, yEnd, timeEnd);
+    addSensitivity(row, columns, params, c, lowerStarts[i], fractionStarts[i], timeStart, yStart,
+        PRICER.parSpreadZeroRateSensitivityStart(products[i], timeStart, dfStart, dfEnd));
+    addSensitivity(row, columns, params, c, lowerEnds[i], fractionEnds[i], timeEnd, yEnd,
+        PRICER.parSpreadZeroRateSensitivityEnd(products[i], timeEnd, dfStart, dfEnd));
+    return DoubleArray.ofUnsafe(row);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the index in the group of the parameter solved at the specified index.
+   *
+   * @param k  the index of the parameter solved, which is also the index of the trade solved
+   * @return the index of the parameter in the group
+   */
+  int parameterIndex(int k) {
+    return solvedIndices[k];
+  }
+
+  /**
+   * Gets the parameters of the group, with the solved parameters overwritten.
+   * <p>
+   * The result is a new array, suitable for {@link #value(int, double[])} and {@link #derivative(int, double[])}.
+   *
+   * @param solvedParams  the solved parameters
+   * @return the parameters of the group
+   */
+  double[] groupParameters(DoubleArray solvedParams) {
+    double[] params = groupParameters.clone();
+    for (int k = 0; k < solvedIndices.length; k++) {
+      params[solvedIndices[k]] = solvedParams.get(k);
+    }
+    return params;
+  }
+
+  /**
+   * Calculates the value of a single trade solved.
+   * <p>
+   * This is the par spread of the trade, only reading the parameters bracketing its start and end dates.
+   *
+   * @param k  the index of the trade solved
+   * @param params  the parameters of the group
+   * @return the value
+   */
+  double value(int k, double[] params) {
+    int i = solvedIndices[k];
+    int c = tradeCurves[i];
+    double dfStart = discountFactor(c, yValue(params, c, lowerStarts[i], fractionStarts[i]), timeStarts[i]);
+    double dfEnd = discountFactor(c, yValue(params, c, lowerEnds[i], fractionEnds[i]), timeEnds[i]);
+    return PRICER.parSpread(products[i], dfStart, dfEnd);
+  }
+
+  /**
+   * Calculates the derivative of the value of a single trade solved with respect to the parameter of the same index.
+   * <p>
+   * This is the diagonal element of the derivative, used to find the parameters one at a time.
+   *
+   * @param k  the index of the trade solved
+   * @param params  the parameters of the group
+   * @return the derivative
+   */
+  double derivative(int k, double[] params) {
+    int i = solvedIndices[k];
+    int c = tradeCurves[i];
+    double timeStart = timeStarts[i];
+    double timeEnd = timeEnds[i];
+    double yStart = yValue(params, c, lowerStarts[i], fractionStarts[i]);
+    double yEnd = yValue(params, c, lowerEnds[i], fractionEnds[i]);
+    double dfStart = discountFactor(c, yStart, timeStart);
+    double dfEnd = discountFactor(c, yEnd, timeEnd);
+    double startSensitivity = PRICER.parSpreadZeroRateSensitivityStart(products[i], timeStart, dfStart, dfEnd);
+    double endSensitivity = PRICER.parSpreadZeroRateSensitivityEnd(products[i], timeEnd, dfStart, dfEnd);
+    return nodeSensitivity(i, params, c, lowerStarts[i], fractionStarts[i], timeStart, yStart, startSensitivity) +
+        nodeSensitivity(i, params, c, lowerEnds[i], fractionEnds[i], timeEnd, yEnd, endSensitivity);
+  }
+
+  // the parameter sensitivity of a zero rate sensitivity to a single parameter of the group
+  private double nodeSensitivity(
+      int param,
+      double[] params,
+      int curveIndex,
+      int lower,
+      double fraction,
+      double yearFraction,
+      double yValue,
+      double sensitivity) {
+
+    if (Math.abs(yearFraction) < EFFECTIVE_ZERO || (param != lower && param != lower + 1)) {
+      return 0d;
+    }
+    // d(df)/d(zero rate) = -t * df
+    double factor = discountFactorValues[curveIndex] ? -1d / (yearFraction * yValue) : 1d;
+    double weight = param == lower ?
+        CurveNodeBracket.lowerWeight(logLinear[curveIndex], params[lower], yValue, fraction) :
+        CurveNodeBracket.upperWeight(logLinear[curveIndex], params[lower + 1], yValue, fraction);
+    return weight * factor * sensitivity;
+  }
+
+  // adds the parameter sensitivity of a zero rate sensitivity to a row, only the bracketing nodes being sensitive
+  private void addSensitivity(
+      double[] row,
+      int[] columns,
+      double[] params,
+      int curveIndex,
+      int lower,
+      double fraction,
+      double yearFraction,
+      double yValue,
+      double sensitivity) {
+
+    if (Math.abs(yearFraction) < EFFECTIVE_ZERO) {
+      return;  // discount factor is one, no sensitivity
+    }
+    // d(df)/d(zero rate) = -t * df
+    double factor = discountFactorValues[curveIndex] ? -1d / (yearFraction * yValue) : 1d;
+    boolean isLogLinear = logLinear[curveIndex];
+    int lowerColumn = columns[lower];
+    if (lowerColumn >= 0) {
+      row[lowerColumn] +=
+          CurveNodeBracket.lowerWeight(isLogLinear, params[lower], yValue, fraction) * factor * sensitivity;
+    }
+    int upperColumn = columns[lower + 1];
+    if (upperColumn >= 0) {
+      row[upperColumn] +=
+          CurveNodeBracket.upperWeight(isLogLinear, params[lower + 1], yValue, fraction) * factor * sensitivity;
+    }
+  }
+
+  // the y-value of a curve, interpolated between the lower node and the next node
+  private double yValue(double[] params, int curveIndex, int lower, double fraction) {
+    return CurveNodeBracket.yValue(logLinear[curveIndex], params[lower], params[lower + 1], fraction);
+  }
+
+  // the discount factor at a relative time from the y-value of the curve
+  private double discountFactor(int curveIndex, double yValue, double yearFraction) {
+    return discountFactorValues[curveIndex] ? yValue : Math.exp(-yValue * yearFraction);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "LegalEntityDiscountingCalibrationPlan[trades=" + tradeCurves.length +
+        ", solved=" + solvedIndices.length + "]";
+  }
+
+}
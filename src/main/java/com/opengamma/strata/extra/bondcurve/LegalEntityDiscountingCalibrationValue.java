@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.function.Function;
 
 import com.opengamma.strata.collect.array.DoubleArray;
-import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
 import com.opengamma.strata.product.ResolvedTrade;
 
 /**
@@ -56,7 +56,7 @@ class LegalEntityDiscountingCalibrationValue
   @Override
   public DoubleArray apply(DoubleArray x) {
     // create child provider from matrix
-    ImmutableLegalEntityDiscountingProvider childProvider = providerGenerator.generate(x);
+    LegalEntityDiscountingProvider childProvider = providerGenerator.generate(x);
     // calculate value for each trade using the child provider
     return DoubleArray.of(trades.size(), i -> measures.value(trades.get(i), childProvider));
   }
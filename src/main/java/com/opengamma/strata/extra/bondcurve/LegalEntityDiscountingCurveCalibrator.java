@@ -7,26 +7,43 @@ package com.opengamma.strata.extra.bondcurve;
 
 import static com.opengamma.strata.collect.Guavate.toImmutableList;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Doubles;
 import com.opengamma.strata.basics.ReferenceData;
 import com.opengamma.strata.collect.ArgChecker;
 import com.opengamma.strata.collect.Messages;
 import com.opengamma.strata.collect.array.DoubleArray;
 import com.opengamma.strata.collect.array.DoubleMatrix;
 import com.opengamma.strata.data.MarketData;
+import com.opengamma.strata.extra.repo.CompiledRepoConvention;
+import com.opengamma.strata.extra.repo.RepoConvention;
+import com.opengamma.strata.market.ValueType;
+import com.opengamma.strata.market.curve.CurveDefinition;
 import com.opengamma.strata.market.curve.CurveName;
 import com.opengamma.strata.market.curve.CurveNode;
 import com.opengamma.strata.market.curve.CurveParameterSize;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurveDefinition;
 import com.opengamma.strata.market.curve.JacobianCalibrationMatrix;
+import com.opengamma.strata.market.curve.interpolator.CurveExtrapolator;
+import com.opengamma.strata.market.curve.interpolator.CurveExtrapolators;
+import com.opengamma.strata.market.curve.interpolator.CurveInterpolator;
+import com.opengamma.strata.market.curve.interpolator.CurveInterpolators;
 import com.opengamma.strata.math.impl.matrix.CommonsMatrixAlgebra;
 import com.opengamma.strata.math.impl.matrix.MatrixAlgebra;
 import com.opengamma.strata.math.rootfind.NewtonVectorRootFinder;
 import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
 import com.opengamma.strata.product.ResolvedTrade;
 
 /**
@@ -44,6 +61,28 @@ import com.opengamma.strata.product.ResolvedTrade;
  * <p>
  * Once calibrated, the curves are then available for use.
  * Each node in the curve definition becomes a parameter in the matching output curve.
+ * <p>
+ * In bootstrap mode, groups that only contain repo curves with a local interpolator and a flat left extrapolator
+ * are calibrated node by node, each node being found by a one-dimensional Newton solve.
+ * When the group has a compiled calibration plan, each step only prices the trade of the node
+ * and differentiates it with respect to the parameter of the node.
+ * See {@link #withBootstrap(boolean)}.
+ * <p>
+ * Before solving, the curves of a group are split into blocks using the sensitivity of the node trades
+ * to the curves at the initial guess. Each block is solved separately, after the blocks it depends on.
+ * As the blocks are found from the sensitivities at the initial guess, the values of all the trades of the group
+ * are then checked, the group being solved as a whole if they are not within the tolerance of the solver.
+ * The sensitivities at the initial guess are also used as the first derivatives of the solver.
+ * The blocks of a level, which only depend on the blocks of the previous levels, are solved in parallel
+ * when the calibrator has an executor, see {@link #withParallelDerivatives(int, Executor)}.
+ * Groups calibrated in bootstrap mode are not split. The Jacobians are computed for the whole group.
+ * <p>
+ * When a group only contains repo trades calibrated to their par spread, a calibration plan is compiled once
+ * for the group and the root finder works on primitive arrays of times and rates rather than providers.
+ * <p>
+ * The conventions of the {@link RepoCurveNode} nodes are compiled once per calibration,
+ * see {@link CompiledRepoConvention}, unless the reference data already holds their compiled form.
+ * The dates of the nodes and of their trades are then calculated using the compiled forms.
  */
 public final class LegalEntityDiscountingCurveCalibrator {
 
@@ -60,11 +99,42 @@ public final class LegalEntityDiscountingCurveCalibrator {
    * The matrix algebra used for matrix inversion.
    */
   private static final MatrixAlgebra MATRIX_ALGEBRA = new CommonsMatrixAlgebra();
+  /**
+   * The absolute tolerance of the measure for each node in bootstrap mode.
+   */
+  private static final double BOOTSTRAP_TOLERANCE = 1e-12;
+  /**
+   * The maximum number of Newton steps for each node in bootstrap mode.
+   */
+  private static final int BOOTSTRAP_STEP_MAXIMUM = 50;
+  /**
+   * The curve value types supported in bootstrap mode.
+   */
+  private static final ImmutableSet<ValueType> BOOTSTRAP_VALUE_TYPES =
+      ImmutableSet.of(ValueType.ZERO_RATE, ValueType.DISCOUNT_FACTOR);
+  /**
+   * The interpolators supported in bootstrap mode.
+   * The value at a node date depends only on the nodes up to and including that node.
+   */
+  private static final ImmutableSet<CurveInterpolator> BOOTSTRAP_INTERPOLATORS = ImmutableSet.of(
+      CurveInterpolators.LINEAR,
+      CurveInterpolators.LOG_LINEAR,
+      CurveInterpolators.PRODUCT_LINEAR,
+      CurveInterpolators.SQUARE_LINEAR,
+      CurveInterpolators.STEP_UPPER,
+      CurveInterpolators.TIME_SQUARE);
+  /**
+   * The left extrapolators supported in bootstrap mode.
+   * The value before the first node depends only on the first node, and is defined for the start dates
+   * of the node trades that fall before it.
+   */
+  private static final ImmutableSet<CurveExtrapolator> BOOTSTRAP_LEFT_EXTRAPOLATORS =
+      ImmutableSet.of(CurveExtrapolators.FLAT);
 
   /**
-   * The root finder used for curve calibration.
+   * The strategy used to solve for the parameters of each group.
    */
-  private final NewtonVectorRootFinder rootFinder;
+  private final CalibrationSolverStrategy solverStrategy;
   /**
    * The calibration measures.
    * This is used to compute the function for which the root is found.
@@ -75,6 +145,14 @@ public final class LegalEntityDiscountingCurveCalibrator {
    * This is used to compute the present value sensitivity to market quotes stored in the metadata.
    */
   private final LegalEntityDiscountingCalibrationMeasures pvMeasures;
+  /**
+   * Whether compatible groups are calibrated by bootstrap.
+   */
+  private final boolean bootstrap;
+  /**
+   * The assembler of the rows of the derivatives, one row per trade.
+   */
+  private final CalibrationRowAssembler rowAssembler;
 
   //-------------------------------------------------------------------------
   /**
@@ -161,7 +239,12 @@ public final class LegalEntityDiscountingCurveCalibrator {
       LegalEntityDiscountingCalibrationMeasures pvMeasures) {
 
     NewtonVectorRootFinder rootFinder = NewtonVectorRootFinder.broyden(toleranceAbs, toleranceRel, stepMaximum);
-    return new LegalEntityDiscountingCurveCalibrator(rootFinder, measures, pvMeasures);
+    return new LegalEntityDiscountingCurveCalibrator(
+        CalibrationSolverStrategy.of(rootFinder, toleranceAbs),
+        measures,
+        pvMeasures,
+        false,
+        CalibrationRowAssembler.SEQUENTIAL);
   }
 
   /**
@@ -178,22 +261,128 @@ public final class LegalEntityDiscountingCurveCalibrator {
       LegalEntityDiscountingCalibrationMeasures measures,
       LegalEntityDiscountingCalibrationMeasures pvMeasures) {
 
-    return new LegalEntityDiscountingCurveCalibrator(rootFinder, measures, pvMeasures);
+    return new LegalEntityDiscountingCurveCalibrator(
+        CalibrationSolverStrategy.of(rootFinder), measures, pvMeasures, false, CalibrationRowAssembler.SEQUENTIAL);
+  }
+
+  /**
+   * Obtains an instance specifying the solver strategy and the measures to use.
+   * <p>
+   * The strategy chooses the method used to solve for the parameters of each group.
+   * See {@link AdaptiveCalibrationSolverStrategy}.
+   *
+   * @param solverStrategy  the solver strategy to use
+   * @param measures  the calibration measures, used to compute the function for which the root is found
+   * @param pvMeasures  the present value measures, used to compute the present value sensitivity to market quotes 
+   *   stored in the metadata
+   * @return the curve calibrator
+   */
+  public static LegalEntityDiscountingCurveCalibrator of(
+      CalibrationSolverStrategy solverStrategy,
+      LegalEntityDiscountingCalibrationMeasures measures,
+      LegalEntityDiscountingCalibrationMeasures pvMeasures) {
+
+    return new LegalEntityDiscountingCurveCalibrator(
+        solverStrategy, measures, pvMeasures, false, CalibrationRowAssembler.SEQUENTIAL);
   }
 
   //-------------------------------------------------------------------------
   // restricted constructor
   private LegalEntityDiscountingCurveCalibrator(
-      NewtonVectorRootFinder rootFinder,
+      CalibrationSolverStrategy solverStrategy,
       LegalEntityDiscountingCalibrationMeasures measures,
-      LegalEntityDiscountingCalibrationMeasures pvMeasures) {
+      LegalEntityDiscountingCalibrationMeasures pvMeasures,
+      boolean bootstrap,
+      CalibrationRowAssembler rowAssembler) {
 
-    this.rootFinder = ArgChecker.notNull(rootFinder, "rootFinder");
+    this.solverStrategy = ArgChecker.notNull(solverStrategy, "solverStrategy");
     this.measures = ArgChecker.notNull(measures, "measures");
     this.pvMeasures = ArgChecker.notNull(pvMeasures, "pvMeasures");
+    this.bootstrap = bootstrap;
+    this.rowAssembler = rowAssembler;
+  }
+
+  /**
+   * Returns a copy of this calibrator with bootstrap mode enabled or disabled.
+   * <p>
+   * In bootstrap mode, a group is calibrated node by node if it only contains repo curves,
+   * each defined by {@link InterpolatedNodalCurveDefinition} with {@link RepoCurveNode} nodes,
+   * zero rate or discount factor values, a local interpolator and a flat left extrapolator.
+   * The par rate of the repo at each node then only depends on that node and the previous ones,
+   * so that each node is found in turn by a one-dimensional solve, rather than solving for
+   * all the nodes of the group with the multi-dimensional root finder.
+   * <p>
+   * Other groups, or groups for which the bootstrap does not reprice all the nodes,
+   * are calibrated using the root finder.
+   *
+   * @param bootstrap  true to calibrate compatible groups by bootstrap
+   * @return the curve calibrator
+   */
+  public LegalEntityDiscountingCurveCalibrator withBootstrap(boolean bootstrap) {
+    return new LegalEntityDiscountingCurveCalibrator(solverStrategy, measures, pvMeasures, bootstrap, rowAssembler);
+  }
+
+  /**
+   * Returns a copy of this calibrator computing the rows of the derivatives in parallel for large groups.
+   * <p>
+   * The derivative used by the root finder and the derivative used for the Jacobian have one row per trade,
+   * each row being independent once the provider is built. When the number of trades is at or above
+   * the threshold, the rows are split into one chunk per available processor and computed using the executor.
+   * This applies to the generic derivative and to the derivative of a compiled calibration plan.
+   * <p>
+   * The executor is also used to solve the independent blocks of curves of a group in parallel,
+   * whatever the threshold, with at most one chunk of blocks per available processor.
+   * The derivatives of each of these blocks are then computed on the thread solving the block.
+   * The result is the same as the sequential computation.
+   *
+   * @param threshold  the minimum number of trades for the parallel computation
+   * @param executor  the executor used to compute the rows
+   * @return the curve calibrator
+   */
+  public LegalEntityDiscountingCurveCalibrator withParallelDerivatives(int threshold, Executor executor) {
+    return new LegalEntityDiscountingCurveCalibrator(
+        solverStrategy, measures, pvMeasures, bootstrap, CalibrationRowAssembler.of(threshold, executor));
+  }
+
+  // computes the rows of the derivatives in parallel with a maximum number of chunks, used for testing
+  LegalEntityDiscountingCurveCalibrator withParallelDerivatives(int threshold, Executor executor, int parallelism) {
+    return new LegalEntityDiscountingCurveCalibrator(
+        solverStrategy, measures, pvMeasures, bootstrap, CalibrationRowAssembler.of(threshold, executor, parallelism));
+  }
+
+  /**
+   * Returns a copy of this calibrator computing the rows of the derivatives sequentially.
+   *
+   * @return the curve calibrator
+   */
+  public LegalEntityDiscountingCurveCalibrator withSequentialDerivatives() {
+    return new LegalEntityDiscountingCurveCalibrator(
+        solverStrategy, measures, pvMeasures, bootstrap, CalibrationRowAssembler.SEQUENTIAL);
+  }
+
+  /**
+   * Returns a copy of this calibrator using the specified solver strategy.
+   * <p>
+   * The strategy chooses the method used to solve for the parameters of each group, or each block of a group,
+   * that is not calibrated by bootstrap.
+   *
+   * @param solverStrategy  the solver strategy
+   * @return the curve calibrator
+   */
+  public LegalEntityDiscountingCurveCalibrator withSolverStrategy(CalibrationSolverStrategy solverStrategy) {
+    return new LegalEntityDiscountingCurveCalibrator(solverStrategy, measures, pvMeasures, bootstrap, rowAssembler);
   }
 
   //-------------------------------------------------------------------------
+  /**
+   * Gets the solver strategy.
+   * 
+   * @return the solver strategy
+   */
+  public CalibrationSolverStrategy getSolverStrategy() {
+    return solverStrategy;
+  }
+
   /**
    * Gets the measures.
    * 
@@ -203,6 +392,24 @@ public final class LegalEntityDiscountingCurveCalibrator {
     return measures;
   }
 
+  /**
+   * Checks if compatible groups are calibrated by bootstrap.
+   * 
+   * @return true if bootstrap mode is enabled
+   */
+  public boolean isBootstrap() {
+    return bootstrap;
+  }
+
+  /**
+   * Checks if the rows of the derivatives are computed in parallel for large groups.
+   * 
+   * @return true if parallel derivatives are enabled
+   */
+  public boolean isParallelDerivatives() {
+    return rowAssembler.isParallel();
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Calibrates a single curve group, containing one or more curves.
@@ -250,15 +457,17 @@ public final class LegalEntityDiscountingCurveCalibrator {
       throw new IllegalArgumentException(Messages.format(
           "Valuation dates do not match: {} and {}", knownData.getValuationDate(), marketData.getValuationDate()));
     }
+    ReferenceData compiledRefData = compiledReferenceData(allGroupDefns, refData);
     ImmutableList<CurveParameterSize> orderPrev = ImmutableList.of();
     ImmutableMap<CurveName, JacobianCalibrationMatrix> jacobians = ImmutableMap.of();
-    ImmutableLegalEntityDiscountingProvider providerCombined = knownData;
+    // each group is added as a layer, avoiding a copy of the previously calibrated curves
+    LayeredLegalEntityDiscountingProvider providerCombined = LayeredLegalEntityDiscountingProvider.of(knownData);
     for (LegalEntityDiscountingCurveGroupDefinition groupDefn : allGroupDefns) {
       if (groupDefn.getIssuerCurveEntries().isEmpty() && groupDefn.getRepoCurveEntries().isEmpty()) {
         continue;
       }
       // combine all data in the group into flat lists
-      ImmutableList<ResolvedTrade> trades = groupDefn.resolvedTrades(marketData, refData);
+      ImmutableList<ResolvedTrade> trades = groupDefn.resolvedTrades(marketData, compiledRefData);
       ImmutableList<Double> initialGuesses = groupDefn.initialGuesses(marketData);
       ImmutableList<CurveParameterSize> orderGroup = toOrder(groupDefn);
       ImmutableList<CurveParameterSize> orderPrevAndGroup = ImmutableList.<CurveParameterSize>builder()
@@ -267,20 +476,27 @@ public final class LegalEntityDiscountingCurveCalibrator {
           .build();
 
       // calibrate
-      ImmutableLegalEntityDiscountingProviderGenerator providerGenerator =
-          ImmutableLegalEntityDiscountingProviderGenerator.of(providerCombined, groupDefn, refData);
-      DoubleArray calibratedGroupParams = calibrateGroup(providerGenerator, trades, initialGuesses, orderGroup);
-      ImmutableLegalEntityDiscountingProvider calibratedProvider = providerGenerator.generate(calibratedGroupParams);
+      LayeredLegalEntityDiscountingProviderGenerator providerGenerator =
+          LayeredLegalEntityDiscountingProviderGenerator.of(providerCombined, groupDefn, compiledRefData);
+      Optional<LegalEntityDiscountingCalibrationPlan> plan = LegalEntityDiscountingCalibrationPlan.compile(
+          groupDefn, trades, measures, marketData.getValuationDate(), compiledRefData);
+      List<CurveGroupBlockDecomposition.Block> solvedBlocks = new ArrayList<>();
+      DoubleArray calibratedGroupParams = calibrateGroupByBlock(
+          providerGenerator, groupDefn, trades, initialGuesses, orderGroup, plan, solvedBlocks);
+      LegalEntityDiscountingProvider calibratedProvider = providerGenerator.generate(calibratedGroupParams);
 
       // use calibration to build Jacobian matrices
       if (groupDefn.isComputeJacobian()) {
-        jacobians = updateJacobiansForGroup(
-            calibratedProvider, trades, orderGroup, orderPrev, orderPrevAndGroup, jacobians);
+        int totalParamsAll = orderPrevAndGroup.stream().mapToInt(e -> e.getParameterCount()).sum();
+        DoubleMatrix derivatives = derivatives(trades, calibratedProvider, orderPrevAndGroup, totalParamsAll);
+        jacobians = updateJacobiansForGroup(derivatives, orderGroup, orderPrev, orderPrevAndGroup, jacobians);
+        // the solver strategy may reuse the derivatives at the root, which are not computed otherwise
+        onRootDerivatives(derivatives, totalParamsAll - trades.size(), solvedBlocks);
       }
       // PV sensitivity to market quote
       ImmutableMap<CurveName, DoubleArray> sensitivityToMarketQuote = ImmutableMap.of();
       if (groupDefn.isComputePvSensitivityToMarketQuote()) {
-        ImmutableLegalEntityDiscountingProvider providerWithJacobian =
+        LegalEntityDiscountingProvider providerWithJacobian =
             providerGenerator.generate(calibratedGroupParams, jacobians);
         sensitivityToMarketQuote = sensitivityToMarketQuoteForGroup(providerWithJacobian, trades, orderGroup);
       }
@@ -289,8 +505,27 @@ public final class LegalEntityDiscountingCurveCalibrator {
       // use Jacobians to build output curves
       providerCombined = providerGenerator.generate(calibratedGroupParams, jacobians, sensitivityToMarketQuote);
     }
-    // return the calibrated provider
-    return providerCombined;
+    // return the calibrated provider, merging the layers once
+    return providerCombined.toImmutableLegalEntityDiscountingProvider();
+  }
+
+  // adds the compiled form of the conventions of the repo nodes to the reference data, unless already present
+  // the dates of all the nodes and trades sharing a convention are then calculated using the same compiled form
+  static ReferenceData compiledReferenceData(
+      List<LegalEntityDiscountingCurveGroupDefinition> groupDefns,
+      ReferenceData refData) {
+
+    Set<RepoConvention> conventions = new LinkedHashSet<>();
+    for (LegalEntityDiscountingCurveGroupDefinition groupDefn : groupDefns) {
+      for (CurveDefinition curveDefn : groupDefn.getCurveDefinitions()) {
+        for (CurveNode node : curveDefn.getNodes()) {
+          if (node instanceof RepoCurveNode) {
+            conventions.add(((RepoCurveNode) node).getTemplate().getConvention());
+          }
+        }
+      }
+    }
+    return CompiledRepoConvention.compiledReferenceData(conventions, refData);
   }
 
   //-------------------------------------------------------------------------
@@ -300,41 +535,281 @@ public final class LegalEntityDiscountingCurveCalibrator {
   }
 
   //-------------------------------------------------------------------------
+  // calibrates a single group, solving each block of dependent curves separately
+  // the blocks of curves solved are added to the list, the whole group being one block if not decomposed
+  private DoubleArray calibrateGroupByBlock(
+      LegalEntityDiscountingProviderGenerator providerGenerator,
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      ImmutableList<ResolvedTrade> trades,
+      ImmutableList<Double> initialGuesses,
+      ImmutableList<CurveParameterSize> curveOrder,
+      Optional<LegalEntityDiscountingCalibrationPlan> plan,
+      List<CurveGroupBlockDecomposition.Block> solvedBlocks) {
+
+    // a group calibrated node by node does not need the derivatives of the decomposition
+    if (curveOrder.size() < 2 || (bootstrap && isBootstrapCompatible(groupDefn))) {
+      solvedBlocks.add(CurveGroupBlockDecomposition.Block.ofGroup(curveOrder));
+      return calibrateGroup(providerGenerator, groupDefn, trades, initialGuesses, curveOrder, plan, null);
+    }
+    // analyse the dependencies between curves at the initial guess
+    // the derivatives are then the first derivatives of the solver, avoiding a second evaluation
+    DoubleArray initialGuess = DoubleArray.copyOf(initialGuesses);
+    DoubleMatrix initialDerivatives = plan.isPresent() ?
+        plan.get().derivativeFunction(rowAssembler).apply(initialGuess) :
+        new LegalEntityDiscountingCalibrationDerivative(trades, measures, providerGenerator, curveOrder, rowAssembler)
+            .apply(initialGuess);
+    CurveGroupBlockDecomposition decomposition = CurveGroupBlockDecomposition.of(curveOrder, initialDerivatives::row);
+    if (decomposition.getBlockCount() == 1) {
+      solvedBlocks.add(CurveGroupBlockDecomposition.Block.ofGroup(curveOrder));
+      return calibrateGroup(providerGenerator, groupDefn, trades, initialGuesses, curveOrder, plan, initialDerivatives);
+    }
+    // solve the blocks level by level, the blocks of a level being independent
+    // the blocks of a level are solved in parallel if there is an executor, each block computing its derivatives
+    // on its own thread, otherwise they are solved in turn, each block computing its derivatives using the executor
+    LegalEntityDiscountingCurveCalibrator blockCalibrator =
+        rowAssembler.isParallel() ? withSequentialDerivatives() : this;
+    double[] params = Doubles.toArray(initialGuesses);
+    for (ImmutableList<CurveGroupBlockDecomposition.Block> level : decomposition.getLevels()) {
+      double[] levelParams = params.clone();
+      // the derivatives at the initial guess only apply to the first level, the later levels having moved
+      DoubleMatrix levelDerivatives = level == decomposition.getLevels().get(0) ? initialDerivatives : null;
+      DoubleArray[] solved = new DoubleArray[level.size()];
+      if (level.size() > 1) {
+        rowAssembler.forEachTask(level.size(), b -> solved[b] = blockCalibrator.calibrateBlock(
+            providerGenerator, groupDefn, trades, levelParams, level.get(b), plan, levelDerivatives));
+      } else {
+        solved[0] = calibrateBlock(
+            providerGenerator, groupDefn, trades, levelParams, level.get(0), plan, levelDerivatives);
+      }
+      for (int b = 0; b < level.size(); b++) {
+        int[] indices = level.get(b).getParameterIndices();
+        for (int i = 0; i < indices.length; i++) {
+          params[indices[i]] = solved[b].get(i);
+        }
+      }
+    }
+    // the blocks only reflect the exact zeros of the derivatives at the initial guess
+    // thus check that the parameters solve the whole group, solving it as a whole if not
+    DoubleArray result = DoubleArray.ofUnsafe(params);
+    Function<DoubleArray, DoubleArray> valueCalculator = plan.isPresent() ?
+        plan.get().valueFunction() :
+        new LegalEntityDiscountingCalibrationValue(trades, measures, providerGenerator);
+    DoubleArray values = valueCalculator.apply(result);
+    for (int i = 0; i < values.size(); i++) {
+      if (!(Math.abs(values.get(i)) <= solverStrategy.getToleranceAbs())) {
+        solvedBlocks.add(CurveGroupBlockDecomposition.Block.ofGroup(curveOrder));
+        return calibrateGroup(
+            providerGenerator, groupDefn, trades, initialGuesses, curveOrder, plan, initialDerivatives);
+      }
+    }
+    for (ImmutableList<CurveGroupBlockDecomposition.Block> level : decomposition.getLevels()) {
+      solvedBlocks.addAll(level);
+    }
+    return result;
+  }
+
+  // calibrates a block of curves, the parameters of the other curves being fixed
+  // the derivatives of the group at the block parameters are null if not known
+  private DoubleArray calibrateBlock(
+      LegalEntityDiscountingProviderGenerator providerGenerator,
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      ImmutableList<ResolvedTrade> trades,
+      double[] groupParams,
+      CurveGroupBlockDecomposition.Block block,
+      Optional<LegalEntityDiscountingCalibrationPlan> plan,
+      DoubleMatrix groupDerivatives) {
+
+    int[] indices = block.getParameterIndices();
+    ImmutableList.Builder<ResolvedTrade> blockTrades = ImmutableList.builder();
+    ImmutableList.Builder<Double> blockGuesses = ImmutableList.builder();
+    for (int index : indices) {
+      blockTrades.add(trades.get(index));
+      blockGuesses.add(groupParams[index]);
+    }
+    LegalEntityDiscountingProviderGenerator blockGenerator = (blockParams, jacobians, sensitivitiesMarketQuote) -> {
+      double[] params = groupParams.clone();
+      for (int i = 0; i < indices.length; i++) {
+        params[indices[i]] = blockParams.get(i);
+      }
+      return providerGenerator.generate(DoubleArray.ofUnsafe(params), jacobians, sensitivitiesMarketQuote);
+    };
+    Optional<LegalEntityDiscountingCalibrationPlan> blockPlan = plan.map(p -> p.restrictedTo(indices, groupParams));
+    DoubleMatrix blockDerivatives = groupDerivatives != null ? restrictedTo(groupDerivatives, indices, 0) : null;
+    return calibrateGroup(
+        blockGenerator,
+        groupDefn,
+        blockTrades.build(),
+        blockGuesses.build(),
+        block.getCurveOrder(),
+        blockPlan,
+        blockDerivatives);
+  }
+
   // calibrates a single group
+  // the derivatives at the initial guess are null if not known
   private DoubleArray calibrateGroup(
       LegalEntityDiscountingProviderGenerator providerGenerator,
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
       ImmutableList<ResolvedTrade> trades,
       ImmutableList<Double> initialGuesses,
-      ImmutableList<CurveParameterSize> curveOrder) {
-
-    // setup for calibration
-    Function<DoubleArray, DoubleArray> valueCalculator = new LegalEntityDiscountingCalibrationValue(
-        trades, measures, providerGenerator);
-    Function<DoubleArray, DoubleMatrix> derivativeCalculator =
-        new LegalEntityDiscountingCalibrationDerivative(trades, measures, providerGenerator, curveOrder);
+      ImmutableList<CurveParameterSize> curveOrder,
+      Optional<LegalEntityDiscountingCalibrationPlan> plan,
+      DoubleMatrix initialDerivatives) {
+
+    if (bootstrap && isBootstrapCompatible(groupDefn)) {
+      Optional<DoubleArray> bootstrapped = plan.isPresent() ?
+          bootstrapGroup(plan.get(), initialGuesses) :
+          bootstrapGroup(providerGenerator, trades, initialGuesses, curveOrder);
+      if (bootstrapped.isPresent()) {
+        return bootstrapped.get();
+      }
+    }
+    // setup for calibration, using the compiled plan if available
+    DoubleArray initialGuess = DoubleArray.copyOf(initialGuesses);
+    Function<DoubleArray, DoubleArray> valueCalculator = plan.isPresent() ?
+        plan.get().valueFunction() :
+        new LegalEntityDiscountingCalibrationValue(trades, measures, providerGenerator);
+    Function<DoubleArray, DoubleMatrix> derivativeCalculator = plan.isPresent() ?
+        plan.get().derivativeFunction(rowAssembler) :
+        new LegalEntityDiscountingCalibrationDerivative(trades, measures, providerGenerator, curveOrder, rowAssembler);
+    if (initialDerivatives != null) {
+      Function<DoubleArray, DoubleMatrix> calculator = derivativeCalculator;
+      derivativeCalculator = x -> x.equals(initialGuess) ? initialDerivatives : calculator.apply(x);
+    }
 
     // calibrate
+    return solverStrategy.solve(groupDefn, curveOrder, valueCalculator, derivativeCalculator, initialGuess);
+  }
+
+  // checks whether the group only contains repo curves whose parameters can be found node by node
+  static boolean isBootstrapCompatible(LegalEntityDiscountingCurveGroupDefinition groupDefn) {
+    if (!groupDefn.getIssuerCurveEntries().isEmpty()) {
+      return false;
+    }
+    for (CurveDefinition curveDefn : groupDefn.getCurveDefinitions()) {
+      if (!(curveDefn instanceof InterpolatedNodalCurveDefinition)) {
+        return false;
+      }
+      InterpolatedNodalCurveDefinition interpolatedDefn = (InterpolatedNodalCurveDefinition) curveDefn;
+      if (!ValueType.YEAR_FRACTION.equals(interpolatedDefn.getXValueType()) ||
+          !BOOTSTRAP_VALUE_TYPES.contains(interpolatedDefn.getYValueType()) ||
+          !BOOTSTRAP_INTERPOLATORS.contains(interpolatedDefn.getInterpolator()) ||
+          !BOOTSTRAP_LEFT_EXTRAPOLATORS.contains(interpolatedDefn.getExtrapolatorLeft()) ||
+          !interpolatedDefn.getNodes().stream().allMatch(node -> node instanceof RepoCurveNode)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // calibrates a single group node by node using the compiled plan, empty if the bootstrap fails to reprice the nodes
+  // each step only updates the parameter of the node and reads the parameters bracketing the dates of its trade
+  private Optional<DoubleArray> bootstrapGroup(
+      LegalEntityDiscountingCalibrationPlan plan,
+      ImmutableList<Double> initialGuesses) {
+
     DoubleArray initialGuess = DoubleArray.copyOf(initialGuesses);
-    return rootFinder.findRoot(valueCalculator, derivativeCalculator, initialGuess);
+    double[] params = plan.groupParameters(initialGuess);
+    for (int k = 0; k < initialGuess.size(); k++) {
+      int index = plan.parameterIndex(k);
+      int step = 0;
+      while (true) {
+        double value = plan.value(k, params);
+        if (Math.abs(value) <= BOOTSTRAP_TOLERANCE) {
+          break;
+        }
+        double derivative = plan.derivative(k, params);
+        if (++step > BOOTSTRAP_STEP_MAXIMUM || derivative == 0d || !Double.isFinite(value / derivative)) {
+          return Optional.empty();
+        }
+        params[index] -= value / derivative;
+      }
+    }
+    // the later nodes must not have altered the value of the earlier nodes
+    double[] result = new double[initialGuess.size()];
+    for (int k = 0; k < result.length; k++) {
+      if (Math.abs(plan.value(k, params)) > BOOTSTRAP_TOLERANCE) {
+        return Optional.empty();
+      }
+      result[k] = params[plan.parameterIndex(k)];
+    }
+    return Optional.of(DoubleArray.ofUnsafe(result));
+  }
+
+  // calibrates a single group node by node, empty if the bootstrap fails to reprice all the nodes
+  // this is used when there is no compiled plan, each step pricing the trade of the node against the whole group
+  private Optional<DoubleArray> bootstrapGroup(
+      LegalEntityDiscountingProviderGenerator providerGenerator,
+      ImmutableList<ResolvedTrade> trades,
+      ImmutableList<Double> initialGuesses,
+      ImmutableList<CurveParameterSize> curveOrder) {
+
+    double[] params = Doubles.toArray(initialGuesses);
+    for (int i = 0; i < trades.size(); i++) {
+      ResolvedTrade trade = trades.get(i);
+      int step = 0;
+      while (true) {
+        LegalEntityDiscountingProvider provider = providerGenerator.generate(DoubleArray.copyOf(params));
+        double value = measures.value(trade, provider);
+        if (Math.abs(value) <= BOOTSTRAP_TOLERANCE) {
+          break;
+        }
+        double derivative = measures.derivative(trade, provider, curveOrder).get(i);
+        if (++step > BOOTSTRAP_STEP_MAXIMUM || derivative == 0d || !Double.isFinite(value / derivative)) {
+          return Optional.empty();
+        }
+        params[i] -= value / derivative;
+      }
+    }
+    // the later nodes must not have altered the value of the earlier nodes
+    DoubleArray result = DoubleArray.ofUnsafe(params);
+    LegalEntityDiscountingProvider provider = providerGenerator.generate(result);
+    for (ResolvedTrade trade : trades) {
+      if (Math.abs(measures.value(trade, provider)) > BOOTSTRAP_TOLERANCE) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(result);
   }
 
   //-------------------------------------------------------------------------
+  // passes the derivatives at the root, restricted to each block of curves solved, to the solver strategy
+  private void onRootDerivatives(
+      DoubleMatrix res,
+      int totParamsPrev,
+      List<CurveGroupBlockDecomposition.Block> solvedBlocks) {
+
+    for (CurveGroupBlockDecomposition.Block block : solvedBlocks) {
+      DoubleMatrix derivative = restrictedTo(res, block.getParameterIndices(), totParamsPrev);
+      solverStrategy.onRootDerivative(block.getCurveOrder(), derivative);
+    }
+  }
+
+  // the rows of the indices and the columns of the indices after the offset
+  private static DoubleMatrix restrictedTo(DoubleMatrix matrix, int[] indices, int columnOffset) {
+    double[][] restricted = new double[indices.length][indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      for (int j = 0; j < indices.length; j++) {
+        restricted[i][j] = matrix.get(indices[i], columnOffset + indices[j]);
+      }
+    }
+    return DoubleMatrix.ofUnsafe(restricted);
+  }
+
   // calculates the Jacobian and builds the result, called once per group
   // this uses, but does not alter, data from previous groups
   private ImmutableMap<CurveName, JacobianCalibrationMatrix> updateJacobiansForGroup(
-      ImmutableLegalEntityDiscountingProvider provider,
-      ImmutableList<ResolvedTrade> trades,
+      DoubleMatrix res,
       ImmutableList<CurveParameterSize> orderGroup,
       ImmutableList<CurveParameterSize> orderPrev,
       ImmutableList<CurveParameterSize> orderAll,
       ImmutableMap<CurveName, JacobianCalibrationMatrix> jacobians) {
 
-    // sensitivity to all parameters in the stated order
+    // res is the sensitivity to all parameters in the stated order
     int totalParamsAll = orderAll.stream().mapToInt(e -> e.getParameterCount()).sum();
-    DoubleMatrix res = derivatives(trades, provider, orderAll, totalParamsAll);
 
     // jacobian direct
-    int nbTrades = trades.size();
+    int nbTrades = res.rowCount();
     int totParamsGroup = orderGroup.stream().mapToInt(e -> e.getParameterCount()).sum();
     int totParamsPrev = totalParamsAll - totParamsGroup;
     DoubleMatrix pDmCurMatrix = jacobianDirect(res, nbTrades, totParamsGroup, totParamsPrev);
@@ -370,7 +845,7 @@ public final class LegalEntityDiscountingCurveCalibrator {
 
   //-------------------------------------------------------------------------
   private ImmutableMap<CurveName, DoubleArray> sensitivityToMarketQuoteForGroup(
-      ImmutableLegalEntityDiscountingProvider provider,
+      LegalEntityDiscountingProvider provider,
       ImmutableList<ResolvedTrade> trades,
       ImmutableList<CurveParameterSize> orderGroup) {
 
@@ -392,11 +867,11 @@ public final class LegalEntityDiscountingCurveCalibrator {
   // calculate the derivatives
   private DoubleMatrix derivatives(
       ImmutableList<ResolvedTrade> trades,
-      ImmutableLegalEntityDiscountingProvider provider,
+      LegalEntityDiscountingProvider provider,
       ImmutableList<CurveParameterSize> orderAll,
       int totalParamsAll) {
 
-    return DoubleMatrix.ofArrayObjects(
+    return rowAssembler.assemble(
         trades.size(),
         totalParamsAll,
         i -> measures.derivative(trades.get(i), provider, orderAll));
@@ -413,9 +888,44 @@ public final class LegalEntityDiscountingCurveCalibrator {
     for (int i = 0; i < nbTrades; i++) {
       System.arraycopy(res.rowArray(i), totalParamsPrevious, direct[i], 0, totalParamsGroup);
     }
+    if (isLowerTriangular(direct)) {
+      return invertLowerTriangular(direct);
+    }
     return MATRIX_ALGEBRA.getInverse(DoubleMatrix.copyOf(direct));
   }
 
+  // checks if the matrix is lower triangular with a non-zero diagonal, as obtained when bootstrapping
+  private static boolean isLowerTriangular(double[][] matrix) {
+    for (int i = 0; i < matrix.length; i++) {
+      if (matrix[i][i] == 0d) {
+        return false;
+      }
+      for (int j = i + 1; j < matrix.length; j++) {
+        if (matrix[i][j] != 0d) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  // inverts a lower triangular matrix by forward substitution
+  private static DoubleMatrix invertLowerTriangular(double[][] matrix) {
+    int size = matrix.length;
+    double[][] inverse = new double[size][size];
+    for (int j = 0; j < size; j++) {
+      inverse[j][j] = 1d / matrix[j][j];
+      for (int i = j + 1; i < size; i++) {
+        double sum = 0d;
+        for (int k = j; k < i; k++) {
+          sum += matrix[i][k] * inverse[k][j];
+        }
+        inverse[i][j] = -sum / matrix[i][i];
+      }
+    }
+    return DoubleMatrix.ofUnsafe(inverse);
+  }
+
   // jacobian indirect, merging groups
   private static DoubleMatrix jacobianIndirect(
       DoubleMatrix res,
@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.collect.Guavate.toImmutableList;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.joda.beans.ser.JodaBeanSer;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteSource;
+import com.google.common.io.CharSource;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.basics.date.DayCount;
+import com.opengamma.strata.basics.date.Tenor;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.io.CsvFile;
+import com.opengamma.strata.collect.io.CsvRow;
+import com.opengamma.strata.collect.io.ResourceLocator;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.extra.repo.RepoConvention;
+import com.opengamma.strata.extra.repo.RepoTemplate;
+import com.opengamma.strata.market.ValueType;
+import com.opengamma.strata.market.curve.CurveDefinition;
+import com.opengamma.strata.market.curve.CurveGroupName;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.CurveNode;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurveDefinition;
+import com.opengamma.strata.market.curve.LegalEntityGroup;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.curve.interpolator.CurveExtrapolator;
+import com.opengamma.strata.market.curve.interpolator.CurveInterpolator;
+import com.opengamma.strata.market.observable.QuoteId;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+
+/**
+ * Loads a set of legal entity discounting curve group definitions from CSV files.
+ * <p>
+ * The definitions are described by four files.
+ * <p>
+ * The groups file has the following header row:<br />
+ * {@code Group Name, Curve Type, Reference, Currency, Curve Name}.
+ * <ul>
+ * <li>The 'Group Name' column is the name of the curve group.
+ * <li>The 'Curve Type' column is either 'Repo' or 'Issuer'.
+ * <li>The 'Reference' column is the name of the {@link RepoGroup} or {@link LegalEntityGroup}.
+ * <li>The 'Currency' column is the currency of the curve.
+ * <li>The 'Curve Name' column is the name of the curve.
+ * </ul>
+ * <p>
+ * The mappings file has the following header row:<br />
+ * {@code Group Name, Mapping Type, Id, Reference}.
+ * <ul>
+ * <li>The 'Group Name' column is the name of the curve group.
+ * <li>The 'Mapping Type' column is one of 'Repo Security', 'Repo Legal Entity' or 'Issuer Legal Entity'.
+ * <li>The 'Id' column is the security or legal entity identifier, in the form 'scheme~value'.
+ * <li>The 'Reference' column is the name of the {@link RepoGroup} or {@link LegalEntityGroup}.
+ * </ul>
+ * <p>
+ * The settings file has the following header row:<br />
+ * {@code Curve Name, Value Type, Day Count, Interpolator, Left Extrapolator, Right Extrapolator}.
+ * <ul>
+ * <li>The 'Value Type' column is either 'Zero' for zero rates or 'DF' for discount factors.
+ * </ul>
+ * <p>
+ * The nodes files have the following header row:<br />
+ * {@code Curve Name, Label, Symbology, Ticker, Tenor, Convention, Collateral, Spread}.
+ * <ul>
+ * <li>The 'Label' column is optional, defaulted to the tenor.
+ * <li>The 'Symbology' and 'Ticker' columns form the identifier of the quote.
+ * <li>The 'Convention' column is the name of the {@link RepoConvention}.
+ * <li>The 'Collateral' column is the list of security identifiers separated by '|'.
+ * <li>The 'Spread' column is optional, defaulted to zero.
+ * </ul>
+ * <p>
+ * Parsing and validating the files is relatively slow.
+ * The loaded definitions can be written in a compiled binary form using
+ * {@link #writeCompiled(Collection, OutputStream)}, which is read back by {@link #loadCompiled(ByteSource)}.
+ */
+public final class LegalEntityDiscountingCurveGroupDefinitionCsvLoader {
+
+  // the magic number and version of the compiled form
+  private static final int COMPILED_MAGIC = 0x4C454447;
+  private static final int COMPILED_VERSION = 1;
+  // separator of list values
+  private static final Splitter LIST_SPLITTER = Splitter.on('|').trimResults();
+
+  // CSV column headers
+  private static final String GROUP_NAME = "Group Name";
+  private static final String CURVE_TYPE = "Curve Type";
+  private static final String REFERENCE = "Reference";
+  private static final String CURRENCY = "Currency";
+  private static final String CURVE_NAME = "Curve Name";
+  private static final String MAPPING_TYPE = "Mapping Type";
+  private static final String ID = "Id";
+  private static final String VALUE_TYPE = "Value Type";
+  private static final String DAY_COUNT = "Day Count";
+  private static final String INTERPOLATOR = "Interpolator";
+  private static final String LEFT_EXTRAPOLATOR = "Left Extrapolator";
+  private static final String RIGHT_EXTRAPOLATOR = "Right Extrapolator";
+  private static final String LABEL = "Label";
+  private static final String SYMBOLOGY = "Symbology";
+  private static final String TICKER = "Ticker";
+  private static final String TENOR = "Tenor";
+  private static final String CONVENTION = "Convention";
+  private static final String COLLATERAL = "Collateral";
+  private static final String SPREAD = "Spread";
+
+  // curve and mapping types
+  private static final String REPO = "repo";
+  private static final String ISSUER = "issuer";
+  private static final String REPO_SECURITY = "repo security";
+  private static final String REPO_LEGAL_ENTITY = "repo legal entity";
+  private static final String ISSUER_LEGAL_ENTITY = "issuer legal entity";
+
+  //-------------------------------------------------------------------------
+  /**
+   * Loads the curve group definitions from the CSV resources.
+   *
+   * @param groupsResource  the groups resource
+   * @param mappingsResource  the mappings resource
+   * @param settingsResource  the curve settings resource
+   * @param nodesResources  the curve nodes resources
+   * @return the curve group definitions, keyed by name
+   * @throws IllegalArgumentException if the files are invalid
+   */
+  public static ImmutableMap<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> load(
+      ResourceLocator groupsResource,
+      ResourceLocator mappingsResource,
+      ResourceLocator settingsResource,
+      Collection<ResourceLocator> nodesResources) {
+
+    return parse(
+        groupsResource.getCharSource(),
+        mappingsResource.getCharSource(),
+        settingsResource.getCharSource(),
+        nodesResources.stream().map(ResourceLocator::getCharSource).collect(toImmutableList()));
+  }
+
+  /**
+   * Parses the curve group definitions from the CSV sources.
+   *
+   * @param groupsSource  the groups source
+   * @param mappingsSource  the mappings source
+   * @param settingsSource  the curve settings source
+   * @param nodesSources  the curve nodes sources
+   * @return the curve group definitions, keyed by name
+   * @throws IllegalArgumentException if the files are invalid
+   */
+  public static ImmutableMap<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> parse(
+      CharSource groupsSource,
+      CharSource mappingsSource,
+      CharSource settingsSource,
+      Collection<CharSource> nodesSources) {
+
+    return parse(groupsSource, mappingsSource, settingsSource, nodesSources, RepoConvention::of);
+  }
+
+  // parses the files, using the specified convention lookup
+  static ImmutableMap<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> parse(
+      CharSource groupsSource,
+      CharSource mappingsSource,
+      CharSource settingsSource,
+      Collection<CharSource> nodesSources,
+      Function<String, RepoConvention> conventionLookup) {
+
+    ArgChecker.notNull(groupsSource, "groupsSource");
+    ArgChecker.notNull(mappingsSource, "mappingsSource");
+    ArgChecker.notNull(settingsSource, "settingsSource");
+    ArgChecker.notNull(nodesSources, "nodesSources");
+    Map<CurveName, List<CurveNode>> nodes = new LinkedHashMap<>();
+    for (CharSource nodesSource : nodesSources) {
+      parseNodes(CsvFile.of(nodesSource, true), conventionLookup, nodes);
+    }
+    Map<CurveName, CurveDefinition> curveDefns = parseSettings(CsvFile.of(settingsSource, true), nodes);
+    Map<CurveGroupName, GroupBuilder> groups = new LinkedHashMap<>();
+    parseGroups(CsvFile.of(groupsSource, true), groups);
+    parseMappings(CsvFile.of(mappingsSource, true), groups);
+    ImmutableMap.Builder<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> builder = ImmutableMap.builder();
+    for (Entry<CurveGroupName, GroupBuilder> entry : groups.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue().build(entry.getKey(), curveDefns));
+    }
+    return builder.build();
+  }
+
+  // parses the curve nodes
+  private static void parseNodes(
+      CsvFile csv,
+      Function<String, RepoConvention> conventionLookup,
+      Map<CurveName, List<CurveNode>> nodes) {
+
+    for (CsvRow row : csv.rows()) {
+      try {
+        CurveName curveName = CurveName.of(row.getValue(CURVE_NAME));
+        QuoteId quoteId = QuoteId.of(StandardId.of(row.getValue(SYMBOLOGY), row.getValue(TICKER)));
+        Tenor tenor = Tenor.parse(row.getValue(TENOR));
+        RepoConvention convention = conventionLookup.apply(row.getValue(CONVENTION));
+        ImmutableList<SecurityPosition> collateral = LIST_SPLITTER.splitToList(row.getValue(COLLATERAL)).stream()
+            .map(id -> SecurityPosition.ofNet(SecurityId.parse(id), 1d))
+            .collect(toImmutableList());
+        double spread = row.findValue(SPREAD).map(Double::parseDouble).orElse(0d);
+        String label = row.findValue(LABEL).orElse(null);
+        RepoCurveNode node = RepoCurveNode.of(RepoTemplate.of(tenor, collateral, convention), quoteId, spread, label);
+        nodes.computeIfAbsent(curveName, name -> new ArrayList<>()).add(node);
+      } catch (RuntimeException ex) {
+        throw parseFailure("curve node", row, ex);
+      }
+    }
+  }
+
+  // parses the curve settings, creating the curve definitions
+  private static Map<CurveName, CurveDefinition> parseSettings(CsvFile csv, Map<CurveName, List<CurveNode>> nodes) {
+    Map<CurveName, CurveDefinition> curveDefns = new LinkedHashMap<>();
+    for (CsvRow row : csv.rows()) {
+      try {
+        CurveName curveName = CurveName.of(row.getValue(CURVE_NAME));
+        List<CurveNode> curveNodes = nodes.get(curveName);
+        if (curveNodes == null) {
+          throw new IllegalArgumentException(Messages.format("No nodes found for curve '{}'", curveName));
+        }
+        CurveInterpolator interpolator = CurveInterpolator.of(row.getValue(INTERPOLATOR));
+        CurveDefinition curveDefn = InterpolatedNodalCurveDefinition.builder()
+            .name(curveName)
+            .xValueType(ValueType.YEAR_FRACTION)
+            .yValueType(parseValueType(row.getValue(VALUE_TYPE)))
+            .dayCount(DayCount.of(row.getValue(DAY_COUNT)))
+            .nodes(curveNodes)
+            .interpolator(interpolator)
+            .extrapolatorLeft(CurveExtrapolator.of(row.getValue(LEFT_EXTRAPOLATOR)))
+            .extrapolatorRight(CurveExtrapolator.of(row.getValue(RIGHT_EXTRAPOLATOR)))
+            .build();
+        if (curveDefns.put(curveName, curveDefn) != null) {
+          throw new IllegalArgumentException(Messages.format("Duplicate settings for curve '{}'", curveName));
+        }
+      } catch (RuntimeException ex) {
+        throw parseFailure("curve settings", row, ex);
+      }
+    }
+    return curveDefns;
+  }
+
+  // parses the value type
+  private static ValueType parseValueType(String str) {
+    switch (str.toLowerCase(Locale.ENGLISH)) {
+      case "zero":
+        return ValueType.ZERO_RATE;
+      case "df":
+        return ValueType.DISCOUNT_FACTOR;
+      default:
+        throw new IllegalArgumentException(Messages.format("Unknown value type '{}', must be 'Zero' or 'DF'", str));
+    }
+  }
+
+  // parses the groups
+  private static void parseGroups(CsvFile csv, Map<CurveGroupName, GroupBuilder> groups) {
+    for (CsvRow row : csv.rows()) {
+      try {
+        GroupBuilder group = groups.computeIfAbsent(CurveGroupName.of(row.getValue(GROUP_NAME)), n -> new GroupBuilder());
+        String curveType = row.getValue(CURVE_TYPE).toLowerCase(Locale.ENGLISH);
+        String reference = row.getValue(REFERENCE);
+        Currency currency = Currency.parse(row.getValue(CURRENCY));
+        CurveName curveName = CurveName.of(row.getValue(CURVE_NAME));
+        group.curveNames.add(curveName);
+        if (curveType.equals(REPO)) {
+          group.repoEntries.computeIfAbsent(curveName, n -> new LinkedHashSet<>())
+              .add(Pair.of(RepoGroup.of(reference), currency));
+        } else if (curveType.equals(ISSUER)) {
+          group.issuerEntries.computeIfAbsent(curveName, n -> new LinkedHashSet<>())
+              .add(Pair.of(LegalEntityGroup.of(reference), currency));
+        } else {
+          throw new IllegalArgumentException(Messages.format(
+              "Unknown curve type '{}', must be 'Repo' or 'Issuer'", row.getValue(CURVE_TYPE)));
+        }
+      } catch (RuntimeException ex) {
+        throw parseFailure("curve group", row, ex);
+      }
+    }
+  }
+
+  // parses the mappings from securities and legal entities to groups
+  private static void parseMappings(CsvFile csv, Map<CurveGroupName, GroupBuilder> groups) {
+    for (CsvRow row : csv.rows()) {
+      try {
+        CurveGroupName groupName = CurveGroupName.of(row.getValue(GROUP_NAME));
+        GroupBuilder group = groups.get(groupName);
+        if (group == null) {
+          throw new IllegalArgumentException(Messages.format("Unknown curve group '{}'", groupName));
+        }
+        String mappingType = row.getValue(MAPPING_TYPE).toLowerCase(Locale.ENGLISH);
+        String id = row.getValue(ID);
+        String reference = row.getValue(REFERENCE);
+        switch (mappingType) {
+          case REPO_SECURITY:
+            group.repoSecurityGroups.put(SecurityId.parse(id), RepoGroup.of(reference));
+            break;
+          case REPO_LEGAL_ENTITY:
+            group.repoGroups.put(LegalEntityId.parse(id), RepoGroup.of(reference));
+            break;
+          case ISSUER_LEGAL_ENTITY:
+            group.issuerGroups.put(LegalEntityId.parse(id), LegalEntityGroup.of(reference));
+            break;
+          default:
+            throw new IllegalArgumentException(Messages.format(
+                "Unknown mapping type '{}', must be 'Repo Security', 'Repo Legal Entity' or 'Issuer Legal Entity'",
+                row.getValue(MAPPING_TYPE)));
+        }
+      } catch (RuntimeException ex) {
+        throw parseFailure("curve group mapping", row, ex);
+      }
+    }
+  }
+
+  // creates the exception for a row that cannot be parsed
+  private static IllegalArgumentException parseFailure(String type, CsvRow row, RuntimeException ex) {
+    return new IllegalArgumentException(
+        Messages.format("Unable to parse {} at line {}: {}", type, row.lineNumber(), ex.getMessage()), ex);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Writes the curve group definitions in compiled binary form.
+   * <p>
+   * The compiled form holds the fully validated definitions,
+   * and is read back using {@link #loadCompiled(ByteSource)}.
+   *
+   * @param definitions  the curve group definitions
+   * @param output  the output stream, not closed by this method
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public static void writeCompiled(
+      Collection<LegalEntityDiscountingCurveGroupDefinition> definitions,
+      OutputStream output) {
+
+    ArgChecker.notNull(definitions, "definitions");
+    ArgChecker.notNull(output, "output");
+    try {
+      DataOutputStream out = new DataOutputStream(output);
+      out.writeInt(COMPILED_MAGIC);
+      out.writeInt(COMPILED_VERSION);
+      out.writeInt(definitions.size());
+      for (LegalEntityDiscountingCurveGroupDefinition definition : definitions) {
+        byte[] bytes = JodaBeanSer.COMPACT.binWriter().write(definition);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+      out.flush();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Loads the curve group definitions from the compiled binary form.
+   * <p>
+   * The source must have been written by {@link #writeCompiled(Collection, OutputStream)}.
+   *
+   * @param compiled  the compiled form
+   * @return the curve group definitions, keyed by name
+   * @throws UncheckedIOException if an IO error occurs
+   * @throws IllegalArgumentException if the source is not a compiled form of a supported version
+   */
+  public static ImmutableMap<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> loadCompiled(
+      ByteSource compiled) {
+
+    ArgChecker.notNull(compiled, "compiled");
+    try (InputStream input = compiled.openBufferedStream()) {
+      DataInputStream in = new DataInputStream(input);
+      if (in.readInt() != COMPILED_MAGIC) {
+        throw new IllegalArgumentException("Source is not a compiled curve group definition file");
+      }
+      int version = in.readInt();
+      if (version != COMPILED_VERSION) {
+        throw new IllegalArgumentException(Messages.format(
+            "Compiled curve group definition version {} is not supported, expected {}", version, COMPILED_VERSION));
+      }
+      int size = in.readInt();
+      ImmutableMap.Builder<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> builder = ImmutableMap.builder();
+      for (int i = 0; i < size; i++) {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        LegalEntityDiscountingCurveGroupDefinition definition =
+            JodaBeanSer.COMPACT.binReader().read(bytes, LegalEntityDiscountingCurveGroupDefinition.class);
+        builder.put(definition.getName(), definition);
+      }
+      return builder.build();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // the mutable state of a group during parsing
+  private static final class GroupBuilder {
+    private final Set<CurveName> curveNames = new LinkedHashSet<>();
+    private final Map<CurveName, Set<Pair<RepoGroup, Currency>>> repoEntries = new LinkedHashMap<>();
+    private final Map<CurveName, Set<Pair<LegalEntityGroup, Currency>>> issuerEntries = new LinkedHashMap<>();
+    private final Map<SecurityId, RepoGroup> repoSecurityGroups = new LinkedHashMap<>();
+    private final Map<LegalEntityId, RepoGroup> repoGroups = new LinkedHashMap<>();
+    private final Map<LegalEntityId, LegalEntityGroup> issuerGroups = new LinkedHashMap<>();
+
+    private LegalEntityDiscountingCurveGroupDefinition build(
+        CurveGroupName name,
+        Map<CurveName, CurveDefinition> curveDefns) {
+
+      List<CurveDefinition> groupCurveDefns = new ArrayList<>();
+      for (CurveName curveName : curveNames) {
+        CurveDefinition curveDefn = curveDefns.get(curveName);
+        if (curveDefn == null) {
+          throw new IllegalArgumentException(Messages.format(
+              "No settings found for curve '{}' in group '{}'", curveName, name));
+        }
+        groupCurveDefns.add(curveDefn);
+      }
+      List<RepoCurveEntry> repoCurveEntries = new ArrayList<>();
+      for (Entry<CurveName, Set<Pair<RepoGroup, Currency>>> entry : repoEntries.entrySet()) {
+        repoCurveEntries.add(RepoCurveEntry.of(entry.getKey(), entry.getValue()));
+      }
+      List<IssuerCurveEntry> issuerCurveEntries = new ArrayList<>();
+      for (Entry<CurveName, Set<Pair<LegalEntityGroup, Currency>>> entry : issuerEntries.entrySet()) {
+        issuerCurveEntries.add(IssuerCurveEntry.of(entry.getKey(), entry.getValue()));
+      }
+      return LegalEntityDiscountingCurveGroupDefinition.of(
+          name,
+          repoSecurityGroups,
+          repoGroups,
+          issuerGroups,
+          repoCurveEntries,
+          issuerCurveEntries,
+          groupCurveDefns);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // restricted constructor
+  private LegalEntityDiscountingCurveGroupDefinitionCsvLoader() {
+  }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.market.curve.Curve;
+import com.opengamma.strata.market.curve.CurveDefinition;
+import com.opengamma.strata.market.curve.CurveInfoType;
+import com.opengamma.strata.market.curve.CurveMetadata;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.JacobianCalibrationMatrix;
+import com.opengamma.strata.market.curve.LegalEntityGroup;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.pricer.DiscountFactors;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+
+/**
+ * The curves of a curve group, built from the combined parameter array of the group.
+ * <p>
+ * This holds the curve definitions and metadata of a group, together with the repo and issuer
+ * groups each curve is used for. It is shared by the provider generators, which only differ
+ * in how the generated curves are assembled with the known curves into a provider.
+ */
+final class LegalEntityDiscountingGroupCurves {
+
+  /**
+   * The valuation date.
+   */
+  private final LocalDate valuationDate;
+  /**
+   * The curve definitions for the new curves to be generated.
+   */
+  private final ImmutableList<CurveDefinition> curveDefinitions;
+  /**
+   * The list of curve metadata associated with each definition.
+   * <p>
+   * The size of this list matches the size of the definition list.
+   */
+  private final ImmutableList<CurveMetadata> curveMetadata;
+  /**
+   * The groups used to find a repo curve by security.
+   */
+  private final ImmutableMap<SecurityId, RepoGroup> repoCurveSecurityGroups;
+  /**
+   * The groups used to find a repo curve by legal entity.
+   */
+  private final ImmutableMap<LegalEntityId, RepoGroup> repoCurveGroups;
+  /**
+   * The repo curves in the curve group, keyed by curve name.
+   * <p>
+   * This may have more names than the curve definition list. Only the curves in the definitions list are created.
+   */
+  private final ImmutableSetMultimap<CurveName, Pair<RepoGroup, Currency>> repoCurveNames;
+  /**
+   * The groups used to find an issuer curve.
+   */
+  private final ImmutableMap<LegalEntityId, LegalEntityGroup> issuerCurveGroups;
+  /**
+   * The issuer curves in the curve group, keyed by curve name.
+   * <p>
+   * This may have more names than the curve definition list. Only the curves in the definitions list are created.
+   */
+  private final ImmutableSetMultimap<CurveName, Pair<LegalEntityGroup, Currency>> issuerCurveNames;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains the curves of a group definition.
+   *
+   * @param valuationDate  the valuation date
+   * @param groupDefn  the curve group definition
+   * @param refData  the reference data to use
+   * @return the group curves
+   */
+  static LegalEntityDiscountingGroupCurves of(
+      LocalDate valuationDate,
+      LegalEntityDiscountingCurveGroupDefinition groupDefn,
+      ReferenceData refData) {
+
+    List<CurveDefinition> curveDefns = new ArrayList<>();
+    List<CurveMetadata> curveMetadata = new ArrayList<>();
+    SetMultimap<CurveName, Pair<RepoGroup, Currency>> repoNames = HashMultimap.create();
+    SetMultimap<CurveName, Pair<LegalEntityGroup, Currency>> issuerNames = HashMultimap.create();
+
+    for (CurveDefinition curveDefn : groupDefn.getCurveDefinitions()) {
+      curveDefns.add(curveDefn);
+      curveMetadata.add(curveDefn.metadata(valuationDate, refData));
+      CurveName curveName = curveDefn.getName();
+      // A curve group is guaranteed to include an entry for every definition
+      Optional<RepoCurveEntry> repoCurveEntry = groupDefn.findRepoCurveEntry(curveName);
+      if (repoCurveEntry.isPresent()) {
+        repoNames.putAll(curveName, repoCurveEntry.get().getRepoCurveGroups());
+      }
+      Optional<IssuerCurveEntry> issuerCurveEntry = groupDefn.findIssuerCurveEntry(curveName);
+      if (issuerCurveEntry.isPresent()) {
+        issuerNames.putAll(curveName, issuerCurveEntry.get().getIssuerCurveGroups());
+      }
+    }
+    return new LegalEntityDiscountingGroupCurves(
+        valuationDate,
+        curveDefns,
+        curveMetadata,
+        groupDefn.getRepoCurveSecurityGroups(),
+        groupDefn.getRepoCurveGroups(),
+        repoNames,
+        groupDefn.getIssuerCurveGroups(),
+        issuerNames);
+  }
+
+  // restricted constructor
+  private LegalEntityDiscountingGroupCurves(
+      LocalDate valuationDate,
+      List<CurveDefinition> curveDefinitions,
+      List<CurveMetadata> curveMetadata,
+      Map<SecurityId, RepoGroup> repoCurveSecurityGroups,
+      Map<LegalEntityId, RepoGroup> repoCurveGroups,
+      SetMultimap<CurveName, Pair<RepoGroup, Currency>> repoCurveNames,
+      Map<LegalEntityId, LegalEntityGroup> issuerCurveGroups,
+      SetMultimap<CurveName, Pair<LegalEntityGroup, Currency>> issuerCurveNames) {
+
+    this.valuationDate = valuationDate;
+    this.curveDefinitions = ImmutableList.copyOf(curveDefinitions);
+    this.curveMetadata = ImmutableList.copyOf(curveMetadata);
+    this.repoCurveSecurityGroups = ImmutableMap.copyOf(repoCurveSecurityGroups);
+    this.repoCurveGroups = ImmutableMap.copyOf(repoCurveGroups);
+    this.repoCurveNames = ImmutableSetMultimap.copyOf(repoCurveNames);
+    this.issuerCurveGroups = ImmutableMap.copyOf(issuerCurveGroups);
+    this.issuerCurveNames = ImmutableSetMultimap.copyOf(issuerCurveNames);
+  }
+
+  //-------------------------------------------------------------------------
+  // the groups used to find a repo curve by security
+  ImmutableMap<SecurityId, RepoGroup> getRepoCurveSecurityGroups() {
+    return repoCurveSecurityGroups;
+  }
+
+  // the groups used to find a repo curve by legal entity
+  ImmutableMap<LegalEntityId, RepoGroup> getRepoCurveGroups() {
+    return repoCurveGroups;
+  }
+
+  // the groups used to find an issuer curve
+  ImmutableMap<LegalEntityId, LegalEntityGroup> getIssuerCurveGroups() {
+    return issuerCurveGroups;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Generates the curves from the combined parameter array, adding them to the maps.
+   * <p>
+   * Each curve is added once for each of the repo and issuer groups it is used for,
+   * replacing any curve already in the maps for the group and currency.
+   *
+   * @param parameters  the combined parameters of the curves, in the order of the definitions
+   * @param jacobians  the Jacobians of the curves, keyed by curve name
+   * @param sensitivitiesMarketQuote  the PV sensitivities of the curves, keyed by curve name
+   * @param repoCurves  the repo curves, to which the generated curves are added
+   * @param issuerCurves  the issuer curves, to which the generated curves are added
+   */
+  void generate(
+      DoubleArray parameters,
+      Map<CurveName, JacobianCalibrationMatrix> jacobians,
+      Map<CurveName, DoubleArray> sensitivitiesMarketQuote,
+      Map<Pair<RepoGroup, Currency>, DiscountFactors> repoCurves,
+      Map<Pair<LegalEntityGroup, Currency>, DiscountFactors> issuerCurves) {
+
+    int startIndex = 0;
+    for (int i = 0; i < curveDefinitions.size(); i++) {
+      CurveDefinition curveDefn = curveDefinitions.get(i);
+      CurveName name = curveDefn.getName();
+      // extract parameters for the child curve
+      int paramCount = curveDefn.getParameterCount();
+      DoubleArray curveParams = parameters.subArray(startIndex, startIndex + paramCount);
+      startIndex += paramCount;
+      // create the child curve
+      CurveMetadata childMetadata = childMetadata(curveMetadata.get(i), name, jacobians, sensitivitiesMarketQuote);
+      Curve curve = curveDefn.curve(valuationDate, childMetadata, curveParams);
+      // put child curve into maps
+      for (Pair<RepoGroup, Currency> repoCurveGroupForName : repoCurveNames.get(name)) {
+        repoCurves.put(
+            repoCurveGroupForName,
+            DiscountFactors.of(repoCurveGroupForName.getSecond(), valuationDate, curve));
+      }
+      for (Pair<LegalEntityGroup, Currency> issuerCurveGroupForName : issuerCurveNames.get(name)) {
+        issuerCurves.put(
+            issuerCurveGroupForName,
+            DiscountFactors.of(issuerCurveGroupForName.getSecond(), valuationDate, curve));
+      }
+    }
+  }
+
+  // build the map of additional info
+  private static CurveMetadata childMetadata(
+      CurveMetadata metadata,
+      CurveName name,
+      Map<CurveName, JacobianCalibrationMatrix> jacobians,
+      Map<CurveName, DoubleArray> sensitivitiesMarketQuote) {
+
+    JacobianCalibrationMatrix jacobian = jacobians.get(name);
+    CurveMetadata metadataResult = metadata;
+    if (jacobian != null) {
+      metadataResult = metadata.withInfo(CurveInfoType.JACOBIAN, jacobian);
+    }
+    DoubleArray sensitivity = sensitivitiesMarketQuote.get(name);
+    if (sensitivity != null) {
+      metadataResult = metadataResult.withInfo(CurveInfoType.PV_SENSITIVITY_TO_MARKET_QUOTE, sensitivity);
+    }
+    return metadataResult;
+  }
+
+}
@@ -11,7 +11,6 @@ import com.google.common.collect.ImmutableMap;
 import com.opengamma.strata.collect.array.DoubleArray;
 import com.opengamma.strata.market.curve.CurveName;
 import com.opengamma.strata.market.curve.JacobianCalibrationMatrix;
-import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
 import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
 
 /**
@@ -29,7 +28,7 @@ public interface LegalEntityDiscountingProviderGenerator {
    * @param parameters  the parameters describing the provider
    * @return the provider
    */
-  public default ImmutableLegalEntityDiscountingProvider generate(DoubleArray parameters) {
+  public default LegalEntityDiscountingProvider generate(DoubleArray parameters) {
     return generate(parameters, ImmutableMap.of());
   }
 
@@ -42,7 +41,7 @@ public interface LegalEntityDiscountingProviderGenerator {
    * @param jacobians  the curve calibration info
    * @return the provider
    */
-  public default ImmutableLegalEntityDiscountingProvider generate(
+  public default LegalEntityDiscountingProvider generate(
       DoubleArray parameters,
       Map<CurveName, JacobianCalibrationMatrix> jacobians) {
     return generate(parameters, jacobians, ImmutableMap.of());
@@ -58,7 +57,7 @@ public interface LegalEntityDiscountingProviderGenerator {
    * @param sensitivitiesMarketQuote  the PV sensitivities
    * @return the provider
    */
-  public abstract ImmutableLegalEntityDiscountingProvider generate(
+  public abstract LegalEntityDiscountingProvider generate(
       DoubleArray parameters,
       Map<CurveName, JacobianCalibrationMatrix> jacobians,
       Map<CurveName, DoubleArray> sensitivitiesMarketQuote);
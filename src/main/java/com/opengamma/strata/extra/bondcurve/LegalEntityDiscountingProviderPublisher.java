@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+
+/**
+ * Publishes generations of calibrated providers to the pricing threads.
+ * <p>
+ * Each published provider forms a generation, identified by an epoch.
+ * The epoch increases by one for each publication, thus pricers can use it to invalidate their caches.
+ * A generation is swapped in a single atomic step, so a reader never sees curves from different generations
+ * provided it reads all the curves it needs from the same generation.
+ * <p>
+ * Readers obtain the current generation using {@link #pin()}, releasing it with {@link Pin#close()}.
+ * Pinning does not lock, a reader only ever retries if a publication happens at the same time.
+ * A generation that has been replaced is retired once no reader pins it, at which point the retirement
+ * listener is invoked. This lets the owner of the generation release any resource associated with its epoch.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class LegalEntityDiscountingProviderPublisher {
+
+  /**
+   * The state of a generation that has been retired.
+   */
+  private static final int RETIRED = -1;
+
+  /**
+   * The current generation.
+   */
+  private final AtomicReference<Generation> current;
+  /**
+   * The listener invoked when a generation is retired.
+   */
+  private final Consumer<Generation> retirementListener;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains a publisher with an initial provider.
+   * <p>
+   * The initial provider has the epoch 1.
+   *
+   * @param initial  the initial provider
+   * @return the publisher
+   */
+  public static LegalEntityDiscountingProviderPublisher of(ImmutableLegalEntityDiscountingProvider initial) {
+    return new LegalEntityDiscountingProviderPublisher(initial, generation -> { });
+  }
+
+  /**
+   * Obtains a publisher with an initial provider and a listener for retired generations.
+   * <p>
+   * The initial provider has the epoch 1.
+   * The listener is invoked exactly once for each retired generation, by the thread that published
+   * the next generation or by the last reader to release the generation.
+   *
+   * @param initial  the initial provider
+   * @param retirementListener  the listener invoked when a generation is retired
+   * @return the publisher
+   */
+  public static LegalEntityDiscountingProviderPublisher of(
+      ImmutableLegalEntityDiscountingProvider initial,
+      Consumer<Generation> retirementListener) {
+
+    return new LegalEntityDiscountingProviderPublisher(initial, retirementListener);
+  }
+
+  // restricted constructor
+  private LegalEntityDiscountingProviderPublisher(
+      ImmutableLegalEntityDiscountingProvider initial,
+      Consumer<Generation> retirementListener) {
+
+    ArgChecker.notNull(initial, "initial");
+    this.retirementListener = ArgChecker.notNull(retirementListener, "retirementListener");
+    this.current = new AtomicReference<>(new Generation(1L, initial));
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Publishes a provider, replacing the current generation.
+   * <p>
+   * The replaced generation is retired once no reader pins it.
+   *
+   * @param provider  the provider
+   * @return the new generation
+   */
+  public Generation publish(ImmutableLegalEntityDiscountingProvider provider) {
+    ArgChecker.notNull(provider, "provider");
+    while (true) {
+      Generation previous = current.get();
+      Generation next = new Generation(previous.epoch + 1L, provider);
+      if (current.compareAndSet(previous, next)) {
+        previous.replaced = true;
+        previous.tryRetire();
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Pins the current generation.
+   * <p>
+   * The generation is not retired until the pin is closed.
+   * The pin should be closed using a try-with-resources block.
+   *
+   * @return the pin
+   */
+  public Pin pin() {
+    while (true) {
+      Generation generation = current.get();
+      if (generation.tryAcquire()) {
+        return new Pin(generation);
+      }
+      // the generation has just been replaced and retired, read the new one
+    }
+  }
+
+  /**
+   * Gets the current generation, without pinning it.
+   * <p>
+   * The provider remains usable, however the generation may be retired at any time.
+   *
+   * @return the current generation
+   */
+  public Generation getCurrent() {
+    return current.get();
+  }
+
+  /**
+   * Gets the epoch of the current generation.
+   * <p>
+   * The epoch increases monotonically.
+   *
+   * @return the current epoch
+   */
+  public long getEpoch() {
+    return current.get().epoch;
+  }
+
+  @Override
+  public String toString() {
+    return "LegalEntityDiscountingProviderPublisher[epoch=" + getEpoch() + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A published generation of the provider.
+   */
+  public final class Generation {
+    /**
+     * The epoch.
+     */
+    private final long epoch;
+    /**
+     * The provider.
+     */
+    private final ImmutableLegalEntityDiscountingProvider provider;
+    /**
+     * The number of pins, or {@code RETIRED}.
+     */
+    private final AtomicInteger pinCount = new AtomicInteger();
+    /**
+     * Whether the generation has been replaced.
+     */
+    private volatile boolean replaced;
+    /**
+     * The discount factor cache, created when first requested.
+     */
+    private volatile RepoDiscountFactorCache discountFactorCache;
+
+    // restricted constructor
+    private Generation(long epoch, ImmutableLegalEntityDiscountingProvider provider) {
+      this.epoch = epoch;
+      this.provider = provider;
+    }
+
+    /**
+     * Gets the epoch of the generation.
+     *
+     * @return the epoch
+     */
+    public long getEpoch() {
+      return epoch;
+    }
+
+    /**
+     * Gets the provider of the generation.
+     *
+     * @return the provider
+     */
+    public ImmutableLegalEntityDiscountingProvider getProvider() {
+      return provider;
+    }
+
+    /**
+     * Gets the cache of the repo curve discount factors of the generation.
+     * <p>
+     * The cache is created when first requested, and shared by all the readers of the generation.
+     * It is released with the generation, thus the cached values never outlive the curves.
+     *
+     * @return the discount factor cache
+     */
+    public RepoDiscountFactorCache getDiscountFactorCache() {
+      RepoDiscountFactorCache cache = discountFactorCache;
+      if (cache == null) {
+        synchronized (this) {
+          cache = discountFactorCache;
+          if (cache == null) {
+            cache = RepoDiscountFactorCache.of(IndexedLegalEntityDiscountingProvider.of(provider));
+            discountFactorCache = cache;
+          }
+        }
+      }
+      return cache;
+    }
+
+    /**
+     * Checks if the generation has been retired.
+     * <p>
+     * A generation is retired when it has been replaced and no reader pins it.
+     *
+     * @return true if retired
+     */
+    public boolean isRetired() {
+      return pinCount.get() == RETIRED;
+    }
+
+    // pins the generation, false if retired
+    private boolean tryAcquire() {
+      while (true) {
+        int count = pinCount.get();
+        if (count == RETIRED) {
+          return false;
+        }
+        if (pinCount.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    // releases a pin
+    private void release() {
+      pinCount.decrementAndGet();
+      tryRetire();
+    }
+
+    // retires the generation if it has been replaced and is not pinned
+    private void tryRetire() {
+      if (replaced && pinCount.compareAndSet(0, RETIRED)) {
+        retirementListener.accept(this);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Generation[epoch=" + epoch + "]";
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A pin on a generation, preventing its retirement until closed.
+   * <p>
+   * A pin is intended to be used by a single thread.
+   */
+  public static final class Pin implements AutoCloseable {
+    /**
+     * The generation.
+     */
+    private final Generation generation;
+    /**
+     * Whether the pin has been closed.
+     */
+    private boolean closed;
+
+    // restricted constructor
+    private Pin(Generation generation) {
+      this.generation = generation;
+    }
+
+    /**
+     * Gets the pinned generation.
+     *
+     * @return the generation
+     */
+    public Generation getGeneration() {
+      return generation;
+    }
+
+    /**
+     * Gets the epoch of the pinned generation.
+     *
+     * @return the epoch
+     */
+    public long getEpoch() {
+      return generation.getEpoch();
+    }
+
+    /**
+     * Gets the provider of the pinned generation.
+     *
+     * @return the provider
+     */
+    public ImmutableLegalEntityDiscountingProvider getProvider() {
+      return generation.getProvider();
+    }
+
+    /**
+     * Releases the pin.
+     * <p>
+     * Closing a pin more than once has no effect.
+     */
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        generation.release();
+      }
+    }
+  }
+
+}
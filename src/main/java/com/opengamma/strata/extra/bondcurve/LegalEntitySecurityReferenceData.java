@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.io.CharSource;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.ReferenceDataId;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.io.CsvIterator;
+import com.opengamma.strata.collect.io.CsvRow;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+
+/**
+ * Reference data holding only the legal entity of each security.
+ * <p>
+ * Resolving a repo requires the legal entity of each collateral security, see {@link SimpleLegalEntitySecurity}.
+ * A large security universe stored in a generic reference data map holds several objects per entry.
+ * This store instead keeps the security identifiers in open-addressed arrays, with the identifier schemes
+ * and the legal entities interned. A single {@code SimpleLegalEntitySecurity} is held per legal entity,
+ * thus a query is a hash probe that allocates nothing.
+ * <p>
+ * The store only answers queries for {@link SecurityId}, returning null for any other identifier.
+ * It is typically combined with the standard reference data using {@link #combinedWith(ReferenceData)}.
+ * <p>
+ * The store can be loaded from a CSV file, or from a binary file written by {@link #writeBinary(Path)}.
+ * The CSV file has the following columns:
+ * <ul>
+ * <li>The 'Security Id' column is required, and is the security identifier in the form 'scheme~value'.
+ * <li>The 'Legal Entity Id' column is required, and is the legal entity identifier in the form 'scheme~value'.
+ * </ul>
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+public final class LegalEntitySecurityReferenceData implements ReferenceData {
+
+  // CSV column headers
+  static final String SECURITY_ID_FIELD = "Security Id";
+  static final String LEGAL_ENTITY_ID_FIELD = "Legal Entity Id";
+  // the binary file header
+  private static final int MAGIC = 0x4C455344;
+  private static final int VERSION = 1;
+
+  /**
+   * The interned security identifier schemes.
+   */
+  private final String[] schemes;
+  /**
+   * The interned securities, one per legal entity.
+   */
+  private final SimpleLegalEntitySecurity[] securities;
+  /**
+   * The hash table mask, the table length being a power of two.
+   */
+  private final int mask;
+  /**
+   * The scheme index of each slot of the hash table.
+   */
+  private final int[] keySchemes;
+  /**
+   * The identifier value of each slot of the hash table, null if empty.
+   */
+  private final String[] keyValues;
+  /**
+   * The security index of each slot of the hash table.
+   */
+  private final int[] securityIndices;
+  /**
+   * The number of securities.
+   */
+  private final int size;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance from a map of security identifier to legal entity identifier.
+   *
+   * @param legalEntityIds  the legal entity of each security
+   * @return the reference data
+   */
+  public static LegalEntitySecurityReferenceData of(Map<SecurityId, LegalEntityId> legalEntityIds) {
+    ArgChecker.notNull(legalEntityIds, "legalEntityIds");
+    Loader loader = new Loader();
+    for (Map.Entry<SecurityId, LegalEntityId> entry : legalEntityIds.entrySet()) {
+      StandardId securityId = entry.getKey().getStandardId();
+      loader.add(securityId.getScheme(), securityId.getValue(), entry.getValue());
+    }
+    return loader.build();
+  }
+
+  /**
+   * Loads an instance from a CSV file.
+   * <p>
+   * The rows are read one at a time. A security that appears more than once must have the same legal entity.
+   *
+   * @param source  the CSV source
+   * @return the reference data
+   * @throws UncheckedIOException if an IO error occurs
+   * @throws IllegalArgumentException if the file or a row is invalid
+   */
+  public static LegalEntitySecurityReferenceData loadCsv(CharSource source) {
+    ArgChecker.notNull(source, "source");
+    Loader loader = new Loader();
+    try (CsvIterator csv = CsvIterator.of(source, true)) {
+      while (csv.hasNext()) {
+        CsvRow row = csv.next();
+        try {
+          StandardId securityId = StandardId.parse(row.getValue(SECURITY_ID_FIELD));
+          LegalEntityId legalEntityId = LegalEntityId.parse(row.getValue(LEGAL_ENTITY_ID_FIELD));
+          loader.add(securityId.getScheme(), securityId.getValue(), legalEntityId);
+        } catch (RuntimeException ex) {
+          throw new IllegalArgumentException(Messages.format(
+              "Unable to parse security at line {}: {}", row.lineNumber(), ex.getMessage()), ex);
+        }
+      }
+    }
+    return loader.build();
+  }
+
+  /**
+   * Loads an instance from a binary file written by {@link #writeBinary(Path)}.
+   *
+   * @param file  the file
+   * @return the reference data
+   * @throws UncheckedIOException if an IO error occurs
+   * @throws IllegalArgumentException if the file is not a legal entity security file
+   */
+  public static LegalEntitySecurityReferenceData loadBinary(Path file) {
+    ArgChecker.notNull(file, "file");
+    try (InputStream in = Files.newInputStream(file)) {
+      return readBinary(new DataInputStream(new BufferedInputStream(in)));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  // reads the binary format
+  private static LegalEntitySecurityReferenceData readBinary(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IllegalArgumentException("File is not a legal entity security file");
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IllegalArgumentException(Messages.format(
+          "Legal entity security file version {} is not supported, expected {}", version, VERSION));
+    }
+    String[] schemes = new String[in.readInt()];
+    for (int i = 0; i < schemes.length; i++) {
+      schemes[i] = in.readUTF();
+    }
+    LegalEntityId[] legalEntityIds = new LegalEntityId[in.readInt()];
+    for (int i = 0; i < legalEntityIds.length; i++) {
+      legalEntityIds[i] = LegalEntityId.parse(in.readUTF());
+    }
+    Loader loader = new Loader();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      int scheme = in.readInt();
+      String value = in.readUTF();
+      int legalEntity = in.readInt();
+      loader.add(schemes[scheme], value, legalEntityIds[legalEntity]);
+    }
+    return loader.build();
+  }
+
+  // restricted constructor
+  private LegalEntitySecurityReferenceData(
+      String[] schemes,
+      SimpleLegalEntitySecurity[] securities,
+      int[] schemeIndices,
+      String[] values,
+      int[] legalEntityIndices,
+      int size) {
+
+    this.schemes = schemes;
+    this.securities = securities;
+    this.size = size;
+    // at most half full, so that probe sequences stay short
+    int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+    this.mask = capacity - 1;
+    this.keySchemes = new int[capacity];
+    this.keyValues = new String[capacity];
+    this.securityIndices = new int[capacity];
+    for (int i = 0; i < size; i++) {
+      int slot = hash(schemeIndices[i], values[i]) & mask;
+      while (keyValues[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keySchemes[slot] = schemeIndices[i];
+      keyValues[slot] = values[i];
+      securityIndices[slot] = legalEntityIndices[i];
+    }
+  }
+
+  // the hash of a key
+  private static int hash(int scheme, String value) {
+    int hash = value.hashCode() * 31 + scheme;
+    return hash ^ (hash >>> 16);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of securities.
+   *
+   * @return the number of securities
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of distinct legal entities.
+   *
+   * @return the number of legal entities
+   */
+  public int getLegalEntityCount() {
+    return securities.length;
+  }
+
+  /**
+   * Finds the legal entity of a security.
+   *
+   * @param securityId  the security identifier
+   * @return the legal entity identifier, empty if the security is not found
+   */
+  public Optional<LegalEntityId> findLegalEntityId(SecurityId securityId) {
+    SimpleLegalEntitySecurity security = findSecurity(securityId);
+    return security == null ? Optional.empty() : Optional.of(security.getLegalEntityId());
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T queryValueOrNull(ReferenceDataId<T> id) {
+    if (id instanceof SecurityId) {
+      return (T) findSecurity((SecurityId) id);
+    }
+    return null;
+  }
+
+  // probes the hash table, null if not found
+  private SimpleLegalEntitySecurity findSecurity(SecurityId securityId) {
+    StandardId standardId = securityId.getStandardId();
+    int scheme = schemeIndex(standardId.getScheme());
+    if (scheme < 0) {
+      return null;
+    }
+    String value = standardId.getValue();
+    int slot = hash(scheme, value) & mask;
+    String key;
+    while ((key = keyValues[slot]) != null) {
+      if (keySchemes[slot] == scheme && key.equals(value)) {
+        return securities[securityIndices[slot]];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  // finds the index of the scheme, there being few schemes
+  private int schemeIndex(String scheme) {
+    for (int i = 0; i < schemes.length; i++) {
+      if (schemes[i].equals(scheme)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Writes the store to a binary file.
+   * <p>
+   * The file can be read back using {@link #loadBinary(Path)}, which avoids parsing the CSV file.
+   *
+   * @param file  the file
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public void writeBinary(Path file) {
+    ArgChecker.notNull(file, "file");
+    try (OutputStream out = Files.newOutputStream(file)) {
+      DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      data.writeInt(schemes.length);
+      for (String scheme : schemes) {
+        data.writeUTF(scheme);
+      }
+      data.writeInt(securities.length);
+      for (SimpleLegalEntitySecurity security : securities) {
+        data.writeUTF(security.getLegalEntityId().toString());
+      }
+      data.writeInt(size);
+      for (int slot = 0; slot < keyValues.length; slot++) {
+        if (keyValues[slot] != null) {
+          data.writeInt(keySchemes[slot]);
+          data.writeUTF(keyValues[slot]);
+          data.writeInt(securityIndices[slot]);
+        }
+      }
+      data.flush();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "LegalEntitySecurityReferenceData[securities=" + size + ", legalEntities=" + securities.length + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  // accumulates the securities while loading, interning the schemes and legal entities
+  private static final class Loader {
+    // the index of each scheme
+    private final Map<String, Integer> schemeIndices = new HashMap<>();
+    // the index of each legal entity
+    private final Map<LegalEntityId, Integer> legalEntityIndices = new HashMap<>();
+    // the legal entity index of each security, used to detect duplicates
+    private final Map<StandardId, Integer> securities = new HashMap<>();
+    // the interned schemes
+    private final List<String> schemes = new ArrayList<>();
+    // the interned legal entities
+    private final List<LegalEntityId> legalEntityIds = new ArrayList<>();
+
+    // adds a security
+    private void add(String scheme, String value, LegalEntityId legalEntityId) {
+      ArgChecker.notNull(legalEntityId, "legalEntityId");
+      Integer legalEntity = legalEntityIndices.get(legalEntityId);
+      if (legalEntity == null) {
+        legalEntity = legalEntityIds.size();
+        legalEntityIndices.put(legalEntityId, legalEntity);
+        legalEntityIds.add(legalEntityId);
+      }
+      StandardId securityId = StandardId.of(scheme, value);
+      Integer existing = securities.putIfAbsent(securityId, legalEntity);
+      if (existing != null && !existing.equals(legalEntity)) {
+        throw new IllegalArgumentException(Messages.format(
+            "Security {} has two legal entities: {} and {}", securityId, legalEntityIds.get(existing), legalEntityId));
+      }
+      if (!schemeIndices.containsKey(scheme)) {
+        schemeIndices.put(scheme, schemes.size());
+        schemes.add(scheme);
+      }
+    }
+
+    // builds the store
+    private LegalEntitySecurityReferenceData build() {
+      int size = securities.size();
+      int[] keySchemes = new int[size];
+      String[] keyValues = new String[size];
+      int[] keyLegalEntities = new int[size];
+      int i = 0;
+      for (Map.Entry<StandardId, Integer> entry : securities.entrySet()) {
+        keySchemes[i] = schemeIndices.get(entry.getKey().getScheme());
+        keyValues[i] = entry.getKey().getValue();
+        keyLegalEntities[i] = entry.getValue();
+        i++;
+      }
+      SimpleLegalEntitySecurity[] interned = new SimpleLegalEntitySecurity[legalEntityIds.size()];
+      for (int j = 0; j < interned.length; j++) {
+        interned[j] = SimpleLegalEntitySecurity.of(legalEntityIds.get(j));
+      }
+      return new LegalEntitySecurityReferenceData(
+          schemes.toArray(new String[0]), interned, keySchemes, keyValues, keyLegalEntities, size);
+    }
+  }
+
+}
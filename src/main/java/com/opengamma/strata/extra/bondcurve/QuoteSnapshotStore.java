@@ -0,0 +1,541 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.timeseries.LocalDateDoubleTimeSeries;
+import com.opengamma.strata.data.FieldName;
+import com.opengamma.strata.data.MarketData;
+import com.opengamma.strata.data.MarketDataId;
+import com.opengamma.strata.data.MarketDataName;
+import com.opengamma.strata.data.ObservableId;
+import com.opengamma.strata.data.ObservableSource;
+import com.opengamma.strata.market.observable.QuoteId;
+
+/**
+ * An append-only store of daily quote snapshots, backed by a memory-mapped file.
+ * <p>
+ * The quotes of each date are appended as a single block, sorted by an interned quote index.
+ * The identifiers are interned once in the file, thus a block only holds pairs of index and value.
+ * <p>
+ * A {@link MarketData} view of a date is obtained using {@link #marketData(LocalDate)}.
+ * The view reads the block directly from the mapped file, using a binary search to find a quote.
+ * No map of values is built when a date is replayed.
+ * <p>
+ * If the quotes of a date are appended more than once, the latest block is used.
+ * A partially written block at the end of the file, for example following a crash, is discarded when opened.
+ * <p>
+ * Appending writes to the file channel without mapping the file. The blocks appended since the file
+ * was last mapped are mapped as a single new region when a view of one of them is first requested,
+ * thus the regions grow with the reads and the file is never mapped twice.
+ * Appended quotes are only forced to the storage device when {@link #flush()} is called.
+ * <p>
+ * The positions in the file are held as {@code int}, thus its size is limited to 2GB.
+ * This class is thread-safe, however only one instance should write to a given file.
+ */
+public final class QuoteSnapshotStore implements Closeable {
+
+  // the file header
+  private static final int MAGIC = 0x51534E50;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  // the record types
+  private static final byte ID_RECORD = 1;
+  private static final byte DAY_RECORD = 2;
+  // the size of each entry in a day record, index then value
+  private static final int ENTRY_SIZE = 12;
+  // the maximum size of the file
+  private static final long MAX_SIZE = Integer.MAX_VALUE;
+  // the range of valid epoch days
+  private static final long MIN_EPOCH_DAY = LocalDate.MIN.toEpochDay();
+  private static final long MAX_EPOCH_DAY = LocalDate.MAX.toEpochDay();
+
+  /**
+   * The file channel.
+   */
+  private final FileChannel channel;
+  /**
+   * The interned identifiers.
+   */
+  private final Map<QuoteId, Integer> idIndices = new HashMap<>();
+  /**
+   * The interned identifiers, as an immutable snapshot shared by the views.
+   */
+  private ImmutableMap<QuoteId, Integer> idIndicesSnapshot = ImmutableMap.of();
+  /**
+   * The identifiers by index, as a snapshot shared by the views.
+   */
+  private QuoteId[] ids = new QuoteId[0];
+  /**
+   * The location of the latest block of each date.
+   */
+  private final TreeMap<LocalDate, DayBlock> days = new TreeMap<>();
+  /**
+   * The mapped regions of the file, keyed by start position.
+   * Each region starts and ends at a record boundary.
+   */
+  private final TreeMap<Integer, MappedByteBuffer> regions = new TreeMap<>();
+  /**
+   * The end of the mapped regions.
+   */
+  private int mappedEnd;
+  /**
+   * The size of the file.
+   */
+  private int size;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Opens the store at the specified file, creating it if it does not exist.
+   *
+   * @param file  the file
+   * @return the store
+   * @throws UncheckedIOException if an IO error occurs
+   * @throws IllegalArgumentException if the file is not a quote store
+   */
+  public static QuoteSnapshotStore open(Path file) {
+    ArgChecker.notNull(file, "file");
+    try {
+      FileChannel channel = FileChannel.open(
+          file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      try {
+        return new QuoteSnapshotStore(channel);
+      } catch (RuntimeException | IOException ex) {
+        channel.close();
+        throw ex;
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  // restricted constructor
+  private QuoteSnapshotStore(FileChannel channel) throws IOException {
+    this.channel = channel;
+    if (channel.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+      header.flip();
+      channel.write(header, 0);
+    }
+    if (channel.size() > MAX_SIZE) {
+      throw new IllegalArgumentException(Messages.format(
+          "Quote snapshot store size {} exceeds the maximum of {} bytes", channel.size(), MAX_SIZE));
+    }
+    MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("File is not a quote snapshot store");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IllegalArgumentException(Messages.format(
+          "Quote snapshot store version {} is not supported, expected {}", buffer.getInt(4), VERSION));
+    }
+    int end = scan(buffer);
+    snapshotIds();
+    if (end < buffer.limit()) {
+      // discard a partially written record, the mapping of the discarded bytes is not retained
+      channel.truncate(end);
+      buffer = channel.map(MapMode.READ_ONLY, 0, end);
+    }
+    regions.put(0, buffer);
+    mappedEnd = end;
+    size = end;
+  }
+
+  // reads the records, returning the end of the last complete record
+  // a record that cannot be decoded is treated as partially written, discarding it and the bytes that follow
+  private int scan(ByteBuffer buffer) {
+    int pos = HEADER_SIZE;
+    int limit = buffer.limit();
+    while (pos < limit) {
+      byte type = buffer.get(pos);
+      if (type == ID_RECORD) {
+        int end = scanId(buffer, pos + 1, limit);
+        if (end < 0) {
+          break;
+        }
+        pos = end;
+      } else if (type == DAY_RECORD) {
+        if (pos + 13 > limit) {
+          break;
+        }
+        long epochDay = buffer.getLong(pos + 1);
+        int count = buffer.getInt(pos + 9);
+        long end = pos + 13L + (long) count * ENTRY_SIZE;
+        if (epochDay < MIN_EPOCH_DAY || epochDay > MAX_EPOCH_DAY || count < 0 || end > limit) {
+          break;
+        }
+        days.put(LocalDate.ofEpochDay(epochDay), new DayBlock(pos + 13, count));
+        pos = (int) end;
+      } else {
+        break;
+      }
+    }
+    return pos;
+  }
+
+  // reads an identifier record, returning the end or -1 if incomplete or invalid
+  private int scanId(ByteBuffer buffer, int start, int limit) {
+    int pos = start;
+    String[] parts = new String[3];
+    for (int i = 0; i < parts.length; i++) {
+      if (pos + 2 > limit) {
+        return -1;
+      }
+      int length = buffer.getShort(pos) & 0xFFFF;
+      pos += 2;
+      if (pos + length > limit) {
+        return -1;
+      }
+      byte[] bytes = new byte[length];
+      ByteBuffer dup = buffer.duplicate();
+      dup.position(pos);
+      dup.get(bytes);
+      parts[i] = new String(bytes, UTF_8);
+      pos += length;
+    }
+    QuoteId id;
+    try {
+      id = QuoteId.of(StandardId.parse(parts[0]), FieldName.of(parts[1]), ObservableSource.of(parts[2]));
+    } catch (IllegalArgumentException ex) {
+      return -1;
+    }
+    intern(id);
+    return pos;
+  }
+
+  // adds the identifier to the interned set
+  private int intern(QuoteId id) {
+    int index = idIndices.size();
+    idIndices.put(id, index);
+    return index;
+  }
+
+  // refreshes the snapshot of the interned identifiers
+  private void snapshotIds() {
+    if (idIndices.size() == ids.length) {
+      return;
+    }
+    QuoteId[] newIds = new QuoteId[idIndices.size()];
+    for (Entry<QuoteId, Integer> entry : idIndices.entrySet()) {
+      newIds[entry.getValue()] = entry.getKey();
+    }
+    ids = newIds;
+    idIndicesSnapshot = ImmutableMap.copyOf(idIndices);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Appends the quotes of a date to the store.
+   * <p>
+   * The quotes are written to the end of the file, without forcing the file to the storage device.
+   * If the date is already present, the new quotes replace the previous ones.
+   *
+   * @param date  the date of the quotes
+   * @param quotes  the quotes
+   * @throws UncheckedIOException if an IO error occurs
+   * @throws IllegalStateException if the quotes would take the file beyond the maximum size
+   */
+  public synchronized void append(LocalDate date, Map<QuoteId, Double> quotes) {
+    ArgChecker.notNull(date, "date");
+    ArgChecker.notNull(quotes, "quotes");
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(quotes.size() * ENTRY_SIZE + 13);
+      DataOutputStream out = new DataOutputStream(bytes);
+      int[] indices = new int[quotes.size()];
+      double[] values = new double[quotes.size()];
+      int i = 0;
+      for (Entry<QuoteId, Double> entry : quotes.entrySet()) {
+        Integer index = idIndices.get(entry.getKey());
+        if (index == null) {
+          index = intern(entry.getKey());
+          writeId(out, entry.getKey());
+        }
+        indices[i] = index;
+        values[i] = ArgChecker.notNull(entry.getValue(), "value");
+        i++;
+      }
+      sortByIndex(indices, values);
+      long blockStart = (long) size + bytes.size() + 13;
+      long end = blockStart + (long) indices.length * ENTRY_SIZE;
+      if (end > MAX_SIZE) {
+        throw new IllegalStateException(Messages.format(
+            "Quote snapshot store cannot exceed {} bytes, unable to append quotes for {}", MAX_SIZE, date));
+      }
+      out.writeByte(DAY_RECORD);
+      out.writeLong(date.toEpochDay());
+      out.writeInt(indices.length);
+      for (int j = 0; j < indices.length; j++) {
+        out.writeInt(indices[j]);
+        out.writeDouble(values[j]);
+      }
+      out.flush();
+      ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+      long pos = size;
+      while (record.hasRemaining()) {
+        pos += channel.write(record, pos);
+      }
+      size = (int) end;
+      days.put(date, new DayBlock((int) blockStart, indices.length));
+      snapshotIds();
+    } catch (IOException ex) {
+      discardInterned();
+      throw new UncheckedIOException(ex);
+    } catch (RuntimeException ex) {
+      discardInterned();
+      throw ex;
+    }
+  }
+
+  // the identifiers interned for a failed record are not in the file
+  private void discardInterned() {
+    idIndices.keySet().retainAll(idIndicesSnapshot.keySet());
+  }
+
+  /**
+   * Forces the quotes appended to the store to the storage device.
+   *
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public synchronized void flush() {
+    try {
+      channel.force(false);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  // writes an identifier record
+  private static void writeId(DataOutputStream out, QuoteId id) throws IOException {
+    out.writeByte(ID_RECORD);
+    writeString(out, id.getStandardId().toString());
+    writeString(out, id.getFieldName().getName());
+    writeString(out, id.getObservableSource().getName());
+  }
+
+  // writes a length prefixed UTF-8 string
+  private static void writeString(DataOutputStream out, String str) throws IOException {
+    byte[] bytes = str.getBytes(UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  // sorts the pairs of index and value by index, the indices are distinct
+  private static void sortByIndex(int[] indices, double[] values) {
+    for (int i = 1; i < indices.length; i++) {
+      int index = indices[i];
+      double value = values[i];
+      int j = i - 1;
+      while (j >= 0 && indices[j] > index) {
+        indices[j + 1] = indices[j];
+        values[j + 1] = values[j];
+        j--;
+      }
+      indices[j + 1] = index;
+      values[j + 1] = value;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the dates available in the store.
+   *
+   * @return the dates, in order
+   */
+  public synchronized ImmutableSortedSet<LocalDate> getDates() {
+    return ImmutableSortedSet.copyOf(days.keySet());
+  }
+
+  /**
+   * Returns a market data view of the quotes of the specified date.
+   * <p>
+   * The valuation date of the market data is the date of the quotes.
+   * The view reads the mapped file directly, and remains valid once further dates are appended.
+   *
+   * @param date  the date of the quotes
+   * @return the market data
+   * @throws IllegalArgumentException if the date is not in the store
+   */
+  public synchronized MarketData marketData(LocalDate date) {
+    DayBlock block = days.get(date);
+    if (block == null) {
+      throw new IllegalArgumentException(Messages.format("No quotes found for date {}", date));
+    }
+    Entry<Integer, MappedByteBuffer> region = region(block.offset);
+    int offset = block.offset - region.getKey();
+    ByteBuffer dup = region.getValue().duplicate();
+    dup.position(offset);
+    dup.limit(offset + block.count * ENTRY_SIZE);
+    return new QuoteSnapshotMarketData(date, dup.slice(), block.count, idIndicesSnapshot, ids);
+  }
+
+  // finds the mapped region containing the position, mapping the appended records if necessary
+  private Entry<Integer, MappedByteBuffer> region(int position) {
+    if (position >= mappedEnd) {
+      try {
+        regions.put(mappedEnd, channel.map(MapMode.READ_ONLY, mappedEnd, size - mappedEnd));
+        mappedEnd = size;
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+    return regions.floorEntry(position);
+  }
+
+  /**
+   * Closes the underlying file.
+   *
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  @Override
+  public synchronized void close() {
+    try {
+      channel.close();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "QuoteSnapshotStore[dates=" + days.size() + ", quoteIds=" + ids.length + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  // the location of the block of a date
+  private static final class DayBlock {
+    private final int offset;
+    private final int count;
+
+    private DayBlock(int offset, int count) {
+      this.offset = offset;
+      this.count = count;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The market data view of a block of quotes.
+   */
+  private static final class QuoteSnapshotMarketData implements MarketData {
+
+    private final LocalDate valuationDate;
+    private final ByteBuffer entries;
+    private final int count;
+    private final ImmutableMap<QuoteId, Integer> idIndices;
+    private final QuoteId[] ids;
+
+    private QuoteSnapshotMarketData(
+        LocalDate valuationDate,
+        ByteBuffer entries,
+        int count,
+        ImmutableMap<QuoteId, Integer> idIndices,
+        QuoteId[] ids) {
+
+      this.valuationDate = valuationDate;
+      this.entries = entries;
+      this.count = count;
+      this.idIndices = idIndices;
+      this.ids = ids;
+    }
+
+    @Override
+    public LocalDate getValuationDate() {
+      return valuationDate;
+    }
+
+    @Override
+    public boolean containsValue(MarketDataId<?> id) {
+      return find(id) >= 0;
+    }
+
+    @Override
+    public <T> Optional<T> findValue(MarketDataId<T> id) {
+      int position = find(id);
+      if (position < 0) {
+        return Optional.empty();
+      }
+      return Optional.of(id.getMarketDataType().cast(entries.getDouble(position * ENTRY_SIZE + 4)));
+    }
+
+    // binary search for the entry, returning the position or -1
+    private int find(MarketDataId<?> id) {
+      Integer index = id instanceof QuoteId ? idIndices.get(id) : null;
+      if (index == null) {
+        return -1;
+      }
+      int low = 0;
+      int high = count - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int midIndex = entries.getInt(mid * ENTRY_SIZE);
+        if (midIndex < index) {
+          low = mid + 1;
+        } else if (midIndex > index) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public Set<MarketDataId<?>> getIds() {
+      ImmutableSet.Builder<MarketDataId<?>> builder = ImmutableSet.builder();
+      for (int i = 0; i < count; i++) {
+        builder.add(ids[entries.getInt(i * ENTRY_SIZE)]);
+      }
+      return builder.build();
+    }
+
+    @Override
+    public <T> Set<MarketDataId<T>> findIds(MarketDataName<T> name) {
+      return ImmutableSet.of();
+    }
+
+    @Override
+    public Set<ObservableId> getTimeSeriesIds() {
+      return ImmutableSet.of();
+    }
+
+    @Override
+    public LocalDateDoubleTimeSeries getTimeSeries(ObservableId id) {
+      return LocalDateDoubleTimeSeries.empty();
+    }
+
+    @Override
+    public String toString() {
+      return "QuoteSnapshotMarketData[valuationDate=" + valuationDate + ", size=" + count + "]";
+    }
+  }
+
+}
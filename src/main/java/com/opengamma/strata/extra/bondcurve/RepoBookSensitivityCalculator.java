@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.basics.currency.MultiCurrencyAmount;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.extra.repo.DiscountingRepoProductPricer;
+import com.opengamma.strata.extra.repo.RepoParameterSensitivityAccumulator;
+import com.opengamma.strata.extra.repo.ResolvedRepo;
+import com.opengamma.strata.extra.repo.ResolvedRepoBook;
+import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
+import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
+import com.opengamma.strata.pricer.DiscountFactors;
+import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+import com.opengamma.strata.pricer.sensitivity.MarketQuoteSensitivityCalculator;
+import com.opengamma.strata.product.LegalEntityId;
+
+/**
+ * Calculates the curve sensitivities of a book of repos in adjoint mode.
+ * <p>
+ * The present value of the book is priced by {@link DiscountingRepoProductPricer},
+ * each repo depending only on the discount factors of its repo curve at its start and end dates.
+ * The adjoints of the present value of a repo to these discount factors are also provided by the pricer.
+ * A single forward sweep over the book records each distinct curve and date once, together with
+ * the adjoint of the book present value to its discount factor. As the present value is linear
+ * in the discount factors, the adjoints of the trades are summed during the same sweep.
+ * A single reverse sweep then converts the adjoint of each recorded discount factor to the
+ * sensitivity to the curve parameters.
+ * <p>
+ * The cost is thus one interpolation per distinct curve and date in the forward sweep and
+ * one interpolation sensitivity per distinct curve and date in the reverse sweep,
+ * rather than two point sensitivities and two parameter sensitivities per trade.
+ * <p>
+ * The parameter sensitivities may be converted to market quote sensitivities using the
+ * {@link com.opengamma.strata.market.curve.JacobianCalibrationMatrix} stored in the curve metadata
+ * during calibration, see {@link #marketQuoteSensitivity(List, LegalEntityDiscountingProvider)}.
+ */
+public final class RepoBookSensitivityCalculator {
+
+  /**
+   * Default implementation.
+   */
+  public static final RepoBookSensitivityCalculator DEFAULT =
+      new RepoBookSensitivityCalculator(MarketQuoteSensitivityCalculator.DEFAULT);
+  /**
+   * The pricer, defining the present value of each repo and its adjoints.
+   */
+  private static final DiscountingRepoProductPricer PRICER = DiscountingRepoProductPricer.DEFAULT;
+
+  /**
+   * The calculator used to chain the parameter sensitivities to market quote sensitivities.
+   */
+  private final MarketQuoteSensitivityCalculator marketQuoteCalculator;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance using the specified market quote sensitivity calculator.
+   *
+   * @param marketQuoteCalculator  the calculator used to obtain the market quote sensitivities
+   * @return the calculator
+   */
+  public static RepoBookSensitivityCalculator of(MarketQuoteSensitivityCalculator marketQuoteCalculator) {
+    return new RepoBookSensitivityCalculator(marketQuoteCalculator);
+  }
+
+  // restricted constructor
+  private RepoBookSensitivityCalculator(MarketQuoteSensitivityCalculator marketQuoteCalculator) {
+    this.marketQuoteCalculator = ArgChecker.notNull(marketQuoteCalculator, "marketQuoteCalculator");
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Calculates the present value of a book of trades.
+   * <p>
+   * This is the forward sweep alone, the result being the sum of the present value of each trade.
+   *
+   * @param trades  the trades
+   * @param provider  the rates provider
+   * @return the present value of the book
+   */
+  public MultiCurrencyAmount presentValue(List<ResolvedRepoTrade> trades, LegalEntityDiscountingProvider provider) {
+    return forward(trades, provider).presentValue();
+  }
+
+  /**
+   * Calculates the present value of a resolved book.
+   * <p>
+   * This is the forward sweep alone, the result being the sum of the present value of each trade.
+   *
+   * @param book  the book
+   * @param provider  the rates provider
+   * @return the present value of the book
+   */
+  public MultiCurrencyAmount presentValue(ResolvedRepoBook book, LegalEntityDiscountingProvider provider) {
+    return forward(book, provider).presentValue();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Calculates the sensitivity of the present value of a book of trades to the curve parameters.
+   * <p>
+   * The result is the same as the sum of the parameter sensitivities of each trade,
+   * there is no scaling to one basis point.
+   *
+   * @param trades  the trades
+   * @param provider  the rates provider
+   * @return the parameter sensitivities of the book
+   */
+  public CurrencyParameterSensitivities parameterSensitivity(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingProvider provider) {
+
+    return forward(trades, provider).reverse();
+  }
+
+  /**
+   * Calculates the sensitivity of the present value of a resolved book to the curve parameters.
+   * <p>
+   * The result is the same as the sum of the parameter sensitivities of each trade,
+   * there is no scaling to one basis point.
+   *
+   * @param book  the book
+   * @param provider  the rates provider
+   * @return the parameter sensitivities of the book
+   */
+  public CurrencyParameterSensitivities parameterSensitivity(
+      ResolvedRepoBook book,
+      LegalEntityDiscountingProvider provider) {
+
+    return forward(book, provider).reverse();
+  }
+
+  /**
+   * Calculates the sensitivity of the present value of a book of trades to the market quotes of the curves.
+   * <p>
+   * The parameter sensitivities are multiplied by the Jacobian stored in the metadata of each curve
+   * by the calibration, there is no scaling to one basis point.
+   *
+   * @param trades  the trades
+   * @param provider  the rates provider, containing the calibrated curves
+   * @return the market quote sensitivities of the book
+   * @throws IllegalArgumentException if a curve does not have the Jacobian of its calibration
+   */
+  public CurrencyParameterSensitivities marketQuoteSensitivity(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingProvider provider) {
+
+    return marketQuoteCalculator.sensitivity(parameterSensitivity(trades, provider), provider);
+  }
+
+  /**
+   * Calculates the sensitivity of the present value of a resolved book to the market quotes of the curves.
+   * <p>
+   * The parameter sensitivities are multiplied by the Jacobian stored in the metadata of each curve
+   * by the calibration, there is no scaling to one basis point.
+   *
+   * @param book  the book
+   * @param provider  the rates provider, containing the calibrated curves
+   * @return the market quote sensitivities of the book
+   * @throws IllegalArgumentException if a curve does not have the Jacobian of its calibration
+   */
+  public CurrencyParameterSensitivities marketQuoteSensitivity(
+      ResolvedRepoBook book,
+      LegalEntityDiscountingProvider provider) {
+
+    return marketQuoteCalculator.sensitivity(parameterSensitivity(book, provider), provider);
+  }
+
+  //-------------------------------------------------------------------------
+  // forward sweep over a list of trades
+  private Tape forward(List<ResolvedRepoTrade> trades, LegalEntityDiscountingProvider provider) {
+    ArgChecker.notNull(trades, "trades");
+    Tape tape = new Tape(provider);
+    for (ResolvedRepoTrade trade : trades) {
+      tape.record(trade.getProduct());
+    }
+    return tape;
+  }
+
+  // forward sweep over a resolved book
+  private Tape forward(ResolvedRepoBook book, LegalEntityDiscountingProvider provider) {
+    ArgChecker.notNull(book, "book");
+    Tape tape = new Tape(provider);
+    for (int i = 0; i < book.size(); i++) {
+      tape.record(
+          book.legalEntityId(i),
+          book.currency(i),
+          book.startDate(i),
+          book.endDate(i),
+          book.notional(i),
+          book.interest(i));
+    }
+    return tape;
+  }
+
+  @Override
+  public String toString() {
+    return "RepoBookSensitivityCalculator";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The record of the forward sweep, holding the discount factors used and their adjoints.
+   */
+  private static final class Tape {
+    // the provider
+    private final IndexedLegalEntityDiscountingProvider provider;
+    // the valuation date
+    private final LocalDate valuationDate;
+    // the nodes of each repo curve, indexed by repo curve index, null until first used
+    private final CurveNodes[] curves;
+    // the adjoints of the present value of the last trade recorded to its start and end discount factors
+    private final double[] adjoints = new double[2];
+    // the last legal entity recorded, avoiding the curve lookup for consecutive trades
+    private LegalEntityId lastLegalEntityId;
+    // the currency of the last trade recorded
+    private Currency lastCurrency;
+    // the curve of the last trade recorded
+    private CurveNodes lastCurve;
+
+    private Tape(LegalEntityDiscountingProvider provider) {
+      this.provider = IndexedLegalEntityDiscountingProvider.of(provider);
+      this.valuationDate = provider.getValuationDate();
+      this.curves = new CurveNodes[this.provider.getRepoCurveCount()];
+    }
+
+    // records a product, summing its present value from the pricer and the adjoints of its discount factors
+    private void record(ResolvedRepo product) {
+      CurveNodes curve = curve(product.getLegalEntityId(), product.getCurrency());
+      PRICER.presentValueAdjoints(
+          valuationDate,
+          product.getStartDate(),
+          product.getEndDate(),
+          product.getNotional(),
+          product.getInterest(),
+          adjoints);
+      if (adjoints[0] == 0d && adjoints[1] == 0d) {
+        return;  // no present value, no sensitivity, the currency being recorded with the curve
+      }
+      int start = curve.node(product.getStartDate());
+      int end = curve.node(product.getEndDate());
+      curve.presentValue += PRICER.presentValue(
+          product, valuationDate, curve.discountFactors[start], curve.discountFactors[end]).getAmount();
+      curve.discountFactorBars[start] += adjoints[0];
+      curve.discountFactorBars[end] += adjoints[1];
+    }
+
+    // records a trade of a book, summing its present value and the adjoints of its discount factors
+    private void record(
+        LegalEntityId legalEntityId,
+        Currency currency,
+        LocalDate startDate,
+        LocalDate endDate,
+        double notional,
+        double interest) {
+
+      CurveNodes curve = curve(legalEntityId, currency);
+      PRICER.presentValueAdjoints(valuationDate, startDate, endDate, notional, interest, adjoints);
+      if (adjoints[0] == 0d && adjoints[1] == 0d) {
+        return;  // no present value, no sensitivity, the currency being recorded with the curve
+      }
+      int start = curve.node(startDate);
+      int end = curve.node(endDate);
+      // the present value is linear in the discount factors
+      curve.presentValue += adjoints[0] * curve.discountFactors[start] + adjoints[1] * curve.discountFactors[end];
+      curve.discountFactorBars[start] += adjoints[0];
+      curve.discountFactorBars[end] += adjoints[1];
+    }
+
+    // finds the nodes of the repo curve of the legal entity and currency
+    private CurveNodes curve(LegalEntityId legalEntityId, Currency currency) {
+      if (legalEntityId.equals(lastLegalEntityId) && currency.equals(lastCurrency)) {
+        return lastCurve;
+      }
+      int index = provider.repoCurveIndex(legalEntityId, currency);
+      CurveNodes curve = curves[index];
+      if (curve == null) {
+        curve = new CurveNodes(provider.repoCurveDiscountFactors(index));
+        curves[index] = curve;
+      }
+      lastLegalEntityId = legalEntityId;
+      lastCurrency = currency;
+      lastCurve = curve;
+      return curve;
+    }
+
+    // the present value summed by currency
+    private MultiCurrencyAmount presentValue() {
+      MultiCurrencyAmount total = MultiCurrencyAmount.empty();
+      for (CurveNodes curve : curves) {
+        if (curve != null) {
+          total = total.plus(curve.repoCurve.getCurrency(), curve.presentValue);
+        }
+      }
+      return total;
+    }
+
+    // reverse sweep, from the discount factor adjoints to the curve parameters
+    private CurrencyParameterSensitivities reverse() {
+      RepoParameterSensitivityAccumulator accumulator = new RepoParameterSensitivityAccumulator();
+      for (CurveNodes curve : curves) {
+        if (curve != null) {
+          for (int i = 0; i < curve.days.size(); i++) {
+            double bar = curve.discountFactorBars[i];
+            if (bar != 0d) {
+              // d(df)/d(zero rate) = -t * df
+              double time = curve.times[i];
+              accumulator.add(curve.repoCurve, time, -time * curve.discountFactors[i] * bar);
+            }
+          }
+        }
+      }
+      return accumulator.toCurrencyParameterSensitivities();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The distinct dates recorded for a single repo curve.
+   * <p>
+   * The nodes are the indices of the dates in an {@link EpochDayTable}, the table being replaced when full.
+   */
+  private static final class CurveNodes {
+    // the repo curve
+    private final RepoCurveDiscountFactors repoCurve;
+    // the underlying discount factors
+    private final DiscountFactors underlying;
+    // the dates, the node of a date being its index
+    private EpochDayTable days = EpochDayTable.create();
+    // the year fraction of each node
+    private double[] times;
+    // the discount factor of each node
+    private double[] discountFactors;
+    // the adjoint of the book present value to the discount factor of each node
+    private double[] discountFactorBars;
+    // the present value of the trades on the curve
+    private double presentValue;
+
+    private CurveNodes(RepoCurveDiscountFactors repoCurve) {
+      this.repoCurve = repoCurve;
+      this.underlying = repoCurve.getDiscountFactors();
+      this.times = new double[days.maxSize()];
+      this.discountFactors = new double[days.maxSize()];
+      this.discountFactorBars = new double[days.maxSize()];
+    }
+
+    // finds or records the node of the date
+    private int node(LocalDate date) {
+      int day = EpochDayTable.day(date);
+      int node = days.find(day);
+      if (node >= 0) {
+        return node;
+      }
+      if (days.isFull()) {
+        days = days.grown();
+        times = Arrays.copyOf(times, days.maxSize());
+        discountFactors = Arrays.copyOf(discountFactors, days.maxSize());
+        discountFactorBars = Arrays.copyOf(discountFactorBars, days.maxSize());
+      }
+      node = days.add(day);
+      double time = underlying.relativeYearFraction(date);
+      times[node] = time;
+      discountFactors[node] = underlying.discountFactor(time);
+      return node;
+    }
+  }
+
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.data.ImmutableMarketData;
+import com.opengamma.strata.data.ImmutableMarketDataBuilder;
+import com.opengamma.strata.data.ObservableId;
+import com.opengamma.strata.market.curve.CurveDefinition;
+import com.opengamma.strata.market.curve.CurveNode;
+import com.opengamma.strata.market.curve.NodalCurveDefinition;
+import com.opengamma.strata.market.observable.QuoteId;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+
+/**
+ * A pipeline that recalibrates legal entity discounting curves from a feed of quotes.
+ * <p>
+ * Quote updates are received by {@link #onQuote(QuoteId, double)} and {@link #onQuotes(Map)}.
+ * Only the quotes required by the nodes of the curve definitions are retained.
+ * The first update after a calibration opens a window of the configured length, and all the updates
+ * received within the window are coalesced into a single calibration at the end of the window.
+ * No calibration is performed until every required quote has been received.
+ * <p>
+ * The calibrated providers are published to subscribers on the executor.
+ * A subscriber only ever holds the latest unconsumed provider, thus a slow subscriber skips
+ * intermediate providers rather than accumulating a queue of snapshots.
+ * <p>
+ * The valuation date is fixed for the lifetime of the pipeline.
+ * Once {@linkplain #close() closed}, the pipeline ignores quote updates and cancels its subscriptions.
+ * The executor is owned by the caller and is not shut down by the pipeline.
+ */
+public final class RepoCurveCalibrationPipeline implements AutoCloseable {
+
+  /**
+   * The calibrator.
+   */
+  private final LegalEntityDiscountingCurveCalibrator calibrator;
+  /**
+   * The curve group definitions, calibrated in order.
+   */
+  private final ImmutableList<LegalEntityDiscountingCurveGroupDefinition> groupDefns;
+  /**
+   * The reference data, holding the compiled conventions of the repo nodes.
+   */
+  private final ReferenceData refData;
+  /**
+   * The valuation date.
+   */
+  private final LocalDate valuationDate;
+  /**
+   * The window within which quote updates are coalesced, in milliseconds.
+   */
+  private final long debounceMillis;
+  /**
+   * The executor, used for calibration and publication.
+   */
+  private final ScheduledExecutorService executor;
+  /**
+   * The quotes required by the curve nodes.
+   */
+  private final ImmutableSet<QuoteId> requiredQuoteIds;
+  /**
+   * The latest value of each required quote.
+   */
+  private final Map<QuoteId, Double> quotes = new ConcurrentHashMap<>();
+  /**
+   * Whether a calibration is scheduled.
+   */
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  /**
+   * Whether the pipeline has been closed.
+   */
+  private volatile boolean closed;
+  /**
+   * The latest calibrated provider.
+   */
+  private final AtomicReference<ImmutableLegalEntityDiscountingProvider> latest = new AtomicReference<>();
+  /**
+   * The subscriptions.
+   */
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains a pipeline.
+   *
+   * @param calibrator  the calibrator
+   * @param groupDefns  the curve group definitions, calibrated in order
+   * @param refData  the reference data, used to resolve the trades
+   * @param valuationDate  the valuation date
+   * @param debounce  the window within which quote updates are coalesced
+   * @param executor  the executor, used for calibration and publication
+   * @return the pipeline
+   */
+  public static RepoCurveCalibrationPipeline of(
+      LegalEntityDiscountingCurveCalibrator calibrator,
+      List<LegalEntityDiscountingCurveGroupDefinition> groupDefns,
+      ReferenceData refData,
+      LocalDate valuationDate,
+      Duration debounce,
+      ScheduledExecutorService executor) {
+
+    return new RepoCurveCalibrationPipeline(calibrator, groupDefns, refData, valuationDate, debounce, executor);
+  }
+
+  // restricted constructor
+  private RepoCurveCalibrationPipeline(
+      LegalEntityDiscountingCurveCalibrator calibrator,
+      List<LegalEntityDiscountingCurveGroupDefinition> groupDefns,
+      ReferenceData refData,
+      LocalDate valuationDate,
+      Duration debounce,
+      ScheduledExecutorService executor) {
+
+    this.calibrator = ArgChecker.notNull(calibrator, "calibrator");
+    this.groupDefns = ImmutableList.copyOf(ArgChecker.notEmpty(groupDefns, "groupDefns"));
+    // the conventions are compiled once, rather than on each calibration
+    this.refData = LegalEntityDiscountingCurveCalibrator.compiledReferenceData(
+        this.groupDefns, ArgChecker.notNull(refData, "refData"));
+    this.valuationDate = ArgChecker.notNull(valuationDate, "valuationDate");
+    ArgChecker.isFalse(ArgChecker.notNull(debounce, "debounce").isNegative(), "debounce must not be negative");
+    this.debounceMillis = debounce.toMillis();
+    this.executor = ArgChecker.notNull(executor, "executor");
+    this.requiredQuoteIds = requiredQuoteIds(this.groupDefns);
+  }
+
+  // finds the quotes required by the curve nodes
+  private static ImmutableSet<QuoteId> requiredQuoteIds(List<LegalEntityDiscountingCurveGroupDefinition> groupDefns) {
+    ImmutableSet.Builder<QuoteId> builder = ImmutableSet.builder();
+    for (LegalEntityDiscountingCurveGroupDefinition groupDefn : groupDefns) {
+      for (CurveDefinition curveDefn : groupDefn.getCurveDefinitions()) {
+        if (!(curveDefn instanceof NodalCurveDefinition)) {
+          continue;
+        }
+        for (CurveNode node : ((NodalCurveDefinition) curveDefn).getNodes()) {
+          for (ObservableId id : node.requirements()) {
+            if (id instanceof QuoteId) {
+              builder.add((QuoteId) id);
+            }
+          }
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the quotes required by the curve nodes.
+   * <p>
+   * These are the quotes that the feed should subscribe to.
+   *
+   * @return the required quotes
+   */
+  public ImmutableSet<QuoteId> getRequiredQuoteIds() {
+    return requiredQuoteIds;
+  }
+
+  /**
+   * Gets the latest calibrated provider.
+   *
+   * @return the latest provider, empty if no calibration has completed
+   */
+  public Optional<ImmutableLegalEntityDiscountingProvider> getLatest() {
+    return Optional.ofNullable(latest.get());
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Receives a quote update.
+   * <p>
+   * Quotes that are not required by the curve nodes are ignored, as are all quotes once the pipeline is closed.
+   *
+   * @param id  the quote identifier
+   * @param value  the value
+   * @throws RejectedExecutionException if the calibration cannot be scheduled on the executor
+   */
+  public void onQuote(QuoteId id, double value) {
+    if (!closed && requiredQuoteIds.contains(id)) {
+      quotes.put(id, value);
+      schedule();
+    }
+  }
+
+  /**
+   * Receives a set of quote updates.
+   * <p>
+   * Quotes that are not required by the curve nodes are ignored, as are all quotes once the pipeline is closed.
+   *
+   * @param updates  the quote updates
+   * @throws RejectedExecutionException if the calibration cannot be scheduled on the executor
+   */
+  public void onQuotes(Map<QuoteId, Double> updates) {
+    if (closed) {
+      return;
+    }
+    boolean updated = false;
+    for (Entry<QuoteId, Double> entry : updates.entrySet()) {
+      if (requiredQuoteIds.contains(entry.getKey())) {
+        quotes.put(entry.getKey(), entry.getValue());
+        updated = true;
+      }
+    }
+    if (updated) {
+      schedule();
+    }
+  }
+
+  // schedules a calibration at the end of the window, unless one is already scheduled
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      try {
+        executor.schedule(this::recalibrate, debounceMillis, TimeUnit.MILLISECONDS);
+      } catch (RuntimeException ex) {
+        // nothing is scheduled, thus a later update must be able to schedule
+        scheduled.set(false);
+        throw ex;
+      }
+    }
+  }
+
+  // calibrates from the latest quotes, one calibration at a time
+  private synchronized void recalibrate() {
+    // updates received from now on open a new window
+    scheduled.set(false);
+    if (closed || quotes.size() < requiredQuoteIds.size()) {
+      return;
+    }
+    ImmutableMarketDataBuilder builder = ImmutableMarketData.builder(valuationDate);
+    for (Entry<QuoteId, Double> entry : quotes.entrySet()) {
+      builder.addValue(entry.getKey(), entry.getValue());
+    }
+    ImmutableLegalEntityDiscountingProvider knownData = ImmutableLegalEntityDiscountingProvider.builder()
+        .valuationDate(valuationDate)
+        .build();
+    Object item;
+    try {
+      ImmutableLegalEntityDiscountingProvider provider =
+          calibrator.calibrate(groupDefns, knownData, builder.build(), refData);
+      latest.set(provider);
+      item = provider;
+    } catch (RuntimeException ex) {
+      item = ex;
+    }
+    for (Subscription subscription : subscriptions) {
+      subscription.offer(item);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Subscribes to the calibrated providers.
+   * <p>
+   * Calibration failures, and exceptions thrown by the consumer, are ignored.
+   * If a provider has already been calibrated, it is published to the new subscriber.
+   * If the pipeline is closed, the subscription is returned cancelled.
+   *
+   * @param onProvider  the consumer of the calibrated providers
+   * @return the subscription
+   */
+  public Subscription subscribe(Consumer<? super ImmutableLegalEntityDiscountingProvider> onProvider) {
+    return subscribe(onProvider, ex -> { });
+  }
+
+  /**
+   * Subscribes to the calibrated providers and calibration failures.
+   * <p>
+   * An exception thrown by the consumer of the providers is passed to the consumer of the failures.
+   * An exception thrown by the consumer of the failures is rethrown on the executor once the pending items
+   * have been delivered.
+   * If a provider has already been calibrated, it is published to the new subscriber.
+   * If the pipeline is closed, the subscription is returned cancelled.
+   *
+   * @param onProvider  the consumer of the calibrated providers
+   * @param onFailure  the consumer of the calibration failures and of the exceptions thrown by the providers consumer
+   * @return the subscription
+   * @throws RejectedExecutionException if the latest provider cannot be published on the executor
+   */
+  public Subscription subscribe(
+      Consumer<? super ImmutableLegalEntityDiscountingProvider> onProvider,
+      Consumer<? super RuntimeException> onFailure) {
+
+    Subscription subscription = new Subscription(onProvider, onFailure);
+    subscriptions.add(subscription);
+    // checked after adding, so that a concurrent close cannot miss the subscription
+    if (closed) {
+      subscription.cancel();
+      return subscription;
+    }
+    ImmutableLegalEntityDiscountingProvider provider = latest.get();
+    if (provider != null) {
+      subscription.offer(provider);
+    }
+    return subscription;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Closes the pipeline.
+   * <p>
+   * Quote updates received from now on are ignored, a scheduled calibration is skipped
+   * and all the subscriptions are cancelled. A calibration in progress completes, but is not published.
+   * The latest provider remains available. Closing an already closed pipeline has no effect.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    for (Subscription subscription : subscriptions) {
+      subscription.cancel();
+    }
+  }
+
+  /**
+   * Checks if the pipeline has been closed.
+   *
+   * @return true if closed
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public String toString() {
+    return "RepoCurveCalibrationPipeline[valuationDate=" + valuationDate + ", quotes=" + requiredQuoteIds.size() + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A subscription to the calibrated providers.
+   * <p>
+   * The subscription holds at most one pending item, which is replaced when a newer item is published.
+   */
+  public final class Subscription {
+
+    private final Consumer<? super ImmutableLegalEntityDiscountingProvider> onProvider;
+    private final Consumer<? super RuntimeException> onFailure;
+    private final AtomicReference<Object> pending = new AtomicReference<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean cancelled;
+
+    private Subscription(
+        Consumer<? super ImmutableLegalEntityDiscountingProvider> onProvider,
+        Consumer<? super RuntimeException> onFailure) {
+
+      this.onProvider = ArgChecker.notNull(onProvider, "onProvider");
+      this.onFailure = ArgChecker.notNull(onFailure, "onFailure");
+    }
+
+    /**
+     * Cancels the subscription.
+     * <p>
+     * A pending item is discarded. An item being delivered is not interrupted.
+     */
+    public void cancel() {
+      cancelled = true;
+      pending.set(null);
+      subscriptions.remove(this);
+    }
+
+    /**
+     * Checks if the subscription has been cancelled.
+     *
+     * @return true if cancelled
+     */
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    // replaces the pending item, starting delivery if idle
+    private void offer(Object item) {
+      if (cancelled) {
+        return;
+      }
+      pending.set(item);
+      if (draining.compareAndSet(false, true)) {
+        submitDrain();
+      }
+    }
+
+    // submits the delivery, the caller having set the draining flag
+    private void submitDrain() {
+      try {
+        executor.execute(this::drain);
+      } catch (RuntimeException ex) {
+        // nothing is delivering, thus a later offer must be able to submit
+        draining.set(false);
+        throw ex;
+      }
+    }
+
+    // delivers pending items until none remain, rethrowing a failure of the subscriber at the end
+    private void drain() {
+      RuntimeException failure = null;
+      Object item;
+      while (!cancelled && (item = pending.getAndSet(null)) != null) {
+        try {
+          deliver(item);
+        } catch (RuntimeException ex) {
+          // a failing subscriber must not stop later deliveries
+          if (failure == null) {
+            failure = ex;
+          } else if (failure != ex) {
+            failure.addSuppressed(ex);
+          }
+        }
+      }
+      draining.set(false);
+      // an item may have been offered after the last check
+      if (!cancelled && pending.get() != null && draining.compareAndSet(false, true)) {
+        submitDrain();
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+    // delivers an item, passing an exception of the providers consumer to the failures consumer
+    private void deliver(Object item) {
+      if (item instanceof RuntimeException) {
+        onFailure.accept((RuntimeException) item);
+        return;
+      }
+      try {
+        onProvider.accept((ImmutableLegalEntityDiscountingProvider) item);
+      } catch (RuntimeException ex) {
+        onFailure.accept(ex);
+      }
+    }
+  }
+
+}
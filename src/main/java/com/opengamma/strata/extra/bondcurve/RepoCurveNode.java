@@ -30,9 +30,9 @@ import com.google.common.collect.ImmutableSet;
 import com.opengamma.strata.basics.ReferenceData;
 import com.opengamma.strata.data.MarketData;
 import com.opengamma.strata.data.ObservableId;
+import com.opengamma.strata.extra.repo.CompiledRepoConvention;
 import com.opengamma.strata.extra.repo.RepoTemplate;
 import com.opengamma.strata.extra.repo.RepoTrade;
-import com.opengamma.strata.extra.repo.ResolvedRepo;
 import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
 import com.opengamma.strata.market.ValueType;
 import com.opengamma.strata.market.curve.CurveNode;
@@ -48,6 +48,10 @@ import com.opengamma.strata.product.common.BuySell;
  * A curve node whose instrument is a repo.
  * <p>
  * The trade produced by the node will be a BUY for a positive quantity and a SELL for a negative quantity.
+ * <p>
+ * If the reference data holds the compiled form of the convention of the template, the node date
+ * and the start date of the trade are calculated using it, see {@link CompiledRepoConvention}.
+ * The calibrator adds the compiled conventions of the nodes to the reference data.
  */
 @BeanDefinition
 public final class RepoCurveNode
@@ -176,9 +180,7 @@ public final class RepoCurveNode
 
   // calculate the end date
   private LocalDate calculateEnd(LocalDate valuationDate, ReferenceData refData) {
-    RepoTrade trade = template.createTrade(valuationDate, BuySell.BUY, 0d, 0d, refData);
-    ResolvedRepo repo = trade.getProduct().resolve(refData);
-    return repo.getEndDate();
+    return template.calculateAdjustedEndDate(valuationDate, refData);
   }
 
   // calculate the last fixing date
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+import com.opengamma.strata.basics.currency.CurrencyAmount;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.extra.repo.DiscountingRepoProductPricer;
+import com.opengamma.strata.extra.repo.ResolvedRepo;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+
+/**
+ * A cache of the discount factors of the repo curves of a calibrated provider.
+ * <p>
+ * Books typically hold many repos ending on the same few dates. This cache interpolates
+ * each distinct date once per repo curve, subsequent requests being served from the cache.
+ * <p>
+ * The discount factors are keyed by the repo curve index of {@link IndexedLegalEntityDiscountingProvider}
+ * and the epoch day of the date. Each curve has its own {@link EpochDayTable} of primitive keys and values.
+ * The dates known in advance, such as the maturities of a book, may be added using {@link #prefill(Collection)}.
+ * <p>
+ * The cache is tied to the provider, a new cache must be created for each calibrated provider.
+ * See {@link LegalEntityDiscountingProviderPublisher.Generation#getDiscountFactorCache()}.
+ * <p>
+ * This class is thread-safe. Reading a cached discount factor does not lock.
+ */
+public final class RepoDiscountFactorCache {
+
+  /**
+   * The provider.
+   */
+  private final IndexedLegalEntityDiscountingProvider provider;
+  /**
+   * The tables, indexed by repo curve index, null if the index is not a repo curve.
+   */
+  private final DayTable[] tables;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an empty cache for the specified provider.
+   *
+   * @param provider  the provider
+   * @return the cache
+   */
+  public static RepoDiscountFactorCache of(IndexedLegalEntityDiscountingProvider provider) {
+    return new RepoDiscountFactorCache(provider);
+  }
+
+  // restricted constructor
+  private RepoDiscountFactorCache(IndexedLegalEntityDiscountingProvider provider) {
+    this.provider = ArgChecker.notNull(provider, "provider");
+    this.tables = new DayTable[provider.getRepoCurveCount()];
+    for (int i = 0; i < tables.length; i++) {
+      RepoCurveDiscountFactors discountFactors = provider.repoCurveDiscountFactors(i);
+      if (discountFactors != null) {
+        tables[i] = new DayTable(discountFactors);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the provider.
+   *
+   * @return the provider
+   */
+  public IndexedLegalEntityDiscountingProvider getProvider() {
+    return provider;
+  }
+
+  /**
+   * Adds the discount factors of the specified dates to the cache, for every repo curve.
+   *
+   * @param dates  the dates
+   * @return this cache, for chaining
+   */
+  public RepoDiscountFactorCache prefill(Collection<LocalDate> dates) {
+    ArgChecker.notNull(dates, "dates");
+    for (DayTable table : tables) {
+      if (table != null) {
+        for (LocalDate date : dates) {
+          table.discountFactor(date);
+        }
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Gets the discount factor of a repo curve at the specified date.
+   *
+   * @param repoCurveIndex  the index, from {@link IndexedLegalEntityDiscountingProvider#repoCurveIndex}
+   * @param date  the date
+   * @return the discount factor
+   */
+  public double discountFactor(int repoCurveIndex, LocalDate date) {
+    return tables[repoCurveIndex].discountFactor(date);
+  }
+
+  /**
+   * Calculates the present value of a repo product, using the cached discount factors.
+   * <p>
+   * The result is the same as pricing using the discount factors of the repo curve of the product,
+   * see {@link DiscountingRepoProductPricer#presentValue(ResolvedRepo, RepoCurveDiscountFactors)}.
+   *
+   * @param product  the product
+   * @param pricer  the pricer
+   * @return the present value of the product
+   */
+  public CurrencyAmount presentValue(ResolvedRepo product, DiscountingRepoProductPricer pricer) {
+    int index = provider.repoCurveIndex(product.getLegalEntityId(), product.getCurrency());
+    DayTable table = tables[index];
+    return pricer.presentValue(
+        product,
+        provider.getValuationDate(),
+        table.discountFactor(product.getStartDate()),
+        table.discountFactor(product.getEndDate()));
+  }
+
+  /**
+   * Gets the number of cached discount factors, across all the repo curves.
+   *
+   * @return the size
+   */
+  public int size() {
+    int size = 0;
+    for (DayTable table : tables) {
+      if (table != null) {
+        size += table.size();
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "RepoDiscountFactorCache[valuationDate=" + provider.getValuationDate() + ", size=" + size() + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The discount factors of a single curve, keyed by epoch day.
+   * <p>
+   * The table is replaced by a table of twice the capacity when full.
+   * Readers use an optimistic read, retrying under the read lock if a write happened concurrently.
+   */
+  private static final class DayTable {
+    // the discount factors of the curve
+    private final RepoCurveDiscountFactors discountFactors;
+    // the lock
+    private final StampedLock lock = new StampedLock();
+    // the dates and values, replaced when the table grows
+    private volatile Slots slots = new Slots(EpochDayTable.create());
+
+    // restricted constructor
+    private DayTable(RepoCurveDiscountFactors discountFactors) {
+      this.discountFactors = discountFactors;
+    }
+
+    // gets the discount factor, computing it if necessary
+    private double discountFactor(LocalDate date) {
+      int day = EpochDayTable.day(date);
+      long stamp = lock.tryOptimisticRead();
+      Slots current = slots;
+      int index = current.days.find(day);
+      double value = index < 0 ? 0d : current.values[index];
+      if (!lock.validate(stamp)) {
+        stamp = lock.readLock();
+        try {
+          current = slots;
+          index = current.days.find(day);
+          value = index < 0 ? 0d : current.values[index];
+        } finally {
+          lock.unlockRead(stamp);
+        }
+      }
+      if (index >= 0) {
+        return value;
+      }
+      double computed = discountFactors.discountFactor(date);
+      stamp = lock.writeLock();
+      try {
+        put(day, computed);
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+      return computed;
+    }
+
+    // adds an entry, under the write lock
+    private void put(int day, double value) {
+      Slots current = slots;
+      if (current.days.find(day) >= 0) {
+        return;
+      }
+      if (current.days.isFull()) {
+        EpochDayTable grown = current.days.grown();
+        current = new Slots(grown, Arrays.copyOf(current.values, grown.maxSize()));
+        slots = current;
+      }
+      // the value is written before the date is added
+      current.values[current.days.size()] = value;
+      current.days.add(day);
+    }
+
+    // gets the number of entries
+    private int size() {
+      long stamp = lock.readLock();
+      try {
+        return slots.days.size();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+  }
+
+  /**
+   * The dates of a table and their values, indexed by the index of the date.
+   */
+  private static final class Slots {
+    // the dates
+    private final EpochDayTable days;
+    // the discount factors, of the maximum size of the dates
+    private final double[] values;
+
+    // creates the slots
+    private Slots(EpochDayTable days) {
+      this(days, new double[days.maxSize()]);
+    }
+
+    // creates the slots
+    private Slots(EpochDayTable days, double[] values) {
+      this.days = days;
+      this.values = values;
+    }
+  }
+
+}
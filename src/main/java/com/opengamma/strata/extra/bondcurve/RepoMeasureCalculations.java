@@ -5,6 +5,8 @@
  */
 package com.opengamma.strata.extra.bondcurve;
 
+import java.util.List;
+
 import com.opengamma.strata.basics.currency.CurrencyAmount;
 import com.opengamma.strata.basics.currency.MultiCurrencyAmount;
 import com.opengamma.strata.collect.ArgChecker;
@@ -13,9 +15,10 @@ import com.opengamma.strata.data.scenario.DoubleScenarioArray;
 import com.opengamma.strata.data.scenario.MultiCurrencyScenarioArray;
 import com.opengamma.strata.data.scenario.ScenarioArray;
 import com.opengamma.strata.extra.repo.DiscountingRepoTradePricer;
+import com.opengamma.strata.extra.repo.RepoParameterSensitivityAccumulator;
+import com.opengamma.strata.extra.repo.RepoSensitivityAccumulator;
 import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
 import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
-import com.opengamma.strata.market.sensitivity.PointSensitivities;
 import com.opengamma.strata.measure.bond.LegalEntityDiscountingScenarioMarketData;
 import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
 
@@ -40,6 +43,10 @@ final class RepoMeasureCalculations {
    * Pricer for {@link ResolvedRepoTrade}.
    */
   private final DiscountingRepoTradePricer tradePricer;
+  /**
+   * Adjoint calculator for books of {@link ResolvedRepoTrade}.
+   */
+  private final RepoBookSensitivityCalculator bookCalculator = RepoBookSensitivityCalculator.DEFAULT;
 
   /**
    * Creates an instance.
@@ -70,15 +77,42 @@ final class RepoMeasureCalculations {
     return tradePricer.presentValue(trade, discountingProvider);
   }
 
+  // calculates present value of a compressed book for all scenarios
+  MultiCurrencyScenarioArray presentValue(
+      RepoTradeCompression compression,
+      LegalEntityDiscountingScenarioMarketData legalEntityMarketData) {
+
+    return MultiCurrencyScenarioArray.of(
+        legalEntityMarketData.getScenarioCount(),
+        i -> presentValue(compression, legalEntityMarketData.scenario(i).discountingProvider()));
+  }
+
+  // present value of a compressed book for one scenario
+  MultiCurrencyAmount presentValue(
+      RepoTradeCompression compression,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    MultiCurrencyAmount total = MultiCurrencyAmount.empty();
+    for (ResolvedRepoTrade trade : compression.getCompressedTrades()) {
+      total = total.plus(tradePricer.presentValue(trade, discountingProvider));
+    }
+    return total;
+  }
+
   //-------------------------------------------------------------------------
   // calculates calibrated sum PV01 for all scenarios
   MultiCurrencyScenarioArray pv01CalibratedSum(
       ResolvedRepoTrade trade,
       LegalEntityDiscountingScenarioMarketData legalEntityMarketData) {
 
+    RepoSensitivityAccumulator pointSensitivity = new RepoSensitivityAccumulator(2);
+    RepoParameterSensitivityAccumulator parameterSensitivity = new RepoParameterSensitivityAccumulator();
     return MultiCurrencyScenarioArray.of(
         legalEntityMarketData.getScenarioCount(),
-        i -> pv01CalibratedSum(trade, legalEntityMarketData.scenario(i).discountingProvider()));
+        i -> parameterSensitivity(
+            trade, legalEntityMarketData.scenario(i).discountingProvider(), pointSensitivity, parameterSensitivity)
+            .total()
+            .multipliedBy(ONE_BASIS_POINT));
   }
 
   // calibrated sum PV01 for one scenario
@@ -86,8 +120,10 @@ final class RepoMeasureCalculations {
       ResolvedRepoTrade trade,
       LegalEntityDiscountingProvider discountingProvider) {
 
-    PointSensitivities pointSensitivity = tradePricer.presentValueSensitivity(trade, discountingProvider);
-    return discountingProvider.parameterSensitivity(pointSensitivity).total().multipliedBy(ONE_BASIS_POINT);
+    return parameterSensitivity(
+        trade, discountingProvider, new RepoSensitivityAccumulator(2), new RepoParameterSensitivityAccumulator())
+        .total()
+        .multipliedBy(ONE_BASIS_POINT);
   }
 
   //-------------------------------------------------------------------------
@@ -96,9 +132,13 @@ final class RepoMeasureCalculations {
       ResolvedRepoTrade trade,
       LegalEntityDiscountingScenarioMarketData legalEntityMarketData) {
 
+    RepoSensitivityAccumulator pointSensitivity = new RepoSensitivityAccumulator(2);
+    RepoParameterSensitivityAccumulator parameterSensitivity = new RepoParameterSensitivityAccumulator();
     return ScenarioArray.of(
         legalEntityMarketData.getScenarioCount(),
-        i -> pv01CalibratedBucketed(trade, legalEntityMarketData.scenario(i).discountingProvider()));
+        i -> parameterSensitivity(
+            trade, legalEntityMarketData.scenario(i).discountingProvider(), pointSensitivity, parameterSensitivity)
+            .multipliedBy(ONE_BASIS_POINT));
   }
 
   // calibrated bucketed PV01 for one scenario
@@ -106,8 +146,98 @@ final class RepoMeasureCalculations {
       ResolvedRepoTrade trade,
       LegalEntityDiscountingProvider discountingProvider) {
 
-    PointSensitivities pointSensitivity = tradePricer.presentValueSensitivity(trade, discountingProvider);
-    return discountingProvider.parameterSensitivity(pointSensitivity).multipliedBy(ONE_BASIS_POINT);
+    return parameterSensitivity(
+        trade, discountingProvider, new RepoSensitivityAccumulator(2), new RepoParameterSensitivityAccumulator())
+        .multipliedBy(ONE_BASIS_POINT);
+  }
+
+  // calculates calibrated bucketed PV01 of a book of trades for all scenarios
+  ScenarioArray<CurrencyParameterSensitivities> pv01CalibratedBucketed(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingScenarioMarketData legalEntityMarketData) {
+
+    RepoSensitivityAccumulator pointSensitivity = new RepoSensitivityAccumulator(2);
+    RepoParameterSensitivityAccumulator parameterSensitivity = new RepoParameterSensitivityAccumulator();
+    return ScenarioArray.of(
+        legalEntityMarketData.getScenarioCount(),
+        i -> pv01CalibratedBucketed(
+            trades, legalEntityMarketData.scenario(i).discountingProvider(), pointSensitivity, parameterSensitivity));
+  }
+
+  // calibrated bucketed PV01 of a book of trades for one scenario
+  CurrencyParameterSensitivities pv01CalibratedBucketed(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    return pv01CalibratedBucketed(
+        trades, discountingProvider, new RepoSensitivityAccumulator(2), new RepoParameterSensitivityAccumulator());
+  }
+
+  // calculates calibrated bucketed PV01 of a compressed book for all scenarios
+  ScenarioArray<CurrencyParameterSensitivities> pv01CalibratedBucketed(
+      RepoTradeCompression compression,
+      LegalEntityDiscountingScenarioMarketData legalEntityMarketData) {
+
+    return pv01CalibratedBucketed(compression.getCompressedTrades(), legalEntityMarketData);
+  }
+
+  // calibrated bucketed PV01 of a compressed book for one scenario
+  CurrencyParameterSensitivities pv01CalibratedBucketed(
+      RepoTradeCompression compression,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    return pv01CalibratedBucketed(compression.getCompressedTrades(), discountingProvider);
+  }
+
+  // calibrated bucketed PV01 of a book of trades, summed into one array per curve by the reused accumulators
+  private CurrencyParameterSensitivities pv01CalibratedBucketed(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingProvider discountingProvider,
+      RepoSensitivityAccumulator pointSensitivity,
+      RepoParameterSensitivityAccumulator parameterSensitivity) {
+
+    parameterSensitivity.reset();
+    for (ResolvedRepoTrade trade : trades) {
+      pointSensitivity.reset();
+      tradePricer.presentValueSensitivity(trade, discountingProvider, pointSensitivity);
+      parameterSensitivity.addAll(pointSensitivity);
+    }
+    return parameterSensitivity.toCurrencyParameterSensitivities().multipliedBy(ONE_BASIS_POINT);
+  }
+
+  //-------------------------------------------------------------------------
+  // calculates market quote bucketed PV01 of a book of trades for all scenarios
+  ScenarioArray<CurrencyParameterSensitivities> pv01MarketQuoteBucketed(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingScenarioMarketData legalEntityMarketData) {
+
+    return ScenarioArray.of(
+        legalEntityMarketData.getScenarioCount(),
+        i -> pv01MarketQuoteBucketed(trades, legalEntityMarketData.scenario(i).discountingProvider()));
+  }
+
+  // market quote bucketed PV01 of a book of trades for one scenario
+  CurrencyParameterSensitivities pv01MarketQuoteBucketed(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    return bookCalculator.marketQuoteSensitivity(trades, discountingProvider).multipliedBy(ONE_BASIS_POINT);
+  }
+
+  //-------------------------------------------------------------------------
+  // parameter sensitivity of the present value, computed directly from the two zero rate sensitivities
+  // the accumulators are reset, allowing them to be reused for each scenario
+  private CurrencyParameterSensitivities parameterSensitivity(
+      ResolvedRepoTrade trade,
+      LegalEntityDiscountingProvider discountingProvider,
+      RepoSensitivityAccumulator pointSensitivity,
+      RepoParameterSensitivityAccumulator parameterSensitivity) {
+
+    pointSensitivity.reset();
+    parameterSensitivity.reset();
+    tradePricer.presentValueSensitivity(trade, discountingProvider, pointSensitivity);
+    parameterSensitivity.addAll(pointSensitivity);
+    return parameterSensitivity.toCurrencyParameterSensitivities();
   }
 
   //-------------------------------------------------------------------------
@@ -5,6 +5,8 @@
  */
 package com.opengamma.strata.extra.bondcurve;
 
+import java.util.List;
+
 import com.opengamma.strata.basics.currency.CurrencyAmount;
 import com.opengamma.strata.basics.currency.MultiCurrencyAmount;
 import com.opengamma.strata.data.scenario.CurrencyScenarioArray;
@@ -85,6 +87,42 @@ public class RepoTradeCalculations {
     return calc.presentValue(trade, discountingProvider);
   }
 
+  /**
+   * Calculates the present value of a compressed book of trades across one or more scenarios.
+   * <p>
+   * The compressed trades are priced, the result being the total present value of the original trades.
+   * Use {@link RepoTradeCompression#allocatePresentValue} to obtain the present value of an original trade.
+   * 
+   * @param compression  the compressed trades
+   * @param lookup  the lookup used to query the market data
+   * @param marketData  the market data
+   * @return the present value of the book, one entry per scenario
+   */
+  public MultiCurrencyScenarioArray presentValue(
+      RepoTradeCompression compression,
+      LegalEntityDiscountingMarketDataLookup lookup,
+      ScenarioMarketData marketData) {
+
+    return calc.presentValue(compression, lookup.marketDataView(marketData));
+  }
+
+  /**
+   * Calculates the present value of a compressed book of trades for a single set of market data.
+   * <p>
+   * The compressed trades are priced, the result being the total present value of the original trades.
+   * Use {@link RepoTradeCompression#allocatePresentValue} to obtain the present value of an original trade.
+   * 
+   * @param compression  the compressed trades
+   * @param discountingProvider  the market data
+   * @return the present value of the book
+   */
+  public MultiCurrencyAmount presentValue(
+      RepoTradeCompression compression,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    return calc.presentValue(compression, discountingProvider);
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Calculates present value sensitivity across one or more scenarios.
@@ -167,6 +205,141 @@ public class RepoTradeCalculations {
     return calc.pv01CalibratedBucketed(trade, discountingProvider);
   }
 
+  /**
+   * Calculates the present value sensitivity of a book of trades across one or more scenarios.
+   * <p>
+   * This is the sensitivity of the total present value of the trades
+   * to a one basis point shift in the calibrated curves.
+   * The result is provided for each affected curve and currency, bucketed by curve node.
+   * <p>
+   * The sensitivities of the trades are summed directly into one array per curve and scenario,
+   * without creating a sensitivity object for each trade.
+   * Use {@link #pv01CalibratedBucketed(ResolvedRepoTrade, LegalEntityDiscountingMarketDataLookup, ScenarioMarketData)}
+   * to obtain the sensitivity of an individual trade.
+   * 
+   * @param trades  the trades
+   * @param lookup  the lookup used to query the market data
+   * @param marketData  the market data
+   * @return the present value sensitivity of the book, one entry per scenario
+   */
+  public ScenarioArray<CurrencyParameterSensitivities> pv01CalibratedBucketed(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingMarketDataLookup lookup,
+      ScenarioMarketData marketData) {
+
+    return calc.pv01CalibratedBucketed(trades, lookup.marketDataView(marketData));
+  }
+
+  /**
+   * Calculates the present value sensitivity of a book of trades for a single set of market data.
+   * <p>
+   * This is the sensitivity of the total present value of the trades
+   * to a one basis point shift in the calibrated curves.
+   * The result is provided for each affected curve and currency, bucketed by curve node.
+   * <p>
+   * The sensitivities of the trades are summed directly into one array per curve,
+   * without creating a sensitivity object for each trade.
+   * Use {@link #pv01CalibratedBucketed(ResolvedRepoTrade, LegalEntityDiscountingProvider)}
+   * to obtain the sensitivity of an individual trade.
+   * 
+   * @param trades  the trades
+   * @param discountingProvider  the market data
+   * @return the present value sensitivity of the book
+   */
+  public CurrencyParameterSensitivities pv01CalibratedBucketed(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    return calc.pv01CalibratedBucketed(trades, discountingProvider);
+  }
+
+  /**
+   * Calculates the present value sensitivity of a compressed book of trades across one or more scenarios.
+   * <p>
+   * This is the sensitivity of the total present value of the original trades
+   * to a one basis point shift in the calibrated curves, obtained from the compressed trades.
+   * The result is provided for each affected curve and currency, bucketed by curve node.
+   * Use {@link RepoTradeCompression#allocatePv01CalibratedBucketed} to obtain the sensitivity of an original trade.
+   * 
+   * @param compression  the compressed trades
+   * @param lookup  the lookup used to query the market data
+   * @param marketData  the market data
+   * @return the present value sensitivity of the book, one entry per scenario
+   */
+  public ScenarioArray<CurrencyParameterSensitivities> pv01CalibratedBucketed(
+      RepoTradeCompression compression,
+      LegalEntityDiscountingMarketDataLookup lookup,
+      ScenarioMarketData marketData) {
+
+    return calc.pv01CalibratedBucketed(compression, lookup.marketDataView(marketData));
+  }
+
+  /**
+   * Calculates the present value sensitivity of a compressed book of trades for a single set of market data.
+   * <p>
+   * This is the sensitivity of the total present value of the original trades
+   * to a one basis point shift in the calibrated curves, obtained from the compressed trades.
+   * The result is provided for each affected curve and currency, bucketed by curve node.
+   * Use {@link RepoTradeCompression#allocatePv01CalibratedBucketed} to obtain the sensitivity of an original trade.
+   * 
+   * @param compression  the compressed trades
+   * @param discountingProvider  the market data
+   * @return the present value sensitivity of the book
+   */
+  public CurrencyParameterSensitivities pv01CalibratedBucketed(
+      RepoTradeCompression compression,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    return calc.pv01CalibratedBucketed(compression, discountingProvider);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Calculates the market quote sensitivity of a book of trades across one or more scenarios.
+   * <p>
+   * This is the sensitivity of the total present value of the trades
+   * to a one basis point shift in the market quotes used to calibrate the curves.
+   * The result is provided for each affected curve and currency, bucketed by curve node.
+   * <p>
+   * The sensitivity to the curve parameters is calculated in adjoint mode over the whole book
+   * by {@link RepoBookSensitivityCalculator}, then multiplied by the Jacobian stored in the curves by the calibration.
+   *
+   * @param trades  the trades
+   * @param lookup  the lookup used to query the market data
+   * @param marketData  the market data
+   * @return the market quote sensitivity of the book, one entry per scenario
+   * @throws IllegalArgumentException if a curve does not have the Jacobian of its calibration
+   */
+  public ScenarioArray<CurrencyParameterSensitivities> pv01MarketQuoteBucketed(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingMarketDataLookup lookup,
+      ScenarioMarketData marketData) {
+
+    return calc.pv01MarketQuoteBucketed(trades, lookup.marketDataView(marketData));
+  }
+
+  /**
+   * Calculates the market quote sensitivity of a book of trades for a single set of market data.
+   * <p>
+   * This is the sensitivity of the total present value of the trades
+   * to a one basis point shift in the market quotes used to calibrate the curves.
+   * The result is provided for each affected curve and currency, bucketed by curve node.
+   * <p>
+   * The sensitivity to the curve parameters is calculated in adjoint mode over the whole book
+   * by {@link RepoBookSensitivityCalculator}, then multiplied by the Jacobian stored in the curves by the calibration.
+   *
+   * @param trades  the trades
+   * @param discountingProvider  the market data
+   * @return the market quote sensitivity of the book
+   * @throws IllegalArgumentException if a curve does not have the Jacobian of its calibration
+   */
+  public CurrencyParameterSensitivities pv01MarketQuoteBucketed(
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    return calc.pv01MarketQuoteBucketed(trades, discountingProvider);
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Calculates par rate across one or more scenarios.
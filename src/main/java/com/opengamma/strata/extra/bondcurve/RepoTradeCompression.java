@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.basics.currency.CurrencyAmount;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.extra.repo.DiscountingRepoProductPricer;
+import com.opengamma.strata.extra.repo.ResolvedRepo;
+import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
+import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
+import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.TradeInfo;
+
+/**
+ * A book of repo trades compressed into equivalent aggregate trades.
+ * <p>
+ * Trades with the same collateral, legal entity, currency, start date, end date and year fraction
+ * only differ by their notional and rate. Their cash flows are netted into a single compressed trade, whose notional is
+ * the sum of the notionals and whose interest is the sum of the interests.
+ * The present value, PV01 and par rate of the book are therefore obtained by pricing the compressed trades.
+ * The par rate only depends on the dates, thus the par rate of a compressed trade is that of its original trades,
+ * and the par spreads of the whole book are obtained from one par rate per compressed trade.
+ * Trades of opposite directions are compressed separately, thus the notional of a compressed trade is never
+ * zero unless all its trades have a zero notional.
+ * <p>
+ * The results of a compressed trade can be allocated back to each original trade on request.
+ * A trade is equivalent to its share of the compressed trade, {@code notional / compressedNotional},
+ * plus a residual interest paid on the end date, which accounts for the difference between its rate
+ * and the rate of the compressed trade. The allocation is exact, the residual interests summing to zero.
+ */
+public final class RepoTradeCompression {
+
+  /**
+   * One basis point, expressed as a {@code double}.
+   */
+  private static final double ONE_BASIS_POINT = 1.0e-4;
+  /**
+   * The pricer used for the par rates.
+   */
+  private static final DiscountingRepoProductPricer PRICER = DiscountingRepoProductPricer.DEFAULT;
+
+  /**
+   * The original trades.
+   */
+  private final ImmutableList<ResolvedRepoTrade> trades;
+  /**
+   * The compressed trades.
+   */
+  private final ImmutableList<ResolvedRepoTrade> compressedTrades;
+  /**
+   * The index of the compressed trade of each original trade.
+   */
+  private final int[] compressedIndices;
+  /**
+   * The indices of the original trades of each compressed trade.
+   */
+  private final int[][] tradeIndices;
+  /**
+   * The share of the compressed trade of each original trade.
+   */
+  private final double[] weights;
+  /**
+   * The residual interest of each original trade, paid on the end date.
+   */
+  private final double[] residualInterests;
+  /**
+   * The index of the original trades, keyed by trade identifier.
+   */
+  private final ImmutableMap<StandardId, Integer> tradeIdIndices;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Compresses the specified trades.
+   *
+   * @param trades  the trades
+   * @return the compressed book
+   */
+  public static RepoTradeCompression of(List<ResolvedRepoTrade> trades) {
+    return new RepoTradeCompression(trades);
+  }
+
+  // restricted constructor
+  private RepoTradeCompression(List<ResolvedRepoTrade> trades) {
+    ArgChecker.noNulls(trades, "trades");
+    this.trades = ImmutableList.copyOf(trades);
+    int tradeCount = trades.size();
+    // group the trades, in order of first appearance
+    Map<Bucket, List<Integer>> buckets = new LinkedHashMap<>();
+    Map<StandardId, Integer> ids = new HashMap<>();
+    for (int i = 0; i < tradeCount; i++) {
+      ResolvedRepoTrade trade = trades.get(i);
+      buckets.computeIfAbsent(new Bucket(trade.getProduct()), k -> new ArrayList<>()).add(i);
+      Optional<StandardId> id = trade.getInfo().getId();
+      if (id.isPresent() && ids.putIfAbsent(id.get(), i) != null) {
+        throw new IllegalArgumentException(Messages.format("Duplicate trade identifier: {}", id.get()));
+      }
+    }
+    this.tradeIdIndices = ImmutableMap.copyOf(ids);
+    // net each group into a single trade
+    this.compressedIndices = new int[tradeCount];
+    this.tradeIndices = new int[buckets.size()][];
+    this.weights = new double[tradeCount];
+    this.residualInterests = new double[tradeCount];
+    ImmutableList.Builder<ResolvedRepoTrade> compressed = ImmutableList.builder();
+    int compressedIndex = 0;
+    for (List<Integer> bucket : buckets.values()) {
+      ResolvedRepo first = trades.get(bucket.get(0)).getProduct();
+      double notional = 0d;
+      double rateNotional = 0d;
+      for (int index : bucket) {
+        ResolvedRepo product = trades.get(index).getProduct();
+        notional += product.getNotional();
+        rateNotional += product.getRate() * product.getNotional();
+      }
+      double rate = notional == 0d ? first.getRate() : rateNotional / notional;
+      ResolvedRepo product = ResolvedRepo.builder()
+          .securityIds(first.getSecurityIds())
+          .legalEntityId(first.getLegalEntityId())
+          .currency(first.getCurrency())
+          .notional(notional)
+          .startDate(first.getStartDate())
+          .endDate(first.getEndDate())
+          .yearFraction(first.getYearFraction())
+          .rate(rate)
+          .build();
+      compressed.add(ResolvedRepoTrade.of(TradeInfo.empty(), product));
+      int[] indices = new int[bucket.size()];
+      for (int j = 0; j < indices.length; j++) {
+        int index = bucket.get(j);
+        ResolvedRepo original = trades.get(index).getProduct();
+        indices[j] = index;
+        compressedIndices[index] = compressedIndex;
+        weights[index] = notional == 0d ? 0d : original.getNotional() / notional;
+        residualInterests[index] = original.getNotional() * original.getYearFraction() * (original.getRate() - rate);
+      }
+      tradeIndices[compressedIndex] = indices;
+      compressedIndex++;
+    }
+    this.compressedTrades = compressed.build();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the original trades.
+   *
+   * @return the trades
+   */
+  public ImmutableList<ResolvedRepoTrade> getTrades() {
+    return trades;
+  }
+
+  /**
+   * Gets the compressed trades.
+   * <p>
+   * The compressed trades are in the order of the first original trade of each.
+   *
+   * @return the compressed trades
+   */
+  public ImmutableList<ResolvedRepoTrade> getCompressedTrades() {
+    return compressedTrades;
+  }
+
+  /**
+   * Gets the index of the compressed trade of an original trade.
+   *
+   * @param tradeIndex  the index of the original trade
+   * @return the index of the compressed trade
+   */
+  public int compressedIndex(int tradeIndex) {
+    return compressedIndices[tradeIndex];
+  }
+
+  /**
+   * Gets the indices of the original trades of a compressed trade.
+   *
+   * @param compressedIndex  the index of the compressed trade
+   * @return the indices of the original trades
+   */
+  public ImmutableList<Integer> tradeIndices(int compressedIndex) {
+    ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+    for (int index : tradeIndices[compressedIndex]) {
+      builder.add(index);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Gets the identifiers of the original trades of a compressed trade.
+   * <p>
+   * The trades without an identifier are omitted.
+   *
+   * @param compressedIndex  the index of the compressed trade
+   * @return the identifiers of the original trades
+   */
+  public ImmutableList<StandardId> tradeIds(int compressedIndex) {
+    ImmutableList.Builder<StandardId> builder = ImmutableList.builder();
+    for (int index : tradeIndices[compressedIndex]) {
+      trades.get(index).getInfo().getId().ifPresent(builder::add);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Finds the index of the original trade with the specified identifier.
+   *
+   * @param tradeId  the trade identifier
+   * @return the index of the original trade, empty if not found
+   */
+  public Optional<Integer> findTradeIndex(StandardId tradeId) {
+    return Optional.ofNullable(tradeIdIndices.get(tradeId));
+  }
+
+  /**
+   * Gets the share of the compressed trade held by an original trade.
+   * <p>
+   * This is the ratio of the notional of the trade to the notional of the compressed trade.
+   *
+   * @param tradeIndex  the index of the original trade
+   * @return the weight
+   */
+  public double weight(int tradeIndex) {
+    return weights[tradeIndex];
+  }
+
+  /**
+   * Gets the residual interest of an original trade, paid on the end date.
+   * <p>
+   * This is {@code notional * yearFraction * (rate - compressedRate)}.
+   *
+   * @param tradeIndex  the index of the original trade
+   * @return the residual interest
+   */
+  public double residualInterest(int tradeIndex) {
+    return residualInterests[tradeIndex];
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Allocates the present value of a compressed trade to one of its original trades.
+   *
+   * @param tradeIndex  the index of the original trade
+   * @param compressedPresentValue  the present value of the compressed trade of the original trade
+   * @param discountingProvider  the market data used to price the compressed trade
+   * @return the present value of the original trade
+   */
+  public CurrencyAmount allocatePresentValue(
+      int tradeIndex,
+      CurrencyAmount compressedPresentValue,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    ResolvedRepo product = trades.get(tradeIndex).getProduct();
+    double pv = weights[tradeIndex] * compressedPresentValue.getAmount();
+    if (!discountingProvider.getValuationDate().isAfter(product.getEndDate())) {
+      double dfEnd = repoCurve(product, discountingProvider).discountFactor(product.getEndDate());
+      pv += residualInterests[tradeIndex] * dfEnd;
+    }
+    return CurrencyAmount.of(product.getCurrency(), pv);
+  }
+
+  /**
+   * Allocates the bucketed PV01 of a compressed trade to one of its original trades.
+   *
+   * @param tradeIndex  the index of the original trade
+   * @param compressedPv01  the bucketed PV01 of the compressed trade of the original trade
+   * @param discountingProvider  the market data used to price the compressed trade
+   * @return the bucketed PV01 of the original trade
+   */
+  public CurrencyParameterSensitivities allocatePv01CalibratedBucketed(
+      int tradeIndex,
+      CurrencyParameterSensitivities compressedPv01,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    ResolvedRepo product = trades.get(tradeIndex).getProduct();
+    CurrencyParameterSensitivities allocated = compressedPv01.multipliedBy(weights[tradeIndex]);
+    if (discountingProvider.getValuationDate().isAfter(product.getEndDate())) {
+      return allocated;
+    }
+    CurrencyParameterSensitivities residual = discountingProvider.parameterSensitivity(
+        repoCurve(product, discountingProvider).zeroRatePointSensitivity(product.getEndDate())
+            .multipliedBy(residualInterests[tradeIndex])
+            .build());
+    return allocated.combinedWith(residual.multipliedBy(ONE_BASIS_POINT));
+  }
+
+  /**
+   * Allocates the par rate of a compressed trade to the par spread of one of its original trades.
+   * <p>
+   * The par rate only depends on the dates, thus it is the same for the compressed trade and its original trades.
+   *
+   * @param tradeIndex  the index of the original trade
+   * @param compressedParRate  the par rate of the compressed trade of the original trade
+   * @return the par spread of the original trade
+   */
+  public double allocateParSpread(int tradeIndex, double compressedParRate) {
+    return compressedParRate - trades.get(tradeIndex).getProduct().getRate();
+  }
+
+  /**
+   * Calculates the par rate of each compressed trade.
+   *
+   * @param discountingProvider  the market data
+   * @return the par rates, in the order of the compressed trades
+   */
+  public DoubleArray parRates(LegalEntityDiscountingProvider discountingProvider) {
+    return DoubleArray.of(
+        compressedTrades.size(), i -> PRICER.parRate(compressedTrades.get(i).getProduct(), discountingProvider));
+  }
+
+  /**
+   * Calculates the par spread of each original trade.
+   * <p>
+   * The par rate is calculated once for each compressed trade and allocated to its original trades.
+   *
+   * @param discountingProvider  the market data
+   * @return the par spreads, in the order of the original trades
+   */
+  public DoubleArray parSpreads(LegalEntityDiscountingProvider discountingProvider) {
+    DoubleArray parRates = parRates(discountingProvider);
+    return DoubleArray.of(trades.size(), i -> allocateParSpread(i, parRates.get(compressedIndices[i])));
+  }
+
+  // the discount factors of the repo curve of the product
+  private static RepoCurveDiscountFactors repoCurve(
+      ResolvedRepo product,
+      LegalEntityDiscountingProvider discountingProvider) {
+
+    return discountingProvider.repoCurveDiscountFactors(product.getLegalEntityId(), product.getCurrency());
+  }
+
+  @Override
+  public String toString() {
+    return Messages.format(
+        "RepoTradeCompression[trades={}, compressedTrades={}]", trades.size(), compressedTrades.size());
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The key of the trades compressed together.
+   */
+  private static final class Bucket {
+    // the collateral
+    private final ImmutableList<SecurityId> securityIds;
+    // the legal entity
+    private final LegalEntityId legalEntityId;
+    // the currency
+    private final Currency currency;
+    // the start date
+    private final LocalDate startDate;
+    // the end date
+    private final LocalDate endDate;
+    // the year fraction
+    private final double yearFraction;
+    // whether the notional is negative
+    private final boolean negative;
+
+    // creates the key of the product
+    private Bucket(ResolvedRepo product) {
+      this.securityIds = product.getSecurityIds();
+      this.legalEntityId = product.getLegalEntityId();
+      this.currency = product.getCurrency();
+      this.startDate = product.getStartDate();
+      this.endDate = product.getEndDate();
+      this.yearFraction = product.getYearFraction();
+      this.negative = product.getNotional() < 0d;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (obj instanceof Bucket) {
+        Bucket other = (Bucket) obj;
+        return securityIds.equals(other.securityIds) &&
+            legalEntityId.equals(other.legalEntityId) &&
+            currency.equals(other.currency) &&
+            startDate.equals(other.startDate) &&
+            endDate.equals(other.endDate) &&
+            Double.compare(yearFraction, other.yearFraction) == 0 &&
+            negative == other.negative;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(securityIds, legalEntityId, currency, startDate, endDate, yearFraction, negative);
+    }
+  }
+
+}
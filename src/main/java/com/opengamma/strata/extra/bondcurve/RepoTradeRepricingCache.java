@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.basics.currency.CurrencyAmount;
+import com.opengamma.strata.basics.currency.MultiCurrencyAmount;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.extra.repo.DiscountingRepoProductPricer;
+import com.opengamma.strata.extra.repo.ResolvedRepo;
+import com.opengamma.strata.extra.repo.RepoSensitivityAccumulator;
+import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.market.sensitivity.PointSensitivity;
+import com.opengamma.strata.pricer.ZeroRateSensitivity;
+import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+import com.opengamma.strata.pricer.bond.RepoCurveZeroRateSensitivity;
+import com.opengamma.strata.product.LegalEntityId;
+
+/**
+ * Incremental repricing of a book of repo trades.
+ * <p>
+ * The trades are indexed by the repo curve they depend on, keyed by repo group and currency.
+ * The present value and point sensitivity of each trade are stored.
+ * When the provider is updated, only the trades whose repo curve has changed are repriced,
+ * and the book-level aggregates are updated by the difference with the stored values.
+ * <p>
+ * The sensitivity of the book is held as one mutable entry per repo curve and date.
+ * Repricing a trade subtracts its previous start and end entries and adds the new ones,
+ * thus the cost of an update depends only on the number of trades repriced.
+ * <p>
+ * This class is mutable and not thread-safe.
+ */
+public final class RepoTradeRepricingCache {
+
+  /**
+   * The pricer.
+   */
+  private final DiscountingRepoProductPricer pricer;
+  /**
+   * The trades.
+   */
+  private final ImmutableList<ResolvedRepoTrade> trades;
+  /**
+   * The trade indices, keyed by legal entity and currency.
+   */
+  private final ImmutableMap<Pair<LegalEntityId, Currency>, int[]> tradesByIssuer;
+  /**
+   * The repo curve used for each legal entity and currency.
+   */
+  private final Map<Pair<LegalEntityId, Currency>, RepoCurveDiscountFactors> issuerCurves = new HashMap<>();
+  /**
+   * The trade indices, keyed by the repo curve.
+   */
+  private final Map<Pair<RepoGroup, Currency>, int[]> tradesByCurve = new LinkedHashMap<>();
+  /**
+   * The present value of each trade.
+   */
+  private final double[] presentValues;
+  /**
+   * The repo curve each trade was last priced against, null if not yet priced.
+   */
+  private final RepoCurveDiscountFactors[] tradeCurves;
+  /**
+   * The zero rate sensitivity at the start date of each trade.
+   */
+  private final double[] startSensitivities;
+  /**
+   * The zero rate sensitivity at the end date of each trade.
+   */
+  private final double[] endSensitivities;
+  /**
+   * The year fraction of the start date of each trade.
+   */
+  private final double[] startYearFractions;
+  /**
+   * The year fraction of the end date of each trade.
+   */
+  private final double[] endYearFractions;
+  /**
+   * The accumulator used when repricing a trade.
+   */
+  private final RepoSensitivityAccumulator accumulator = new RepoSensitivityAccumulator(2);
+  /**
+   * The present value of the book, by currency.
+   */
+  private final Map<Currency, Double> bookPresentValue = new LinkedHashMap<>();
+  /**
+   * The present value sensitivity of the book, keyed by repo curve and then by date.
+   */
+  private final Map<Pair<RepoGroup, Currency>, Map<LocalDate, BookPoint>> bookSensitivity = new LinkedHashMap<>();
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates a cache, pricing all the trades against the provider.
+   *
+   * @param trades  the trades
+   * @param provider  the initial provider
+   * @return the cache
+   */
+  public static RepoTradeRepricingCache of(List<ResolvedRepoTrade> trades, LegalEntityDiscountingProvider provider) {
+    return of(DiscountingRepoProductPricer.DEFAULT, trades, provider);
+  }
+
+  /**
+   * Creates a cache using the specified pricer, pricing all the trades against the provider.
+   *
+   * @param pricer  the pricer
+   * @param trades  the trades
+   * @param provider  the initial provider
+   * @return the cache
+   */
+  public static RepoTradeRepricingCache of(
+      DiscountingRepoProductPricer pricer,
+      List<ResolvedRepoTrade> trades,
+      LegalEntityDiscountingProvider provider) {
+
+    RepoTradeRepricingCache cache = new RepoTradeRepricingCache(pricer, trades);
+    cache.update(provider);
+    return cache;
+  }
+
+  // restricted constructor
+  private RepoTradeRepricingCache(DiscountingRepoProductPricer pricer, List<ResolvedRepoTrade> trades) {
+    this.pricer = ArgChecker.notNull(pricer, "pricer");
+    this.trades = ImmutableList.copyOf(ArgChecker.notNull(trades, "trades"));
+    Map<Pair<LegalEntityId, Currency>, List<Integer>> byIssuer = new LinkedHashMap<>();
+    for (int i = 0; i < this.trades.size(); i++) {
+      ResolvedRepo product = this.trades.get(i).getProduct();
+      byIssuer.computeIfAbsent(Pair.of(product.getLegalEntityId(), product.getCurrency()), k -> new ArrayList<>())
+          .add(i);
+    }
+    ImmutableMap.Builder<Pair<LegalEntityId, Currency>, int[]> builder = ImmutableMap.builder();
+    for (Entry<Pair<LegalEntityId, Currency>, List<Integer>> entry : byIssuer.entrySet()) {
+      builder.put(entry.getKey(), Ints.toArray(entry.getValue()));
+    }
+    this.tradesByIssuer = builder.build();
+    int size = this.trades.size();
+    this.presentValues = new double[size];
+    this.tradeCurves = new RepoCurveDiscountFactors[size];
+    this.startSensitivities = new double[size];
+    this.endSensitivities = new double[size];
+    this.startYearFractions = new double[size];
+    this.endYearFractions = new double[size];
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Updates the cache with a new provider.
+   * <p>
+   * Only the trades whose repo curve differs from the previous provider are repriced.
+   * A curve is considered to differ if the repo group or the discount factors differ.
+   * The provider must have the same valuation date as the previous provider.
+   *
+   * @param provider  the new provider
+   * @return the number of trades repriced
+   */
+  public int update(LegalEntityDiscountingProvider provider) {
+    ArgChecker.notNull(provider, "provider");
+    int repriced = 0;
+    Map<Pair<RepoGroup, Currency>, List<int[]>> curveTrades = new LinkedHashMap<>();
+    for (Entry<Pair<LegalEntityId, Currency>, int[]> entry : tradesByIssuer.entrySet()) {
+      Pair<LegalEntityId, Currency> issuerKey = entry.getKey();
+      RepoCurveDiscountFactors curve = provider.repoCurveDiscountFactors(issuerKey.getFirst(), issuerKey.getSecond());
+      curveTrades.computeIfAbsent(Pair.of(curve.getRepoGroup(), issuerKey.getSecond()), k -> new ArrayList<>())
+          .add(entry.getValue());
+      RepoCurveDiscountFactors previous = issuerCurves.put(issuerKey, curve);
+      if (!curve.equals(previous)) {
+        for (int index : entry.getValue()) {
+          reprice(index, curve);
+        }
+        repriced += entry.getValue().length;
+      }
+    }
+    tradesByCurve.clear();
+    for (Entry<Pair<RepoGroup, Currency>, List<int[]>> entry : curveTrades.entrySet()) {
+      tradesByCurve.put(entry.getKey(), Ints.concat(entry.getValue().toArray(new int[0][])));
+    }
+    return repriced;
+  }
+
+  // reprices a single trade, applying the difference to the book
+  private void reprice(int index, RepoCurveDiscountFactors curve) {
+    ResolvedRepo product = trades.get(index).getProduct();
+    double pv = pricer.presentValue(product, curve).getAmount();
+    bookPresentValue.merge(product.getCurrency(), pv - presentValues[index], Double::sum);
+    presentValues[index] = pv;
+    // the accumulator receives the start entry followed by the end entry, or nothing once the trade has ended
+    accumulator.reset();
+    pricer.presentValueSensitivity(product, curve, accumulator);
+    RepoCurveDiscountFactors previous = tradeCurves[index];
+    if (previous != null) {
+      addToBook(previous, product.getStartDate(), startYearFractions[index], -startSensitivities[index], -1);
+      addToBook(previous, product.getEndDate(), endYearFractions[index], -endSensitivities[index], -1);
+    }
+    tradeCurves[index] = curve;
+    if (accumulator.size() == 0) {
+      // an ended trade has no sensitivity, its points are kept with a zero sensitivity
+      startYearFractions[index] = curve.getDiscountFactors().relativeYearFraction(product.getStartDate());
+      startSensitivities[index] = 0d;
+      endYearFractions[index] = curve.getDiscountFactors().relativeYearFraction(product.getEndDate());
+      endSensitivities[index] = 0d;
+    } else {
+      startYearFractions[index] = accumulator.getYearFraction(0);
+      startSensitivities[index] = accumulator.getSensitivity(0);
+      endYearFractions[index] = accumulator.getYearFraction(1);
+      endSensitivities[index] = accumulator.getSensitivity(1);
+    }
+    addToBook(curve, product.getStartDate(), startYearFractions[index], startSensitivities[index], 1);
+    addToBook(curve, product.getEndDate(), endYearFractions[index], endSensitivities[index], 1);
+  }
+
+  // adds an entry to the book sensitivity, removing the point once no trade refers to it
+  private void addToBook(
+      RepoCurveDiscountFactors curve,
+      LocalDate date,
+      double yearFraction,
+      double sensitivity,
+      int count) {
+
+    Pair<RepoGroup, Currency> curveKey = Pair.of(curve.getRepoGroup(), curve.getCurrency());
+    Map<LocalDate, BookPoint> points = bookSensitivity.computeIfAbsent(curveKey, k -> new HashMap<>());
+    BookPoint point = points.computeIfAbsent(date, k -> new BookPoint());
+    point.yearFraction = yearFraction;
+    point.sensitivity += sensitivity;
+    point.count += count;
+    if (point.count == 0) {
+      points.remove(date);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the trades.
+   *
+   * @return the trades
+   */
+  public ImmutableList<ResolvedRepoTrade> getTrades() {
+    return trades;
+  }
+
+  /**
+   * Gets the indices of the trades that depend on each repo curve.
+   * <p>
+   * The indices refer to the list of trades.
+   *
+   * @return the trade indices, keyed by repo group and currency
+   */
+  public ImmutableMap<Pair<RepoGroup, Currency>, ImmutableList<Integer>> getTradeIndicesByCurve() {
+    ImmutableMap.Builder<Pair<RepoGroup, Currency>, ImmutableList<Integer>> builder = ImmutableMap.builder();
+    for (Entry<Pair<RepoGroup, Currency>, int[]> entry : tradesByCurve.entrySet()) {
+      builder.put(entry.getKey(), ImmutableList.copyOf(Ints.asList(entry.getValue())));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Gets the stored present value of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the present value
+   */
+  public CurrencyAmount presentValue(int index) {
+    return CurrencyAmount.of(trades.get(index).getProduct().getCurrency(), presentValues[index]);
+  }
+
+  /**
+   * Gets the stored present value sensitivity of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the point sensitivity
+   */
+  public PointSensitivities presentValueSensitivity(int index) {
+    RepoGroup repoGroup = tradeCurves[index].getRepoGroup();
+    Currency currency = tradeCurves[index].getCurrency();
+    return PointSensitivities.of(
+        point(repoGroup, currency, startYearFractions[index], startSensitivities[index]),
+        point(repoGroup, currency, endYearFractions[index], endSensitivities[index]));
+  }
+
+  /**
+   * Gets the present value of the book.
+   *
+   * @return the present value, by currency
+   */
+  public MultiCurrencyAmount getPresentValue() {
+    return bookPresentValue.entrySet().stream()
+        .map(entry -> CurrencyAmount.of(entry.getKey(), entry.getValue()))
+        .collect(MultiCurrencyAmount.toMultiCurrencyAmount());
+  }
+
+  /**
+   * Gets the present value sensitivity of the book.
+   * <p>
+   * The result is normalized, with one sensitivity for each repo curve and date.
+   *
+   * @return the point sensitivity
+   */
+  public PointSensitivities getPresentValueSensitivity() {
+    List<PointSensitivity> points = new ArrayList<>();
+    for (Entry<Pair<RepoGroup, Currency>, Map<LocalDate, BookPoint>> entry : bookSensitivity.entrySet()) {
+      RepoGroup repoGroup = entry.getKey().getFirst();
+      Currency currency = entry.getKey().getSecond();
+      for (BookPoint point : entry.getValue().values()) {
+        points.add(point(repoGroup, currency, point.yearFraction, point.sensitivity));
+      }
+    }
+    return PointSensitivities.of(points).normalized();
+  }
+
+  // creates a zero rate sensitivity to the repo curve
+  private static PointSensitivity point(
+      RepoGroup repoGroup,
+      Currency currency,
+      double yearFraction,
+      double sensitivity) {
+
+    return RepoCurveZeroRateSensitivity.of(ZeroRateSensitivity.of(currency, yearFraction, sensitivity), repoGroup);
+  }
+
+  @Override
+  public String toString() {
+    return "RepoTradeRepricingCache[trades=" + trades.size() + ", curves=" + tradesByCurve.size() + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The sensitivity of the book to the zero rate of a repo curve at a date.
+   */
+  private static final class BookPoint {
+    // the year fraction of the date
+    private double yearFraction;
+    // the sum of the sensitivities of the trades
+    private double sensitivity;
+    // the number of trade entries at the date
+    private int count;
+  }
+
+}
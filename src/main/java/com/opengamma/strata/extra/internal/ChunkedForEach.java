@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+
+import com.opengamma.strata.collect.ArgChecker;
+
+/**
+ * Applies an action to each index of a range, in parallel chunks if the range is large enough.
+ * <p>
+ * Below the threshold size, the indices are processed in order on the calling thread.
+ * At or above the threshold, the indices are split into contiguous chunks, at most one per unit of parallelism,
+ * which are processed using the executor, the first chunk being processed by the calling thread.
+ * The call returns once all the chunks are complete. An exception thrown by the action is rethrown
+ * to the caller unwrapped, the other chunks still running to completion.
+ * <p>
+ * The action must be safe to call from several threads at once, typically writing its result
+ * at its own index of an array.
+ * <p>
+ * This class is shared by the repo trade resolver and the curve calibration.
+ * It is internal to the library and not part of the public API.
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+public final class ChunkedForEach {
+
+  /**
+   * The instance processing all the indices on the calling thread.
+   */
+  public static final ChunkedForEach SEQUENTIAL = new ChunkedForEach(Integer.MAX_VALUE, null, 1);
+
+  /**
+   * The minimum size for the parallel processing.
+   */
+  private final int threshold;
+  /**
+   * The executor, null if sequential.
+   */
+  private final Executor executor;
+  /**
+   * The maximum number of chunks.
+   */
+  private final int parallelism;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance processing the indices in parallel at or above a threshold.
+   * <p>
+   * The number of chunks is the number of available processors.
+   *
+   * @param threshold  the minimum size for the parallel processing
+   * @param executor  the executor used to process the chunks
+   * @return the instance
+   */
+  public static ChunkedForEach of(int threshold, Executor executor) {
+    return of(threshold, executor, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Obtains an instance processing the indices in parallel at or above a threshold, with a maximum number of chunks.
+   *
+   * @param threshold  the minimum size for the parallel processing
+   * @param executor  the executor used to process the chunks
+   * @param parallelism  the maximum number of chunks
+   * @return the instance
+   */
+  public static ChunkedForEach of(int threshold, Executor executor, int parallelism) {
+    ArgChecker.notNegativeOrZero(threshold, "threshold");
+    ArgChecker.notNull(executor, "executor");
+    ArgChecker.notNegativeOrZero(parallelism, "parallelism");
+    return new ChunkedForEach(threshold, executor, parallelism);
+  }
+
+  // restricted constructor
+  private ChunkedForEach(int threshold, Executor executor, int parallelism) {
+    this.threshold = threshold;
+    this.executor = executor;
+    this.parallelism = parallelism;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the minimum size for the parallel processing.
+   *
+   * @return the threshold
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Gets the maximum number of chunks.
+   *
+   * @return the parallelism
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Checks if the indices can be processed in parallel.
+   *
+   * @return true if an executor is used above the threshold
+   */
+  public boolean isParallel() {
+    return executor != null;
+  }
+
+  /**
+   * Returns an instance with a different threshold, using the same executor and maximum number of chunks.
+   * <p>
+   * The sequential instance is returned unchanged.
+   *
+   * @param threshold  the minimum size for the parallel processing
+   * @return the instance
+   */
+  public ChunkedForEach withThreshold(int threshold) {
+    ArgChecker.notNegativeOrZero(threshold, "threshold");
+    return executor == null ? this : new ChunkedForEach(threshold, executor, parallelism);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Applies the action to each index from zero inclusive to the size exclusive.
+   *
+   * @param size  the number of indices
+   * @param action  the action applied to each index
+   */
+  public void forEach(int size, IntConsumer action) {
+    int chunkCount = Math.min(size, parallelism);
+    if (executor == null || size < threshold || chunkCount < 2) {
+      run(0, size, action);
+      return;
+    }
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[chunkCount - 1];
+    for (int c = 1; c < chunkCount; c++) {
+      int from = (int) ((long) c * size / chunkCount);
+      int to = (int) ((long) (c + 1) * size / chunkCount);
+      futures[c - 1] = CompletableFuture.runAsync(() -> run(from, to, action), executor);
+    }
+    try {
+      run(0, size / chunkCount, action);
+    } finally {
+      join(futures);
+    }
+  }
+
+  // applies the action to a range of indices
+  private static void run(int from, int to, IntConsumer action) {
+    for (int i = from; i < to; i++) {
+      action.accept(i);
+    }
+  }
+
+  // waits for the chunks, rethrowing the cause of a failure
+  private static void join(CompletableFuture<?>[] futures) {
+    try {
+      CompletableFuture.allOf(futures).join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      if (ex.getCause() instanceof Error) {
+        throw (Error) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return executor == null ?
+        "ChunkedForEach[sequential]" :
+        "ChunkedForEach[threshold=" + threshold + ", parallelism=" + parallelism + "]";
+  }
+
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.cache.CacheBuilder;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.ReferenceDataId;
+import com.opengamma.strata.basics.ReferenceDataNotFoundException;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.basics.date.BusinessDayConvention;
+import com.opengamma.strata.basics.date.BusinessDayConventions;
+import com.opengamma.strata.basics.date.DateAdjuster;
+import com.opengamma.strata.basics.date.DaysAdjustment;
+import com.opengamma.strata.basics.date.HolidayCalendar;
+import com.opengamma.strata.basics.date.Tenor;
+import com.opengamma.strata.collect.ArgChecker;
+
+/**
+ * A repo convention compiled against reference data.
+ * <p>
+ * Calculating the spot date of a {@link RepoConvention} resolves the spot date offset against the reference data,
+ * then walks the holiday calendar. When the dates of many trades or nodes are calculated with the same convention,
+ * the compiled form resolves the spot date offset and the business day adjustment once.
+ * Each holiday calendar is held as a bitset of business days, thus shifting and adjusting a date
+ * are bit operations on the words of the bitset.
+ * <p>
+ * The bitsets cover the dates from 1950 to 2149. A date outside this range, or a business day convention
+ * other than 'NoAdjust', 'Following', 'ModifiedFollowing', 'Preceding' and 'ModifiedPreceding',
+ * is handled by the adjusters resolved from the reference data, giving the same result.
+ * <p>
+ * The bitset of a holiday calendar is built once and shared by all the compiled conventions using the calendar.
+ * A bounded number of calendars is retained.
+ * <p>
+ * The compiled form is created by {@link #of(ImmutableRepoConvention, ReferenceData)} and held by the caller,
+ * or added to the reference data using {@link #compiledReferenceData(Collection, ReferenceData)}.
+ * In the latter case, the methods of {@link RepoConvention} and {@link RepoTemplate} taking the reference data
+ * use the compiled form, thus the trades and curve nodes created from the same conventions share it.
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+public final class CompiledRepoConvention {
+
+  /**
+   * The first date covered by the bitsets.
+   */
+  private static final LocalDate FIRST_DATE = LocalDate.of(1950, 1, 1);
+  /**
+   * The last date covered by the bitsets.
+   */
+  private static final LocalDate LAST_DATE = LocalDate.of(2149, 12, 31);
+  /**
+   * The epoch day of the first date.
+   */
+  private static final long FIRST_EPOCH_DAY = FIRST_DATE.toEpochDay();
+  /**
+   * The number of dates covered by the bitsets.
+   */
+  private static final int DATE_COUNT = (int) (LAST_DATE.toEpochDay() - FIRST_EPOCH_DAY + 1);
+  /**
+   * The maximum number of holiday calendars whose business days are retained.
+   */
+  private static final int CALENDAR_CACHE_SIZE = 64;
+  /**
+   * The business days of each holiday calendar, shared by the compiled conventions.
+   */
+  private static final ConcurrentMap<HolidayCalendar, BusinessDays> BUSINESS_DAYS =
+      CacheBuilder.newBuilder().maximumSize(CALENDAR_CACHE_SIZE).<HolidayCalendar, BusinessDays>build().asMap();
+
+  /**
+   * The convention.
+   */
+  private final ImmutableRepoConvention convention;
+  /**
+   * The business days used to shift the trade date.
+   */
+  private final BusinessDays spotCalendar;
+  /**
+   * The number of business days of the spot date offset.
+   */
+  private final int spotDays;
+  /**
+   * The adjustment applied after shifting the trade date.
+   */
+  private final Adjustment spotAdjustment;
+  /**
+   * The adjustment applied to the start and end date.
+   */
+  private final Adjustment adjustment;
+  /**
+   * The spot date offset, resolved.
+   */
+  private final DateAdjuster spotAdjuster;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Compiles a convention against reference data.
+   * <p>
+   * The holiday calendars are resolved by this call, their bitsets being shared with the previous calls,
+   * thus the result should be held by the caller rather than compiled again for each date.
+   *
+   * @param convention  the convention
+   * @param refData  the reference data, used to resolve the holiday calendars
+   * @return the compiled convention
+   * @throws ReferenceDataNotFoundException if a holiday calendar cannot be resolved in the reference data
+   */
+  public static CompiledRepoConvention of(ImmutableRepoConvention convention, ReferenceData refData) {
+    ArgChecker.notNull(convention, "convention");
+    ArgChecker.notNull(refData, "refData");
+    return new CompiledRepoConvention(convention, refData);
+  }
+
+  /**
+   * Obtains reference data holding the compiled form of each convention, combined with the reference data.
+   * <p>
+   * Each {@link ImmutableRepoConvention} is compiled against the reference data, unless its compiled form
+   * is already present. The result should be used in place of the reference data, notably when calibrating
+   * curves with {@code RepoCurveNode} nodes, so that the dates of the trades and nodes are calculated
+   * using the compiled forms. The compiled forms are found by {@link #find(RepoConvention, ReferenceData)}.
+   *
+   * @param conventions  the conventions
+   * @param refData  the reference data, used to resolve the holiday calendars
+   * @return the reference data, including the compiled conventions
+   * @throws ReferenceDataNotFoundException if a holiday calendar cannot be resolved in the reference data
+   */
+  public static ReferenceData compiledReferenceData(
+      Collection<? extends RepoConvention> conventions,
+      ReferenceData refData) {
+
+    ArgChecker.noNulls(conventions, "conventions");
+    ArgChecker.notNull(refData, "refData");
+    Map<Id, CompiledRepoConvention> compiled = new HashMap<>();
+    for (RepoConvention convention : conventions) {
+      if (convention instanceof ImmutableRepoConvention && !find(convention, refData).isPresent()) {
+        compiled.putIfAbsent(new Id(convention.getName()), of((ImmutableRepoConvention) convention, refData));
+      }
+    }
+    return compiled.isEmpty() ? refData : ReferenceData.of(compiled).combinedWith(refData);
+  }
+
+  /**
+   * Finds the compiled form of a convention in reference data.
+   * <p>
+   * The compiled form is present if the reference data was obtained from
+   * {@link #compiledReferenceData(Collection, ReferenceData)} with the convention.
+   *
+   * @param convention  the convention
+   * @param refData  the reference data
+   * @return the compiled convention, empty if not present
+   */
+  public static Optional<CompiledRepoConvention> find(RepoConvention convention, ReferenceData refData) {
+    CompiledRepoConvention compiled = refData.queryValueOrNull(new Id(convention.getName()));
+    return compiled != null && compiled.convention.equals(convention) ? Optional.of(compiled) : Optional.empty();
+  }
+
+  // restricted constructor
+  private CompiledRepoConvention(ImmutableRepoConvention convention, ReferenceData refData) {
+    DaysAdjustment spotDateOffset = convention.getSpotDateOffset();
+    this.convention = convention;
+    this.spotCalendar = businessDays(spotDateOffset.getCalendar().resolve(refData));
+    this.spotDays = spotDateOffset.getDays();
+    this.spotAdjustment = new Adjustment(spotDateOffset.getAdjustment(), refData);
+    this.adjustment = new Adjustment(convention.getBusinessDayAdjustment(), refData);
+    this.spotAdjuster = spotDateOffset.resolve(refData);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the convention.
+   *
+   * @return the convention
+   */
+  public ImmutableRepoConvention getConvention() {
+    return convention;
+  }
+
+  /**
+   * Calculates the spot date from the trade date.
+   * <p>
+   * The result is the same as {@code getSpotDateOffset().adjust(tradeDate, refData)}.
+   *
+   * @param tradeDate  the trade date
+   * @return the spot date
+   */
+  public LocalDate calculateSpotDateFromTradeDate(LocalDate tradeDate) {
+    int index = index(tradeDate);
+    if (index >= 0) {
+      int shifted = spotCalendar.shift(index, spotDays);
+      if (shifted >= 0) {
+        LocalDate spotDate = spotAdjustment.adjust(shifted);
+        if (spotDate != null) {
+          return spotDate;
+        }
+      }
+    }
+    return spotAdjuster.adjust(tradeDate);
+  }
+
+  /**
+   * Adjusts a start or end date using the business day adjustment of the convention.
+   * <p>
+   * The result is the same as {@code getBusinessDayAdjustment().adjust(date, refData)}.
+   *
+   * @param date  the unadjusted date
+   * @return the adjusted date
+   */
+  public LocalDate adjust(LocalDate date) {
+    return adjustment.adjust(date);
+  }
+
+  /**
+   * Calculates the adjusted end date of a trade from the trade date and the tenor.
+   * <p>
+   * The end date is the spot date plus the tenor, adjusted using the business day adjustment of the convention.
+   * This is the end date of the trade created by the convention, once resolved.
+   *
+   * @param tradeDate  the trade date
+   * @param tenor  the period between the start date and the end date
+   * @return the adjusted end date
+   */
+  public LocalDate calculateAdjustedEndDate(LocalDate tradeDate, Tenor tenor) {
+    return adjust(calculateSpotDateFromTradeDate(tradeDate).plus(tenor));
+  }
+
+  @Override
+  public String toString() {
+    return "CompiledRepoConvention[" + convention.getName() + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  // the index of the date in the bitsets, -1 if out of range
+  private static int index(LocalDate date) {
+    long index = date.toEpochDay() - FIRST_EPOCH_DAY;
+    return index >= 0 && index < DATE_COUNT ? (int) index : -1;
+  }
+
+  // the date at an index of the bitsets
+  private static LocalDate date(int index) {
+    return LocalDate.ofEpochDay(FIRST_EPOCH_DAY + index);
+  }
+
+  // the business days of a holiday calendar, built once for equal calendars
+  private static BusinessDays businessDays(HolidayCalendar calendar) {
+    return BUSINESS_DAYS.computeIfAbsent(calendar, BusinessDays::new);
+  }
+
+  //-------------------------------------------------------------------------
+  // the identifier of a compiled convention in reference data, keyed by the name of the convention
+  private static final class Id implements ReferenceDataId<CompiledRepoConvention> {
+    // the name of the convention
+    private final String name;
+
+    private Id(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Class<CompiledRepoConvention> getReferenceDataType() {
+      return CompiledRepoConvention.class;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Id && ((Id) obj).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return "CompiledRepoConvention:" + name;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // the business days of a holiday calendar, as a bitset
+  private static final class BusinessDays {
+    // the bits, set for a business day
+    private final long[] words;
+
+    private BusinessDays(HolidayCalendar calendar) {
+      this.words = new long[(DATE_COUNT + 63) >>> 6];
+      LocalDate date = FIRST_DATE;
+      for (int i = 0; i < DATE_COUNT; i++) {
+        if (calendar.isBusinessDay(date)) {
+          words[i >>> 6] |= 1L << i;
+        }
+        date = date.plusDays(1);
+      }
+    }
+
+    // the first business day at or after the index, -1 if out of range
+    private int nextOrSame(int index) {
+      if (index >= DATE_COUNT) {
+        return -1;
+      }
+      int wordIndex = index >>> 6;
+      long word = words[wordIndex] & (-1L << index);
+      while (word == 0) {
+        wordIndex++;
+        if (wordIndex == words.length) {
+          return -1;
+        }
+        word = words[wordIndex];
+      }
+      int found = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+      return found < DATE_COUNT ? found : -1;
+    }
+
+    // the last business day at or before the index, -1 if out of range
+    private int previousOrSame(int index) {
+      if (index < 0) {
+        return -1;
+      }
+      int wordIndex = index >>> 6;
+      long word = words[wordIndex] & (-1L >>> (63 - (index & 63)));
+      while (word == 0) {
+        wordIndex--;
+        if (wordIndex < 0) {
+          return -1;
+        }
+        word = words[wordIndex];
+      }
+      return (wordIndex << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    // shifts by a number of business days, as HolidayCalendar.shift, -1 if out of range
+    private int shift(int index, int amount) {
+      int result = index;
+      for (int i = 0; i < amount && result >= 0; i++) {
+        result = nextOrSame(result + 1);
+      }
+      for (int i = 0; i > amount && result >= 0; i--) {
+        result = previousOrSame(result - 1);
+      }
+      return result;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // a business day adjustment, applied using the bitset where the convention is supported
+  private static final class Adjustment {
+    // the convention, null if not supported by the bitset
+    private final BusinessDayConvention convention;
+    // the business days of the holiday calendar
+    private final BusinessDays businessDays;
+    // the adjustment, resolved
+    private final DateAdjuster adjuster;
+
+    private Adjustment(BusinessDayAdjustment adjustment, ReferenceData refData) {
+      BusinessDayConvention bdc = adjustment.getConvention();
+      boolean supported = bdc.equals(BusinessDayConventions.NO_ADJUST) ||
+          bdc.equals(BusinessDayConventions.FOLLOWING) ||
+          bdc.equals(BusinessDayConventions.MODIFIED_FOLLOWING) ||
+          bdc.equals(BusinessDayConventions.PRECEDING) ||
+          bdc.equals(BusinessDayConventions.MODIFIED_PRECEDING);
+      boolean usesCalendar = supported && !bdc.equals(BusinessDayConventions.NO_ADJUST);
+      this.convention = supported ? bdc : null;
+      this.businessDays = usesCalendar ? businessDays(adjustment.getCalendar().resolve(refData)) : null;
+      this.adjuster = adjustment.resolve(refData);
+    }
+
+    // adjusts a date
+    private LocalDate adjust(LocalDate date) {
+      int index = index(date);
+      LocalDate adjusted = index >= 0 ? adjust(index) : null;
+      return adjusted != null ? adjusted : adjuster.adjust(date);
+    }
+
+    // adjusts the date at an index, null if not supported or out of range
+    private LocalDate adjust(int index) {
+      if (convention == null) {
+        return null;
+      }
+      if (convention.equals(BusinessDayConventions.NO_ADJUST)) {
+        return date(index);
+      }
+      boolean following = convention.equals(BusinessDayConventions.FOLLOWING) ||
+          convention.equals(BusinessDayConventions.MODIFIED_FOLLOWING);
+      boolean modified = convention.equals(BusinessDayConventions.MODIFIED_FOLLOWING) ||
+          convention.equals(BusinessDayConventions.MODIFIED_PRECEDING);
+      int adjusted = following ? businessDays.nextOrSame(index) : businessDays.previousOrSame(index);
+      if (adjusted < 0) {
+        return null;
+      }
+      LocalDate date = date(index);
+      LocalDate result = date(adjusted);
+      if (modified && result.getMonth() != date.getMonth()) {
+        adjusted = following ? businessDays.previousOrSame(index - 1) : businessDays.nextOrSame(index + 1);
+        return adjusted < 0 ? null : date(adjusted);
+      }
+      return result;
+    }
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import java.util.Arrays;
+
+import com.opengamma.strata.market.curve.Curve;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.interpolator.CurveExtrapolator;
+import com.opengamma.strata.market.curve.interpolator.CurveExtrapolators;
+import com.opengamma.strata.market.curve.interpolator.CurveInterpolator;
+import com.opengamma.strata.market.curve.interpolator.CurveInterpolators;
+
+/**
+ * The bracketing nodes of an interpolated curve and their weights.
+ * <p>
+ * For a curve with linear or log-linear interpolation and flat extrapolation, the y-value at an x-value
+ * only depends on the two nodes bracketing the x-value. The position of the x-value between the nodes is
+ * described by the index of the lower node and the fraction of the interval, which only depend on the x-values.
+ * The y-value and its sensitivity to the two nodes are then obtained from the y-values of the two nodes,
+ * without creating the parameter sensitivity of the curve.
+ * <p>
+ * The results are the same as {@link Curve#yValue(double)} and {@link Curve#yValueParameterSensitivity(double)},
+ * up to rounding.
+ */
+public final class CurveNodeBracket {
+
+  /**
+   * Restricted constructor.
+   */
+  private CurveNodeBracket() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Checks if the bracket of a curve can be used.
+   * <p>
+   * This is true for an {@link InterpolatedNodalCurve} with at least two nodes,
+   * linear or log-linear interpolation and flat extrapolation on both sides.
+   *
+   * @param curve  the curve
+   * @return true if the bracket can be used
+   */
+  public static boolean isSupported(Curve curve) {
+    if (!(curve instanceof InterpolatedNodalCurve)) {
+      return false;
+    }
+    InterpolatedNodalCurve nodalCurve = (InterpolatedNodalCurve) curve;
+    return nodalCurve.getParameterCount() >= 2 &&
+        isSupported(nodalCurve.getInterpolator(), nodalCurve.getExtrapolatorLeft(), nodalCurve.getExtrapolatorRight());
+  }
+
+  /**
+   * Checks if the bracket can be used for the interpolator and extrapolators.
+   * <p>
+   * The curve must also have at least two nodes.
+   *
+   * @param interpolator  the interpolator
+   * @param extrapolatorLeft  the left extrapolator
+   * @param extrapolatorRight  the right extrapolator
+   * @return true if the bracket can be used
+   */
+  public static boolean isSupported(
+      CurveInterpolator interpolator,
+      CurveExtrapolator extrapolatorLeft,
+      CurveExtrapolator extrapolatorRight) {
+
+    return (interpolator.equals(CurveInterpolators.LINEAR) || interpolator.equals(CurveInterpolators.LOG_LINEAR)) &&
+        extrapolatorLeft.equals(CurveExtrapolators.FLAT) &&
+        extrapolatorRight.equals(CurveExtrapolators.FLAT);
+  }
+
+  /**
+   * Checks if the interpolator is log-linear.
+   *
+   * @param interpolator  the interpolator
+   * @return true if log-linear, false if linear
+   */
+  public static boolean isLogLinear(CurveInterpolator interpolator) {
+    return interpolator.equals(CurveInterpolators.LOG_LINEAR);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Finds the index of the lower node of the bracket.
+   * <p>
+   * The result is between zero and the number of nodes minus two, the upper node being the next node.
+   *
+   * @param xValues  the x-values of the nodes, in ascending order, at least two
+   * @param x  the x-value
+   * @return the index of the lower node
+   */
+  public static int lowerIndex(double[] xValues, double x) {
+    int index = Arrays.binarySearch(xValues, x);
+    int lower = index >= 0 ? index : -index - 2;
+    return Math.max(0, Math.min(lower, xValues.length - 2));
+  }
+
+  /**
+   * Calculates the fraction of the bracket at the x-value.
+   * <p>
+   * This is zero at the lower node and one at the upper node.
+   * The fraction is bounded by zero and one, implementing the flat extrapolation.
+   *
+   * @param xValues  the x-values of the nodes, in ascending order
+   * @param lowerIndex  the index of the lower node
+   * @param x  the x-value
+   * @return the fraction
+   */
+  public static double fraction(double[] xValues, int lowerIndex, double x) {
+    double xLower = xValues[lowerIndex];
+    double fraction = (x - xLower) / (xValues[lowerIndex + 1] - xLower);
+    return Math.max(0d, Math.min(fraction, 1d));
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Calculates the y-value from the y-values of the bracketing nodes.
+   *
+   * @param logLinear  whether the interpolation is log-linear
+   * @param yLower  the y-value of the lower node
+   * @param yUpper  the y-value of the upper node
+   * @param fraction  the fraction of the bracket
+   * @return the y-value
+   */
+  public static double yValue(boolean logLinear, double yLower, double yUpper, double fraction) {
+    if (logLinear) {
+      return Math.exp((1d - fraction) * Math.log(yLower) + fraction * Math.log(yUpper));
+    }
+    return (1d - fraction) * yLower + fraction * yUpper;
+  }
+
+  /**
+   * Calculates the sensitivity of the y-value to the y-value of the lower node.
+   *
+   * @param logLinear  whether the interpolation is log-linear
+   * @param yLower  the y-value of the lower node
+   * @param yValue  the interpolated y-value
+   * @param fraction  the fraction of the bracket
+   * @return the sensitivity
+   */
+  public static double lowerWeight(boolean logLinear, double yLower, double yValue, double fraction) {
+    return logLinear ? (1d - fraction) * yValue / yLower : 1d - fraction;
+  }
+
+  /**
+   * Calculates the sensitivity of the y-value to the y-value of the upper node.
+   *
+   * @param logLinear  whether the interpolation is log-linear
+   * @param yUpper  the y-value of the upper node
+   * @param yValue  the interpolated y-value
+   * @param fraction  the fraction of the bracket
+   * @return the sensitivity
+   */
+  public static double upperWeight(boolean logLinear, double yUpper, double yValue, double fraction) {
+    return logLinear ? fraction * yValue / yUpper : fraction;
+  }
+
+}
@@ -5,10 +5,13 @@
  */
 package com.opengamma.strata.extra.repo;
 
+import java.time.LocalDate;
+
 import com.opengamma.strata.basics.currency.Currency;
 import com.opengamma.strata.basics.currency.CurrencyAmount;
 import com.opengamma.strata.market.sensitivity.PointSensitivities;
 import com.opengamma.strata.market.sensitivity.PointSensitivityBuilder;
+import com.opengamma.strata.pricer.DiscountFactors;
 import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
 import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
 
@@ -46,35 +49,133 @@ public class DiscountingRepoProductPricer {
     if (ratesProvider.getValuationDate().isAfter(product.getEndDate())) {
       return CurrencyAmount.of(currency, 0.0d);
     }
-    RepoCurveDiscountFactors discountFactors = ratesProvider.repoCurveDiscountFactors(
-        product.getLegalEntityId(), product.getCurrency());
+    return presentValue(product, repoCurveDiscountFactors(product, ratesProvider));
+  }
+
+  /**
+   * Calculates the present value by discounting the final cash flow (nominal + interest)
+   * and the initial payment (initial amount).
+   * <p>
+   * The discount factors must be those of the repo curve of the product, typically obtained
+   * once and reused when pricing many products against the same curve.
+   * The present value of the product is the value on the valuation date of the discount factors.
+   * 
+   * @param product  the product
+   * @param discountFactors  the discount factors of the repo curve
+   * @return the present value of the product
+   */
+  public CurrencyAmount presentValue(ResolvedRepo product, RepoCurveDiscountFactors discountFactors) {
+    Currency currency = product.getCurrency();
+    if (discountFactors.getValuationDate().isAfter(product.getEndDate())) {
+      return CurrencyAmount.of(currency, 0.0d);
+    }
     double dfStart = discountFactors.discountFactor(product.getStartDate());
     double dfEnd = discountFactors.discountFactor(product.getEndDate());
-    double pvStart = initialAmount(product, ratesProvider) * dfStart;
+    return presentValue(product, discountFactors.getValuationDate(), dfStart, dfEnd);
+  }
+
+  /**
+   * Calculates the present value from the discount factors at the start and end dates of the product.
+   * <p>
+   * This allows the discount factors to be obtained from a cache, when many products share the same dates.
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param valuationDate  the valuation date
+   * @param dfStart  the discount factor at the start date
+   * @param dfEnd  the discount factor at the end date
+   * @return the present value of the product
+   */
+  public CurrencyAmount presentValue(ResolvedRepo product, LocalDate valuationDate, double dfStart, double dfEnd) {
+    Currency currency = product.getCurrency();
+    if (valuationDate.isAfter(product.getEndDate())) {
+      return CurrencyAmount.of(currency, 0.0d);
+    }
+    double pvStart = initialAmount(product, valuationDate) * dfStart;
     double pvEnd = (product.getNotional() + product.getInterest()) * dfEnd;
     double pv = pvEnd - pvStart;
     return CurrencyAmount.of(currency, pv);
   }
 
-  private double initialAmount(ResolvedRepo product, LegalEntityDiscountingProvider ratesProvider) {
-    return ratesProvider.getValuationDate().isAfter(product.getStartDate()) ? 0d : product.getNotional();
+  /**
+   * Calculates the adjoints of the present value to the discount factors at the start and end dates.
+   * <p>
+   * The present value of {@link #presentValue(ResolvedRepo, LocalDate, double, double)} is linear
+   * in the discount factors, being {@code adjoints[0] * dfStart + adjoints[1] * dfEnd}.
+   * Both adjoints are zero once the repo has ended, and the adjoint to the start discount factor
+   * is zero once the repo has started.
+   * <p>
+   * The repo is described by its dates and amounts, allowing the present value and its sensitivity
+   * to be accumulated for a book of repos held in columns.
+   * 
+   * @param valuationDate  the valuation date
+   * @param startDate  the adjusted start date
+   * @param endDate  the adjusted end date
+   * @param notional  the signed notional, see {@link ResolvedRepo#getNotional()}
+   * @param interest  the signed interest, see {@link ResolvedRepo#getInterest()}
+   * @param adjoints  the array receiving the adjoints to the start and end discount factors, of length two
+   */
+  public void presentValueAdjoints(
+      LocalDate valuationDate,
+      LocalDate startDate,
+      LocalDate endDate,
+      double notional,
+      double interest,
+      double[] adjoints) {
+
+    boolean ended = valuationDate.isAfter(endDate);
+    adjoints[0] = ended ? 0d : -initialAmount(valuationDate, startDate, notional);
+    adjoints[1] = ended ? 0d : notional + interest;
+  }
+
+  private double initialAmount(ResolvedRepo product, LocalDate valuationDate) {
+    return initialAmount(valuationDate, product.getStartDate(), product.getNotional());
+  }
+
+  private double initialAmount(LocalDate valuationDate, LocalDate startDate, double notional) {
+    return valuationDate.isAfter(startDate) ? 0d : notional;
+  }
+
+  // the discount factors of the repo curve of the product
+  private RepoCurveDiscountFactors repoCurveDiscountFactors(
+      ResolvedRepo product,
+      LegalEntityDiscountingProvider ratesProvider) {
+
+    return ratesProvider.repoCurveDiscountFactors(product.getLegalEntityId(), product.getCurrency());
   }
 
   /**
    * Calculates the present value sensitivity by discounting the final cash flow (nominal + interest)
    * and the initial payment (initial amount).
+   * <p>
+   * The sensitivity is empty once the product has ended, its present value then being zero.
    * 
    * @param product  the product
    * @param ratesProvider  the rates ratesProvider
    * @return the point sensitivity of the present value
    */
   public PointSensitivities presentValueSensitivity(ResolvedRepo product, LegalEntityDiscountingProvider ratesProvider) {
+    return presentValueSensitivity(product, repoCurveDiscountFactors(product, ratesProvider));
+  }
+
+  /**
+   * Calculates the present value sensitivity by discounting the final cash flow (nominal + interest)
+   * and the initial payment (initial amount).
+   * <p>
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param discountFactors  the discount factors of the repo curve
+   * @return the point sensitivity of the present value
+   */
+  public PointSensitivities presentValueSensitivity(ResolvedRepo product, RepoCurveDiscountFactors discountFactors) {
+    if (discountFactors.getValuationDate().isAfter(product.getEndDate())) {
+      return PointSensitivities.empty();
+    }
     // backward sweep
     double dfEndBar = product.getNotional() + product.getInterest();
-    double dfStartBar = -initialAmount(product, ratesProvider);
+    double dfStartBar = -initialAmount(product, discountFactors.getValuationDate());
     // sensitivity
-    RepoCurveDiscountFactors discountFactors = ratesProvider.repoCurveDiscountFactors(
-        product.getLegalEntityId(), product.getCurrency());
     PointSensitivityBuilder sensStart = discountFactors.zeroRatePointSensitivity(product.getStartDate())
         .multipliedBy(dfStartBar);
     PointSensitivityBuilder sensEnd = discountFactors.zeroRatePointSensitivity(product.getEndDate())
@@ -82,6 +183,57 @@ public class DiscountingRepoProductPricer {
     return sensStart.combinedWith(sensEnd).build();
   }
 
+  /**
+   * Calculates the present value sensitivity, adding the zero rate sensitivities to an accumulator.
+   * <p>
+   * This produces the same sensitivities as
+   * {@link #presentValueSensitivity(ResolvedRepo, LegalEntityDiscountingProvider)},
+   * one for the start date and one for the end date, without creating intermediate objects.
+   * 
+   * @param product  the product
+   * @param ratesProvider  the rates ratesProvider
+   * @param accumulator  the accumulator to add the sensitivities to
+   */
+  public void presentValueSensitivity(
+      ResolvedRepo product,
+      LegalEntityDiscountingProvider ratesProvider,
+      RepoSensitivityAccumulator accumulator) {
+
+    presentValueSensitivity(product, repoCurveDiscountFactors(product, ratesProvider), accumulator);
+  }
+
+  /**
+   * Calculates the present value sensitivity, adding the zero rate sensitivities to an accumulator.
+   * <p>
+   * This produces the same sensitivities as {@link #presentValueSensitivity(ResolvedRepo, RepoCurveDiscountFactors)},
+   * one for the start date and one for the end date, without creating intermediate objects.
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param discountFactors  the discount factors of the repo curve
+   * @param accumulator  the accumulator to add the sensitivities to
+   */
+  public void presentValueSensitivity(
+      ResolvedRepo product,
+      RepoCurveDiscountFactors discountFactors,
+      RepoSensitivityAccumulator accumulator) {
+
+    if (discountFactors.getValuationDate().isAfter(product.getEndDate())) {
+      return;
+    }
+    DiscountFactors underlying = discountFactors.getDiscountFactors();
+    double timeStart = underlying.relativeYearFraction(product.getStartDate());
+    double timeEnd = underlying.relativeYearFraction(product.getEndDate());
+    // backward sweep
+    double dfEndBar = product.getNotional() + product.getInterest();
+    double dfStartBar = -initialAmount(product, discountFactors.getValuationDate());
+    // sensitivity
+    double dfStart = underlying.discountFactor(timeStart);
+    double dfEnd = underlying.discountFactor(timeEnd);
+    accumulator.add(discountFactors, timeStart, -timeStart * dfStart * dfStartBar);
+    accumulator.add(discountFactors, timeEnd, -timeEnd * dfEnd * dfEndBar);
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Calculates the product fair rate given the start and end time and the accrual factor.
@@ -94,10 +246,36 @@ public class DiscountingRepoProductPricer {
    * @return the par rate
    */
   public double parRate(ResolvedRepo product, LegalEntityDiscountingProvider ratesProvider) {
-    RepoCurveDiscountFactors discountFactors = ratesProvider.repoCurveDiscountFactors(
-        product.getLegalEntityId(), product.getCurrency());
+    return parRate(product, repoCurveDiscountFactors(product, ratesProvider));
+  }
+
+  /**
+   * Calculates the product fair rate given the start and end time and the accrual factor.
+   * <p>
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param discountFactors  the discount factors of the repo curve
+   * @return the par rate
+   */
+  public double parRate(ResolvedRepo product, RepoCurveDiscountFactors discountFactors) {
     double dfStart = discountFactors.discountFactor(product.getStartDate());
     double dfEnd = discountFactors.discountFactor(product.getEndDate());
+    return parRate(product, dfStart, dfEnd);
+  }
+
+  /**
+   * Calculates the product fair rate from the discount factors at the start and end dates of the product.
+   * <p>
+   * This allows the discount factors to be obtained without creating the curve, such as during calibration.
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param dfStart  the discount factor at the start date
+   * @param dfEnd  the discount factor at the end date
+   * @return the par rate
+   */
+  public double parRate(ResolvedRepo product, double dfStart, double dfEnd) {
     double accrualFactor = product.getYearFraction();
     return (dfStart / dfEnd - 1d) / accrualFactor;
   }
@@ -134,6 +312,36 @@ public class DiscountingRepoProductPricer {
     return parRate - product.getRate();
   }
 
+  /**
+   * Calculates the spread to be added to the product rate to have a zero present value.
+   * <p>
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param discountFactors  the discount factors of the repo curve
+   * @return the par spread
+   */
+  public double parSpread(ResolvedRepo product, RepoCurveDiscountFactors discountFactors) {
+    double parRate = parRate(product, discountFactors);
+    return parRate - product.getRate();
+  }
+
+  /**
+   * Calculates the spread to be added to the product rate to have a zero present value,
+   * from the discount factors at the start and end dates of the product.
+   * <p>
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param dfStart  the discount factor at the start date
+   * @param dfEnd  the discount factor at the end date
+   * @return the par spread
+   */
+  public double parSpread(ResolvedRepo product, double dfStart, double dfEnd) {
+    double parRate = parRate(product, dfStart, dfEnd);
+    return parRate - product.getRate();
+  }
+
   /**
    * Calculates the par spread curve sensitivity.
    * <p>
@@ -146,9 +354,20 @@ public class DiscountingRepoProductPricer {
    * @return the par spread curve sensitivity
    */
   public PointSensitivities parSpreadSensitivity(ResolvedRepo product, LegalEntityDiscountingProvider ratesProvider) {
+    return parSpreadSensitivity(product, repoCurveDiscountFactors(product, ratesProvider));
+  }
+
+  /**
+   * Calculates the par spread curve sensitivity.
+   * <p>
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param discountFactors  the discount factors of the repo curve
+   * @return the par spread curve sensitivity
+   */
+  public PointSensitivities parSpreadSensitivity(ResolvedRepo product, RepoCurveDiscountFactors discountFactors) {
     double accrualFactorInv = 1d / product.getYearFraction();
-    RepoCurveDiscountFactors discountFactors = ratesProvider.repoCurveDiscountFactors(
-        product.getLegalEntityId(), product.getCurrency());
     double dfStart = discountFactors.discountFactor(product.getStartDate());
     double dfEndInv = 1d / discountFactors.discountFactor(product.getEndDate());
     PointSensitivityBuilder sensStart = discountFactors.zeroRatePointSensitivity(product.getStartDate())
@@ -158,4 +377,66 @@ public class DiscountingRepoProductPricer {
     return sensStart.combinedWith(sensEnd).build();
   }
 
+  /**
+   * Calculates the par spread curve sensitivity, adding the zero rate sensitivities to an accumulator.
+   * <p>
+   * This produces the same sensitivities as {@link #parSpreadSensitivity(ResolvedRepo, RepoCurveDiscountFactors)},
+   * one for the start date and one for the end date, without creating intermediate objects.
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param discountFactors  the discount factors of the repo curve
+   * @param accumulator  the accumulator to add the sensitivities to
+   */
+  public void parSpreadSensitivity(
+      ResolvedRepo product,
+      RepoCurveDiscountFactors discountFactors,
+      RepoSensitivityAccumulator accumulator) {
+
+    DiscountFactors underlying = discountFactors.getDiscountFactors();
+    double timeStart = underlying.relativeYearFraction(product.getStartDate());
+    double timeEnd = underlying.relativeYearFraction(product.getEndDate());
+    double dfStart = underlying.discountFactor(timeStart);
+    double dfEnd = underlying.discountFactor(timeEnd);
+    accumulator.add(discountFactors, timeStart, parSpreadZeroRateSensitivityStart(product, timeStart, dfStart, dfEnd));
+    accumulator.add(discountFactors, timeEnd, parSpreadZeroRateSensitivityEnd(product, timeEnd, dfStart, dfEnd));
+  }
+
+  /**
+   * Calculates the sensitivity of the par spread to the zero rate at the start date of the product.
+   * <p>
+   * The zero rate is continuously compounded, at the relative year fraction of the start date.
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param timeStart  the relative year fraction of the start date
+   * @param dfStart  the discount factor at the start date
+   * @param dfEnd  the discount factor at the end date
+   * @return the sensitivity of the par spread to the zero rate at the start date
+   */
+  public double parSpreadZeroRateSensitivityStart(
+      ResolvedRepo product,
+      double timeStart,
+      double dfStart,
+      double dfEnd) {
+
+    return -timeStart * dfStart / (dfEnd * product.getYearFraction());
+  }
+
+  /**
+   * Calculates the sensitivity of the par spread to the zero rate at the end date of the product.
+   * <p>
+   * The zero rate is continuously compounded, at the relative year fraction of the end date.
+   * The discount factors must be those of the repo curve of the product.
+   * 
+   * @param product  the product
+   * @param timeEnd  the relative year fraction of the end date
+   * @param dfStart  the discount factor at the start date
+   * @param dfEnd  the discount factor at the end date
+   * @return the sensitivity of the par spread to the zero rate at the end date
+   */
+  public double parSpreadZeroRateSensitivityEnd(ResolvedRepo product, double timeEnd, double dfStart, double dfEnd) {
+    return timeEnd * dfStart / (dfEnd * product.getYearFraction());
+  }
+
 }
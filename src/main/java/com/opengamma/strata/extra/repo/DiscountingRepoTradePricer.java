@@ -65,6 +65,25 @@ public class DiscountingRepoTradePricer {
     return productPricer.presentValueSensitivity(trade.getProduct(), ratesProvider);
   }
 
+  /**
+   * Calculates the present value sensitivity, adding the zero rate sensitivities to an accumulator.
+   * <p>
+   * This produces the same sensitivities as
+   * {@link #presentValueSensitivity(ResolvedRepoTrade, LegalEntityDiscountingProvider)}
+   * without creating intermediate objects.
+   * 
+   * @param trade  the trade
+   * @param ratesProvider  the rates provider
+   * @param accumulator  the accumulator to add the sensitivities to
+   */
+  public void presentValueSensitivity(
+      ResolvedRepoTrade trade,
+      LegalEntityDiscountingProvider ratesProvider,
+      RepoSensitivityAccumulator accumulator) {
+
+    productPricer.presentValueSensitivity(trade.getProduct(), ratesProvider, accumulator);
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Calculates the fair product rate given the start and end time and the accrual factor.
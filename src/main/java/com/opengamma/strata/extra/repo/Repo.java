@@ -6,7 +6,6 @@
 package com.opengamma.strata.extra.repo;
 
 import static com.opengamma.strata.collect.Guavate.toImmutableList;
-import static java.util.stream.Collectors.toSet;
 
 import java.io.Serializable;
 import java.time.LocalDate;
@@ -14,7 +13,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.Set;
 
 import org.joda.beans.Bean;
 import org.joda.beans.ImmutableBean;
@@ -147,19 +145,33 @@ public final class Repo
   //-------------------------------------------------------------------------
   @Override
   public ResolvedRepo resolve(ReferenceData refData) {
-    ImmutableList<SecurityId> securityIds = collateral.stream()
-        .map(SecurityPosition::getSecurityId)
-        .collect(toImmutableList());
-    Set<LegalEntityId> legalEntityIds = collateral.stream()
-        .map(sp -> getLegalEntityId(refData.getValue(sp.getSecurityId())))
-        .collect(toSet());
-    ArgChecker.isTrue(legalEntityIds.size() == 1, "Collateral must be based on the unique legal entity");
-    LegalEntityId legalEntityId = legalEntityIds.iterator().next();
-
+    LegalEntityId legalEntityId = resolveLegalEntityId(refData);
     DateAdjuster bda = getBusinessDayAdjustment().orElse(BusinessDayAdjustment.NONE).resolve(refData);
     LocalDate adjStartDate = bda.adjust(startDate);
     LocalDate adjEndDate = bda.adjust(endDate);
     double yearFraction = dayCount.yearFraction(adjStartDate, adjEndDate);
+    return resolve(legalEntityId, adjStartDate, adjEndDate, yearFraction);
+  }
+
+  // resolves the unique legal entity of the collateral
+  LegalEntityId resolveLegalEntityId(ReferenceData refData) {
+    LegalEntityId legalEntityId = null;
+    for (SecurityPosition position : collateral) {
+      LegalEntityId positionLegalEntityId = getLegalEntityId(refData.getValue(position.getSecurityId()));
+      ArgChecker.isTrue(
+          legalEntityId == null || legalEntityId.equals(positionLegalEntityId),
+          "Collateral must be based on the unique legal entity");
+      legalEntityId = positionLegalEntityId;
+    }
+    ArgChecker.isTrue(legalEntityId != null, "Collateral must be based on the unique legal entity");
+    return legalEntityId;
+  }
+
+  // creates the resolved form from the legal entity, adjusted dates and year fraction
+  ResolvedRepo resolve(LegalEntityId legalEntityId, LocalDate adjStartDate, LocalDate adjEndDate, double yearFraction) {
+    ImmutableList<SecurityId> securityIds = collateral.stream()
+        .map(SecurityPosition::getSecurityId)
+        .collect(toImmutableList());
     return ResolvedRepo.builder()
         .startDate(adjStartDate)
         .endDate(adjEndDate)
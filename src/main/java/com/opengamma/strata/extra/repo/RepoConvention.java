@@ -7,6 +7,7 @@ package com.opengamma.strata.extra.repo;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 import org.joda.convert.FromString;
 import org.joda.convert.ToString;
@@ -178,6 +179,9 @@ public interface RepoConvention
   //-------------------------------------------------------------------------
   /**
    * Calculates the spot date from the trade date.
+   * <p>
+   * If the reference data holds the compiled form of this convention, see {@link CompiledRepoConvention},
+   * the spot date is calculated using it.
    * 
    * @param tradeDate  the trade date
    * @param refData  the reference data, used to resolve the date
@@ -185,6 +189,10 @@ public interface RepoConvention
    * @throws ReferenceDataNotFoundException if an identifier cannot be resolved in the reference data
    */
   public default LocalDate calculateSpotDateFromTradeDate(LocalDate tradeDate, ReferenceData refData) {
+    Optional<CompiledRepoConvention> compiled = CompiledRepoConvention.find(this, refData);
+    if (compiled.isPresent()) {
+      return compiled.get().calculateSpotDateFromTradeDate(tradeDate);
+    }
     return getSpotDateOffset().adjust(tradeDate, refData);
   }
 
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.basics.date.BusinessDayConvention;
+import com.opengamma.strata.basics.date.DayCount;
+import com.opengamma.strata.basics.date.DaysAdjustment;
+import com.opengamma.strata.basics.date.HolidayCalendarId;
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.io.CsvFile;
+import com.opengamma.strata.collect.io.CsvRow;
+import com.opengamma.strata.collect.io.ResourceConfig;
+import com.opengamma.strata.collect.io.ResourceLocator;
+import com.opengamma.strata.collect.named.NamedLookup;
+
+/**
+ * Loads standard repo conventions from CSV.
+ * <p>
+ * See {@link RepoConventions} for the description of each.
+ * <p>
+ * The conventions are read from the 'RepoConventionData.csv' configuration files.
+ * The files are read on the first lookup, and are indexed by name without being parsed.
+ * Each convention is parsed when first looked up, thus a lookup parses a single row
+ * however many conventions are defined. A file later in the configuration order replaces
+ * the conventions of the same name in an earlier file.
+ * <p>
+ * The CSV files have the following columns:
+ * <ul>
+ * <li>The 'Name' column is the name of the convention, such as 'EUR-GC'.
+ * <li>The 'Currency' column is the currency of the repo.
+ * <li>The 'Day Count' column is the day count, such as 'Act/360'.
+ * <li>The 'Business Day Convention' column is the convention used to adjust the start and end date.
+ * <li>The 'Business Day Calendar' column is the holiday calendar used to adjust the start and end date.
+ * <li>The 'Spot Offset Days' column is the number of business days from the trade date to the spot date.
+ * <li>The 'Spot Offset Calendar' column is the holiday calendar used to find the spot date.
+ * </ul>
+ */
+final class RepoConventionCsvLookup
+    implements NamedLookup<RepoConvention> {
+
+  /**
+   * The singleton instance of the lookup.
+   */
+  public static final RepoConventionCsvLookup INSTANCE = new RepoConventionCsvLookup();
+
+  // CSV column headers
+  private static final String NAME_FIELD = "Name";
+  private static final String CURRENCY_FIELD = "Currency";
+  private static final String DAY_COUNT_FIELD = "Day Count";
+  private static final String BDA_CONVENTION_FIELD = "Business Day Convention";
+  private static final String BDA_CALENDAR_FIELD = "Business Day Calendar";
+  private static final String SPOT_OFFSET_DAYS_FIELD = "Spot Offset Days";
+  private static final String SPOT_OFFSET_CALENDAR_FIELD = "Spot Offset Calendar";
+
+  /**
+   * The parsed conventions, by name.
+   */
+  private final ConcurrentHashMap<String, RepoConvention> conventions = new ConcurrentHashMap<>();
+
+  /**
+   * Restricted constructor.
+   */
+  private RepoConventionCsvLookup() {
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public RepoConvention lookup(String name) {
+    CsvRow row = Rows.BY_NAME.get(name);
+    if (row == null) {
+      row = Rows.BY_NAME.get(name.toUpperCase(Locale.ENGLISH));
+      if (row == null) {
+        return null;
+      }
+    }
+    CsvRow found = row;
+    return conventions.computeIfAbsent(found.getValue(NAME_FIELD), n -> parse(found));
+  }
+
+  @Override
+  public ImmutableMap<String, RepoConvention> lookupAll() {
+    ImmutableMap.Builder<String, RepoConvention> builder = ImmutableMap.builder();
+    for (Map.Entry<String, CsvRow> entry : Rows.BY_NAME.entrySet()) {
+      // skip the upper-case aliases
+      if (entry.getKey().equals(entry.getValue().getValue(NAME_FIELD))) {
+        builder.put(entry.getKey(), lookup(entry.getKey()));
+      }
+    }
+    return builder.build();
+  }
+
+  //-------------------------------------------------------------------------
+  // parses a convention
+  private static RepoConvention parse(CsvRow row) {
+    String name = row.getValue(NAME_FIELD);
+    try {
+      Currency currency = Currency.parse(row.getValue(CURRENCY_FIELD));
+      DayCount dayCount = DayCount.of(row.getValue(DAY_COUNT_FIELD));
+      BusinessDayConvention bdaConvention = BusinessDayConvention.of(row.getValue(BDA_CONVENTION_FIELD));
+      HolidayCalendarId bdaCalendar = HolidayCalendarId.of(row.getValue(BDA_CALENDAR_FIELD));
+      int spotDays = Integer.parseInt(row.getValue(SPOT_OFFSET_DAYS_FIELD));
+      HolidayCalendarId spotCalendar = HolidayCalendarId.of(row.getValue(SPOT_OFFSET_CALENDAR_FIELD));
+      return ImmutableRepoConvention.of(
+          name,
+          currency,
+          BusinessDayAdjustment.of(bdaConvention, bdaCalendar),
+          dayCount,
+          DaysAdjustment.ofBusinessDays(spotDays, spotCalendar));
+    } catch (RuntimeException ex) {
+      throw new IllegalArgumentException(Messages.format(
+          "Unable to parse repo convention '{}' at line {}: {}", name, row.lineNumber(), ex.getMessage()), ex);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // the rows of the configuration files, read on first use
+  private static final class Rows {
+    // the rows by name, also by upper-case name
+    private static final ImmutableMap<String, CsvRow> BY_NAME = load();
+
+    // reads the rows of all the files, without parsing the conventions
+    private static ImmutableMap<String, CsvRow> load() {
+      Map<String, CsvRow> rows = new LinkedHashMap<>();
+      for (ResourceLocator resource : ResourceConfig.orderedResources("RepoConventionData.csv")) {
+        CsvFile csv = CsvFile.of(resource.getCharSource(), true);
+        for (CsvRow row : csv.rows()) {
+          rows.put(row.getValue(NAME_FIELD), row);
+        }
+      }
+      Map<String, CsvRow> byName = new LinkedHashMap<>(rows);
+      for (Map.Entry<String, CsvRow> entry : rows.entrySet()) {
+        byName.putIfAbsent(entry.getKey().toUpperCase(Locale.ENGLISH), entry.getValue());
+      }
+      return ImmutableMap.copyOf(byName);
+    }
+  }
+
+}
@@ -9,6 +9,9 @@ import com.opengamma.strata.collect.named.ExtendedEnum;
 
 /**
  * Standardized repo conventions.
+ * <p>
+ * The conventions are defined in the 'RepoConventionData.csv' configuration file,
+ * and are loaded when first looked up.
  */
 public final class RepoConventions {
 
@@ -17,6 +20,62 @@ public final class RepoConventions {
    */
   static final ExtendedEnum<RepoConvention> ENUM_LOOKUP = ExtendedEnum.of(RepoConvention.class);
 
+  /**
+   * The 'AUD-GC' convention for AUD general collateral repos.
+   * <p>
+   * The day count is 'Act/365F', with 'ModifiedFollowing' adjustment using the Sydney calendar.
+   * The spot date is the trade date.
+   */
+  public static final RepoConvention AUD_GC = RepoConvention.of("AUD-GC");
+
+  /**
+   * The 'CAD-GC' convention for CAD general collateral repos.
+   * <p>
+   * The day count is 'Act/365F', with 'ModifiedFollowing' adjustment using the Toronto calendar.
+   * The spot date is the trade date.
+   */
+  public static final RepoConvention CAD_GC = RepoConvention.of("CAD-GC");
+
+  /**
+   * The 'CHF-GC' convention for CHF general collateral repos.
+   * <p>
+   * The day count is 'Act/360', with 'ModifiedFollowing' adjustment using the Zurich calendar.
+   * The spot date is two business days after the trade date.
+   */
+  public static final RepoConvention CHF_GC = RepoConvention.of("CHF-GC");
+
+  /**
+   * The 'EUR-GC' convention for EUR general collateral repos.
+   * <p>
+   * The day count is 'Act/360', with 'ModifiedFollowing' adjustment using the TARGET calendar.
+   * The spot date is two business days after the trade date.
+   */
+  public static final RepoConvention EUR_GC = RepoConvention.of("EUR-GC");
+
+  /**
+   * The 'GBP-GC' convention for GBP general collateral repos.
+   * <p>
+   * The day count is 'Act/365F', with 'ModifiedFollowing' adjustment using the London calendar.
+   * The spot date is the trade date.
+   */
+  public static final RepoConvention GBP_GC = RepoConvention.of("GBP-GC");
+
+  /**
+   * The 'JPY-GC' convention for JPY general collateral repos.
+   * <p>
+   * The day count is 'Act/365F', with 'ModifiedFollowing' adjustment using the Tokyo calendar.
+   * The spot date is two business days after the trade date.
+   */
+  public static final RepoConvention JPY_GC = RepoConvention.of("JPY-GC");
+
+  /**
+   * The 'USD-GC' convention for USD general collateral repos.
+   * <p>
+   * The day count is 'Act/360', with 'ModifiedFollowing' adjustment using the US government securities calendar.
+   * The spot date is the trade date.
+   */
+  public static final RepoConvention USD_GC = RepoConvention.of("USD-GC");
+
   //-------------------------------------------------------------------------
   /**
    * Restricted constructor.
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.market.curve.Curve;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
+import com.opengamma.strata.pricer.DiscountFactors;
+import com.opengamma.strata.pricer.SimpleDiscountFactors;
+import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
+import com.opengamma.strata.pricer.ZeroRateSensitivity;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+
+/**
+ * A mutable accumulator of parameter sensitivities to repo curves.
+ * <p>
+ * Zero rate sensitivities are converted to parameter sensitivities directly from the
+ * sensitivity of the curve y-value to its parameters, which for an interpolated curve are the
+ * interpolation weights at the year fraction. The result is added to a {@code double[]} held for each curve.
+ * This avoids the creation of point and parameter sensitivity objects for every contribution.
+ * For curves supported by {@link CurveNodeBracket}, only the two parameters bracketing the year fraction
+ * are updated, otherwise the y-value parameter sensitivity of the curve is used.
+ * <p>
+ * Curves are identified by the instance of their discount factors, thus all the contributions
+ * to a curve should be obtained from the same provider.
+ * Discount factors based on zero rates and on discount factors are handled directly,
+ * other implementations use the parameter sensitivity of the discount factors.
+ * <p>
+ * The per-curve arrays of the curves used since the previous {@linkplain #reset() reset} are retained,
+ * so that the accumulator can be reused for many trades priced against the same provider without allocation.
+ * The other curves are released, thus reusing the accumulator with many providers does not retain their curves.
+ * <p>
+ * This class is mutable and not thread-safe.
+ */
+public final class RepoParameterSensitivityAccumulator {
+
+  /**
+   * Year fraction below which the discount factor is one and has no sensitivity.
+   */
+  private static final double EFFECTIVE_ZERO = 1e-10;
+
+  /**
+   * The curves, keyed by the instance of the discount factors, null until a second curve is used.
+   */
+  private Map<DiscountFactors, CurveSensitivity> curves;
+  /**
+   * The curves, in the order first seen.
+   */
+  private final List<CurveSensitivity> curveList = new ArrayList<>();
+  /**
+   * The sensitivities to discount factors that are not handled directly.
+   */
+  private CurrencyParameterSensitivities otherSensitivities = CurrencyParameterSensitivities.empty();
+  /**
+   * The last curve used, avoiding the map lookup for consecutive contributions to the same curve.
+   */
+  private CurveSensitivity lastCurve;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an empty accumulator.
+   */
+  public RepoParameterSensitivityAccumulator() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Adds a zero rate sensitivity.
+   *
+   * @param curve  the discount factors of the repo curve
+   * @param yearFraction  the year fraction of the zero rate, relative to the valuation date of the curve
+   * @param sensitivity  the sensitivity to the zero rate, in the currency of the curve
+   */
+  public void add(RepoCurveDiscountFactors curve, double yearFraction, double sensitivity) {
+    if (Math.abs(yearFraction) < EFFECTIVE_ZERO) {
+      return;  // discount factor is one, no sensitivity
+    }
+    DiscountFactors discountFactors = curve.getDiscountFactors();
+    CurveSensitivity curveSens = curveSensitivity(discountFactors);
+    if (curveSens == null) {
+      otherSensitivities = otherSensitivities.combinedWith(discountFactors.parameterSensitivity(
+          ZeroRateSensitivity.of(curve.getCurrency(), yearFraction, sensitivity)));
+    } else {
+      curveSens.add(yearFraction, sensitivity);
+    }
+  }
+
+  /**
+   * Adds all the zero rate sensitivities held in a point sensitivity accumulator.
+   *
+   * @param pointSensitivities  the point sensitivities
+   */
+  public void addAll(RepoSensitivityAccumulator pointSensitivities) {
+    for (int i = 0; i < pointSensitivities.size(); i++) {
+      add(pointSensitivities.getCurve(i), pointSensitivities.getYearFraction(i), pointSensitivities.getSensitivity(i));
+    }
+  }
+
+  // finds or creates the sensitivity of the curve, null if the discount factors are not handled directly
+  private CurveSensitivity curveSensitivity(DiscountFactors discountFactors) {
+    if (lastCurve != null && lastCurve.discountFactors == discountFactors) {
+      return lastCurve;
+    }
+    // the map is only needed once there is more than one curve
+    if (curves == null) {
+      if (curveList.isEmpty()) {
+        CurveSensitivity curveSens = CurveSensitivity.of(discountFactors);
+        if (curveSens != null) {
+          curveList.add(curveSens);
+          lastCurve = curveSens;
+          return curveSens;
+        }
+      }
+      curves = new IdentityHashMap<>();
+      for (CurveSensitivity curveSens : curveList) {
+        curves.put(curveSens.discountFactors, curveSens);
+      }
+    }
+    CurveSensitivity curveSens = curves.get(discountFactors);
+    if (curveSens == null && !curves.containsKey(discountFactors)) {
+      curveSens = CurveSensitivity.of(discountFactors);
+      curves.put(discountFactors, curveSens);
+      if (curveSens != null) {
+        curveList.add(curveSens);
+      }
+    }
+    if (curveSens != null) {
+      lastCurve = curveSens;
+    }
+    return curveSens;
+  }
+
+  /**
+   * Removes all the sensitivities.
+   * <p>
+   * The per-curve arrays of the curves used since the previous reset are retained, the other curves are released.
+   */
+  public void reset() {
+    Iterator<CurveSensitivity> it = curveList.iterator();
+    while (it.hasNext()) {
+      CurveSensitivity curveSens = it.next();
+      if (curveSens.used) {
+        curveSens.used = false;
+      } else {
+        it.remove();
+        if (curves != null) {
+          curves.remove(curveSens.discountFactors);
+        }
+        if (lastCurve == curveSens) {
+          lastCurve = null;
+        }
+      }
+    }
+    if (curves != null) {
+      // unsupported discount factors are only held in the map
+      curves.values().removeIf(curveSens -> curveSens == null);
+    }
+    otherSensitivities = CurrencyParameterSensitivities.empty();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Converts the accumulated sensitivities to parameter sensitivities.
+   * <p>
+   * The result is the same as obtained by calling {@code parameterSensitivity} on the provider
+   * with the equivalent point sensitivities.
+   *
+   * @return the parameter sensitivities
+   */
+  public CurrencyParameterSensitivities toCurrencyParameterSensitivities() {
+    CurrencyParameterSensitivities result = otherSensitivities;
+    for (CurveSensitivity curveSens : curveList) {
+      if (curveSens.used) {
+        result = result.combinedWith(
+            curveSens.curve.createParameterSensitivity(curveSens.currency, DoubleArray.copyOf(curveSens.values)));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "RepoParameterSensitivityAccumulator[curves=" + curveList.size() + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The parameter sensitivity of a single curve.
+   */
+  private static final class CurveSensitivity {
+    // the discount factors
+    private final DiscountFactors discountFactors;
+    // the curve
+    private final Curve curve;
+    // the currency
+    private final Currency currency;
+    // whether the curve y-values are discount factors rather than zero rates
+    private final boolean discountFactorValues;
+    // the x-values of the nodes, null if the bracket of the curve is not used
+    private final double[] xValues;
+    // the y-values of the nodes, null if the bracket of the curve is not used
+    private final double[] yValues;
+    // whether the interpolation is log-linear rather than linear
+    private final boolean logLinear;
+    // the sensitivity to each parameter
+    private final double[] values;
+    // whether any sensitivity has been added since the last reset
+    private boolean used;
+
+    // obtains an instance, null if the discount factors are not handled directly
+    private static CurveSensitivity of(DiscountFactors discountFactors) {
+      if (discountFactors instanceof ZeroRateDiscountFactors) {
+        return new CurveSensitivity(discountFactors, ((ZeroRateDiscountFactors) discountFactors).getCurve(), false);
+      }
+      if (discountFactors instanceof SimpleDiscountFactors) {
+        return new CurveSensitivity(discountFactors, ((SimpleDiscountFactors) discountFactors).getCurve(), true);
+      }
+      return null;
+    }
+
+    private CurveSensitivity(DiscountFactors discountFactors, Curve curve, boolean discountFactorValues) {
+      this.discountFactors = discountFactors;
+      this.curve = curve;
+      this.currency = discountFactors.getCurrency();
+      this.discountFactorValues = discountFactorValues;
+      if (CurveNodeBracket.isSupported(curve)) {
+        InterpolatedNodalCurve nodalCurve = (InterpolatedNodalCurve) curve;
+        this.xValues = nodalCurve.getXValues().toArrayUnsafe();
+        this.yValues = nodalCurve.getYValues().toArrayUnsafe();
+        this.logLinear = CurveNodeBracket.isLogLinear(nodalCurve.getInterpolator());
+      } else {
+        this.xValues = null;
+        this.yValues = null;
+        this.logLinear = false;
+      }
+      this.values = new double[curve.getParameterCount()];
+    }
+
+    // adds the sensitivity to the zero rate at the year fraction
+    private void add(double yearFraction, double sensitivity) {
+      if (!used) {
+        Arrays.fill(values, 0d);
+        used = true;
+      }
+      if (xValues == null) {
+        // d(df)/d(zero rate) = -t * df
+        double factor = discountFactorValues ?
+            -1d / (yearFraction * discountFactors.discountFactor(yearFraction)) :
+            1d;
+        DoubleArray weights = curve.yValueParameterSensitivity(yearFraction).getSensitivity();
+        for (int i = 0; i < values.length; i++) {
+          values[i] += weights.get(i) * factor * sensitivity;
+        }
+        return;
+      }
+      // only the two nodes bracketing the year fraction have a sensitivity
+      int lower = CurveNodeBracket.lowerIndex(xValues, yearFraction);
+      double fraction = CurveNodeBracket.fraction(xValues, lower, yearFraction);
+      double yValue = CurveNodeBracket.yValue(logLinear, yValues[lower], yValues[lower + 1], fraction);
+      // d(df)/d(zero rate) = -t * df
+      double factor = discountFactorValues ? -1d / (yearFraction * yValue) : 1d;
+      values[lower] += CurveNodeBracket.lowerWeight(logLinear, yValues[lower], yValue, fraction) * factor * sensitivity;
+      values[lower + 1] +=
+          CurveNodeBracket.upperWeight(logLinear, yValues[lower + 1], yValue, fraction) * factor * sensitivity;
+    }
+  }
+
+}
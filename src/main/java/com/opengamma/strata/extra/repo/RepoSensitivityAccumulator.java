@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import java.util.Arrays;
+
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.market.sensitivity.PointSensitivity;
+import com.opengamma.strata.pricer.ZeroRateSensitivity;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+import com.opengamma.strata.pricer.bond.RepoCurveZeroRateSensitivity;
+
+/**
+ * A mutable accumulator of zero rate sensitivities to repo curves.
+ * <p>
+ * Each entry is the sensitivity of a value to the continuously compounded zero rate
+ * of a repo curve at a year fraction, expressed in the currency of the curve.
+ * The entries are stored in primitive arrays that grow as required.
+ * Once the arrays have reached their working size, adding entries does not allocate,
+ * thus a single accumulator can be {@linkplain #reset() reset} and reused for many trades.
+ * <p>
+ * The entries are converted to {@link PointSensitivities} using {@link #toPointSensitivities()}.
+ * <p>
+ * This class is mutable and not thread-safe.
+ */
+public final class RepoSensitivityAccumulator {
+
+  /**
+   * The default initial capacity.
+   */
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The curve of each entry.
+   */
+  private RepoCurveDiscountFactors[] curves;
+  /**
+   * The year fraction of each entry.
+   */
+  private double[] yearFractions;
+  /**
+   * The sensitivity of each entry.
+   */
+  private double[] sensitivities;
+  /**
+   * The number of entries.
+   */
+  private int size;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an empty accumulator with the default capacity.
+   */
+  public RepoSensitivityAccumulator() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates an empty accumulator with the specified capacity.
+   *
+   * @param capacity  the initial number of entries that can be held without allocation
+   */
+  public RepoSensitivityAccumulator(int capacity) {
+    ArgChecker.notNegativeOrZero(capacity, "capacity");
+    this.curves = new RepoCurveDiscountFactors[capacity];
+    this.yearFractions = new double[capacity];
+    this.sensitivities = new double[capacity];
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Adds a zero rate sensitivity.
+   *
+   * @param curve  the discount factors of the repo curve
+   * @param yearFraction  the year fraction of the zero rate, relative to the valuation date of the curve
+   * @param sensitivity  the sensitivity, in the currency of the curve
+   */
+  public void add(RepoCurveDiscountFactors curve, double yearFraction, double sensitivity) {
+    if (size == curves.length) {
+      int capacity = size * 2;
+      curves = Arrays.copyOf(curves, capacity);
+      yearFractions = Arrays.copyOf(yearFractions, capacity);
+      sensitivities = Arrays.copyOf(sensitivities, capacity);
+    }
+    curves[size] = curve;
+    yearFractions[size] = yearFraction;
+    sensitivities[size] = sensitivity;
+    size++;
+  }
+
+  /**
+   * Removes all the entries, retaining the capacity.
+   */
+  public void reset() {
+    Arrays.fill(curves, 0, size, null);
+    size = 0;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of entries.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the curve of an entry.
+   *
+   * @param index  the index of the entry
+   * @return the discount factors of the repo curve
+   */
+  public RepoCurveDiscountFactors getCurve(int index) {
+    checkIndex(index);
+    return curves[index];
+  }
+
+  /**
+   * Gets the year fraction of an entry.
+   *
+   * @param index  the index of the entry
+   * @return the year fraction
+   */
+  public double getYearFraction(int index) {
+    checkIndex(index);
+    return yearFractions[index];
+  }
+
+  /**
+   * Gets the sensitivity of an entry.
+   *
+   * @param index  the index of the entry
+   * @return the sensitivity
+   */
+  public double getSensitivity(int index) {
+    checkIndex(index);
+    return sensitivities[index];
+  }
+
+  // checks the index is within the entries
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " is invalid for size " + size);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Converts the entries to point sensitivities.
+   * <p>
+   * Each entry becomes a {@link RepoCurveZeroRateSensitivity}.
+   *
+   * @return the point sensitivities
+   */
+  public PointSensitivities toPointSensitivities() {
+    PointSensitivity[] points = new PointSensitivity[size];
+    for (int i = 0; i < size; i++) {
+      RepoCurveDiscountFactors curve = curves[i];
+      points[i] = RepoCurveZeroRateSensitivity.of(
+          ZeroRateSensitivity.of(curve.getCurrency(), yearFractions[i], sensitivities[i]),
+          curve.getRepoGroup());
+    }
+    return PointSensitivities.of(points);
+  }
+
+  @Override
+  public String toString() {
+    return "RepoSensitivityAccumulator[size=" + size + "]";
+  }
+
+}
@@ -10,6 +10,7 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 
 import org.joda.beans.Bean;
 import org.joda.beans.ImmutableBean;
@@ -26,7 +27,9 @@ import org.joda.beans.impl.direct.DirectMetaPropertyMap;
 import com.google.common.collect.ImmutableList;
 import com.opengamma.strata.basics.ReferenceData;
 import com.opengamma.strata.basics.ReferenceDataNotFoundException;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
 import com.opengamma.strata.basics.date.Tenor;
+import com.opengamma.strata.collect.ArgChecker;
 import com.opengamma.strata.product.SecurityPosition;
 import com.opengamma.strata.product.TradeTemplate;
 import com.opengamma.strata.product.common.BuySell;
@@ -111,6 +114,48 @@ public final class RepoTemplate
     return convention.createTrade(tradeDate, tenor, collateral, buySell, notional, rate, refData);
   }
 
+  /**
+   * Calculates the adjusted end date of the trade created by this template.
+   * <p>
+   * This is the end date of the trade created by {@code createTrade}, once resolved.
+   * If the reference data holds the compiled form of the convention, see {@link CompiledRepoConvention},
+   * the date is calculated using it rather than by creating the trade.
+   * 
+   * @param tradeDate  the date of the trade
+   * @param refData  the reference data, used to resolve the trade dates
+   * @return the adjusted end date
+   * @throws ReferenceDataNotFoundException if an identifier cannot be resolved in the reference data
+   */
+  public LocalDate calculateAdjustedEndDate(LocalDate tradeDate, ReferenceData refData) {
+    Optional<CompiledRepoConvention> compiled = CompiledRepoConvention.find(convention, refData);
+    if (compiled.isPresent()) {
+      return compiled.get().calculateAdjustedEndDate(tradeDate, tenor);
+    }
+    Repo product = createTrade(tradeDate, BuySell.BUY, 0d, 0d, refData).getProduct();
+    BusinessDayAdjustment adjustment = product.getBusinessDayAdjustment().orElse(BusinessDayAdjustment.NONE);
+    return adjustment.adjust(product.getEndDate(), refData);
+  }
+
+  /**
+   * Calculates the adjusted end date of the trade created by this template, using a compiled convention.
+   * <p>
+   * This is the end date of the trade created by {@code createTrade}, once resolved.
+   * The compiled form is held by the caller, avoiding the resolution of the dates against the reference data
+   * when the date is calculated many times.
+   * 
+   * @param tradeDate  the date of the trade
+   * @param compiledConvention  the compiled form of the convention of this template
+   * @return the adjusted end date
+   * @throws IllegalArgumentException if the compiled form is not that of the convention of this template
+   */
+  public LocalDate calculateAdjustedEndDate(LocalDate tradeDate, CompiledRepoConvention compiledConvention) {
+    ArgChecker.isTrue(
+        compiledConvention.getConvention().equals(convention),
+        "Compiled convention {} does not match the convention of the template",
+        compiledConvention.getConvention().getName());
+    return compiledConvention.calculateAdjustedEndDate(tradeDate, tenor);
+  }
+
   //------------------------- AUTOGENERATED START -------------------------
   /**
    * The meta-bean for {@code RepoTemplate}.
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharSource;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.basics.date.DayCount;
+import com.opengamma.strata.basics.date.Tenor;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.collect.Messages;
+import com.opengamma.strata.collect.io.CsvIterator;
+import com.opengamma.strata.collect.io.CsvRow;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+import com.opengamma.strata.product.TradeInfo;
+import com.opengamma.strata.product.common.BuySell;
+
+/**
+ * Loads repo trades from CSV files.
+ * <p>
+ * The trades are parsed lazily, one row at a time, thus the whole file is never held in memory.
+ * This allows resolution and pricing to run alongside the parsing of large files.
+ * <p>
+ * The following standard columns are supported:
+ * <ul>
+ * <li>The 'Id Scheme' column is optional, and is the scheme of the trade identifier, defaulted to 'OG-Trade'.
+ * <li>The 'Id' column is optional, and is the value of the trade identifier.
+ * <li>The 'Trade Date' column is optional, and is the date that the trade occurred, such as '2017-06-01'.
+ * <li>The 'Convention' column is optional, and is the name of the {@link RepoConvention}.
+ * <li>The 'Buy Sell' column is required, and is either 'Buy' or 'Sell'.
+ * <li>The 'Currency' column is required unless a convention is specified, such as 'GBP'.
+ * <li>The 'Notional' column is required, and is the unsigned principal amount.
+ * <li>The 'Start Date' column is required unless a convention and trade date are specified,
+ *  in which case the spot date of the convention is used.
+ * <li>The 'End Date' column is required unless the 'Tenor' column is specified.
+ * <li>The 'Tenor' column is optional, and is the period from the start date to the end date, such as '1W'.
+ * <li>The 'Rate' column is required, and is the fixed rate, such as 0.005 for 0.5%.
+ * <li>The 'Day Count' column is required unless a convention is specified, such as 'Act/360'.
+ * <li>The 'Collateral' column is required, and is the list of security identifiers separated by '|',
+ *  each identifier in the form 'scheme~value'.
+ * <li>The 'Collateral Quantity' column is optional, and is the list of quantities separated by '|',
+ *  matching the list of securities. The quantity is defaulted to one.
+ * </ul>
+ */
+public final class RepoTradeCsvLoader {
+
+  // default schemes
+  private static final String DEFAULT_TRADE_SCHEME = "OG-Trade";
+  // separator of list values
+  private static final Splitter LIST_SPLITTER = Splitter.on('|').trimResults();
+
+  // CSV column headers
+  static final String ID_SCHEME_FIELD = "Id Scheme";
+  static final String ID_FIELD = "Id";
+  static final String TRADE_DATE_FIELD = "Trade Date";
+  static final String CONVENTION_FIELD = "Convention";
+  static final String BUY_SELL_FIELD = "Buy Sell";
+  static final String CURRENCY_FIELD = "Currency";
+  static final String NOTIONAL_FIELD = "Notional";
+  static final String START_DATE_FIELD = "Start Date";
+  static final String END_DATE_FIELD = "End Date";
+  static final String TENOR_FIELD = "Tenor";
+  static final String RATE_FIELD = "Rate";
+  static final String DAY_COUNT_FIELD = "Day Count";
+  static final String COLLATERAL_FIELD = "Collateral";
+  static final String COLLATERAL_QUANTITY_FIELD = "Collateral Quantity";
+
+  /**
+   * The reference data, used to compute the spot date of a convention.
+   */
+  private final ReferenceData refData;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance that uses the standard reference data.
+   *
+   * @return the loader
+   */
+  public static RepoTradeCsvLoader standard() {
+    return new RepoTradeCsvLoader(ReferenceData.standard());
+  }
+
+  /**
+   * Obtains an instance that uses the specified reference data.
+   *
+   * @param refData  the reference data, used to compute the spot date of a convention
+   * @return the loader
+   */
+  public static RepoTradeCsvLoader of(ReferenceData refData) {
+    return new RepoTradeCsvLoader(refData);
+  }
+
+  // restricted constructor
+  private RepoTradeCsvLoader(ReferenceData refData) {
+    this.refData = ArgChecker.notNull(refData, "refData");
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Streams the trades from the specified CSV source.
+   * <p>
+   * The rows are read and parsed lazily as the stream is consumed.
+   * The stream holds the underlying reader open, thus it must be closed,
+   * typically using a try-with-resources block.
+   *
+   * @param source  the CSV source
+   * @return the stream of trades
+   * @throws UncheckedIOException if an IO error occurs
+   * @throws IllegalArgumentException if the file or a row is invalid
+   */
+  public Stream<RepoTrade> stream(CharSource source) {
+    ArgChecker.notNull(source, "source");
+    CsvIterator csv = CsvIterator.of(source, true);
+    Spliterator<CsvRow> spliterator =
+        Spliterators.spliteratorUnknownSize(csv, Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false)
+        .map(this::parseRow)
+        .onClose(csv::close);
+  }
+
+  /**
+   * Loads all the trades from the specified CSV source.
+   * <p>
+   * This reads the whole file into a list.
+   * Use {@link #stream(CharSource)} to process large files.
+   *
+   * @param source  the CSV source
+   * @return the list of trades
+   * @throws UncheckedIOException if an IO error occurs
+   * @throws IllegalArgumentException if the file or a row is invalid
+   */
+  public ImmutableList<RepoTrade> load(CharSource source) {
+    try (Stream<RepoTrade> trades = stream(source)) {
+      return trades.collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Parses a single row into a trade.
+   *
+   * @param row  the CSV row
+   * @return the trade
+   * @throws IllegalArgumentException if the row is invalid
+   */
+  public RepoTrade parseRow(CsvRow row) {
+    try {
+      return parse(row);
+    } catch (RuntimeException ex) {
+      throw new IllegalArgumentException(
+          Messages.format("Unable to parse repo trade at line {}: {}", row.lineNumber(), ex.getMessage()), ex);
+    }
+  }
+
+  // parses the row
+  private RepoTrade parse(CsvRow row) {
+    TradeInfo info = parseTradeInfo(row);
+    BuySell buySell = BuySell.of(row.getValue(BUY_SELL_FIELD));
+    double notional = Double.parseDouble(row.getValue(NOTIONAL_FIELD));
+    double rate = Double.parseDouble(row.getValue(RATE_FIELD));
+    List<SecurityPosition> collateral = parseCollateral(row);
+    Optional<Currency> currency = row.findValue(CURRENCY_FIELD).map(Currency::parse);
+    Optional<DayCount> dayCount = row.findValue(DAY_COUNT_FIELD).map(DayCount::of);
+    Optional<LocalDate> startDate = row.findValue(START_DATE_FIELD).map(LocalDate::parse);
+    Optional<LocalDate> endDate = row.findValue(END_DATE_FIELD).map(LocalDate::parse);
+    Optional<Tenor> tenor = row.findValue(TENOR_FIELD).map(Tenor::parse);
+    Optional<RepoConvention> convention = row.findValue(CONVENTION_FIELD).map(RepoConvention::of);
+
+    // trade based on a convention
+    if (convention.isPresent()) {
+      RepoConvention conv = convention.get();
+      if (currency.isPresent() && !currency.get().equals(conv.getCurrency())) {
+        throw new IllegalArgumentException(Messages.format(
+            "Currency {} does not match convention '{}'", currency.get(), conv.getName()));
+      }
+      LocalDate start = startDate.orElseGet(() -> conv.calculateSpotDateFromTradeDate(
+          info.getTradeDate().orElseThrow(() -> new IllegalArgumentException(
+              "Either 'Start Date' or 'Trade Date' must be specified")),
+          refData));
+      LocalDate end = parseEndDate(start, endDate, tenor);
+      RepoTrade trade = conv.toTrade(info, start, end, collateral, buySell, notional, rate);
+      if (dayCount.isPresent()) {
+        return trade.toBuilder()
+            .product(trade.getProduct().toBuilder().dayCount(dayCount.get()).build())
+            .build();
+      }
+      return trade;
+    }
+    // trade based on explicit terms
+    LocalDate start = startDate.orElseThrow(() -> new IllegalArgumentException(
+        "Either 'Start Date' or 'Convention' must be specified"));
+    Repo product = Repo.builder()
+        .buySell(buySell)
+        .collateral(collateral)
+        .currency(currency.orElseThrow(() -> new IllegalArgumentException(
+            "Either 'Currency' or 'Convention' must be specified")))
+        .notional(notional)
+        .startDate(start)
+        .endDate(parseEndDate(start, endDate, tenor))
+        .dayCount(dayCount.orElseThrow(() -> new IllegalArgumentException(
+            "Either 'Day Count' or 'Convention' must be specified")))
+        .rate(rate)
+        .build();
+    return RepoTrade.builder()
+        .info(info)
+        .product(product)
+        .build();
+  }
+
+  // parses the trade info
+  private static TradeInfo parseTradeInfo(CsvRow row) {
+    TradeInfo.Builder builder = TradeInfo.builder();
+    Optional<String> idValue = row.findValue(ID_FIELD);
+    if (idValue.isPresent()) {
+      String scheme = row.findValue(ID_SCHEME_FIELD).orElse(DEFAULT_TRADE_SCHEME);
+      builder.id(StandardId.of(scheme, idValue.get()));
+    }
+    row.findValue(TRADE_DATE_FIELD).map(LocalDate::parse).ifPresent(builder::tradeDate);
+    return builder.build();
+  }
+
+  // parses the end date, either explicit or as a tenor from the start date
+  private static LocalDate parseEndDate(LocalDate startDate, Optional<LocalDate> endDate, Optional<Tenor> tenor) {
+    if (endDate.isPresent()) {
+      if (tenor.isPresent()) {
+        throw new IllegalArgumentException("Only one of 'End Date' and 'Tenor' may be specified");
+      }
+      return endDate.get();
+    }
+    return startDate.plus(tenor.orElseThrow(() -> new IllegalArgumentException(
+        "Either 'End Date' or 'Tenor' must be specified")));
+  }
+
+  // parses the collateral, with quantities defaulted to one
+  private static List<SecurityPosition> parseCollateral(CsvRow row) {
+    List<String> securityIds = LIST_SPLITTER.splitToList(row.getValue(COLLATERAL_FIELD));
+    Optional<List<String>> quantities = row.findValue(COLLATERAL_QUANTITY_FIELD).map(LIST_SPLITTER::splitToList);
+    if (quantities.isPresent() && quantities.get().size() != securityIds.size()) {
+      throw new IllegalArgumentException(Messages.format(
+          "'Collateral Quantity' must have {} entries to match 'Collateral'", securityIds.size()));
+    }
+    ImmutableList.Builder<SecurityPosition> builder = ImmutableList.builder();
+    for (int i = 0; i < securityIds.size(); i++) {
+      double quantity = quantities.isPresent() ? Double.parseDouble(quantities.get().get(i)) : 1d;
+      builder.add(SecurityPosition.ofNet(SecurityId.parse(securityIds.get(i)), quantity));
+    }
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import com.google.common.collect.ImmutableList;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.ReferenceDataNotFoundException;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.basics.date.DateAdjuster;
+import com.opengamma.strata.basics.date.DayCount;
+import com.opengamma.strata.collect.ArgChecker;
+import com.opengamma.strata.extra.internal.ChunkedForEach;
+import com.opengamma.strata.product.LegalEntityId;
+
+/**
+ * Resolves lists of repo trades.
+ * <p>
+ * The result is the same as calling {@link RepoTrade#resolve(ReferenceData)} for each trade.
+ * Within a list, the work shared by the trades is done once:
+ * each distinct business day adjustment is resolved against the reference data once, and the adjusted dates
+ * and year fraction are computed once for each distinct combination of adjustment, day count, start and end.
+ * <p>
+ * The trades are resolved using {@link ChunkedForEach}. Below the threshold number of trades,
+ * the trades are resolved in order on the calling thread. At or above the threshold, the trades are split
+ * into contiguous chunks, one per available processor, which are resolved using the executor,
+ * the first chunk being resolved by the calling thread.
+ * <p>
+ * The trades can be resolved to a list of {@link ResolvedRepoTrade}, or to a columnar {@link ResolvedRepoBook}.
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+public final class RepoTradeResolver {
+
+  /**
+   * The reference data.
+   */
+  private final ReferenceData refData;
+  /**
+   * The processing of the trades, in parallel chunks if large enough.
+   */
+  private final ChunkedForEach chunks;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance resolving the trades on the calling thread.
+   *
+   * @param refData  the reference data
+   * @return the resolver
+   */
+  public static RepoTradeResolver of(ReferenceData refData) {
+    ArgChecker.notNull(refData, "refData");
+    return new RepoTradeResolver(refData, ChunkedForEach.SEQUENTIAL);
+  }
+
+  /**
+   * Obtains an instance resolving the trades in parallel at or above a threshold.
+   * <p>
+   * The number of chunks is the number of available processors.
+   *
+   * @param refData  the reference data
+   * @param threshold  the minimum number of trades for the parallel resolution
+   * @param executor  the executor used to resolve the chunks
+   * @return the resolver
+   */
+  public static RepoTradeResolver of(ReferenceData refData, int threshold, Executor executor) {
+    ArgChecker.notNull(refData, "refData");
+    return new RepoTradeResolver(refData, ChunkedForEach.of(threshold, executor));
+  }
+
+  // restricted constructor
+  private RepoTradeResolver(ReferenceData refData, ChunkedForEach chunks) {
+    this.refData = refData;
+    this.chunks = chunks;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Resolves the trades.
+   *
+   * @param trades  the trades
+   * @return the resolved trades, in the same order
+   * @throws ReferenceDataNotFoundException if an identifier cannot be resolved in the reference data
+   * @throws IllegalArgumentException if the collateral of a trade is not based on a unique legal entity
+   */
+  public ImmutableList<ResolvedRepoTrade> resolve(List<RepoTrade> trades) {
+    ArgChecker.noNulls(trades, "trades");
+    Batch batch = new Batch(trades);
+    ResolvedRepoTrade[] resolved = new ResolvedRepoTrade[trades.size()];
+    chunks.forEach(trades.size(), i -> {
+      RepoTrade trade = trades.get(i);
+      Repo product = trade.getProduct();
+      Terms terms = batch.terms(product);
+      ResolvedRepo resolvedProduct = product.resolve(
+          product.resolveLegalEntityId(refData), terms.startDate, terms.endDate, terms.yearFraction);
+      resolved[i] = ResolvedRepoTrade.of(trade.getInfo(), resolvedProduct);
+    });
+    return ImmutableList.copyOf(resolved);
+  }
+
+  /**
+   * Resolves the trades into a columnar book.
+   *
+   * @param trades  the trades
+   * @return the resolved book, in the same order
+   * @throws ReferenceDataNotFoundException if an identifier cannot be resolved in the reference data
+   * @throws IllegalArgumentException if the collateral of a trade is not based on a unique legal entity
+   */
+  public ResolvedRepoBook resolveBook(List<RepoTrade> trades) {
+    ArgChecker.noNulls(trades, "trades");
+    Batch batch = new Batch(trades);
+    int size = trades.size();
+    LegalEntityId[] tradeLegalEntityIds = new LegalEntityId[size];
+    LocalDate[] startDates = new LocalDate[size];
+    LocalDate[] endDates = new LocalDate[size];
+    double[] yearFractions = new double[size];
+    double[] notionals = new double[size];
+    double[] rates = new double[size];
+    chunks.forEach(size, i -> {
+      Repo product = trades.get(i).getProduct();
+      Terms terms = batch.terms(product);
+      tradeLegalEntityIds[i] = product.resolveLegalEntityId(refData);
+      startDates[i] = terms.startDate;
+      endDates[i] = terms.endDate;
+      yearFractions[i] = terms.yearFraction;
+      notionals[i] = product.getBuySell().normalize(product.getNotional());
+      rates[i] = product.getRate();
+    });
+    // intern the legal entities in order of first appearance
+    Map<LegalEntityId, Integer> indices = new HashMap<>();
+    List<LegalEntityId> legalEntityIds = new ArrayList<>();
+    int[] legalEntityIndices = new int[size];
+    for (int i = 0; i < size; i++) {
+      Integer index = indices.get(tradeLegalEntityIds[i]);
+      if (index == null) {
+        index = legalEntityIds.size();
+        indices.put(tradeLegalEntityIds[i], index);
+        legalEntityIds.add(tradeLegalEntityIds[i]);
+      }
+      legalEntityIndices[i] = index;
+    }
+    return new ResolvedRepoBook(
+        trades, legalEntityIds, legalEntityIndices, startDates, endDates, yearFractions, notionals, rates);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return chunks.isParallel() ?
+        "RepoTradeResolver[threshold=" + chunks.getThreshold() + ", parallelism=" + chunks.getParallelism() + "]" :
+        "RepoTradeResolver[sequential]";
+  }
+
+  //-------------------------------------------------------------------------
+  // the state shared by the trades of a single list
+  private final class Batch {
+    // the resolved adjusters, populated before any trade is resolved
+    private final Map<BusinessDayAdjustment, DateAdjuster> adjusters = new HashMap<>();
+    // the adjusted dates and year fraction of each distinct set of terms
+    private final ConcurrentHashMap<TermsKey, Terms> terms = new ConcurrentHashMap<>();
+
+    private Batch(List<RepoTrade> trades) {
+      for (RepoTrade trade : trades) {
+        BusinessDayAdjustment adjustment =
+            trade.getProduct().getBusinessDayAdjustment().orElse(BusinessDayAdjustment.NONE);
+        if (!adjusters.containsKey(adjustment)) {
+          adjusters.put(adjustment, adjustment.resolve(refData));
+        }
+      }
+    }
+
+    // gets the adjusted dates and year fraction of a repo
+    private Terms terms(Repo product) {
+      BusinessDayAdjustment adjustment = product.getBusinessDayAdjustment().orElse(BusinessDayAdjustment.NONE);
+      TermsKey key = new TermsKey(adjustment, product.getDayCount(), product.getStartDate(), product.getEndDate());
+      return terms.computeIfAbsent(key, k -> {
+        DateAdjuster adjuster = adjusters.get(k.adjustment);
+        LocalDate startDate = adjuster.adjust(k.startDate);
+        LocalDate endDate = adjuster.adjust(k.endDate);
+        return new Terms(startDate, endDate, k.dayCount.yearFraction(startDate, endDate));
+      });
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // the unadjusted terms of a repo
+  private static final class TermsKey {
+    // the business day adjustment
+    private final BusinessDayAdjustment adjustment;
+    // the day count
+    private final DayCount dayCount;
+    // the unadjusted start date
+    private final LocalDate startDate;
+    // the unadjusted end date
+    private final LocalDate endDate;
+    // the precomputed hash code
+    private final int hashCode;
+
+    private TermsKey(BusinessDayAdjustment adjustment, DayCount dayCount, LocalDate startDate, LocalDate endDate) {
+      this.adjustment = adjustment;
+      this.dayCount = dayCount;
+      this.startDate = startDate;
+      this.endDate = endDate;
+      this.hashCode = Objects.hash(adjustment, dayCount, startDate, endDate);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof TermsKey)) {
+        return false;
+      }
+      TermsKey other = (TermsKey) obj;
+      return startDate.equals(other.startDate) &&
+          endDate.equals(other.endDate) &&
+          dayCount.equals(other.dayCount) &&
+          adjustment.equals(other.adjustment);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  // the adjusted terms of a repo
+  private static final class Terms {
+    // the adjusted start date
+    private final LocalDate startDate;
+    // the adjusted end date
+    private final LocalDate endDate;
+    // the year fraction
+    private final double yearFraction;
+
+    private Terms(LocalDate startDate, LocalDate endDate, double yearFraction) {
+      this.startDate = startDate;
+      this.endDate = endDate;
+      this.yearFraction = yearFraction;
+    }
+  }
+
+}
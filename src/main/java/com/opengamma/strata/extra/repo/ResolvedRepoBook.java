@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.opengamma.strata.basics.currency.Currency;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.TradeInfo;
+
+/**
+ * A book of repo trades, resolved into columns.
+ * <p>
+ * This holds the same information as a list of {@link ResolvedRepoTrade}, with each field stored as an array
+ * indexed by the position of the trade in the book. The legal entities are interned, each trade referring
+ * to its legal entity by index. This allows a large book to be scanned without dereferencing a bean per trade.
+ * <p>
+ * Instances are created using {@link RepoTradeResolver#resolveBook(List)}.
+ * The resolved form of a single trade can be obtained using {@link #resolvedTrade(int)}.
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+public final class ResolvedRepoBook {
+
+  /**
+   * The trades that were resolved.
+   */
+  private final ImmutableList<RepoTrade> trades;
+  /**
+   * The distinct legal entities of the collateral.
+   */
+  private final ImmutableList<LegalEntityId> legalEntityIds;
+  /**
+   * The index of the legal entity of each trade.
+   */
+  private final int[] legalEntityIndices;
+  /**
+   * The adjusted start date of each trade.
+   */
+  private final LocalDate[] startDates;
+  /**
+   * The adjusted end date of each trade.
+   */
+  private final LocalDate[] endDates;
+  /**
+   * The year fraction of each trade.
+   */
+  private final double[] yearFractions;
+  /**
+   * The signed notional of each trade.
+   */
+  private final double[] notionals;
+  /**
+   * The rate of each trade.
+   */
+  private final double[] rates;
+
+  // restricted constructor, the arrays are not copied
+  ResolvedRepoBook(
+      List<RepoTrade> trades,
+      List<LegalEntityId> legalEntityIds,
+      int[] legalEntityIndices,
+      LocalDate[] startDates,
+      LocalDate[] endDates,
+      double[] yearFractions,
+      double[] notionals,
+      double[] rates) {
+
+    this.trades = ImmutableList.copyOf(trades);
+    this.legalEntityIds = ImmutableList.copyOf(legalEntityIds);
+    this.legalEntityIndices = legalEntityIndices;
+    this.startDates = startDates;
+    this.endDates = endDates;
+    this.yearFractions = yearFractions;
+    this.notionals = notionals;
+    this.rates = rates;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of trades.
+   *
+   * @return the number of trades
+   */
+  public int size() {
+    return trades.size();
+  }
+
+  /**
+   * Gets the trades that were resolved, in the order of the book.
+   *
+   * @return the trades
+   */
+  public ImmutableList<RepoTrade> getTrades() {
+    return trades;
+  }
+
+  /**
+   * Gets the distinct legal entities of the collateral, in order of first appearance.
+   *
+   * @return the legal entities
+   */
+  public ImmutableList<LegalEntityId> getLegalEntityIds() {
+    return legalEntityIds;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the trade information of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the trade information
+   */
+  public TradeInfo info(int index) {
+    return trades.get(index).getInfo();
+  }
+
+  /**
+   * Gets the index of the legal entity of a trade in {@link #getLegalEntityIds()}.
+   *
+   * @param index  the index of the trade
+   * @return the index of the legal entity
+   */
+  public int legalEntityIndex(int index) {
+    return legalEntityIndices[index];
+  }
+
+  /**
+   * Gets the legal entity of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the legal entity identifier
+   */
+  public LegalEntityId legalEntityId(int index) {
+    return legalEntityIds.get(legalEntityIndices[index]);
+  }
+
+  /**
+   * Gets the currency of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the currency
+   */
+  public Currency currency(int index) {
+    return trades.get(index).getProduct().getCurrency();
+  }
+
+  /**
+   * Gets the adjusted start date of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the start date
+   */
+  public LocalDate startDate(int index) {
+    return startDates[index];
+  }
+
+  /**
+   * Gets the adjusted end date of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the end date
+   */
+  public LocalDate endDate(int index) {
+    return endDates[index];
+  }
+
+  /**
+   * Gets the year fraction of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the year fraction
+   */
+  public double yearFraction(int index) {
+    return yearFractions[index];
+  }
+
+  /**
+   * Gets the notional of a trade.
+   * <p>
+   * The notional is positive if the repo is 'Buy' and negative if the repo is 'Sell'.
+   *
+   * @param index  the index of the trade
+   * @return the signed notional
+   */
+  public double notional(int index) {
+    return notionals[index];
+  }
+
+  /**
+   * Gets the rate of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the rate
+   */
+  public double rate(int index) {
+    return rates[index];
+  }
+
+  /**
+   * Gets the interest of a trade.
+   * <p>
+   * The interest is {@code rate * notional * yearFraction}, as in {@link ResolvedRepo#getInterest()}.
+   *
+   * @param index  the index of the trade
+   * @return the signed interest
+   */
+  public double interest(int index) {
+    return rates[index] * notionals[index] * yearFractions[index];
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates the resolved form of a trade.
+   *
+   * @param index  the index of the trade
+   * @return the resolved trade
+   */
+  public ResolvedRepoTrade resolvedTrade(int index) {
+    RepoTrade trade = trades.get(index);
+    ResolvedRepo product = trade.getProduct()
+        .resolve(legalEntityId(index), startDates[index], endDates[index], yearFractions[index]);
+    return ResolvedRepoTrade.of(trade.getInfo(), product);
+  }
+
+  /**
+   * Creates the resolved form of all the trades.
+   *
+   * @return the resolved trades, in the order of the book
+   */
+  public ImmutableList<ResolvedRepoTrade> resolvedTrades() {
+    ImmutableList.Builder<ResolvedRepoTrade> builder = ImmutableList.builder();
+    for (int i = 0; i < trades.size(); i++) {
+      builder.add(resolvedTrade(i));
+    }
+    return builder.build();
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "ResolvedRepoBook[trades=" + trades.size() + ", legalEntities=" + legalEntityIds.size() + "]";
+  }
+
+}
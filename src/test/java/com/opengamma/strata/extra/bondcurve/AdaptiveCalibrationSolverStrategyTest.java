@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.collect.TestHelper.assertThrows;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.array.DoubleMatrix;
+import com.opengamma.strata.market.curve.CurveGroupName;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.CurveParameterSize;
+
+/**
+ * Test {@link AdaptiveCalibrationSolverStrategy}.
+ */
+@Test
+public class AdaptiveCalibrationSolverStrategyTest {
+
+  private static final LegalEntityDiscountingCurveGroupDefinition GROUP_DEFINITION =
+      LegalEntityDiscountingCurveGroupDefinition.builder()
+          .name(CurveGroupName.of("GROUP"))
+          .repoCurveGroups(ImmutableMap.of())
+          .issuerCurveGroups(ImmutableMap.of())
+          .repoCurveEntries(ImmutableList.of())
+          .issuerCurveEntries(ImmutableList.of())
+          .curveDefinitions(ImmutableList.of())
+          .build();
+  private static final CurveName CURVE_NAME = CurveName.of("Curve");
+  private static final List<CurveName> KEY = ImmutableList.of(CURVE_NAME);
+  private static final List<CurveParameterSize> ORDER_1 = ImmutableList.of(CurveParameterSize.of(CURVE_NAME, 1));
+  private static final List<CurveParameterSize> ORDER_2 = ImmutableList.of(CurveParameterSize.of(CURVE_NAME, 2));
+  // x0^2 = 4 and x1 = x0
+  private static final Function<DoubleArray, DoubleArray> VALUE =
+      x -> DoubleArray.of(x.get(0) * x.get(0) - 4d, x.get(1) - x.get(0));
+  private static final Function<DoubleArray, DoubleMatrix> DERIVATIVE =
+      x -> DoubleMatrix.of(2, 2, 2d * x.get(0), 0d, -1d, 1d);
+  private static final DoubleArray GUESS = DoubleArray.of(1d, 1d);
+  private static final DoubleArray ROOT = DoubleArray.of(2d, 2d);
+  private static final double TOL = 1e-8;
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    assertThrowsIllegalArg(() -> AdaptiveCalibrationSolverStrategy.of(0d, 1e-9, 100));
+    assertThrowsIllegalArg(() -> AdaptiveCalibrationSolverStrategy.of(1e-9, 1e-9, 0));
+    assertThrowsIllegalArg(() -> AdaptiveCalibrationSolverStrategy.of(1e-9, 1e-9, 100, -1, true));
+    assertEquals(AdaptiveCalibrationSolverStrategy.of(1e-10, 1e-9, 100).getToleranceAbs(), 1e-10);
+  }
+
+  public void test_solve_newton() {
+    AdaptiveCalibrationSolverStrategy test = AdaptiveCalibrationSolverStrategy.of(1e-12, 1e-12, 100);
+    assertFalse(test.findRecord(KEY).isPresent());
+    DoubleArray root = test.solve(GROUP_DEFINITION, ORDER_2, VALUE, DERIVATIVE, GUESS);
+    assertTrue(root.equalWithTolerance(ROOT, TOL));
+    AdaptiveCalibrationSolverStrategy.Record record = test.findRecord(KEY).get();
+    assertEquals(record.getSolver(), CalibrationSolver.NEWTON);
+    assertEquals(record.getParameterCount(), 2);
+    assertTrue(record.isConverged());
+    assertTrue(record.getFunctionEvaluations() > 0);
+    assertTrue(record.findJacobian().isPresent());
+    assertEquals(test.getRecords(), ImmutableMap.of(KEY, record));
+    test.clear();
+    assertTrue(test.getRecords().isEmpty());
+  }
+
+  public void test_solve_broyden() {
+    AdaptiveCalibrationSolverStrategy test = AdaptiveCalibrationSolverStrategy.of(1e-12, 1e-12, 100, 1, true);
+    AtomicInteger derivatives = new AtomicInteger();
+    Function<DoubleArray, DoubleMatrix> derivative = x -> {
+      derivatives.incrementAndGet();
+      return DERIVATIVE.apply(x);
+    };
+    DoubleArray root = test.solve(GROUP_DEFINITION, ORDER_2, VALUE, derivative, GUESS);
+    assertTrue(root.equalWithTolerance(ROOT, TOL));
+    AdaptiveCalibrationSolverStrategy.Record record = test.findRecord(KEY).get();
+    assertEquals(record.getSolver(), CalibrationSolver.BROYDEN);
+    assertTrue(record.isConverged());
+    // no derivative is evaluated at the root, it is recorded when received from the calibrator
+    assertEquals(derivatives.get(), 1);
+    assertFalse(record.findJacobian().isPresent());
+    test.onRootDerivative(ORDER_2, DERIVATIVE.apply(root));
+    DoubleMatrix jacobian = test.findRecord(KEY).get().findJacobian().get();
+    assertTrue(jacobian.equalWithTolerance(DERIVATIVE.apply(ROOT), TOL));
+    // the derivative at the root is used as the initial Jacobian of the next calibration, and kept
+    DoubleArray root2 = test.solve(GROUP_DEFINITION, ORDER_2, VALUE, derivative, DoubleArray.of(1.9d, 1.9d));
+    assertTrue(root2.equalWithTolerance(ROOT, TOL));
+    assertEquals(derivatives.get(), 1);
+    assertEquals(test.findRecord(KEY).get().findJacobian().get(), jacobian);
+  }
+
+  public void test_onRootDerivative() {
+    AdaptiveCalibrationSolverStrategy test = AdaptiveCalibrationSolverStrategy.of(1e-12, 1e-12, 100, 1, true);
+    // ignored without a record, or with a different number of parameters
+    test.onRootDerivative(ORDER_2, DERIVATIVE.apply(ROOT));
+    assertFalse(test.findRecord(KEY).isPresent());
+    test.solve(GROUP_DEFINITION, ORDER_2, VALUE, DERIVATIVE, GUESS);
+    test.onRootDerivative(ORDER_1, DoubleMatrix.of(1, 1, 1d));
+    assertFalse(test.findRecord(KEY).get().findJacobian().isPresent());
+    // ignored without Jacobian reuse
+    AdaptiveCalibrationSolverStrategy noReuse = AdaptiveCalibrationSolverStrategy.of(1e-12, 1e-12, 100, 1, false);
+    noReuse.solve(GROUP_DEFINITION, ORDER_2, VALUE, DERIVATIVE, GUESS);
+    noReuse.onRootDerivative(ORDER_2, DERIVATIVE.apply(ROOT));
+    assertFalse(noReuse.findRecord(KEY).get().findJacobian().isPresent());
+  }
+
+  public void test_solve_noJacobianReuse() {
+    AdaptiveCalibrationSolverStrategy test = AdaptiveCalibrationSolverStrategy.of(1e-12, 1e-12, 100, 1, false);
+    test.solve(GROUP_DEFINITION, ORDER_2, VALUE, DERIVATIVE, GUESS);
+    assertFalse(test.findRecord(KEY).get().findJacobian().isPresent());
+  }
+
+  public void test_solve_fallback() {
+    AdaptiveCalibrationSolverStrategy test = AdaptiveCalibrationSolverStrategy.of(1e-12, 1e-12, 100);
+    // the first evaluation fails, thus Newton fails and damped Newton is used
+    AtomicInteger calls = new AtomicInteger();
+    Function<DoubleArray, DoubleArray> value = x -> {
+      if (calls.getAndIncrement() == 0) {
+        throw new IllegalStateException("Failure");
+      }
+      return DoubleArray.of(Math.atan(x.get(0)));
+    };
+    Function<DoubleArray, DoubleMatrix> derivative = x -> DoubleMatrix.of(1, 1, 1d / (1d + x.get(0) * x.get(0)));
+    // the full Newton step overshoots from 3
+    DoubleArray root = test.solve(GROUP_DEFINITION, ORDER_1, value, derivative, DoubleArray.of(3d));
+    assertEquals(root.get(0), 0d, TOL);
+    AdaptiveCalibrationSolverStrategy.Record record = test.findRecord(KEY).get();
+    assertEquals(record.getSolver(), CalibrationSolver.DAMPED_NEWTON);
+    assertTrue(record.isConverged());
+    // the next calibration uses the method that converged
+    root = test.solve(GROUP_DEFINITION, ORDER_1, value, derivative, DoubleArray.of(-2d));
+    assertEquals(root.get(0), 0d, TOL);
+    assertEquals(test.findRecord(KEY).get().getSolver(), CalibrationSolver.DAMPED_NEWTON);
+  }
+
+  public void test_solve_failure() {
+    AdaptiveCalibrationSolverStrategy test = AdaptiveCalibrationSolverStrategy.of(1e-12, 1e-12, 100);
+    Function<DoubleArray, DoubleArray> value = x -> {
+      throw new IllegalStateException("Failure");
+    };
+    assertThrows(
+        () -> test.solve(GROUP_DEFINITION, ORDER_2, value, DERIVATIVE, GUESS),
+        IllegalStateException.class);
+    AdaptiveCalibrationSolverStrategy.Record record = test.findRecord(KEY).get();
+    assertEquals(record.getSolver(), CalibrationSolver.DAMPED_NEWTON);
+    assertFalse(record.isConverged());
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.collect.TestHelper.assertThrows;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntFunction;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.array.DoubleMatrix;
+
+/**
+ * Test {@link CalibrationRowAssembler}.
+ */
+@Test
+public class CalibrationRowAssemblerTest {
+
+  private static final IntFunction<DoubleArray> ROWS = i -> DoubleArray.of(3, j -> Math.exp(0.1 * i + 0.01 * j));
+
+  public void test_sequential() {
+    CalibrationRowAssembler test = CalibrationRowAssembler.SEQUENTIAL;
+    assertFalse(test.isParallel());
+    assertEquals(test.assemble(10, 3, ROWS), DoubleMatrix.ofArrayObjects(10, 3, ROWS));
+  }
+
+  public void test_parallel() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      CalibrationRowAssembler test = CalibrationRowAssembler.of(5, executor, 4);
+      assertTrue(test.isParallel());
+      assertEquals(test.getThreshold(), 5);
+      Set<Thread> threads = ConcurrentHashMap.newKeySet();
+      IntFunction<DoubleArray> rows = i -> {
+        threads.add(Thread.currentThread());
+        return ROWS.apply(i);
+      };
+      assertEquals(test.assemble(103, 3, rows), DoubleMatrix.ofArrayObjects(103, 3, ROWS));
+      assertTrue(threads.contains(Thread.currentThread()));
+      // below the threshold, only the calling thread is used
+      threads.clear();
+      assertEquals(test.assemble(4, 3, rows), DoubleMatrix.ofArrayObjects(4, 3, ROWS));
+      assertEquals(threads.size(), 1);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_forEachTask() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      // the tasks are processed in parallel whatever the row threshold
+      CalibrationRowAssembler test = CalibrationRowAssembler.of(100, executor, 2);
+      Set<Thread> threads = ConcurrentHashMap.newKeySet();
+      AtomicIntegerArray counts = new AtomicIntegerArray(2);
+      test.forEachTask(2, i -> {
+        threads.add(Thread.currentThread());
+        counts.incrementAndGet(i);
+      });
+      assertEquals(counts.get(0), 1);
+      assertEquals(counts.get(1), 1);
+      assertEquals(threads.size(), 2);
+      // sequential
+      threads.clear();
+      CalibrationRowAssembler.SEQUENTIAL.forEachTask(2, i -> threads.add(Thread.currentThread()));
+      assertEquals(threads, Collections.singleton(Thread.currentThread()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_parallel_exception() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      CalibrationRowAssembler test = CalibrationRowAssembler.of(1, executor, 2);
+      assertThrows(
+          () -> test.assemble(10, 3, i -> {
+            if (i == 8) {
+              throw new IllegalStateException("Row failed");
+            }
+            return ROWS.apply(i);
+          }),
+          IllegalStateException.class);
+      assertThrowsIllegalArg(() -> test.assemble(10, 2, ROWS));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_of_invalid() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertThrowsIllegalArg(() -> CalibrationRowAssembler.of(0, executor));
+      assertThrowsIllegalArg(() -> CalibrationRowAssembler.of(1, null));
+      assertThrowsIllegalArg(() -> CalibrationRowAssembler.of(1, executor, 0));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
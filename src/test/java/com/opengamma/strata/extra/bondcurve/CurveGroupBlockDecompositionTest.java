@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.CurveParameterSize;
+
+/**
+ * Test {@link CurveGroupBlockDecomposition}.
+ */
+@Test
+public class CurveGroupBlockDecompositionTest {
+
+  private static final CurveParameterSize CURVE_A = CurveParameterSize.of(CurveName.of("A"), 2);
+  private static final CurveParameterSize CURVE_B = CurveParameterSize.of(CurveName.of("B"), 1);
+  private static final CurveParameterSize CURVE_C = CurveParameterSize.of(CurveName.of("C"), 2);
+  private static final CurveParameterSize CURVE_D = CurveParameterSize.of(CurveName.of("D"), 1);
+  private static final ImmutableList<CurveParameterSize> ORDER = ImmutableList.of(CURVE_A, CURVE_B, CURVE_C, CURVE_D);
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    // A and B depend on each other, C is independent, D depends on C
+    DoubleArray[] sensitivities = new DoubleArray[] {
+        DoubleArray.of(1, 0, 0, 0, 0, 0),
+        DoubleArray.of(1, 1, 2, 0, 0, 0),
+        DoubleArray.of(3, 0, 1, 0, 0, 0),
+        DoubleArray.of(0, 0, 0, 1, 0, 0),
+        DoubleArray.of(0, 0, 0, 1, 1, 0),
+        DoubleArray.of(0, 0, 0, 0, 2, 1)};
+    CurveGroupBlockDecomposition test = CurveGroupBlockDecomposition.of(ORDER, i -> sensitivities[i]);
+    assertEquals(test.getBlockCount(), 3);
+    assertEquals(test.getLevels().size(), 2);
+    ImmutableList<CurveGroupBlockDecomposition.Block> level0 = test.getLevels().get(0);
+    assertEquals(level0.size(), 2);
+    assertEquals(level0.get(0).getCurveOrder(), ImmutableList.of(CURVE_A, CURVE_B));
+    assertEquals(level0.get(0).getParameterIndices(), new int[] {0, 1, 2});
+    assertEquals(level0.get(1).getCurveOrder(), ImmutableList.of(CURVE_C));
+    assertEquals(level0.get(1).getParameterIndices(), new int[] {3, 4});
+    ImmutableList<CurveGroupBlockDecomposition.Block> level1 = test.getLevels().get(1);
+    assertEquals(level1.size(), 1);
+    assertEquals(level1.get(0).getCurveOrder(), ImmutableList.of(CURVE_D));
+    assertEquals(level1.get(0).getParameterIndices(), new int[] {5});
+  }
+
+  public void test_of_coupled() {
+    // D depends on A, which makes all the curves a single block
+    DoubleArray[] sensitivities = new DoubleArray[] {
+        DoubleArray.of(1, 0, 0, 0, 0, 1),
+        DoubleArray.of(0, 1, 1, 0, 0, 0),
+        DoubleArray.of(0, 0, 1, 1, 0, 0),
+        DoubleArray.of(0, 0, 0, 1, 0, 0),
+        DoubleArray.of(0, 0, 0, 0, 1, 1),
+        DoubleArray.of(1, 0, 0, 0, 0, 1)};
+    CurveGroupBlockDecomposition test = CurveGroupBlockDecomposition.of(ORDER, i -> sensitivities[i]);
+    assertEquals(test.getBlockCount(), 1);
+    assertEquals(test.getLevels().get(0).get(0).getCurveOrder(), ORDER);
+  }
+
+}
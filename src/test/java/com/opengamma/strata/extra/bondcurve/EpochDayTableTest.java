@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.time.LocalDate;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link EpochDayTable}.
+ */
+@Test
+public class EpochDayTableTest {
+
+  private static final LocalDate START = LocalDate.of(2018, 1, 1);
+
+  public void test_addAndFind() {
+    EpochDayTable test = EpochDayTable.create();
+    assertEquals(test.size(), 0);
+    assertFalse(test.isFull());
+    int count = 100;
+    for (int i = 0; i < count; i++) {
+      int day = EpochDayTable.day(START.plusDays(7 * i));
+      assertEquals(test.find(day), -1);
+      if (test.isFull()) {
+        test = test.grown();
+      }
+      assertEquals(test.add(day), i);
+      assertEquals(test.find(day), i);
+    }
+    assertEquals(test.size(), count);
+    assertTrue(test.maxSize() >= count);
+    for (int i = 0; i < count; i++) {
+      assertEquals(test.find(EpochDayTable.day(START.plusDays(7 * i))), i);
+      assertEquals(test.find(EpochDayTable.day(START.plusDays(7 * i + 1))), -1);
+    }
+  }
+
+  public void test_grown() {
+    EpochDayTable test = EpochDayTable.create();
+    while (!test.isFull()) {
+      test.add(EpochDayTable.day(START.plusDays(test.size())));
+    }
+    EpochDayTable grown = test.grown();
+    assertEquals(grown.size(), test.size());
+    assertEquals(grown.maxSize(), test.maxSize() * 2);
+    assertFalse(grown.isFull());
+    for (int i = 0; i < test.size(); i++) {
+      assertEquals(grown.find(EpochDayTable.day(START.plusDays(i))), i);
+    }
+    assertEquals(grown.toString(), "EpochDayTable[size=" + test.size() + "]");
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.collect.TestHelper.date;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.data.MarketDataNotFoundException;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.Curves;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.LegalEntityGroup;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.pricer.DiscountFactors;
+import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+
+/**
+ * Test {@link IndexedLegalEntityDiscountingProvider}.
+ */
+@Test
+public class IndexedLegalEntityDiscountingProviderTest {
+
+  private static final LocalDate VAL_DATE = date(2017, 1, 20);
+  private static final LegalEntityId ISSUER_A = LegalEntityId.of("OG", "A");
+  private static final LegalEntityId ISSUER_B = LegalEntityId.of("OG", "B");
+  private static final LegalEntityId ISSUER_C = LegalEntityId.of("OG", "C");
+  private static final SecurityId SECURITY_B = SecurityId.of("OG", "bondB");
+  private static final RepoGroup REPO_A = RepoGroup.of("A");
+  private static final RepoGroup REPO_B = RepoGroup.of("B");
+  private static final LegalEntityGroup ISSUER_GROUP_A = LegalEntityGroup.of("A");
+  private static final DoubleArray TIMES = DoubleArray.of(0.25, 0.5, 1d);
+  private static final DiscountFactors DSC_REPO_A = ZeroRateDiscountFactors.of(EUR, VAL_DATE,
+      InterpolatedNodalCurve.of(Curves.zeroRates("RepoA", ACT_360), TIMES, DoubleArray.of(0.01, 0.012, 0.015), LINEAR));
+  private static final DiscountFactors DSC_REPO_B = ZeroRateDiscountFactors.of(GBP, VAL_DATE,
+      InterpolatedNodalCurve.of(Curves.zeroRates("RepoB", ACT_360), TIMES, DoubleArray.of(0.005, 0.006, 0.007), LINEAR));
+  private static final DiscountFactors DSC_ISSUER_A = ZeroRateDiscountFactors.of(EUR, VAL_DATE,
+      InterpolatedNodalCurve.of(Curves.zeroRates("IssuerA", ACT_360), TIMES, DoubleArray.of(0.03, 0.031, 0.032), LINEAR));
+  private static final ImmutableLegalEntityDiscountingProvider BASE = ImmutableLegalEntityDiscountingProvider.builder()
+      .valuationDate(VAL_DATE)
+      .repoCurveSecurityGroups(ImmutableMap.of(SECURITY_B, REPO_B))
+      .repoCurveGroups(ImmutableMap.of(ISSUER_A, REPO_A, ISSUER_B, REPO_B))
+      .repoCurves(ImmutableMap.of(Pair.of(REPO_A, EUR), DSC_REPO_A, Pair.of(REPO_B, GBP), DSC_REPO_B))
+      .issuerCurveGroups(ImmutableMap.of(ISSUER_A, ISSUER_GROUP_A))
+      .issuerCurves(ImmutableMap.of(Pair.of(ISSUER_GROUP_A, EUR), DSC_ISSUER_A))
+      .build();
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    IndexedLegalEntityDiscountingProvider test = IndexedLegalEntityDiscountingProvider.of(BASE);
+    assertEquals(test.getValuationDate(), VAL_DATE);
+    assertEquals(test.getCurrencyCount(), 2);
+    assertEquals(test.getRepoCurveCount(), 4);
+    assertSame(test.toImmutableLegalEntityDiscountingProvider(), BASE);
+    assertSame(IndexedLegalEntityDiscountingProvider.of(test), test);
+    assertEquals(test.findData(CurveName.of("RepoA")), BASE.findData(CurveName.of("RepoA")));
+  }
+
+  public void test_lookup() {
+    IndexedLegalEntityDiscountingProvider test = IndexedLegalEntityDiscountingProvider.of(BASE);
+    assertEquals(test.repoCurveDiscountFactors(ISSUER_A, EUR), BASE.repoCurveDiscountFactors(ISSUER_A, EUR));
+    assertEquals(test.repoCurveDiscountFactors(ISSUER_B, GBP), BASE.repoCurveDiscountFactors(ISSUER_B, GBP));
+    assertEquals(
+        test.repoCurveDiscountFactors(SECURITY_B, ISSUER_A, GBP),
+        BASE.repoCurveDiscountFactors(SECURITY_B, ISSUER_A, GBP));
+    assertEquals(test.issuerCurveDiscountFactors(ISSUER_A, EUR), BASE.issuerCurveDiscountFactors(ISSUER_A, EUR));
+  }
+
+  public void test_index() {
+    IndexedLegalEntityDiscountingProvider test = IndexedLegalEntityDiscountingProvider.of(BASE);
+    int repoIndex = test.repoCurveIndex(ISSUER_A, EUR);
+    assertSame(test.repoCurveDiscountFactors(repoIndex), test.repoCurveDiscountFactors(ISSUER_A, EUR));
+    assertEquals(test.repoCurveIndex(SECURITY_B, ISSUER_A, GBP), test.repoCurveIndex(ISSUER_B, GBP));
+    int issuerIndex = test.issuerCurveIndex(ISSUER_A, EUR);
+    assertSame(test.issuerCurveDiscountFactors(issuerIndex), test.issuerCurveDiscountFactors(ISSUER_A, EUR));
+  }
+
+  public void test_parameterSensitivity() {
+    IndexedLegalEntityDiscountingProvider test = IndexedLegalEntityDiscountingProvider.of(BASE);
+    LocalDate date = date(2017, 6, 20);
+    PointSensitivities point = test.repoCurveDiscountFactors(ISSUER_A, EUR).zeroRatePointSensitivity(date)
+        .combinedWith(test.issuerCurveDiscountFactors(ISSUER_A, EUR).zeroRatePointSensitivity(date))
+        .build();
+    assertEquals(test.parameterSensitivity(point), BASE.parameterSensitivity(point));
+  }
+
+  @Test(expectedExceptions = MarketDataNotFoundException.class)
+  public void test_missingGroup() {
+    IndexedLegalEntityDiscountingProvider.of(BASE).repoCurveIndex(ISSUER_C, EUR);
+  }
+
+  @Test(
+      expectedExceptions = MarketDataNotFoundException.class,
+      expectedExceptionsMessageRegExp = "Unable to find repo curve: A, GBP")
+  public void test_missingCurve() {
+    IndexedLegalEntityDiscountingProvider.of(BASE).repoCurveIndex(ISSUER_A, GBP);
+  }
+
+  @Test(
+      expectedExceptions = MarketDataNotFoundException.class,
+      expectedExceptionsMessageRegExp = "Unable to find issuer curve: A, GBP")
+  public void test_missingIssuerCurveCurrency() {
+    IndexedLegalEntityDiscountingProvider.of(BASE).issuerCurveIndex(ISSUER_A, GBP);
+  }
+
+  @Test(expectedExceptions = MarketDataNotFoundException.class)
+  public void test_missingIssuerCurve() {
+    IndexedLegalEntityDiscountingProvider.of(BASE).issuerCurveIndex(ISSUER_B, EUR);
+  }
+
+  public void test_serialization() throws Exception {
+    IndexedLegalEntityDiscountingProvider test = IndexedLegalEntityDiscountingProvider.of(BASE);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(test);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+      assertEquals(ois.readObject(), BASE);
+    }
+  }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.collect.TestHelper.date;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.data.MarketDataNotFoundException;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.Curves;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.LegalEntityGroup;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.pricer.DiscountFactors;
+import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+
+/**
+ * Test {@link LayeredLegalEntityDiscountingProvider}.
+ */
+@Test
+public class LayeredLegalEntityDiscountingProviderTest {
+
+  private static final LocalDate VAL_DATE = date(2017, 1, 20);
+  private static final LegalEntityId ISSUER_A = LegalEntityId.of("OG", "A");
+  private static final LegalEntityId ISSUER_B = LegalEntityId.of("OG", "B");
+  private static final SecurityId SECURITY_B = SecurityId.of("OG", "bondB");
+  private static final RepoGroup REPO_A = RepoGroup.of("A");
+  private static final RepoGroup REPO_B = RepoGroup.of("B");
+  private static final LegalEntityGroup ISSUER_GROUP_A = LegalEntityGroup.of("A");
+  private static final DoubleArray TIMES = DoubleArray.of(0.25, 0.5, 1d);
+  private static final DiscountFactors DSC_REPO_A = ZeroRateDiscountFactors.of(EUR, VAL_DATE,
+      InterpolatedNodalCurve.of(Curves.zeroRates("RepoA", ACT_360), TIMES, DoubleArray.of(0.01, 0.012, 0.015), LINEAR));
+  private static final DiscountFactors DSC_REPO_A2 = ZeroRateDiscountFactors.of(EUR, VAL_DATE,
+      InterpolatedNodalCurve.of(Curves.zeroRates("RepoA2", ACT_360), TIMES, DoubleArray.of(0.02, 0.022, 0.025), LINEAR));
+  private static final DiscountFactors DSC_REPO_B = ZeroRateDiscountFactors.of(GBP, VAL_DATE,
+      InterpolatedNodalCurve.of(Curves.zeroRates("RepoB", ACT_360), TIMES, DoubleArray.of(0.005, 0.006, 0.007), LINEAR));
+  private static final DiscountFactors DSC_ISSUER_A = ZeroRateDiscountFactors.of(EUR, VAL_DATE,
+      InterpolatedNodalCurve.of(Curves.zeroRates("IssuerA", ACT_360), TIMES, DoubleArray.of(0.03, 0.031, 0.032), LINEAR));
+  private static final ImmutableLegalEntityDiscountingProvider BASE = ImmutableLegalEntityDiscountingProvider.builder()
+      .valuationDate(VAL_DATE)
+      .repoCurveGroups(ImmutableMap.of(ISSUER_A, REPO_A))
+      .repoCurves(ImmutableMap.of(Pair.of(REPO_A, EUR), DSC_REPO_A))
+      .issuerCurveGroups(ImmutableMap.of(ISSUER_A, ISSUER_GROUP_A))
+      .issuerCurves(ImmutableMap.of(Pair.of(ISSUER_GROUP_A, EUR), DSC_ISSUER_A))
+      .build();
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    LayeredLegalEntityDiscountingProvider test = LayeredLegalEntityDiscountingProvider.of(BASE);
+    assertEquals(test.getValuationDate(), VAL_DATE);
+    assertEquals(test.repoCurveDiscountFactors(ISSUER_A, EUR).getDiscountFactors(), DSC_REPO_A);
+    assertEquals(test.issuerCurveDiscountFactors(ISSUER_A, EUR).getDiscountFactors(), DSC_ISSUER_A);
+    assertSame(test.toImmutableLegalEntityDiscountingProvider(), BASE);
+  }
+
+  public void test_withLayer() {
+    LayeredLegalEntityDiscountingProvider test = LayeredLegalEntityDiscountingProvider.of(BASE)
+        .withLayer(
+            ImmutableMap.of(SECURITY_B, REPO_B),
+            ImmutableMap.of(ISSUER_B, REPO_B),
+            ImmutableMap.of(Pair.of(REPO_B, GBP), DSC_REPO_B),
+            ImmutableMap.of(),
+            ImmutableMap.of())
+        .withLayer(
+            ImmutableMap.of(),
+            ImmutableMap.of(),
+            ImmutableMap.of(Pair.of(REPO_A, EUR), DSC_REPO_A2),
+            ImmutableMap.of(),
+            ImmutableMap.of());
+    assertEquals(test.repoCurveDiscountFactors(ISSUER_A, EUR).getDiscountFactors(), DSC_REPO_A2);
+    assertEquals(test.repoCurveDiscountFactors(ISSUER_B, GBP).getDiscountFactors(), DSC_REPO_B);
+    assertEquals(test.repoCurveDiscountFactors(SECURITY_B, ISSUER_A, GBP).getDiscountFactors(), DSC_REPO_B);
+    assertEquals(test.issuerCurveDiscountFactors(ISSUER_A, EUR).getDiscountFactors(), DSC_ISSUER_A);
+    assertTrue(test.findData(CurveName.of("RepoB")).isPresent());
+    assertTrue(test.findData(CurveName.of("IssuerA")).isPresent());
+    assertEquals(test.findData(CurveName.of("RepoA")), BASE.findData(CurveName.of("RepoA")));
+
+    ImmutableLegalEntityDiscountingProvider expected = BASE.toBuilder()
+        .repoCurveSecurityGroups(ImmutableMap.of(SECURITY_B, REPO_B))
+        .repoCurveGroups(ImmutableMap.of(ISSUER_A, REPO_A, ISSUER_B, REPO_B))
+        .repoCurves(ImmutableMap.of(Pair.of(REPO_A, EUR), DSC_REPO_A2, Pair.of(REPO_B, GBP), DSC_REPO_B))
+        .build();
+    assertEquals(test.toImmutableLegalEntityDiscountingProvider(), expected);
+    assertSame(test.toImmutableLegalEntityDiscountingProvider(), test.toImmutableLegalEntityDiscountingProvider());
+  }
+
+  public void test_parameterSensitivity() {
+    LayeredLegalEntityDiscountingProvider test = LayeredLegalEntityDiscountingProvider.of(BASE)
+        .withLayer(
+            ImmutableMap.of(),
+            ImmutableMap.of(ISSUER_B, REPO_B),
+            ImmutableMap.of(Pair.of(REPO_B, GBP), DSC_REPO_B),
+            ImmutableMap.of(),
+            ImmutableMap.of());
+    LocalDate date = date(2017, 6, 20);
+    PointSensitivities point = test.repoCurveDiscountFactors(ISSUER_A, EUR).zeroRatePointSensitivity(date)
+        .combinedWith(test.repoCurveDiscountFactors(ISSUER_B, GBP).zeroRatePointSensitivity(date))
+        .combinedWith(test.issuerCurveDiscountFactors(ISSUER_A, EUR).zeroRatePointSensitivity(date))
+        .build();
+    assertEquals(
+        test.parameterSensitivity(point),
+        test.toImmutableLegalEntityDiscountingProvider().parameterSensitivity(point));
+  }
+
+  @Test(expectedExceptions = MarketDataNotFoundException.class)
+  public void test_missingGroup() {
+    LayeredLegalEntityDiscountingProvider.of(BASE).repoCurveDiscountFactors(ISSUER_B, EUR);
+  }
+
+  @Test(expectedExceptions = MarketDataNotFoundException.class)
+  public void test_missingCurve() {
+    LayeredLegalEntityDiscountingProvider.of(BASE).repoCurveDiscountFactors(ISSUER_A, GBP);
+  }
+
+  public void test_serialization() throws Exception {
+    LayeredLegalEntityDiscountingProvider test = LayeredLegalEntityDiscountingProvider.of(BASE)
+        .withLayer(
+            ImmutableMap.of(),
+            ImmutableMap.of(ISSUER_B, REPO_B),
+            ImmutableMap.of(Pair.of(REPO_B, GBP), DSC_REPO_B),
+            ImmutableMap.of(),
+            ImmutableMap.of());
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(test);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+      assertEquals(ois.readObject(), test.toImmutableLegalEntityDiscountingProvider());
+    }
+  }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.FOLLOWING;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.GBLO;
+import static com.opengamma.strata.collect.TestHelper.assertThrows;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.market.ValueType.YEAR_FRACTION;
+import static com.opengamma.strata.market.ValueType.ZERO_RATE;
+import static com.opengamma.strata.market.curve.interpolator.CurveExtrapolators.FLAT;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.basics.date.DayCounts;
+import com.opengamma.strata.basics.date.DaysAdjustment;
+import com.opengamma.strata.basics.date.Tenor;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.data.ImmutableMarketData;
+import com.opengamma.strata.data.ImmutableMarketDataBuilder;
+import com.opengamma.strata.data.MarketDataNotFoundException;
+import com.opengamma.strata.extra.repo.ImmutableRepoConvention;
+import com.opengamma.strata.extra.repo.RepoConvention;
+import com.opengamma.strata.extra.repo.RepoTemplate;
+import com.opengamma.strata.market.curve.CurveGroupName;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.CurveNode;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurveDefinition;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.observable.QuoteId;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+
+/**
+ * Test {@link LegalEntityDiscountingCalibrationCache}.
+ */
+@Test
+public class LegalEntityDiscountingCalibrationCacheTest {
+
+  private static final LocalDate VALUATION_DATE = LocalDate.of(2017, 12, 11);
+  private static final String SCHEME = "OG";
+  private static final RepoGroup UK_REPO_GROUP = RepoGroup.of("UK_GROUP");
+  private static final LegalEntityId UK_GOVT = LegalEntityId.of(SCHEME, "UK_GOVT");
+  private static final CurveName CURVE_NAME_UK = CurveName.of("UK_REPO");
+  private static final SecurityId UK_SECURITY_ID = SecurityId.of(SCHEME, "UK_GOVT_10Y");
+  private static final ReferenceData REF_DATA = ReferenceData.standard().combinedWith(
+      ReferenceData.of(ImmutableMap.of(UK_SECURITY_ID, SimpleLegalEntitySecurity.of(UK_GOVT))));
+  private static final RepoConvention UK_CONVENTION = ImmutableRepoConvention.of(
+      "UK_REPO_CONV", GBP, BusinessDayAdjustment.of(FOLLOWING, GBLO), ACT_360, DaysAdjustment.ofBusinessDays(1, GBLO));
+  private static final Tenor[] TENORS = new Tenor[] {Tenor.TENOR_1W, Tenor.TENOR_1M, Tenor.TENOR_3M};
+  private static final double[] UK_QUOTES = new double[] {0.00565, 0.0059, 0.00605};
+  private static final List<QuoteId> QUOTE_IDS = new ArrayList<>();
+  private static final InterpolatedNodalCurveDefinition CURVE_DEFINITION_UK;
+  private static final ImmutableMarketData MARKET_DATA;
+  static {
+    ImmutableMarketDataBuilder builder = ImmutableMarketData.builder(VALUATION_DATE);
+    List<CurveNode> nodes = new ArrayList<>();
+    for (int i = 0; i < UK_QUOTES.length; ++i) {
+      QuoteId quoteId = QuoteId.of(StandardId.of(SCHEME, "UK_REPO_" + TENORS[i]));
+      nodes.add(RepoCurveNode.of(RepoTemplate.of(
+          TENORS[i], ImmutableList.of(SecurityPosition.ofNet(UK_SECURITY_ID, 1d)), UK_CONVENTION), quoteId));
+      builder.addValue(quoteId, UK_QUOTES[i]);
+      QUOTE_IDS.add(quoteId);
+    }
+    CURVE_DEFINITION_UK = InterpolatedNodalCurveDefinition.builder()
+        .dayCount(DayCounts.ACT_365F)
+        .name(CURVE_NAME_UK)
+        .xValueType(YEAR_FRACTION)
+        .yValueType(ZERO_RATE)
+        .nodes(nodes)
+        .interpolator(LINEAR)
+        .extrapolatorLeft(FLAT)
+        .extrapolatorRight(FLAT)
+        .build();
+    MARKET_DATA = builder.build();
+  }
+  private static final LegalEntityDiscountingCurveGroupDefinition GROUP_DEFINITION =
+      LegalEntityDiscountingCurveGroupDefinition.builder()
+          .name(CurveGroupName.of("GROUP"))
+          .repoCurveGroups(ImmutableMap.of(UK_GOVT, UK_REPO_GROUP))
+          .issuerCurveGroups(ImmutableMap.of())
+          .repoCurveEntries(
+              RepoCurveEntry.builder().curveName(CURVE_NAME_UK).repoCurveGroups(Pair.of(UK_REPO_GROUP, GBP)).build())
+          .issuerCurveEntries(ImmutableList.of())
+          .curveDefinitions(CURVE_DEFINITION_UK)
+          .build();
+  private static final LegalEntityDiscountingCurveCalibrator CALIBRATOR =
+      LegalEntityDiscountingCurveCalibrator.standard();
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    assertThrowsIllegalArg(() -> LegalEntityDiscountingCalibrationCache.of(null, 10));
+    assertThrowsIllegalArg(() -> LegalEntityDiscountingCalibrationCache.of(CALIBRATOR, 0));
+  }
+
+  public void test_calibrate_hit() {
+    LegalEntityDiscountingCalibrationCache test = LegalEntityDiscountingCalibrationCache.of(CALIBRATOR, 10);
+    ImmutableLegalEntityDiscountingProvider first = test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1");
+    assertEquals(first, CALIBRATOR.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA));
+    // equal inputs built independently
+    ImmutableMarketData sameData = ImmutableMarketData.builder(VALUATION_DATE)
+        .addValueMap(MARKET_DATA.getValues())
+        .build();
+    ImmutableLegalEntityDiscountingProvider second = test.calibrate(
+        GROUP_DEFINITION.toBuilder().build(), sameData, REF_DATA, "v1");
+    assertSame(second, first);
+    assertEquals(test.getHitCount(), 1);
+    assertEquals(test.getMissCount(), 1);
+    assertEquals(test.size(), 1);
+    test.clear();
+    assertEquals(test.size(), 0);
+    assertNotSame(test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1"), first);
+  }
+
+  public void test_calibrate_miss() {
+    LegalEntityDiscountingCalibrationCache test = LegalEntityDiscountingCalibrationCache.of(CALIBRATOR, 10);
+    ImmutableLegalEntityDiscountingProvider base = test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1");
+    // reference data version
+    assertNotSame(test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v2"), base);
+    // quote
+    ImmutableMarketData bumped = MARKET_DATA.toBuilder()
+        .addValue(QUOTE_IDS.get(1), UK_QUOTES[1] + 1e-12)
+        .build();
+    assertNotSame(test.calibrate(GROUP_DEFINITION, bumped, REF_DATA, "v1"), base);
+    // valuation date
+    ImmutableMarketData nextDay = ImmutableMarketData.builder(VALUATION_DATE.plusDays(1))
+        .addValueMap(MARKET_DATA.getValues())
+        .build();
+    assertNotSame(test.calibrate(GROUP_DEFINITION, nextDay, REF_DATA, "v1"), base);
+    assertEquals(test.getHitCount(), 0);
+    assertEquals(test.getMissCount(), 4);
+    assertEquals(test.size(), 4);
+  }
+
+  public void test_calibrate_evictLeastRecentlyUsed() {
+    LegalEntityDiscountingCalibrationCache test = LegalEntityDiscountingCalibrationCache.of(CALIBRATOR, 2);
+    ImmutableLegalEntityDiscountingProvider v1 = test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1");
+    ImmutableLegalEntityDiscountingProvider v2 = test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v2");
+    // v1 is used, thus v2 is evicted
+    assertSame(test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1"), v1);
+    test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v3");
+    assertEquals(test.size(), 2);
+    assertSame(test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1"), v1);
+    assertNotSame(test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v2"), v2);
+  }
+
+  public void test_calibrateAsync_singleFlight() {
+    LegalEntityDiscountingCalibrationCache test = LegalEntityDiscountingCalibrationCache.of(CALIBRATOR, 10);
+    List<Runnable> tasks = new ArrayList<>();
+    CompletableFuture<ImmutableLegalEntityDiscountingProvider> first =
+        test.calibrateAsync(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1", tasks::add);
+    CompletableFuture<ImmutableLegalEntityDiscountingProvider> second =
+        test.calibrateAsync(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1", tasks::add);
+    assertEquals(tasks.size(), 1);
+    assertEquals(test.getInProgressCount(), 1);
+    assertFalse(first.isDone());
+    tasks.get(0).run();
+    assertSame(second.join(), first.join());
+    assertEquals(test.getInProgressCount(), 0);
+    assertEquals(test.getHitCount(), 1);
+    assertEquals(test.getMissCount(), 1);
+    assertSame(test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1"), first.join());
+  }
+
+  public void test_calibrateAsync_abandoned() {
+    LegalEntityDiscountingCalibrationCache test = LegalEntityDiscountingCalibrationCache.of(CALIBRATOR, 10);
+    List<Runnable> tasks = new ArrayList<>();
+    CompletableFuture<ImmutableLegalEntityDiscountingProvider> first =
+        test.calibrateAsync(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1", tasks::add);
+    CompletableFuture<ImmutableLegalEntityDiscountingProvider> second =
+        test.calibrateAsync(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1", tasks::add);
+    first.cancel(false);
+    assertEquals(test.getInProgressCount(), 1);
+    second.cancel(false);
+    assertEquals(test.getInProgressCount(), 0);
+    tasks.get(0).run();
+    assertEquals(test.getMissCount(), 0);
+    assertEquals(test.size(), 0);
+    // a new request starts a new calibration
+    CompletableFuture<ImmutableLegalEntityDiscountingProvider> third =
+        test.calibrateAsync(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1", tasks::add);
+    assertEquals(tasks.size(), 2);
+    tasks.get(1).run();
+    assertEquals(third.join(), CALIBRATOR.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA));
+  }
+
+  public void test_calibrate_concurrent() throws Exception {
+    LegalEntityDiscountingCalibrationCache test = LegalEntityDiscountingCalibrationCache.of(CALIBRATOR, 10);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<ImmutableLegalEntityDiscountingProvider>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> test.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA, "v1")));
+      }
+      ImmutableLegalEntityDiscountingProvider expected = results.get(0).get();
+      for (Future<ImmutableLegalEntityDiscountingProvider> result : results) {
+        assertSame(result.get(), expected);
+      }
+      assertEquals(test.getMissCount(), 1);
+      assertEquals(test.getHitCount(), 7);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_calibrate_missingData() {
+    LegalEntityDiscountingCalibrationCache test = LegalEntityDiscountingCalibrationCache.of(CALIBRATOR, 10);
+    ImmutableMarketData missing = ImmutableMarketData.builder(VALUATION_DATE)
+        .addValue(QUOTE_IDS.get(0), UK_QUOTES[0])
+        .build();
+    assertThrows(
+        () -> test.calibrate(GROUP_DEFINITION, missing, REF_DATA, "v1"),
+        MarketDataNotFoundException.class);
+    assertEquals(test.size(), 0);
+  }
+
+}
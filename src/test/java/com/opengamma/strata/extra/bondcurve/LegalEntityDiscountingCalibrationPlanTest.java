@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.currency.Currency.USD;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.FOLLOWING;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.GBLO;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.USNY;
+import static com.opengamma.strata.market.ValueType.DISCOUNT_FACTOR;
+import static com.opengamma.strata.market.ValueType.YEAR_FRACTION;
+import static com.opengamma.strata.market.ValueType.ZERO_RATE;
+import static com.opengamma.strata.market.curve.interpolator.CurveExtrapolators.FLAT;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.DOUBLE_QUADRATIC;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LOG_LINEAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.basics.date.DayCounts;
+import com.opengamma.strata.basics.date.DaysAdjustment;
+import com.opengamma.strata.basics.date.Tenor;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.array.DoubleMatrix;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.data.ImmutableMarketData;
+import com.opengamma.strata.data.ImmutableMarketDataBuilder;
+import com.opengamma.strata.extra.repo.ImmutableRepoConvention;
+import com.opengamma.strata.extra.repo.RepoConvention;
+import com.opengamma.strata.extra.repo.RepoTemplate;
+import com.opengamma.strata.market.curve.CurveGroupName;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.CurveNode;
+import com.opengamma.strata.market.curve.CurveParameterSize;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurveDefinition;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.observable.QuoteId;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.ResolvedTrade;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+
+/**
+ * Test {@link LegalEntityDiscountingCalibrationPlan}.
+ */
+@Test
+public class LegalEntityDiscountingCalibrationPlanTest {
+
+  private static final LocalDate VALUATION_DATE = LocalDate.of(2017, 12, 11);
+  private static final String SCHEME = "OG";
+  private static final RepoGroup UK_REPO_GROUP = RepoGroup.of("UK_GROUP");
+  private static final RepoGroup US_REPO_GROUP = RepoGroup.of("US_GROUP");
+  private static final LegalEntityId UK_GOVT = LegalEntityId.of(SCHEME, "UK_GOVT");
+  private static final LegalEntityId US_GOVT = LegalEntityId.of(SCHEME, "US_GOVT");
+  private static final CurveName CURVE_NAME_UK = CurveName.of("UK_REPO");
+  private static final CurveName CURVE_NAME_US = CurveName.of("US_REPO");
+  private static final SecurityId UK_SECURITY_ID = SecurityId.of(SCHEME, "UK_GOVT_10Y");
+  private static final SecurityId US_SECURITY_ID = SecurityId.of(SCHEME, "US_GOVT_10Y");
+  private static final ReferenceData REF_DATA = ReferenceData.standard().combinedWith(ReferenceData.of(ImmutableMap.of(
+      UK_SECURITY_ID, SimpleLegalEntitySecurity.of(UK_GOVT), US_SECURITY_ID, SimpleLegalEntitySecurity.of(US_GOVT))));
+  private static final RepoConvention UK_CONVENTION = ImmutableRepoConvention.of(
+      "UK_REPO_CONV", GBP, BusinessDayAdjustment.of(FOLLOWING, GBLO), ACT_360, DaysAdjustment.ofBusinessDays(1, GBLO));
+  private static final RepoConvention US_CONVENTION = ImmutableRepoConvention.of(
+      "US_REPO_CONV", USD, BusinessDayAdjustment.of(FOLLOWING, USNY), ACT_360, DaysAdjustment.ofBusinessDays(1, USNY));
+  private static final Tenor[] TENORS = new Tenor[] {Tenor.TENOR_1W, Tenor.TENOR_1M, Tenor.TENOR_3M};
+  private static final double[] UK_QUOTES = new double[] {0.00565, 0.0059, 0.00605};
+  private static final double[] US_QUOTES = new double[] {0.0142, 0.0125, 0.0124};
+  private static final InterpolatedNodalCurveDefinition CURVE_DEFINITION_UK;
+  private static final InterpolatedNodalCurveDefinition CURVE_DEFINITION_US;
+  private static final ImmutableMarketData MARKET_DATA;
+  static {
+    ImmutableMarketDataBuilder builder = ImmutableMarketData.builder(VALUATION_DATE);
+    CURVE_DEFINITION_UK = curveDefinition(
+        builder, CURVE_NAME_UK, SecurityPosition.ofNet(UK_SECURITY_ID, 1d), UK_CONVENTION, UK_QUOTES, false);
+    CURVE_DEFINITION_US = curveDefinition(
+        builder, CURVE_NAME_US, SecurityPosition.ofNet(US_SECURITY_ID, 1d), US_CONVENTION, US_QUOTES, true);
+    MARKET_DATA = builder.build();
+  }
+  private static final LegalEntityDiscountingCurveGroupDefinition GROUP_DEFINITION =
+      LegalEntityDiscountingCurveGroupDefinition.builder()
+          .name(CurveGroupName.of("GROUP"))
+          .repoCurveGroups(ImmutableMap.of(UK_GOVT, UK_REPO_GROUP, US_GOVT, US_REPO_GROUP))
+          .issuerCurveGroups(ImmutableMap.of())
+          .repoCurveEntries(
+              RepoCurveEntry.builder().curveName(CURVE_NAME_UK).repoCurveGroups(Pair.of(UK_REPO_GROUP, GBP)).build(),
+              RepoCurveEntry.builder().curveName(CURVE_NAME_US).repoCurveGroups(Pair.of(US_REPO_GROUP, USD)).build())
+          .issuerCurveEntries(ImmutableList.of())
+          .curveDefinitions(CURVE_DEFINITION_UK, CURVE_DEFINITION_US)
+          .build();
+  private static final double TOL = 1e-12;
+
+  //-------------------------------------------------------------------------
+  public void test_compile() {
+    ImmutableList<ResolvedTrade> trades = GROUP_DEFINITION.resolvedTrades(MARKET_DATA, REF_DATA);
+    assertTrue(compile(LegalEntityDiscountingCalibrationMeasures.PAR_SPREAD, trades).isPresent());
+    assertFalse(compile(LegalEntityDiscountingCalibrationMeasures.PRESENT_VALUE, trades).isPresent());
+    assertFalse(compile(LegalEntityDiscountingCalibrationMeasures.MARKET_QUOTE, trades).isPresent());
+  }
+
+  public void test_compile_curveNotInGroup() {
+    LegalEntityDiscountingCurveGroupDefinition groupDefn = GROUP_DEFINITION.toBuilder()
+        .repoCurveGroups(ImmutableMap.of(UK_GOVT, UK_REPO_GROUP))
+        .build();
+    ImmutableList<ResolvedTrade> trades = GROUP_DEFINITION.resolvedTrades(MARKET_DATA, REF_DATA);
+    assertFalse(LegalEntityDiscountingCalibrationPlan.compile(
+        groupDefn, trades, LegalEntityDiscountingCalibrationMeasures.PAR_SPREAD, VALUATION_DATE, REF_DATA).isPresent());
+  }
+
+  public void test_compile_interpolatorNotSupported() {
+    LegalEntityDiscountingCurveGroupDefinition groupDefn = GROUP_DEFINITION.toBuilder()
+        .curveDefinitions(CURVE_DEFINITION_UK.toBuilder().interpolator(DOUBLE_QUADRATIC).build(), CURVE_DEFINITION_US)
+        .build();
+    ImmutableList<ResolvedTrade> trades = GROUP_DEFINITION.resolvedTrades(MARKET_DATA, REF_DATA);
+    assertFalse(LegalEntityDiscountingCalibrationPlan.compile(
+        groupDefn, trades, LegalEntityDiscountingCalibrationMeasures.PAR_SPREAD, VALUATION_DATE, REF_DATA).isPresent());
+  }
+
+  public void test_valueAndDerivative() {
+    ImmutableList<ResolvedTrade> trades = GROUP_DEFINITION.resolvedTrades(MARKET_DATA, REF_DATA);
+    LegalEntityDiscountingCalibrationPlan test = compile(LegalEntityDiscountingCalibrationMeasures.PAR_SPREAD, trades)
+        .get();
+    LayeredLegalEntityDiscountingProviderGenerator generator = generator();
+    List<CurveParameterSize> curveOrder = ImmutableList.of(
+        CURVE_DEFINITION_UK.toCurveParameterSize(), CURVE_DEFINITION_US.toCurveParameterSize());
+    LegalEntityDiscountingCalibrationValue expectedValue = new LegalEntityDiscountingCalibrationValue(
+        trades, LegalEntityDiscountingCalibrationMeasures.PAR_SPREAD, generator);
+    LegalEntityDiscountingCalibrationDerivative expectedDerivative = new LegalEntityDiscountingCalibrationDerivative(
+        trades, LegalEntityDiscountingCalibrationMeasures.PAR_SPREAD, generator, curveOrder);
+    DoubleArray params = DoubleArray.copyOf(GROUP_DEFINITION.initialGuesses(MARKET_DATA))
+        .mapWithIndex((i, v) -> v * (1d + 0.01 * i));
+    assertTrue(test.valueFunction().apply(params).equalWithTolerance(expectedValue.apply(params), TOL));
+    assertTrue(test.derivativeFunction().apply(params).equalWithTolerance(expectedDerivative.apply(params), TOL));
+  }
+
+  public void test_valueAndDerivative_node() {
+    ImmutableList<ResolvedTrade> trades = GROUP_DEFINITION.resolvedTrades(MARKET_DATA, REF_DATA);
+    LegalEntityDiscountingCalibrationPlan plan = compile(LegalEntityDiscountingCalibrationMeasures.PAR_SPREAD, trades)
+        .get();
+    DoubleArray params = DoubleArray.copyOf(GROUP_DEFINITION.initialGuesses(MARKET_DATA))
+        .mapWithIndex((i, v) -> v * (1d + 0.01 * i));
+    int[] indices = new int[] {3, 4, 5};
+    LegalEntityDiscountingCalibrationPlan test = plan.restrictedTo(indices, params.toArray());
+    DoubleArray blockParams = DoubleArray.of(indices.length, i -> params.get(indices[i]));
+    double[] groupParams = test.groupParameters(blockParams);
+    assertTrue(DoubleArray.ofUnsafe(groupParams).equalWithTolerance(params, 0d));
+    DoubleArray expectedValues = plan.valueFunction().apply(params);
+    DoubleMatrix expectedDerivatives = plan.derivativeFunction().apply(params);
+    for (int k = 0; k < indices.length; k++) {
+      assertEquals(test.parameterIndex(k), indices[k]);
+      assertEquals(test.value(k, groupParams), expectedValues.get(indices[k]), TOL);
+      assertEquals(test.derivative(k, groupParams), expectedDerivatives.get(indices[k], indices[k]), TOL);
+    }
+  }
+
+  public void test_derivative_parallel() {
+    ImmutableList<ResolvedTrade> trades = GROUP_DEFINITION.resolvedTrades(MARKET_DATA, REF_DATA);
+    LegalEntityDiscountingCalibrationPlan test = compile(LegalEntityDiscountingCalibrationMeasures.PAR_SPREAD, trades)
+        .get();
+    DoubleArray params = DoubleArray.copyOf(GROUP_DEFINITION.initialGuesses(MARKET_DATA));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    AtomicInteger tasks = new AtomicInteger();
+    Executor counting = task -> {
+      tasks.incrementAndGet();
+      executor.execute(task);
+    };
+    try {
+      CalibrationRowAssembler assembler = CalibrationRowAssembler.of(1, counting, 2);
+      DoubleMatrix derivatives = test.derivativeFunction(assembler).apply(params);
+      assertEquals(tasks.get(), 1);
+      assertEquals(derivatives, test.derivativeFunction().apply(params));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_restrictedTo() {
+    ImmutableList<ResolvedTrade> trades = GROUP_DEFINITION.resolvedTrades(MARKET_DATA, REF_DATA);
+    LegalEntityDiscountingCalibrationPlan plan = compile(LegalEntityDiscountingCalibrationMeasures.PAR_SPREAD, trades)
+        .get();
+    DoubleArray params = DoubleArray.copyOf(GROUP_DEFINITION.initialGuesses(MARKET_DATA));
+    int[] indices = new int[] {3, 4, 5};
+    LegalEntityDiscountingCalibrationPlan test = plan.restrictedTo(indices, params.toArray());
+    DoubleArray blockParams = DoubleArray.of(indices.length, i -> params.get(indices[i]));
+    DoubleArray values = test.valueFunction().apply(blockParams);
+    DoubleMatrix derivatives = test.derivativeFunction().apply(blockParams);
+    DoubleArray expectedValues = plan.valueFunction().apply(params);
+    DoubleMatrix expectedDerivatives = plan.derivativeFunction().apply(params);
+    for (int i = 0; i < indices.length; i++) {
+      assertEquals(values.get(i), expectedValues.get(indices[i]), TOL);
+      for (int j = 0; j < indices.length; j++) {
+        assertEquals(derivatives.get(i, j), expectedDerivatives.get(indices[i], indices[j]), TOL);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private static Optional<LegalEntityDiscountingCalibrationPlan> compile(
+      LegalEntityDiscountingCalibrationMeasures measures,
+      List<ResolvedTrade> trades) {
+
+    return LegalEntityDiscountingCalibrationPlan.compile(GROUP_DEFINITION, trades, measures, VALUATION_DATE, REF_DATA);
+  }
+
+  private static LayeredLegalEntityDiscountingProviderGenerator generator() {
+    ImmutableLegalEntityDiscountingProvider knownData = ImmutableLegalEntityDiscountingProvider.builder()
+        .valuationDate(VALUATION_DATE)
+        .build();
+    return LayeredLegalEntityDiscountingProviderGenerator.of(
+        LayeredLegalEntityDiscountingProvider.of(knownData), GROUP_DEFINITION, REF_DATA);
+  }
+
+  private static InterpolatedNodalCurveDefinition curveDefinition(
+      ImmutableMarketDataBuilder builder,
+      CurveName name,
+      SecurityPosition collateral,
+      RepoConvention convention,
+      double[] quotes,
+      boolean discountFactors) {
+
+    List<CurveNode> nodes = new ArrayList<>();
+    for (int i = 0; i < quotes.length; ++i) {
+      QuoteId quoteId = QuoteId.of(StandardId.of(SCHEME, name.getName() + "_" + TENORS[i]));
+      nodes.add(RepoCurveNode.of(RepoTemplate.of(TENORS[i], ImmutableList.of(collateral), convention), quoteId));
+      builder.addValue(quoteId, quotes[i]);
+    }
+    return InterpolatedNodalCurveDefinition.builder()
+        .dayCount(DayCounts.ACT_365F)
+        .name(name)
+        .xValueType(YEAR_FRACTION)
+        .yValueType(discountFactors ? DISCOUNT_FACTOR : ZERO_RATE)
+        .nodes(nodes)
+        .interpolator(discountFactors ? LOG_LINEAR : LINEAR)
+        .extrapolatorLeft(FLAT)
+        .extrapolatorRight(FLAT)
+        .build();
+  }
+
+}
@@ -14,15 +14,22 @@ import static com.opengamma.strata.basics.date.HolidayCalendarIds.USNY;
 import static com.opengamma.strata.market.ValueType.YEAR_FRACTION;
 import static com.opengamma.strata.market.ValueType.ZERO_RATE;
 import static com.opengamma.strata.market.curve.interpolator.CurveExtrapolators.FLAT;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.DOUBLE_QUADRATIC;
 import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.PRODUCT_LINEAR;
 import static com.opengamma.strata.product.common.BuySell.BUY;
 import static com.opengamma.strata.product.common.BuySell.SELL;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.annotations.Test;
 
@@ -30,14 +37,17 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.opengamma.strata.basics.ReferenceData;
 import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.currency.Currency;
 import com.opengamma.strata.basics.date.BusinessDayAdjustment;
 import com.opengamma.strata.basics.date.DayCounts;
 import com.opengamma.strata.basics.date.DaysAdjustment;
 import com.opengamma.strata.basics.date.Tenor;
 import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.array.DoubleMatrix;
 import com.opengamma.strata.collect.tuple.Pair;
 import com.opengamma.strata.data.ImmutableMarketData;
 import com.opengamma.strata.data.ImmutableMarketDataBuilder;
+import com.opengamma.strata.extra.repo.CompiledRepoConvention;
 import com.opengamma.strata.extra.repo.DiscountingRepoTradePricer;
 import com.opengamma.strata.extra.repo.ImmutableRepoConvention;
 import com.opengamma.strata.extra.repo.RepoConvention;
@@ -47,11 +57,16 @@ import com.opengamma.strata.market.curve.CurveGroupName;
 import com.opengamma.strata.market.curve.CurveInfoType;
 import com.opengamma.strata.market.curve.CurveName;
 import com.opengamma.strata.market.curve.CurveNode;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
 import com.opengamma.strata.market.curve.InterpolatedNodalCurveDefinition;
+import com.opengamma.strata.market.curve.JacobianCalibrationMatrix;
 import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.curve.interpolator.CurveExtrapolator;
+import com.opengamma.strata.market.curve.interpolator.CurveExtrapolators;
 import com.opengamma.strata.market.observable.QuoteId;
 import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
 import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.math.rootfind.NewtonVectorRootFinder;
 import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
 import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
 import com.opengamma.strata.pricer.sensitivity.MarketQuoteSensitivityCalculator;
@@ -240,6 +255,191 @@ public class LegalEntityDiscountingCurveCalibratorTest {
     }
   }
 
+  public void test_calibrate_compiledConventions() {
+    ReferenceData compiledRefData =
+        LegalEntityDiscountingCurveCalibrator.compiledReferenceData(ImmutableList.of(GROUP_DEFINITION), REF_DATA);
+    assertTrue(CompiledRepoConvention.find(UK_CONVENTION, compiledRefData).isPresent());
+    assertTrue(CompiledRepoConvention.find(US_CONVENTION, compiledRefData).isPresent());
+    assertEquals(
+        CALIBRATOR.calibrate(GROUP_DEFINITION, MARKET_DATA, compiledRefData),
+        CALIBRATOR.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA));
+  }
+
+  public void test_calibrate_repo_bootstrap() {
+    LegalEntityDiscountingCurveCalibrator bootstrap = CALIBRATOR.withBootstrap(true);
+    assertTrue(bootstrap.isBootstrap());
+    assertFalse(CALIBRATOR.isBootstrap());
+    assertTrue(LegalEntityDiscountingCurveCalibrator.isBootstrapCompatible(GROUP_DEFINITION));
+    ImmutableLegalEntityDiscountingProvider result = bootstrap.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA);
+    testCalibration(result);
+    ImmutableLegalEntityDiscountingProvider expected = CALIBRATOR.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA);
+    for (Pair<LegalEntityId, Currency> key : ImmutableList.of(Pair.of(UK_GOVT, GBP), Pair.of(US_GOVT, USD))) {
+      InterpolatedNodalCurve curve = (InterpolatedNodalCurve) ((ZeroRateDiscountFactors) result
+          .repoCurveDiscountFactors(key.getFirst(), key.getSecond()).getDiscountFactors()).getCurve();
+      InterpolatedNodalCurve expectedCurve = (InterpolatedNodalCurve) ((ZeroRateDiscountFactors) expected
+          .repoCurveDiscountFactors(key.getFirst(), key.getSecond()).getDiscountFactors()).getCurve();
+      assertTrue(curve.getYValues().equalWithTolerance(expectedCurve.getYValues(), 1e-8));
+      JacobianCalibrationMatrix jacobian = curve.getMetadata().findInfo(CurveInfoType.JACOBIAN).get();
+      JacobianCalibrationMatrix expectedJacobian = expectedCurve.getMetadata().findInfo(CurveInfoType.JACOBIAN).get();
+      assertEquals(jacobian.getOrder(), expectedJacobian.getOrder());
+      assertTrue(jacobian.getJacobianMatrix().equalWithTolerance(expectedJacobian.getJacobianMatrix(), 1e-8));
+    }
+  }
+
+  public void test_calibrate_repo_bootstrap_noPlan() {
+    InterpolatedNodalCurveDefinition productLinear =
+        CURVE_DEFINITION_UK.toBuilder().interpolator(PRODUCT_LINEAR).build();
+    LegalEntityDiscountingCurveGroupDefinition groupDefn =
+        GROUP_DEFINITION_UK.toBuilder().curveDefinitions(ImmutableList.of(productLinear)).build();
+    assertTrue(LegalEntityDiscountingCurveCalibrator.isBootstrapCompatible(groupDefn));
+    // no plan is compiled for the interpolator, the nodes are found using the provider
+    ImmutableLegalEntityDiscountingProvider result =
+        CALIBRATOR.withBootstrap(true).calibrate(groupDefn, MARKET_DATA, REF_DATA);
+    ImmutableLegalEntityDiscountingProvider expected = CALIBRATOR.calibrate(groupDefn, MARKET_DATA, REF_DATA);
+    InterpolatedNodalCurve curve = (InterpolatedNodalCurve) ((ZeroRateDiscountFactors) result
+        .repoCurveDiscountFactors(UK_GOVT, GBP).getDiscountFactors()).getCurve();
+    InterpolatedNodalCurve expectedCurve = (InterpolatedNodalCurve) ((ZeroRateDiscountFactors) expected
+        .repoCurveDiscountFactors(UK_GOVT, GBP).getDiscountFactors()).getCurve();
+    assertTrue(curve.getYValues().equalWithTolerance(expectedCurve.getYValues(), 1e-8));
+  }
+
+  public void test_bootstrapCompatible() {
+    InterpolatedNodalCurveDefinition quadratic = CURVE_DEFINITION_UK.toBuilder().interpolator(DOUBLE_QUADRATIC).build();
+    LegalEntityDiscountingCurveGroupDefinition groupDefn =
+        GROUP_DEFINITION_UK.toBuilder().curveDefinitions(ImmutableList.of(quadratic)).build();
+    assertFalse(LegalEntityDiscountingCurveCalibrator.isBootstrapCompatible(groupDefn));
+    // calibrated using the root finder
+    assertEquals(
+        CALIBRATOR.withBootstrap(true).calibrate(groupDefn, MARKET_DATA, REF_DATA),
+        CALIBRATOR.calibrate(groupDefn, MARKET_DATA, REF_DATA));
+  }
+
+  public void test_bootstrapCompatible_leftExtrapolator() {
+    for (CurveExtrapolator extrapolator : ImmutableList.of(CurveExtrapolators.LINEAR, CurveExtrapolators.EXCEPTION)) {
+      InterpolatedNodalCurveDefinition curveDefn =
+          CURVE_DEFINITION_UK.toBuilder().extrapolatorLeft(extrapolator).build();
+      LegalEntityDiscountingCurveGroupDefinition groupDefn =
+          GROUP_DEFINITION_UK.toBuilder().curveDefinitions(ImmutableList.of(curveDefn)).build();
+      assertFalse(LegalEntityDiscountingCurveCalibrator.isBootstrapCompatible(groupDefn));
+    }
+    InterpolatedNodalCurveDefinition linear =
+        CURVE_DEFINITION_UK.toBuilder().extrapolatorLeft(CurveExtrapolators.LINEAR).build();
+    LegalEntityDiscountingCurveGroupDefinition groupDefn =
+        GROUP_DEFINITION_UK.toBuilder().curveDefinitions(ImmutableList.of(linear)).build();
+    // calibrated using the root finder
+    assertEquals(
+        CALIBRATOR.withBootstrap(true).calibrate(groupDefn, MARKET_DATA, REF_DATA),
+        CALIBRATOR.calibrate(groupDefn, MARKET_DATA, REF_DATA));
+  }
+
+  public void test_calibrate_repo_parallelDerivatives() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      LegalEntityDiscountingCurveCalibrator parallel = CALIBRATOR.withParallelDerivatives(1, executor);
+      assertTrue(parallel.isParallelDerivatives());
+      assertFalse(CALIBRATOR.isParallelDerivatives());
+      assertFalse(parallel.withSequentialDerivatives().isParallelDerivatives());
+      ImmutableLegalEntityDiscountingProvider result = parallel.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA);
+      testCalibration(result);
+      assertEquals(result, CALIBRATOR.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_calibrate_repo_parallelDerivatives_plan() {
+    // the root finder uses the derivative of the compiled plan, both it and the Jacobian are computed in parallel
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    AtomicInteger tasks = new AtomicInteger();
+    Executor counting = task -> {
+      tasks.incrementAndGet();
+      executor.execute(task);
+    };
+    try {
+      LegalEntityDiscountingCurveCalibrator parallel = CALIBRATOR.withParallelDerivatives(1, counting, 2);
+      ImmutableLegalEntityDiscountingProvider result = parallel.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA);
+      assertTrue(tasks.get() > 0);
+      testCalibration(result);
+      assertEquals(result, CALIBRATOR.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_calibrate_repo_parallelBlocks() {
+    // the threshold is above the number of trades, thus only the two independent blocks use the executor
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    AtomicInteger tasks = new AtomicInteger();
+    Executor counting = task -> {
+      tasks.incrementAndGet();
+      executor.execute(task);
+    };
+    try {
+      LegalEntityDiscountingCurveCalibrator parallel = CALIBRATOR.withParallelDerivatives(1000, counting, 2);
+      ImmutableLegalEntityDiscountingProvider result = parallel.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA);
+      assertEquals(tasks.get(), 1);
+      testCalibration(result);
+      assertEquals(result, CALIBRATOR.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_calibrate_repo_initialDerivatives() {
+    // the derivatives of the decomposition are the first derivatives of the solver, not evaluated again
+    NewtonVectorRootFinder rootFinder = NewtonVectorRootFinder.broyden(1e-9, 1e-9, 1000);
+    AtomicInteger reused = new AtomicInteger();
+    CalibrationSolverStrategy strategy = (groupDefn, curveOrder, valueFunction, derivativeFunction, initialGuess) -> {
+      if (derivativeFunction.apply(initialGuess) == derivativeFunction.apply(initialGuess)) {
+        reused.incrementAndGet();
+      }
+      return rootFinder.findRoot(valueFunction, derivativeFunction, initialGuess);
+    };
+    ImmutableLegalEntityDiscountingProvider result =
+        CALIBRATOR.withSolverStrategy(strategy).calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA);
+    testCalibration(result);
+    assertEquals(reused.get(), 2);
+  }
+
+  public void test_calibrate_repo_adaptiveSolver() {
+    AdaptiveCalibrationSolverStrategy strategy = AdaptiveCalibrationSolverStrategy.of(1e-9, 1e-9, 1000);
+    LegalEntityDiscountingCurveCalibrator calibrator = CALIBRATOR.withSolverStrategy(strategy);
+    assertEquals(calibrator.getSolverStrategy(), strategy);
+    ImmutableLegalEntityDiscountingProvider result = calibrator.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA);
+    testCalibration(result);
+    // the curves are independent, thus solved as separate blocks
+    for (CurveName curveName : ImmutableList.of(CURVE_NAME_UK, CURVE_NAME_US)) {
+      AdaptiveCalibrationSolverStrategy.Record record = strategy.findRecord(ImmutableList.of(curveName)).get();
+      assertEquals(record.getSolver(), CalibrationSolver.NEWTON);
+      assertTrue(record.isConverged());
+    }
+    ImmutableLegalEntityDiscountingProvider expected = CALIBRATOR.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA);
+    for (Pair<LegalEntityId, Currency> key : ImmutableList.of(Pair.of(UK_GOVT, GBP), Pair.of(US_GOVT, USD))) {
+      InterpolatedNodalCurve curve = (InterpolatedNodalCurve) ((ZeroRateDiscountFactors) result
+          .repoCurveDiscountFactors(key.getFirst(), key.getSecond()).getDiscountFactors()).getCurve();
+      InterpolatedNodalCurve expectedCurve = (InterpolatedNodalCurve) ((ZeroRateDiscountFactors) expected
+          .repoCurveDiscountFactors(key.getFirst(), key.getSecond()).getDiscountFactors()).getCurve();
+      assertTrue(curve.getYValues().equalWithTolerance(expectedCurve.getYValues(), 1e-8));
+    }
+  }
+
+  public void test_calibrate_repo_adaptiveSolver_rootDerivative() {
+    // Broyden does not evaluate the derivative at the root, the derivative of the Jacobian calculation is recorded
+    AdaptiveCalibrationSolverStrategy strategy = AdaptiveCalibrationSolverStrategy.of(1e-9, 1e-9, 1000, 0, true);
+    LegalEntityDiscountingCurveCalibrator calibrator = CALIBRATOR.withSolverStrategy(strategy);
+    ImmutableLegalEntityDiscountingProvider result = calibrator.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA);
+    testCalibration(result);
+    for (CurveName curveName : ImmutableList.of(CURVE_NAME_UK, CURVE_NAME_US)) {
+      AdaptiveCalibrationSolverStrategy.Record record = strategy.findRecord(ImmutableList.of(curveName)).get();
+      assertEquals(record.getSolver(), CalibrationSolver.BROYDEN);
+      DoubleMatrix jacobian = record.findJacobian().get();
+      assertEquals(jacobian.rowCount(), record.getParameterCount());
+      assertEquals(jacobian.columnCount(), record.getParameterCount());
+    }
+    // the next calibration starts from the recorded derivative
+    testCalibration(calibrator.calibrate(GROUP_DEFINITION, MARKET_DATA, REF_DATA));
+  }
+
   //-------------------------------------------------------------------------
   // test calibration, PV_SENSITIVITY_TO_MARKET_QUOTE
   private void testCalibration(ImmutableLegalEntityDiscountingProvider result) {
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.FOLLOWING;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.GBLO;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.market.curve.interpolator.CurveExtrapolators.FLAT;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteSource;
+import com.google.common.io.CharSource;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.basics.date.DayCounts;
+import com.opengamma.strata.basics.date.DaysAdjustment;
+import com.opengamma.strata.basics.date.Tenor;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.extra.repo.ImmutableRepoConvention;
+import com.opengamma.strata.extra.repo.RepoConvention;
+import com.opengamma.strata.extra.repo.RepoTemplate;
+import com.opengamma.strata.market.ValueType;
+import com.opengamma.strata.market.curve.CurveGroupName;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurveDefinition;
+import com.opengamma.strata.market.curve.LegalEntityGroup;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.observable.QuoteId;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+
+/**
+ * Test {@link LegalEntityDiscountingCurveGroupDefinitionCsvLoader}.
+ */
+@Test
+public class LegalEntityDiscountingCurveGroupDefinitionCsvLoaderTest {
+
+  private static final RepoConvention UK_CONVENTION = ImmutableRepoConvention.of(
+      "UK_REPO_CONV", GBP, BusinessDayAdjustment.of(FOLLOWING, GBLO), ACT_360, DaysAdjustment.ofBusinessDays(1, GBLO));
+  private static final ImmutableMap<String, RepoConvention> CONVENTIONS =
+      ImmutableMap.of(UK_CONVENTION.getName(), UK_CONVENTION);
+  private static final CurveGroupName GROUP_NAME = CurveGroupName.of("UK");
+  private static final CurveName CURVE_NAME = CurveName.of("UK_REPO");
+  private static final RepoGroup REPO_GROUP = RepoGroup.of("UK_GROUP");
+  private static final LegalEntityGroup ISSUER_GROUP = LegalEntityGroup.of("UK_ISSUER");
+  private static final LegalEntityId UK_GOVT = LegalEntityId.of("OG", "UK_GOVT");
+  private static final SecurityId UK_SECURITY_ID = SecurityId.of("OG", "UK_GOVT_10Y");
+  private static final SecurityPosition UK_COLLATERAL = SecurityPosition.ofNet(UK_SECURITY_ID, 1d);
+
+  private static final CharSource GROUPS = CharSource.wrap(
+      "Group Name,Curve Type,Reference,Currency,Curve Name\n" +
+          "UK,Repo,UK_GROUP,GBP,UK_REPO\n" +
+          "UK,Issuer,UK_ISSUER,GBP,UK_REPO\n");
+  private static final CharSource MAPPINGS = CharSource.wrap(
+      "Group Name,Mapping Type,Id,Reference\n" +
+          "UK,Repo Security,OG~UK_GOVT_10Y,UK_GROUP\n" +
+          "UK,Repo Legal Entity,OG~UK_GOVT,UK_GROUP\n" +
+          "UK,Issuer Legal Entity,OG~UK_GOVT,UK_ISSUER\n");
+  private static final CharSource SETTINGS = CharSource.wrap(
+      "Curve Name,Value Type,Day Count,Interpolator,Left Extrapolator,Right Extrapolator\n" +
+          "UK_REPO,Zero,Act/365F,Linear,Flat,Flat\n");
+  private static final CharSource NODES = CharSource.wrap(
+      "Curve Name,Label,Symbology,Ticker,Tenor,Convention,Collateral,Spread\n" +
+          "UK_REPO,,OG,UK_REPO_1W,1W,UK_REPO_CONV,OG~UK_GOVT_10Y,\n" +
+          "UK_REPO,3M,OG,UK_REPO_3M,3M,UK_REPO_CONV,OG~UK_GOVT_10Y,0.0001\n");
+
+  //-------------------------------------------------------------------------
+  public void test_parse() {
+    ImmutableMap<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> test = parse(GROUPS);
+    InterpolatedNodalCurveDefinition curveDefn = InterpolatedNodalCurveDefinition.builder()
+        .name(CURVE_NAME)
+        .xValueType(ValueType.YEAR_FRACTION)
+        .yValueType(ValueType.ZERO_RATE)
+        .dayCount(DayCounts.ACT_365F)
+        .nodes(
+            RepoCurveNode.of(
+                RepoTemplate.of(Tenor.TENOR_1W, ImmutableList.of(UK_COLLATERAL), UK_CONVENTION),
+                QuoteId.of(StandardId.of("OG", "UK_REPO_1W"))),
+            RepoCurveNode.of(
+                RepoTemplate.of(Tenor.TENOR_3M, ImmutableList.of(UK_COLLATERAL), UK_CONVENTION),
+                QuoteId.of(StandardId.of("OG", "UK_REPO_3M")),
+                0.0001,
+                "3M"))
+        .interpolator(LINEAR)
+        .extrapolatorLeft(FLAT)
+        .extrapolatorRight(FLAT)
+        .build();
+    LegalEntityDiscountingCurveGroupDefinition expected = LegalEntityDiscountingCurveGroupDefinition.of(
+        GROUP_NAME,
+        ImmutableMap.of(UK_SECURITY_ID, REPO_GROUP),
+        ImmutableMap.of(UK_GOVT, REPO_GROUP),
+        ImmutableMap.of(UK_GOVT, ISSUER_GROUP),
+        ImmutableList.of(RepoCurveEntry.of(CURVE_NAME, ImmutableSet.of(Pair.of(REPO_GROUP, GBP)))),
+        ImmutableList.of(IssuerCurveEntry.of(CURVE_NAME, ImmutableSet.of(Pair.of(ISSUER_GROUP, GBP)))),
+        ImmutableList.of(curveDefn));
+    assertEquals(test, ImmutableMap.of(GROUP_NAME, expected));
+  }
+
+  public void test_compiled() {
+    ImmutableMap<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> loaded = parse(GROUPS);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LegalEntityDiscountingCurveGroupDefinitionCsvLoader.writeCompiled(loaded.values(), out);
+    ImmutableMap<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> test =
+        LegalEntityDiscountingCurveGroupDefinitionCsvLoader.loadCompiled(ByteSource.wrap(out.toByteArray()));
+    assertEquals(test, loaded);
+  }
+
+  public void test_compiled_invalid() {
+    assertThrowsIllegalArg(() -> LegalEntityDiscountingCurveGroupDefinitionCsvLoader.loadCompiled(
+        ByteSource.wrap(new byte[] {1, 2, 3, 4, 0, 0, 0, 1})));
+  }
+
+  public void test_invalid() {
+    assertThrowsIllegalArg(() -> parse(CharSource.wrap(
+        "Group Name,Curve Type,Reference,Currency,Curve Name\n" +
+            "UK,Other,UK_GROUP,GBP,UK_REPO\n")));
+    assertThrowsIllegalArg(() -> parse(CharSource.wrap(
+        "Group Name,Curve Type,Reference,Currency,Curve Name\n" +
+            "UK,Repo,UK_GROUP,GBP,UK_REPO\n" +
+            "UK,Repo,UK_GROUP,GBP,UNKNOWN\n")));
+  }
+
+  //-------------------------------------------------------------------------
+  private static ImmutableMap<CurveGroupName, LegalEntityDiscountingCurveGroupDefinition> parse(CharSource groups) {
+    return LegalEntityDiscountingCurveGroupDefinitionCsvLoader.parse(
+        groups, MAPPINGS, SETTINGS, ImmutableList.of(NODES), CONVENTIONS::get);
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+
+/**
+ * Test {@link LegalEntityDiscountingProviderPublisher}.
+ */
+@Test
+public class LegalEntityDiscountingProviderPublisherTest {
+
+  private static final LocalDate VALUATION_DATE = LocalDate.of(2017, 12, 11);
+  private static final ImmutableLegalEntityDiscountingProvider PROVIDER_1 =
+      ImmutableLegalEntityDiscountingProvider.builder().valuationDate(VALUATION_DATE).build();
+  private static final ImmutableLegalEntityDiscountingProvider PROVIDER_2 =
+      ImmutableLegalEntityDiscountingProvider.builder().valuationDate(VALUATION_DATE.plusDays(1)).build();
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    assertThrowsIllegalArg(() -> LegalEntityDiscountingProviderPublisher.of(null));
+    assertThrowsIllegalArg(() -> LegalEntityDiscountingProviderPublisher.of(PROVIDER_1, null));
+    LegalEntityDiscountingProviderPublisher test = LegalEntityDiscountingProviderPublisher.of(PROVIDER_1);
+    assertEquals(test.getEpoch(), 1L);
+    assertSame(test.getCurrent().getProvider(), PROVIDER_1);
+    assertFalse(test.getCurrent().isRetired());
+  }
+
+  public void test_publish() {
+    List<Long> retired = new ArrayList<>();
+    LegalEntityDiscountingProviderPublisher test =
+        LegalEntityDiscountingProviderPublisher.of(PROVIDER_1, generation -> retired.add(generation.getEpoch()));
+    LegalEntityDiscountingProviderPublisher.Generation first = test.getCurrent();
+    LegalEntityDiscountingProviderPublisher.Generation second = test.publish(PROVIDER_2);
+    assertEquals(second.getEpoch(), 2L);
+    assertEquals(test.getEpoch(), 2L);
+    assertSame(test.getCurrent(), second);
+    // no reader pins the first generation
+    assertTrue(first.isRetired());
+    assertEquals(retired.size(), 1);
+    assertEquals(retired.get(0).longValue(), 1L);
+    assertThrowsIllegalArg(() -> test.publish(null));
+  }
+
+  public void test_pin() {
+    List<Long> retired = new ArrayList<>();
+    LegalEntityDiscountingProviderPublisher test =
+        LegalEntityDiscountingProviderPublisher.of(PROVIDER_1, generation -> retired.add(generation.getEpoch()));
+    try (LegalEntityDiscountingProviderPublisher.Pin pin = test.pin()) {
+      test.publish(PROVIDER_2);
+      test.publish(PROVIDER_2);
+      // the pinned generation is still readable, the unpinned one is retired
+      assertEquals(pin.getEpoch(), 1L);
+      assertSame(pin.getProvider(), PROVIDER_1);
+      assertFalse(pin.getGeneration().isRetired());
+      assertEquals(retired.size(), 1);
+      assertEquals(retired.get(0).longValue(), 2L);
+      try (LegalEntityDiscountingProviderPublisher.Pin latest = test.pin()) {
+        assertEquals(latest.getEpoch(), 3L);
+      }
+      pin.close();
+      pin.close();
+      assertTrue(pin.getGeneration().isRetired());
+      assertEquals(retired.size(), 2);
+    }
+    assertEquals(retired.size(), 2);
+    assertFalse(test.getCurrent().isRetired());
+  }
+
+  public void test_discountFactorCache() {
+    LegalEntityDiscountingProviderPublisher test = LegalEntityDiscountingProviderPublisher.of(PROVIDER_1);
+    RepoDiscountFactorCache cache = test.getCurrent().getDiscountFactorCache();
+    assertSame(cache.getProvider().toImmutableLegalEntityDiscountingProvider(), PROVIDER_1);
+    assertSame(test.getCurrent().getDiscountFactorCache(), cache);
+    RepoDiscountFactorCache next = test.publish(PROVIDER_2).getDiscountFactorCache();
+    assertSame(next.getProvider().toImmutableLegalEntityDiscountingProvider(), PROVIDER_2);
+  }
+
+  public void test_concurrent() throws Exception {
+    LegalEntityDiscountingProviderPublisher test = LegalEntityDiscountingProviderPublisher.of(PROVIDER_1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> readers = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        readers.add(executor.submit(() -> {
+          long lastEpoch = 0;
+          for (int j = 0; j < 10_000; j++) {
+            try (LegalEntityDiscountingProviderPublisher.Pin pin = test.pin()) {
+              if (pin.getGeneration().isRetired() || pin.getEpoch() < lastEpoch) {
+                return false;
+              }
+              lastEpoch = pin.getEpoch();
+            }
+          }
+          return true;
+        }));
+      }
+      for (int i = 0; i < 1_000; i++) {
+        test.publish(i % 2 == 0 ? PROVIDER_2 : PROVIDER_1);
+      }
+      for (Future<Boolean> reader : readers) {
+        assertTrue(reader.get());
+      }
+      assertEquals(test.getEpoch(), 1_001L);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
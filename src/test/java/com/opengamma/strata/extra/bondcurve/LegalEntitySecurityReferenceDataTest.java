@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CharSource;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.date.HolidayCalendarIds;
+import com.opengamma.strata.extra.repo.Repo;
+import com.opengamma.strata.extra.repo.ResolvedRepo;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.Security;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+import com.opengamma.strata.product.common.BuySell;
+
+/**
+ * Test {@link LegalEntitySecurityReferenceData}.
+ */
+@Test
+public class LegalEntitySecurityReferenceDataTest {
+
+  private static final LegalEntityId ISSUER_A = LegalEntityId.of("OG-Ticker", "A");
+  private static final LegalEntityId ISSUER_B = LegalEntityId.of("OG-Ticker", "B");
+  private static final SecurityId SECURITY_1 = SecurityId.of("OG-Security", "1");
+  private static final SecurityId SECURITY_2 = SecurityId.of("OG-Security", "2");
+  private static final SecurityId SECURITY_3 = SecurityId.of("ISIN", "XS0000000001");
+  private static final String CSV = "Security Id,Legal Entity Id\n" +
+      "OG-Security~1,OG-Ticker~A\n" +
+      "OG-Security~2,OG-Ticker~A\n" +
+      "ISIN~XS0000000001,OG-Ticker~B\n";
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    LegalEntitySecurityReferenceData test = LegalEntitySecurityReferenceData.of(
+        ImmutableMap.of(SECURITY_1, ISSUER_A, SECURITY_2, ISSUER_A, SECURITY_3, ISSUER_B));
+    assertEquals(test.size(), 3);
+    assertEquals(test.getLegalEntityCount(), 2);
+    assertEquals(test.findLegalEntityId(SECURITY_1).get(), ISSUER_A);
+    assertEquals(test.findLegalEntityId(SECURITY_3).get(), ISSUER_B);
+    assertFalse(test.findLegalEntityId(SecurityId.of("OG-Security", "3")).isPresent());
+    assertFalse(test.findLegalEntityId(SecurityId.of("Other", "1")).isPresent());
+    // the securities of a legal entity are shared
+    Security security = test.getValue(SECURITY_1);
+    assertEquals(security, SimpleLegalEntitySecurity.of(ISSUER_A));
+    assertSame(test.getValue(SECURITY_2), security);
+    assertTrue(test.containsValue(SECURITY_3));
+    assertNull(test.queryValueOrNull(HolidayCalendarIds.EUTA));
+  }
+
+  public void test_of_empty() {
+    LegalEntitySecurityReferenceData test = LegalEntitySecurityReferenceData.of(ImmutableMap.of());
+    assertEquals(test.size(), 0);
+    assertFalse(test.findLegalEntityId(SECURITY_1).isPresent());
+  }
+
+  public void test_of_large() {
+    Map<SecurityId, LegalEntityId> map = new HashMap<>();
+    for (int i = 0; i < 10_000; i++) {
+      map.put(SecurityId.of("OG-Security", "S" + i), LegalEntityId.of("OG-Ticker", "L" + (i % 100)));
+    }
+    LegalEntitySecurityReferenceData test = LegalEntitySecurityReferenceData.of(map);
+    assertEquals(test.size(), 10_000);
+    assertEquals(test.getLegalEntityCount(), 100);
+    for (Map.Entry<SecurityId, LegalEntityId> entry : map.entrySet()) {
+      assertEquals(test.findLegalEntityId(entry.getKey()).get(), entry.getValue());
+    }
+  }
+
+  public void test_loadCsv() {
+    LegalEntitySecurityReferenceData test = LegalEntitySecurityReferenceData.loadCsv(CharSource.wrap(CSV));
+    assertEquals(test.size(), 3);
+    assertEquals(test.findLegalEntityId(SECURITY_2).get(), ISSUER_A);
+    assertEquals(test.findLegalEntityId(SECURITY_3).get(), ISSUER_B);
+  }
+
+  public void test_loadCsv_duplicate() {
+    LegalEntitySecurityReferenceData test =
+        LegalEntitySecurityReferenceData.loadCsv(CharSource.wrap(CSV + "OG-Security~1,OG-Ticker~A\n"));
+    assertEquals(test.size(), 3);
+    assertThrowsIllegalArg(
+        () -> LegalEntitySecurityReferenceData.loadCsv(CharSource.wrap(CSV + "OG-Security~1,OG-Ticker~B\n")));
+    assertThrowsIllegalArg(
+        () -> LegalEntitySecurityReferenceData.loadCsv(CharSource.wrap(CSV + "OG-Security~4,\n")));
+  }
+
+  public void test_binary() throws Exception {
+    LegalEntitySecurityReferenceData base = LegalEntitySecurityReferenceData.loadCsv(CharSource.wrap(CSV));
+    Path file = Files.createTempFile("legal-entity-security", ".bin");
+    try {
+      base.writeBinary(file);
+      LegalEntitySecurityReferenceData test = LegalEntitySecurityReferenceData.loadBinary(file);
+      assertEquals(test.size(), 3);
+      assertEquals(test.getLegalEntityCount(), 2);
+      assertEquals(test.findLegalEntityId(SECURITY_1).get(), ISSUER_A);
+      assertEquals(test.findLegalEntityId(SECURITY_3).get(), ISSUER_B);
+      Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+      assertThrowsIllegalArg(() -> LegalEntitySecurityReferenceData.loadBinary(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  public void test_resolve() {
+    ReferenceData refData = ReferenceData.standard().combinedWith(LegalEntitySecurityReferenceData.of(
+        ImmutableMap.of(SECURITY_1, ISSUER_A, SECURITY_2, ISSUER_A, SECURITY_3, ISSUER_B)));
+    Repo repo = Repo.builder()
+        .buySell(BuySell.BUY)
+        .collateral(ImmutableList.of(SecurityPosition.ofNet(SECURITY_1, 1d), SecurityPosition.ofNet(SECURITY_2, 1d)))
+        .currency(EUR)
+        .notional(1.0e6)
+        .startDate(LocalDate.of(2017, 1, 24))
+        .endDate(LocalDate.of(2017, 2, 24))
+        .dayCount(ACT_360)
+        .rate(0.005)
+        .build();
+    ResolvedRepo resolved = repo.resolve(refData);
+    assertEquals(resolved.getLegalEntityId(), ISSUER_A);
+    Repo mixed = repo.toBuilder()
+        .collateral(ImmutableList.of(SecurityPosition.ofNet(SECURITY_1, 1d), SecurityPosition.ofNet(SECURITY_3, 1d)))
+        .build();
+    assertThrowsIllegalArg(() -> mixed.resolve(refData));
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.collect.TestHelper.date;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.data.MarketData;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.observable.QuoteId;
+
+/**
+ * Test {@link QuoteSnapshotStore}.
+ */
+@Test
+public class QuoteSnapshotStoreTest {
+
+  private static final LocalDate DATE_1 = date(2017, 12, 11);
+  private static final LocalDate DATE_2 = date(2017, 12, 12);
+  private static final QuoteId ID_1W = QuoteId.of(StandardId.of("OG", "UK_REPO_1W"));
+  private static final QuoteId ID_1M = QuoteId.of(StandardId.of("OG", "UK_REPO_1M"));
+  private static final QuoteId ID_3M = QuoteId.of(StandardId.of("OG", "UK_REPO_3M"));
+
+  //-------------------------------------------------------------------------
+  public void test_appendAndRead() throws IOException {
+    Path file = Files.createTempFile("quotes", ".bin");
+    Files.delete(file);
+    try (QuoteSnapshotStore test = QuoteSnapshotStore.open(file)) {
+      test.append(DATE_1, ImmutableMap.of(ID_3M, 0.00605, ID_1W, 0.00565));
+      test.append(DATE_2, ImmutableMap.of(ID_1W, 0.0057, ID_1M, 0.0059));
+      assertEquals(test.getDates(), ImmutableSortedSet.of(DATE_1, DATE_2));
+
+      MarketData md1 = test.marketData(DATE_1);
+      assertEquals(md1.getValuationDate(), DATE_1);
+      assertEquals(md1.getValue(ID_1W), 0.00565);
+      assertEquals(md1.getValue(ID_3M), 0.00605);
+      assertFalse(md1.containsValue(ID_1M));
+      assertEquals(md1.findValue(CurveName.of("UK_REPO")), Optional.empty());
+      assertEquals(md1.getIds(), ImmutableSet.of(ID_1W, ID_3M));
+
+      MarketData md2 = test.marketData(DATE_2);
+      assertEquals(md2.getValue(ID_1W), 0.0057);
+      assertEquals(md2.getValue(ID_1M), 0.0059);
+      assertFalse(md2.containsValue(ID_3M));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  public void test_reopen() throws IOException {
+    Path file = Files.createTempFile("quotes", ".bin");
+    Files.delete(file);
+    try {
+      try (QuoteSnapshotStore store = QuoteSnapshotStore.open(file)) {
+        store.append(DATE_1, ImmutableMap.of(ID_1W, 0.00565));
+        store.append(DATE_1, ImmutableMap.of(ID_1W, 0.0056, ID_1M, 0.0059));
+      }
+      // append a partial record, which is discarded on open
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+        channel.write(ByteBuffer.wrap(new byte[] {2, 0, 0}));
+      }
+      try (QuoteSnapshotStore test = QuoteSnapshotStore.open(file)) {
+        assertEquals(test.getDates(), ImmutableSortedSet.of(DATE_1));
+        MarketData md = test.marketData(DATE_1);
+        assertEquals(md.getValue(ID_1W), 0.0056);
+        assertTrue(md.containsValue(ID_1M));
+        test.append(DATE_2, ImmutableMap.of(ID_3M, 0.006));
+        assertEquals(test.marketData(DATE_2).getValue(ID_3M), 0.006);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  public void test_reopen_garbageTail() throws IOException {
+    Path file = Files.createTempFile("quotes", ".bin");
+    Files.delete(file);
+    try {
+      try (QuoteSnapshotStore store = QuoteSnapshotStore.open(file)) {
+        store.append(DATE_1, ImmutableMap.of(ID_1W, 0.0056));
+      }
+      long size = Files.size(file);
+      // a day record whose epoch day is outside the range of dates
+      ByteBuffer day = ByteBuffer.allocate(13).put((byte) 2).putLong(Long.MAX_VALUE).putInt(0);
+      day.flip();
+      // an identifier record whose identifier cannot be parsed
+      ByteBuffer id = ByteBuffer.allocate(8)
+          .put((byte) 1).putShort((short) 1).put((byte) 'x').putShort((short) 0).putShort((short) 0);
+      id.flip();
+      for (ByteBuffer tail : ImmutableList.of(day, id)) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+          channel.write(tail);
+        }
+        try (QuoteSnapshotStore test = QuoteSnapshotStore.open(file)) {
+          assertEquals(test.getDates(), ImmutableSortedSet.of(DATE_1));
+          assertEquals(test.marketData(DATE_1).getValue(ID_1W), 0.0056);
+        }
+        assertEquals(Files.size(file), size);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  public void test_appendAndRead_interleaved() throws IOException {
+    Path file = Files.createTempFile("quotes", ".bin");
+    Files.delete(file);
+    try {
+      List<MarketData> views = new ArrayList<>();
+      try (QuoteSnapshotStore test = QuoteSnapshotStore.open(file)) {
+        for (int i = 0; i < 500; i++) {
+          test.append(DATE_1.plusDays(i), ImmutableMap.of(ID_1W, 0.005 + i * 1e-6, ID_1M, 0.006 + i * 1e-6));
+          views.add(test.marketData(DATE_1.plusDays(i)));
+        }
+        test.flush();
+        // the views obtained before later appends remain valid
+        for (int i = 0; i < 500; i++) {
+          assertEquals(views.get(i).getValue(ID_1W), 0.005 + i * 1e-6);
+          assertEquals(views.get(i).getValue(ID_1M), 0.006 + i * 1e-6);
+        }
+      }
+      try (QuoteSnapshotStore test = QuoteSnapshotStore.open(file)) {
+        assertEquals(test.getDates().size(), 500);
+        assertEquals(test.marketData(DATE_1.plusDays(499)).getValue(ID_1M), 0.006 + 499 * 1e-6);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  public void test_append_failure() throws IOException {
+    Path file = Files.createTempFile("quotes", ".bin");
+    Files.delete(file);
+    try {
+      try (QuoteSnapshotStore test = QuoteSnapshotStore.open(file)) {
+        Map<QuoteId, Double> invalid = new HashMap<>();
+        invalid.put(ID_3M, null);
+        assertThrowsIllegalArg(() -> test.append(DATE_1, invalid));
+        assertEquals(test.getDates(), ImmutableSortedSet.of());
+        test.append(DATE_1, ImmutableMap.of(ID_3M, 0.006));
+        assertEquals(test.marketData(DATE_1).getValue(ID_3M), 0.006);
+      }
+      try (QuoteSnapshotStore test = QuoteSnapshotStore.open(file)) {
+        assertEquals(test.marketData(DATE_1).getValue(ID_3M), 0.006);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  public void test_missingDate() throws IOException {
+    Path file = Files.createTempFile("quotes", ".bin");
+    Files.delete(file);
+    try (QuoteSnapshotStore test = QuoteSnapshotStore.open(file)) {
+      assertThrowsIllegalArg(() -> test.marketData(DATE_1));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  public void test_invalidFile() throws IOException {
+    Path file = Files.createTempFile("quotes", ".txt");
+    try {
+      Files.write(file, "not a store".getBytes());
+      assertThrowsIllegalArg(() -> QuoteSnapshotStore.open(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.currency.Currency.USD;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_365F;
+import static com.opengamma.strata.collect.TestHelper.assertThrows;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static com.opengamma.strata.product.common.BuySell.BUY;
+import static com.opengamma.strata.product.common.BuySell.SELL;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.currency.MultiCurrencyAmount;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.array.DoubleMatrix;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.data.MarketDataNotFoundException;
+import com.opengamma.strata.extra.repo.DiscountingRepoTradePricer;
+import com.opengamma.strata.extra.repo.Repo;
+import com.opengamma.strata.extra.repo.RepoTrade;
+import com.opengamma.strata.extra.repo.RepoTradeResolver;
+import com.opengamma.strata.extra.repo.ResolvedRepoBook;
+import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
+import com.opengamma.strata.market.curve.CurveInfoType;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.CurveParameterSize;
+import com.opengamma.strata.market.curve.Curves;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.JacobianCalibrationMatrix;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
+import com.opengamma.strata.market.param.CurrencyParameterSensitivity;
+import com.opengamma.strata.pricer.SimpleDiscountFactors;
+import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.sensitivity.MarketQuoteSensitivityCalculator;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+import com.opengamma.strata.product.TradeInfo;
+
+/**
+ * Test {@link RepoBookSensitivityCalculator}.
+ */
+@Test
+public class RepoBookSensitivityCalculatorTest {
+
+  private static final LocalDate VAL_DATE = LocalDate.of(2017, 1, 20);
+  private static final LegalEntityId ISSUER_A = LegalEntityId.of("OG", "A");
+  private static final LegalEntityId ISSUER_B = LegalEntityId.of("OG", "B");
+  private static final SecurityId SECURITY_A = SecurityId.of("OG", "bondA");
+  private static final SecurityId SECURITY_B = SecurityId.of("OG", "bondB");
+  private static final RepoGroup GROUP_A = RepoGroup.of("A");
+  private static final RepoGroup GROUP_B = RepoGroup.of("B");
+  private static final CurveName CURVE_A = CurveName.of("RepoA");
+  private static final CurveName CURVE_B = CurveName.of("RepoB");
+  private static final DoubleArray TIMES = DoubleArray.of(0.25, 0.5, 1d);
+  private static final DoubleMatrix JACOBIAN_A = DoubleMatrix.of(3, 3,
+      1.02, 0d, 0d,
+      -0.4, 1.05, 0d,
+      0.1, -0.3, 1.1);
+  private static final DoubleMatrix JACOBIAN_B = DoubleMatrix.of(3, 3,
+      -0.25, 0.01, 0d,
+      0.02, -0.5, 0.03,
+      0d, 0.01, -1d);
+  private static final InterpolatedNodalCurve REPO_CURVE_A = InterpolatedNodalCurve.of(
+      Curves.zeroRates(CURVE_A, ACT_360).withInfo(
+          CurveInfoType.JACOBIAN,
+          JacobianCalibrationMatrix.of(ImmutableList.of(CurveParameterSize.of(CURVE_A, 3)), JACOBIAN_A)),
+      TIMES, DoubleArray.of(0.01, 0.012, 0.015), LINEAR);
+  private static final InterpolatedNodalCurve REPO_CURVE_B = InterpolatedNodalCurve.of(
+      Curves.discountFactors(CURVE_B, ACT_365F).withInfo(
+          CurveInfoType.JACOBIAN,
+          JacobianCalibrationMatrix.of(ImmutableList.of(CurveParameterSize.of(CURVE_B, 3)), JACOBIAN_B)),
+      TIMES, DoubleArray.of(0.995, 0.99, 0.98), LINEAR);
+  private static final ImmutableLegalEntityDiscountingProvider PROVIDER =
+      ImmutableLegalEntityDiscountingProvider.builder()
+          .valuationDate(VAL_DATE)
+          .repoCurveGroups(ImmutableMap.of(ISSUER_A, GROUP_A, ISSUER_B, GROUP_B))
+          .repoCurves(ImmutableMap.of(
+              Pair.of(GROUP_A, EUR), ZeroRateDiscountFactors.of(EUR, VAL_DATE, REPO_CURVE_A),
+              Pair.of(GROUP_B, USD), SimpleDiscountFactors.of(USD, VAL_DATE, REPO_CURVE_B)))
+          .build();
+  private static final ReferenceData REF_DATA = ReferenceData.standard().combinedWith(ReferenceData.of(ImmutableMap.of(
+      SECURITY_A, SimpleLegalEntitySecurity.of(ISSUER_A), SECURITY_B, SimpleLegalEntitySecurity.of(ISSUER_B))));
+  private static final List<RepoTrade> TRADES = trades(60);
+  private static final ResolvedRepoBook BOOK = RepoTradeResolver.of(REF_DATA).resolveBook(TRADES);
+  private static final ImmutableList<ResolvedRepoTrade> RESOLVED_TRADES = BOOK.resolvedTrades();
+
+  private static final DiscountingRepoTradePricer PRICER = DiscountingRepoTradePricer.DEFAULT;
+  private static final RepoBookSensitivityCalculator CALCULATOR = RepoBookSensitivityCalculator.DEFAULT;
+  private static final MarketQuoteSensitivityCalculator MQC = MarketQuoteSensitivityCalculator.DEFAULT;
+  private static final double TOL = 1e-6;
+
+  //-------------------------------------------------------------------------
+  public void test_presentValue() {
+    MultiCurrencyAmount expected = MultiCurrencyAmount.empty();
+    for (ResolvedRepoTrade trade : RESOLVED_TRADES) {
+      expected = expected.plus(PRICER.presentValue(trade, PROVIDER));
+    }
+    MultiCurrencyAmount computed = CALCULATOR.presentValue(RESOLVED_TRADES, PROVIDER);
+    assertEquals(computed.getAmount(EUR).getAmount(), expected.getAmount(EUR).getAmount(), TOL);
+    assertEquals(computed.getAmount(USD).getAmount(), expected.getAmount(USD).getAmount(), TOL);
+    MultiCurrencyAmount computedBook = CALCULATOR.presentValue(BOOK, PROVIDER);
+    assertEquals(computedBook.getAmount(EUR).getAmount(), expected.getAmount(EUR).getAmount(), TOL);
+    assertEquals(computedBook.getAmount(USD).getAmount(), expected.getAmount(USD).getAmount(), TOL);
+  }
+
+  public void test_presentValue_expired() {
+    // the currency of an expired trade is included with a zero amount, as when pricing the trade
+    ResolvedRepoTrade expired = RESOLVED_TRADES.get(1);
+    assertTrue(VAL_DATE.isAfter(expired.getProduct().getEndDate()));
+    MultiCurrencyAmount expected = MultiCurrencyAmount.of(PRICER.presentValue(expired, PROVIDER));
+    assertEquals(expected, MultiCurrencyAmount.of(USD, 0d));
+    assertEquals(CALCULATOR.presentValue(ImmutableList.of(expired), PROVIDER), expected);
+    ResolvedRepoBook book = RepoTradeResolver.of(REF_DATA).resolveBook(TRADES.subList(1, 2));
+    assertEquals(CALCULATOR.presentValue(book, PROVIDER), expected);
+    assertEquals(
+        CALCULATOR.parameterSensitivity(ImmutableList.of(expired), PROVIDER),
+        CurrencyParameterSensitivities.empty());
+  }
+
+  public void test_parameterSensitivity() {
+    CurrencyParameterSensitivities expected = CurrencyParameterSensitivities.empty();
+    for (ResolvedRepoTrade trade : RESOLVED_TRADES) {
+      if (!VAL_DATE.isAfter(trade.getProduct().getEndDate())) {
+        expected = expected.combinedWith(
+            PROVIDER.parameterSensitivity(PRICER.presentValueSensitivity(trade, PROVIDER)));
+      }
+    }
+    assertEquals(expected.size(), 2);
+    assertTrue(CALCULATOR.parameterSensitivity(RESOLVED_TRADES, PROVIDER).equalWithTolerance(expected, TOL));
+    assertTrue(CALCULATOR.parameterSensitivity(BOOK, PROVIDER).equalWithTolerance(expected, TOL));
+  }
+
+  public void test_parameterSensitivity_matchesTradeByTrade() {
+    List<ResolvedRepoTrade> live = new ArrayList<>();
+    for (ResolvedRepoTrade trade : RESOLVED_TRADES) {
+      if (!VAL_DATE.isAfter(trade.getProduct().getEndDate())) {
+        live.add(trade);
+      }
+    }
+    CurrencyParameterSensitivities expected = RepoTradeCalculations.DEFAULT.pv01CalibratedBucketed(live, PROVIDER);
+    CurrencyParameterSensitivities computed = CALCULATOR.parameterSensitivity(RESOLVED_TRADES, PROVIDER);
+    assertTrue(computed.multipliedBy(1.0e-4).equalWithTolerance(expected, TOL));
+  }
+
+  public void test_marketQuoteSensitivity() {
+    CurrencyParameterSensitivities parameterSensitivity = CALCULATOR.parameterSensitivity(RESOLVED_TRADES, PROVIDER);
+    CurrencyParameterSensitivities computed = CALCULATOR.marketQuoteSensitivity(RESOLVED_TRADES, PROVIDER);
+    assertTrue(computed.equalWithTolerance(MQC.sensitivity(parameterSensitivity, PROVIDER), TOL));
+    assertTrue(CALCULATOR.marketQuoteSensitivity(BOOK, PROVIDER).equalWithTolerance(computed, TOL));
+    // chained through the stored Jacobian
+    DoubleArray sensitivityA = parameterSensitivity.getSensitivity(CURVE_A, EUR).getSensitivity();
+    CurrencyParameterSensitivity computedA = computed.getSensitivity(CURVE_A, EUR);
+    for (int j = 0; j < 3; j++) {
+      double expected = 0d;
+      for (int i = 0; i < 3; i++) {
+        expected += sensitivityA.get(i) * JACOBIAN_A.get(i, j);
+      }
+      assertEquals(computedA.getSensitivity().get(j), expected, TOL);
+    }
+    assertTrue(RepoTradeCalculations.DEFAULT.pv01MarketQuoteBucketed(RESOLVED_TRADES, PROVIDER)
+        .equalWithTolerance(computed.multipliedBy(1.0e-4), TOL));
+  }
+
+  public void test_empty() {
+    assertEquals(CALCULATOR.presentValue(ImmutableList.of(), PROVIDER), MultiCurrencyAmount.empty());
+    assertEquals(
+        CALCULATOR.parameterSensitivity(ImmutableList.of(), PROVIDER),
+        CurrencyParameterSensitivities.empty());
+    assertEquals(
+        CALCULATOR.marketQuoteSensitivity(ImmutableList.of(), PROVIDER),
+        CurrencyParameterSensitivities.empty());
+  }
+
+  public void test_fail() {
+    ImmutableLegalEntityDiscountingProvider noJacobian = ImmutableLegalEntityDiscountingProvider.builder()
+        .valuationDate(VAL_DATE)
+        .repoCurveGroups(ImmutableMap.of(ISSUER_A, GROUP_A))
+        .repoCurves(ImmutableMap.of(Pair.of(GROUP_A, EUR), ZeroRateDiscountFactors.of(EUR, VAL_DATE,
+            InterpolatedNodalCurve.of(Curves.zeroRates(CURVE_A, ACT_360), TIMES, DoubleArray.of(0.01, 0.012, 0.015),
+                LINEAR))))
+        .build();
+    List<ResolvedRepoTrade> tradesA = ImmutableList.of(RESOLVED_TRADES.get(0), RESOLVED_TRADES.get(2));
+    assertThrowsIllegalArg(() -> CALCULATOR.marketQuoteSensitivity(tradesA, noJacobian));
+    assertThrows(
+        () -> CALCULATOR.parameterSensitivity(RESOLVED_TRADES, noJacobian), MarketDataNotFoundException.class);
+    assertThrowsIllegalArg(() -> CALCULATOR.parameterSensitivity((List<ResolvedRepoTrade>) null, PROVIDER));
+    assertThrowsIllegalArg(() -> CALCULATOR.parameterSensitivity((ResolvedRepoBook) null, PROVIDER));
+    assertThrowsIllegalArg(() -> RepoBookSensitivityCalculator.of(null));
+  }
+
+  public void test_toString() {
+    assertEquals(CALCULATOR.toString(), "RepoBookSensitivityCalculator");
+  }
+
+  //-------------------------------------------------------------------------
+  // trades on both curves, some started and one expired, many sharing their dates
+  private static List<RepoTrade> trades(int count) {
+    List<RepoTrade> trades = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      boolean isA = i % 2 == 0;
+      LocalDate startDate = VAL_DATE.plusDays(i % 5 - 2);
+      LocalDate endDate = i == 1 ? VAL_DATE.minusDays(1) : VAL_DATE.plusMonths(1 + i % 9);
+      if (i == 1) {
+        startDate = VAL_DATE.minusDays(10);
+      }
+      Repo product = Repo.builder()
+          .buySell(i % 3 == 0 ? SELL : BUY)
+          .collateral(SecurityPosition.ofNet(isA ? SECURITY_A : SECURITY_B, 1d))
+          .currency(isA ? EUR : USD)
+          .notional(1_000_000 + i * 10_000)
+          .startDate(startDate)
+          .endDate(endDate)
+          .dayCount(isA ? ACT_360 : ACT_365F)
+          .rate(0.005 + i * 1e-4)
+          .build();
+      trades.add(RepoTrade.of(TradeInfo.builder().id(StandardId.of("OG", "T" + i)).build(), product));
+    }
+    return trades;
+  }
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.FOLLOWING;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.GBLO;
+import static com.opengamma.strata.market.ValueType.YEAR_FRACTION;
+import static com.opengamma.strata.market.ValueType.ZERO_RATE;
+import static com.opengamma.strata.market.curve.interpolator.CurveExtrapolators.FLAT;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static com.opengamma.strata.collect.TestHelper.assertThrows;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.basics.date.DayCounts;
+import com.opengamma.strata.basics.date.DaysAdjustment;
+import com.opengamma.strata.basics.date.Tenor;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.data.ImmutableMarketData;
+import com.opengamma.strata.data.ImmutableMarketDataBuilder;
+import com.opengamma.strata.extra.repo.ImmutableRepoConvention;
+import com.opengamma.strata.extra.repo.RepoConvention;
+import com.opengamma.strata.extra.repo.RepoTemplate;
+import com.opengamma.strata.market.curve.CurveGroupName;
+import com.opengamma.strata.market.curve.CurveName;
+import com.opengamma.strata.market.curve.CurveNode;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurveDefinition;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.observable.QuoteId;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+
+/**
+ * Test {@link RepoCurveCalibrationPipeline}.
+ */
+@Test
+public class RepoCurveCalibrationPipelineTest {
+
+  private static final LocalDate VALUATION_DATE = LocalDate.of(2017, 12, 11);
+  private static final RepoGroup UK_REPO_GROUP = RepoGroup.of("UK_GROUP");
+  private static final LegalEntityId UK_GOVT = LegalEntityId.of("OG", "UK_GOVT");
+  private static final CurveName CURVE_NAME_UK = CurveName.of("UK_REPO");
+  private static final SecurityId UK_SECURITY_ID = SecurityId.of("OG", "UK_GOVT_10Y");
+  private static final SecurityPosition UK_COLLATERAL = SecurityPosition.ofNet(UK_SECURITY_ID, 1d);
+  private static final ReferenceData REF_DATA = ReferenceData.standard().combinedWith(
+      ReferenceData.of(ImmutableMap.of(UK_SECURITY_ID, SimpleLegalEntitySecurity.of(UK_GOVT))));
+  private static final QuoteId[] UK_REPO_IDS = new QuoteId[] {
+      QuoteId.of(StandardId.of("OG", "UK_REPO_1W")), QuoteId.of(StandardId.of("OG", "UK_REPO_1M")),
+      QuoteId.of(StandardId.of("OG", "UK_REPO_3M"))};
+  private static final Tenor[] UK_PERIODS = new Tenor[] {Tenor.TENOR_1W, Tenor.TENOR_1M, Tenor.TENOR_3M};
+  private static final double[] UK_QUOTES = new double[] {0.00565, 0.0059, 0.00605};
+  private static final RepoConvention UK_CONVENTION = ImmutableRepoConvention.of(
+      "UK_REPO_CONV", GBP, BusinessDayAdjustment.of(FOLLOWING, GBLO), ACT_360, DaysAdjustment.ofBusinessDays(1, GBLO));
+  private static final LegalEntityDiscountingCurveGroupDefinition GROUP_DEFINITION;
+  static {
+    List<CurveNode> nodes = new ArrayList<>();
+    for (int i = 0; i < UK_QUOTES.length; ++i) {
+      nodes.add(RepoCurveNode.of(
+          RepoTemplate.of(UK_PERIODS[i], ImmutableList.of(UK_COLLATERAL), UK_CONVENTION), UK_REPO_IDS[i]));
+    }
+    InterpolatedNodalCurveDefinition curveDefn = InterpolatedNodalCurveDefinition.builder()
+        .dayCount(DayCounts.ACT_365F)
+        .name(CURVE_NAME_UK)
+        .xValueType(YEAR_FRACTION)
+        .yValueType(ZERO_RATE)
+        .nodes(nodes)
+        .interpolator(LINEAR)
+        .extrapolatorLeft(FLAT)
+        .extrapolatorRight(FLAT)
+        .build();
+    GROUP_DEFINITION = LegalEntityDiscountingCurveGroupDefinition.of(
+        CurveGroupName.of("UK"),
+        ImmutableMap.of(UK_GOVT, UK_REPO_GROUP),
+        ImmutableMap.of(),
+        ImmutableList.of(RepoCurveEntry.of(CURVE_NAME_UK, ImmutableSet.of(Pair.of(UK_REPO_GROUP, GBP)))),
+        ImmutableList.of(),
+        ImmutableList.of(curveDefn));
+  }
+  private static final LegalEntityDiscountingCurveCalibrator CALIBRATOR = LegalEntityDiscountingCurveCalibrator.standard();
+
+  //-------------------------------------------------------------------------
+  public void test_requiredQuoteIds() {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      RepoCurveCalibrationPipeline test = pipeline(executor, Duration.ZERO);
+      assertEquals(test.getRequiredQuoteIds(), ImmutableSet.copyOf(UK_REPO_IDS));
+      assertFalse(test.getLatest().isPresent());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_calibrate() throws Exception {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      RepoCurveCalibrationPipeline test = pipeline(executor, Duration.ofMillis(200));
+      BlockingQueue<ImmutableLegalEntityDiscountingProvider> published = new LinkedBlockingQueue<>();
+      AtomicInteger count = new AtomicInteger();
+      test.subscribe(provider -> {
+        count.incrementAndGet();
+        published.add(provider);
+      });
+      // a burst of updates within the window results in a single calibration
+      ImmutableMarketDataBuilder builder = ImmutableMarketData.builder(VALUATION_DATE);
+      for (int i = 0; i < UK_QUOTES.length; ++i) {
+        test.onQuote(UK_REPO_IDS[i], UK_QUOTES[i]);
+        builder.addValue(UK_REPO_IDS[i], UK_QUOTES[i]);
+      }
+      test.onQuote(QuoteId.of(StandardId.of("OG", "OTHER")), 1d);
+      ImmutableLegalEntityDiscountingProvider provider = published.poll(30, TimeUnit.SECONDS);
+      ImmutableLegalEntityDiscountingProvider expected = CALIBRATOR.calibrate(GROUP_DEFINITION, builder.build(), REF_DATA);
+      assertEquals(provider, expected);
+      assertEquals(test.getLatest().get(), expected);
+      Thread.sleep(400);
+      assertEquals(count.get(), 1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_incompleteQuotes() throws Exception {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      RepoCurveCalibrationPipeline test = pipeline(executor, Duration.ZERO);
+      AtomicInteger count = new AtomicInteger();
+      test.subscribe(provider -> count.incrementAndGet());
+      test.onQuotes(ImmutableMap.of(UK_REPO_IDS[0], UK_QUOTES[0]));
+      Thread.sleep(200);
+      assertEquals(count.get(), 0);
+      assertFalse(test.getLatest().isPresent());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_slowSubscriber() throws Exception {
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+    try {
+      RepoCurveCalibrationPipeline test = pipeline(executor, Duration.ZERO);
+      CountDownLatch release = new CountDownLatch(1);
+      BlockingQueue<ImmutableLegalEntityDiscountingProvider> published = new LinkedBlockingQueue<>();
+      test.subscribe(provider -> {
+        published.add(provider);
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      for (int j = 0; j < 5; j++) {
+        for (int i = 0; i < UK_QUOTES.length; ++i) {
+          test.onQuote(UK_REPO_IDS[i], UK_QUOTES[i] + j * 1e-4);
+        }
+        Thread.sleep(200);
+      }
+      release.countDown();
+      Thread.sleep(400);
+      // the subscriber receives the first and the latest provider, intermediate ones are skipped
+      assertTrue(published.size() <= 2);
+      ImmutableLegalEntityDiscountingProvider last = null;
+      for (ImmutableLegalEntityDiscountingProvider provider : published) {
+        last = provider;
+      }
+      assertEquals(last, test.getLatest().get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_cancel() {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      RepoCurveCalibrationPipeline test = pipeline(executor, Duration.ZERO);
+      RepoCurveCalibrationPipeline.Subscription subscription = test.subscribe(provider -> { });
+      assertFalse(subscription.isCancelled());
+      subscription.cancel();
+      assertTrue(subscription.isCancelled());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_subscriberFailure() throws Exception {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      RepoCurveCalibrationPipeline test = pipeline(executor, Duration.ZERO);
+      IllegalStateException thrown = new IllegalStateException("Subscriber");
+      BlockingQueue<RuntimeException> failures = new LinkedBlockingQueue<>();
+      test.subscribe(provider -> {
+        throw thrown;
+      }, failures::add);
+      test.onQuotes(quotes(0d));
+      assertEquals(failures.poll(30, TimeUnit.SECONDS), thrown);
+      // later deliveries are not stopped
+      test.onQuotes(quotes(1e-4));
+      assertEquals(failures.poll(30, TimeUnit.SECONDS), thrown);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_rejectedSchedule() throws Exception {
+    RejectingExecutor executor = new RejectingExecutor();
+    try {
+      RepoCurveCalibrationPipeline test = pipeline(executor, Duration.ofMillis(10));
+      BlockingQueue<ImmutableLegalEntityDiscountingProvider> published = new LinkedBlockingQueue<>();
+      test.subscribe(published::add);
+      executor.rejectDelayed.set(true);
+      assertThrows(() -> test.onQuotes(quotes(0d)), RejectedExecutionException.class);
+      // a later update schedules the calibration
+      test.onQuotes(quotes(0d));
+      assertTrue(published.poll(30, TimeUnit.SECONDS) != null);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_rejectedDelivery() throws Exception {
+    RejectingExecutor executor = new RejectingExecutor();
+    try {
+      RepoCurveCalibrationPipeline test = pipeline(executor, Duration.ofMillis(10));
+      BlockingQueue<ImmutableLegalEntityDiscountingProvider> published = new LinkedBlockingQueue<>();
+      test.subscribe(published::add);
+      executor.rejectImmediate.set(true);
+      test.onQuotes(quotes(0d));
+      Thread.sleep(200);
+      assertTrue(test.getLatest().isPresent());
+      assertTrue(published.isEmpty());
+      // a later calibration is delivered
+      test.onQuotes(quotes(1e-4));
+      ImmutableLegalEntityDiscountingProvider provider = published.poll(30, TimeUnit.SECONDS);
+      assertTrue(provider != null);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_close() throws Exception {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      RepoCurveCalibrationPipeline test = pipeline(executor, Duration.ZERO);
+      AtomicInteger count = new AtomicInteger();
+      RepoCurveCalibrationPipeline.Subscription subscription = test.subscribe(provider -> count.incrementAndGet());
+      assertFalse(test.isClosed());
+      test.close();
+      assertTrue(test.isClosed());
+      assertTrue(subscription.isCancelled());
+      test.onQuotes(quotes(0d));
+      test.onQuote(UK_REPO_IDS[0], UK_QUOTES[0]);
+      Thread.sleep(200);
+      assertEquals(count.get(), 0);
+      assertFalse(test.getLatest().isPresent());
+      assertTrue(test.subscribe(provider -> count.incrementAndGet()).isCancelled());
+      test.close();
+      assertTrue(test.isClosed());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // the required quotes, shifted
+  private static ImmutableMap<QuoteId, Double> quotes(double shift) {
+    ImmutableMap.Builder<QuoteId, Double> builder = ImmutableMap.builder();
+    for (int i = 0; i < UK_QUOTES.length; ++i) {
+      builder.put(UK_REPO_IDS[i], UK_QUOTES[i] + shift);
+    }
+    return builder.build();
+  }
+
+  // an executor rejecting the next delayed or immediate task on request
+  private static final class RejectingExecutor extends ScheduledThreadPoolExecutor {
+    private final AtomicBoolean rejectDelayed = new AtomicBoolean();
+    private final AtomicBoolean rejectImmediate = new AtomicBoolean();
+
+    private RejectingExecutor() {
+      super(1);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+      // execute is implemented as a schedule without delay
+      AtomicBoolean reject = delay == 0 ? rejectImmediate : rejectDelayed;
+      if (reject.getAndSet(false)) {
+        throw new RejectedExecutionException("Rejected");
+      }
+      return super.schedule(command, delay, unit);
+    }
+  }
+
+  private static RepoCurveCalibrationPipeline pipeline(ScheduledExecutorService executor, Duration debounce) {
+    return RepoCurveCalibrationPipeline.of(
+        CALIBRATOR, ImmutableList.of(GROUP_DEFINITION), REF_DATA, VALUATION_DATE, debounce, executor);
+  }
+
+}
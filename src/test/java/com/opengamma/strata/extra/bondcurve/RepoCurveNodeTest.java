@@ -17,6 +17,7 @@ import static com.opengamma.strata.collect.TestHelper.coverImmutableBean;
 import static com.opengamma.strata.collect.TestHelper.date;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 import java.time.LocalDate;
 import java.util.Iterator;
@@ -35,6 +36,7 @@ import com.opengamma.strata.data.ImmutableMarketData;
 import com.opengamma.strata.data.MarketData;
 import com.opengamma.strata.data.MarketDataNotFoundException;
 import com.opengamma.strata.data.ObservableId;
+import com.opengamma.strata.extra.repo.CompiledRepoConvention;
 import com.opengamma.strata.extra.repo.ImmutableRepoConvention;
 import com.opengamma.strata.extra.repo.Repo;
 import com.opengamma.strata.extra.repo.RepoConvention;
@@ -194,6 +196,19 @@ public class RepoCurveNodeTest {
     assertEquals(((TenorDateParameterMetadata) metadata).getTenor(), Tenor.TENOR_1M);
   }
 
+  public void test_compiledConvention() {
+    RepoCurveNode node = RepoCurveNode.of(TEMPLATE, QUOTE_ID, SPREAD);
+    ReferenceData compiledRefData =
+        CompiledRepoConvention.compiledReferenceData(ImmutableList.of(CONVENTION), REF_DATA);
+    assertTrue(CompiledRepoConvention.find(CONVENTION, compiledRefData).isPresent());
+    MarketData marketData = ImmutableMarketData.builder(VAL_DATE).addValue(QUOTE_ID, 0.035).build();
+    for (int i = 0; i < 40; i++) {
+      LocalDate valuationDate = VAL_DATE.plusDays(i);
+      assertEquals(node.date(valuationDate, compiledRefData), node.date(valuationDate, REF_DATA));
+    }
+    assertEquals(node.resolvedTrade(1d, marketData, compiledRefData), node.resolvedTrade(1d, marketData, REF_DATA));
+  }
+
   public void test_metadata_fixed() {
     LocalDate nodeDate = VAL_DATE.plusMonths(1);
     RepoCurveNode node =
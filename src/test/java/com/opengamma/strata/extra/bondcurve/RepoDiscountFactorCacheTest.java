@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.extra.repo.DiscountingRepoProductPricer;
+import com.opengamma.strata.extra.repo.ResolvedRepo;
+import com.opengamma.strata.market.curve.Curves;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.pricer.DiscountFactors;
+import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+import com.opengamma.strata.product.LegalEntityId;
+
+/**
+ * Test {@link RepoDiscountFactorCache}.
+ */
+@Test
+public class RepoDiscountFactorCacheTest {
+
+  private static final LocalDate VAL_DATE = RepoTradeTestData.VAL_DATE;
+  private static final LegalEntityId ISSUER_B = LegalEntityId.of("OG", "B");
+  private static final RepoGroup REPO_B = RepoGroup.of("B");
+  private static final DoubleArray TIMES = DoubleArray.of(0.25, 0.5, 1d);
+  private static final DiscountFactors DSC_REPO_A = ZeroRateDiscountFactors.of(EUR, VAL_DATE,
+      InterpolatedNodalCurve.of(Curves.zeroRates("RepoA", ACT_360), TIMES, DoubleArray.of(0.01, 0.012, 0.015), LINEAR));
+  private static final DiscountFactors DSC_REPO_B = ZeroRateDiscountFactors.of(GBP, VAL_DATE,
+      InterpolatedNodalCurve.of(Curves.zeroRates("RepoB", ACT_360), TIMES, DoubleArray.of(0.005, 0.006, 0.007), LINEAR));
+  private static final IndexedLegalEntityDiscountingProvider PROVIDER = IndexedLegalEntityDiscountingProvider.of(
+      ImmutableLegalEntityDiscountingProvider.builder()
+          .valuationDate(VAL_DATE)
+          .repoCurveGroups(ImmutableMap.of(RepoTradeTestData.ISSUER_ID, RepoTradeTestData.REPO_GROUP, ISSUER_B, REPO_B))
+          .repoCurves(ImmutableMap.of(
+              Pair.of(RepoTradeTestData.REPO_GROUP, EUR), DSC_REPO_A, Pair.of(REPO_B, GBP), DSC_REPO_B))
+          .build());
+  private static final double TOL = 1e-15;
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    RepoDiscountFactorCache test = RepoDiscountFactorCache.of(PROVIDER);
+    assertSame(test.getProvider(), PROVIDER);
+    assertEquals(test.size(), 0);
+    assertThrowsIllegalArg(() -> RepoDiscountFactorCache.of(null));
+  }
+
+  public void test_discountFactor() {
+    RepoDiscountFactorCache test = RepoDiscountFactorCache.of(PROVIDER);
+    int index = PROVIDER.repoCurveIndex(RepoTradeTestData.ISSUER_ID, EUR);
+    RepoCurveDiscountFactors expected = PROVIDER.repoCurveDiscountFactors(index);
+    // enough dates to grow the table several times
+    for (int i = 0; i < 200; i++) {
+      LocalDate date = VAL_DATE.plusDays(i);
+      assertEquals(test.discountFactor(index, date), expected.discountFactor(date), TOL);
+    }
+    assertEquals(test.size(), 200);
+    for (int i = 0; i < 200; i++) {
+      LocalDate date = VAL_DATE.plusDays(i);
+      assertEquals(test.discountFactor(index, date), expected.discountFactor(date), TOL);
+    }
+    assertEquals(test.size(), 200);
+  }
+
+  public void test_prefill() {
+    List<LocalDate> dates = new ArrayList<>();
+    for (int i = 1; i <= 10; i++) {
+      dates.add(VAL_DATE.plusMonths(i));
+    }
+    RepoDiscountFactorCache test = RepoDiscountFactorCache.of(PROVIDER).prefill(dates);
+    // two repo curves
+    assertEquals(test.size(), 20);
+    int index = PROVIDER.repoCurveIndex(ISSUER_B, GBP);
+    assertEquals(test.discountFactor(index, dates.get(3)), DSC_REPO_B.discountFactor(dates.get(3)), TOL);
+    assertEquals(test.size(), 20);
+    test.prefill(ImmutableList.of(dates.get(0)));
+    assertEquals(test.size(), 20);
+  }
+
+  public void test_presentValue() {
+    RepoDiscountFactorCache test = RepoDiscountFactorCache.of(PROVIDER);
+    ResolvedRepo product = RepoTradeTestData.RESOLVED_TRADE.getProduct();
+    DiscountingRepoProductPricer pricer = DiscountingRepoProductPricer.DEFAULT;
+    assertEquals(test.presentValue(product, pricer), pricer.presentValue(product, PROVIDER));
+    assertEquals(test.size(), 2);
+  }
+
+}
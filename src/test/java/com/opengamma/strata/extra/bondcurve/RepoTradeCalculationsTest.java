@@ -9,6 +9,7 @@ import static com.opengamma.strata.extra.bondcurve.RepoTradeTestData.LOOKUP;
 import static com.opengamma.strata.extra.bondcurve.RepoTradeTestData.MARKET_DATA;
 import static com.opengamma.strata.extra.bondcurve.RepoTradeTestData.RESOLVED_TRADE;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 import org.testng.annotations.Test;
 
@@ -20,6 +21,7 @@ import com.opengamma.strata.data.scenario.DoubleScenarioArray;
 import com.opengamma.strata.data.scenario.MultiCurrencyScenarioArray;
 import com.opengamma.strata.data.scenario.ScenarioArray;
 import com.opengamma.strata.extra.repo.DiscountingRepoTradePricer;
+import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
 import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
 import com.opengamma.strata.market.sensitivity.PointSensitivities;
 import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
@@ -31,6 +33,7 @@ import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
 public class RepoTradeCalculationsTest {
 
   private static final RepoTradeCalculations CALC = RepoTradeCalculations.DEFAULT;
+  private static final double TOLERANCE = 1e-10;
 
   //-------------------------------------------------------------------------
   public void test_presentValue() {
@@ -82,4 +85,16 @@ public class RepoTradeCalculationsTest {
     assertEquals(CALC.pv01CalibratedBucketed(RESOLVED_TRADE, provider), expectedPv01CalBucketed);
   }
 
+  public void test_pv01_book() {
+    LegalEntityDiscountingProvider provider = LOOKUP.marketDataView(MARKET_DATA.scenario(0)).discountingProvider();
+    ImmutableList<ResolvedRepoTrade> trades = ImmutableList.of(RESOLVED_TRADE, RESOLVED_TRADE);
+    CurrencyParameterSensitivities expected = CALC.pv01CalibratedBucketed(RESOLVED_TRADE, provider).multipliedBy(2d);
+
+    ScenarioArray<CurrencyParameterSensitivities> computed = CALC.pv01CalibratedBucketed(trades, LOOKUP, MARKET_DATA);
+    assertEquals(computed.getScenarioCount(), 1);
+    assertTrue(computed.get(0).equalWithTolerance(expected, TOLERANCE));
+    assertTrue(CALC.pv01CalibratedBucketed(trades, provider).equalWithTolerance(expected, TOLERANCE));
+    assertEquals(CALC.pv01CalibratedBucketed(ImmutableList.of(), provider), CurrencyParameterSensitivities.empty());
+  }
+
 }
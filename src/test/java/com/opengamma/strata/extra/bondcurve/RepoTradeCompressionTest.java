@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.currency.CurrencyAmount;
+import com.opengamma.strata.basics.currency.MultiCurrencyAmount;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.extra.repo.DiscountingRepoTradePricer;
+import com.opengamma.strata.extra.repo.ResolvedRepo;
+import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
+import com.opengamma.strata.market.curve.Curves;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
+import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.TradeInfo;
+
+/**
+ * Test {@link RepoTradeCompression}.
+ */
+@Test
+public class RepoTradeCompressionTest {
+
+  private static final LocalDate VAL_DATE = LocalDate.of(2017, 1, 20);
+  private static final LocalDate START_DATE = LocalDate.of(2017, 1, 24);
+  private static final LocalDate END_DATE_1 = LocalDate.of(2017, 3, 24);
+  private static final LocalDate END_DATE_2 = LocalDate.of(2017, 6, 26);
+  private static final LegalEntityId ISSUER_ID = LegalEntityId.of("OG", "ABC");
+  private static final SecurityId SECURITY_ID = SecurityId.of("OG", "bond");
+  private static final SecurityId SECURITY_ID_2 = SecurityId.of("OG", "bond2");
+  private static final RepoGroup REPO_GROUP = RepoGroup.of("ABC");
+  private static final ImmutableLegalEntityDiscountingProvider PROVIDER = provider(VAL_DATE);
+  private static final ResolvedRepoTrade TRADE_1 = trade("T1", 1.0e7, 0.0075, END_DATE_1);
+  private static final ResolvedRepoTrade TRADE_2 = trade("T2", 2.5e7, 0.0080, END_DATE_2);
+  private static final ResolvedRepoTrade TRADE_3 = trade("T3", 3.0e7, 0.0090, END_DATE_1);
+  private static final ResolvedRepoTrade TRADE_4 = trade("T4", -1.5e7, 0.0070, END_DATE_1);
+  private static final ResolvedRepoTrade TRADE_5 = trade("T5", 0.5e7, 0.0060, END_DATE_1);
+  private static final List<ResolvedRepoTrade> TRADES = ImmutableList.of(TRADE_1, TRADE_2, TRADE_3, TRADE_4, TRADE_5);
+  private static final DiscountingRepoTradePricer PRICER = DiscountingRepoTradePricer.DEFAULT;
+  private static final RepoTradeCalculations CALCULATIONS = RepoTradeCalculations.DEFAULT;
+  private static final double TOL = 1e-6;
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    RepoTradeCompression test = RepoTradeCompression.of(TRADES);
+    assertEquals(test.getTrades(), TRADES);
+    // trades 1, 3 and 5 are compressed, trade 4 is in the opposite direction
+    assertEquals(test.getCompressedTrades().size(), 3);
+    assertEquals(test.compressedIndex(0), 0);
+    assertEquals(test.compressedIndex(1), 1);
+    assertEquals(test.compressedIndex(2), 0);
+    assertEquals(test.compressedIndex(3), 2);
+    assertEquals(test.compressedIndex(4), 0);
+    assertEquals(test.tradeIndices(0), ImmutableList.of(0, 2, 4));
+    assertEquals(test.tradeIds(0), ImmutableList.of(
+        StandardId.of("OG", "T1"), StandardId.of("OG", "T3"), StandardId.of("OG", "T5")));
+    assertEquals(test.findTradeIndex(StandardId.of("OG", "T4")).get().intValue(), 3);
+    assertFalse(test.findTradeIndex(StandardId.of("OG", "T6")).isPresent());
+    ResolvedRepo compressed = test.getCompressedTrades().get(0).getProduct();
+    assertEquals(compressed.getNotional(), 4.5e7, TOL);
+    assertEquals(compressed.getInterest(),
+        TRADE_1.getProduct().getInterest() + TRADE_3.getProduct().getInterest() + TRADE_5.getProduct().getInterest(),
+        TOL);
+    assertEquals(test.weight(2), 3.0e7 / 4.5e7, 1e-15);
+    assertEquals(test.residualInterest(0) + test.residualInterest(2) + test.residualInterest(4), 0d, TOL);
+    assertEquals(test.weight(1), 1d);
+    assertEquals(test.residualInterest(1), 0d, TOL);
+  }
+
+  public void test_of_collateral() {
+    ResolvedRepoTrade other = trade("T6", 2.0e7, 0.0085, END_DATE_1, SECURITY_ID_2);
+    RepoTradeCompression test = RepoTradeCompression.of(ImmutableList.of(TRADE_1, other, TRADE_3));
+    assertEquals(test.getCompressedTrades().size(), 2);
+    assertEquals(test.tradeIndices(0), ImmutableList.of(0, 2));
+    assertEquals(test.tradeIndices(1), ImmutableList.of(1));
+    assertEquals(test.getCompressedTrades().get(0).getProduct().getSecurityIds(), ImmutableList.of(SECURITY_ID));
+    assertEquals(test.getCompressedTrades().get(1).getProduct().getSecurityIds(), ImmutableList.of(SECURITY_ID_2));
+    assertEquals(test.getCompressedTrades().get(1).getProduct().getNotional(), 2.0e7, TOL);
+  }
+
+  public void test_of_duplicateId() {
+    assertThrowsIllegalArg(() -> RepoTradeCompression.of(ImmutableList.of(TRADE_1, TRADE_1)));
+  }
+
+  public void test_presentValue() {
+    RepoTradeCompression test = RepoTradeCompression.of(TRADES);
+    MultiCurrencyAmount expected = MultiCurrencyAmount.empty();
+    for (ResolvedRepoTrade trade : TRADES) {
+      expected = expected.plus(PRICER.presentValue(trade, PROVIDER));
+    }
+    MultiCurrencyAmount computed = CALCULATIONS.presentValue(test, PROVIDER);
+    assertEquals(computed.getAmount(EUR).getAmount(), expected.getAmount(EUR).getAmount(), TOL);
+    for (int i = 0; i < TRADES.size(); i++) {
+      ResolvedRepoTrade compressed = test.getCompressedTrades().get(test.compressedIndex(i));
+      CurrencyAmount compressedPv = PRICER.presentValue(compressed, PROVIDER);
+      CurrencyAmount allocated = test.allocatePresentValue(i, compressedPv, PROVIDER);
+      assertEquals(allocated.getCurrency(), EUR);
+      assertEquals(allocated.getAmount(), PRICER.presentValue(TRADES.get(i), PROVIDER).getAmount(), TOL);
+    }
+  }
+
+  public void test_pv01CalibratedBucketed() {
+    RepoTradeCompression test = RepoTradeCompression.of(TRADES);
+    CurrencyParameterSensitivities expected = CALCULATIONS.pv01CalibratedBucketed(TRADES, PROVIDER);
+    assertTrue(CALCULATIONS.pv01CalibratedBucketed(test, PROVIDER).equalWithTolerance(expected, TOL));
+    for (int i = 0; i < TRADES.size(); i++) {
+      CurrencyParameterSensitivities compressedPv01 = CALCULATIONS.pv01CalibratedBucketed(
+          test.getCompressedTrades().get(test.compressedIndex(i)), PROVIDER);
+      CurrencyParameterSensitivities allocated = test.allocatePv01CalibratedBucketed(i, compressedPv01, PROVIDER);
+      assertTrue(allocated.equalWithTolerance(CALCULATIONS.pv01CalibratedBucketed(TRADES.get(i), PROVIDER), TOL));
+    }
+  }
+
+  public void test_pv01CalibratedBucketed_expired() {
+    // trades 1, 3, 4 and 5 have expired
+    ImmutableLegalEntityDiscountingProvider provider = provider(LocalDate.of(2017, 4, 20));
+    RepoTradeCompression test = RepoTradeCompression.of(TRADES);
+    for (int i = 0; i < TRADES.size(); i++) {
+      CurrencyParameterSensitivities compressedPv01 = CALCULATIONS.pv01CalibratedBucketed(
+          test.getCompressedTrades().get(test.compressedIndex(i)), provider);
+      CurrencyParameterSensitivities allocated = test.allocatePv01CalibratedBucketed(i, compressedPv01, provider);
+      assertTrue(allocated.equalWithTolerance(CALCULATIONS.pv01CalibratedBucketed(TRADES.get(i), provider), TOL));
+    }
+    assertTrue(test.allocatePv01CalibratedBucketed(0, CurrencyParameterSensitivities.empty(), provider)
+        .equalWithTolerance(CurrencyParameterSensitivities.empty(), TOL));
+  }
+
+  public void test_parSpread() {
+    RepoTradeCompression test = RepoTradeCompression.of(TRADES);
+    for (int i = 0; i < TRADES.size(); i++) {
+      double compressedParRate = PRICER.parRate(test.getCompressedTrades().get(test.compressedIndex(i)), PROVIDER);
+      assertEquals(compressedParRate, PRICER.parRate(TRADES.get(i), PROVIDER), 1e-12);
+      assertEquals(test.allocateParSpread(i, compressedParRate), PRICER.parSpread(TRADES.get(i), PROVIDER), 1e-12);
+    }
+  }
+
+  public void test_parRates() {
+    RepoTradeCompression test = RepoTradeCompression.of(TRADES);
+    DoubleArray parRates = test.parRates(PROVIDER);
+    assertEquals(parRates.size(), test.getCompressedTrades().size());
+    for (int i = 0; i < parRates.size(); i++) {
+      assertEquals(parRates.get(i), PRICER.parRate(test.getCompressedTrades().get(i), PROVIDER), 1e-12);
+    }
+    DoubleArray parSpreads = test.parSpreads(PROVIDER);
+    assertEquals(parSpreads.size(), TRADES.size());
+    for (int i = 0; i < TRADES.size(); i++) {
+      assertEquals(parSpreads.get(i), PRICER.parSpread(TRADES.get(i), PROVIDER), 1e-12);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private static ImmutableLegalEntityDiscountingProvider provider(LocalDate valuationDate) {
+    return ImmutableLegalEntityDiscountingProvider.builder()
+        .valuationDate(valuationDate)
+        .repoCurveGroups(ImmutableMap.of(ISSUER_ID, REPO_GROUP))
+        .repoCurves(ImmutableMap.of(Pair.of(REPO_GROUP, EUR), ZeroRateDiscountFactors.of(EUR, valuationDate,
+            InterpolatedNodalCurve.of(
+                Curves.zeroRates("Repo", ACT_360), DoubleArray.of(0.25, 0.5, 1d), DoubleArray.of(0.01, 0.012, 0.015),
+                LINEAR))))
+        .build();
+  }
+
+  private static ResolvedRepoTrade trade(String id, double notional, double rate, LocalDate endDate) {
+    return trade(id, notional, rate, endDate, SECURITY_ID);
+  }
+
+  private static ResolvedRepoTrade trade(
+      String id,
+      double notional,
+      double rate,
+      LocalDate endDate,
+      SecurityId securityId) {
+
+    ResolvedRepo product = ResolvedRepo.builder()
+        .securityIds(ImmutableList.of(securityId))
+        .legalEntityId(ISSUER_ID)
+        .currency(EUR)
+        .notional(notional)
+        .startDate(START_DATE)
+        .endDate(endDate)
+        .yearFraction(ACT_360.yearFraction(START_DATE, endDate))
+        .rate(rate)
+        .build();
+    return ResolvedRepoTrade.of(TradeInfo.builder().id(StandardId.of("OG", id)).build(), product);
+  }
+
+}
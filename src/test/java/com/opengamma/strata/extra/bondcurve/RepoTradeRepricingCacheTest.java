@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.bondcurve;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_365F;
+import static com.opengamma.strata.collect.TestHelper.date;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static com.opengamma.strata.product.common.BuySell.BUY;
+import static com.opengamma.strata.product.common.BuySell.SELL;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.time.LocalDate;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.currency.MultiCurrencyAmount;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.extra.repo.DiscountingRepoProductPricer;
+import com.opengamma.strata.extra.repo.Repo;
+import com.opengamma.strata.extra.repo.RepoTrade;
+import com.opengamma.strata.extra.repo.ResolvedRepoTrade;
+import com.opengamma.strata.market.curve.Curves;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.pricer.DiscountFactors;
+import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+import com.opengamma.strata.product.TradeInfo;
+import com.opengamma.strata.product.common.BuySell;
+
+/**
+ * Test {@link RepoTradeRepricingCache}.
+ */
+@Test
+public class RepoTradeRepricingCacheTest {
+
+  private static final LocalDate VAL_DATE = date(2017, 1, 20);
+  private static final LegalEntityId ISSUER_A = LegalEntityId.of("OG", "A");
+  private static final LegalEntityId ISSUER_B = LegalEntityId.of("OG", "B");
+  private static final SecurityId SECURITY_A = SecurityId.of("OG", "bondA");
+  private static final SecurityId SECURITY_B = SecurityId.of("OG", "bondB");
+  private static final RepoGroup REPO_A = RepoGroup.of("A");
+  private static final RepoGroup REPO_B = RepoGroup.of("B");
+  private static final ReferenceData REF_DATA = ReferenceData.standard().combinedWith(ReferenceData.of(ImmutableMap.of(
+      SECURITY_A, SimpleLegalEntitySecurity.of(ISSUER_A), SECURITY_B, SimpleLegalEntitySecurity.of(ISSUER_B))));
+  private static final DoubleArray TIMES = DoubleArray.of(0.25, 0.5, 1d);
+  private static final DiscountFactors DSC_A = discountFactors("RepoA", 0.01);
+  private static final DiscountFactors DSC_A2 = discountFactors("RepoA", 0.011);
+  private static final DiscountFactors DSC_B = discountFactors("RepoB", 0.005);
+  private static final ImmutableList<ResolvedRepoTrade> TRADES = ImmutableList.of(
+      trade(SECURITY_A, BUY, 1_000_000, 0.009),
+      trade(SECURITY_B, SELL, 2_000_000, 0.004),
+      trade(SECURITY_A, SELL, 3_000_000, 0.011));
+
+  //-------------------------------------------------------------------------
+  public void test_of() {
+    ImmutableLegalEntityDiscountingProvider provider = provider(DSC_A);
+    RepoTradeRepricingCache test = RepoTradeRepricingCache.of(TRADES, provider);
+    assertEquals(test.getTrades(), TRADES);
+    assertEquals(
+        test.getTradeIndicesByCurve(),
+        ImmutableMap.of(Pair.of(REPO_A, EUR), ImmutableList.of(0, 2), Pair.of(REPO_B, EUR), ImmutableList.of(1)));
+    assertBook(test, provider);
+  }
+
+  public void test_update() {
+    RepoTradeRepricingCache test = RepoTradeRepricingCache.of(TRADES, provider(DSC_A));
+    assertEquals(test.update(provider(DSC_A)), 0);
+    ImmutableLegalEntityDiscountingProvider updated = provider(DSC_A2);
+    assertEquals(test.update(updated), 2);
+    assertBook(test, updated);
+    assertEquals(test.update(provider(DSC_A)), 2);
+    assertBook(test, provider(DSC_A));
+  }
+
+  //-------------------------------------------------------------------------
+  private static void assertBook(RepoTradeRepricingCache test, ImmutableLegalEntityDiscountingProvider provider) {
+    DiscountingRepoProductPricer pricer = DiscountingRepoProductPricer.DEFAULT;
+    MultiCurrencyAmount pv = MultiCurrencyAmount.empty();
+    PointSensitivities sensitivity = PointSensitivities.empty();
+    for (int i = 0; i < TRADES.size(); i++) {
+      assertEquals(test.presentValue(i), pricer.presentValue(TRADES.get(i).getProduct(), provider));
+      assertTrue(test.presentValueSensitivity(i)
+          .equalWithTolerance(pricer.presentValueSensitivity(TRADES.get(i).getProduct(), provider), 1e-6));
+      pv = pv.plus(pricer.presentValue(TRADES.get(i).getProduct(), provider));
+      sensitivity = sensitivity.combinedWith(pricer.presentValueSensitivity(TRADES.get(i).getProduct(), provider));
+    }
+    assertEquals(test.getPresentValue().getAmount(EUR).getAmount(), pv.getAmount(EUR).getAmount(), 1e-6);
+    assertTrue(test.getPresentValueSensitivity().equalWithTolerance(sensitivity.normalized(), 1e-6));
+  }
+
+  private static ImmutableLegalEntityDiscountingProvider provider(DiscountFactors dscA) {
+    return ImmutableLegalEntityDiscountingProvider.builder()
+        .valuationDate(VAL_DATE)
+        .repoCurveGroups(ImmutableMap.of(ISSUER_A, REPO_A, ISSUER_B, REPO_B))
+        .repoCurves(ImmutableMap.of(Pair.of(REPO_A, EUR), dscA, Pair.of(REPO_B, EUR), DSC_B))
+        .build();
+  }
+
+  private static DiscountFactors discountFactors(String name, double rate) {
+    return ZeroRateDiscountFactors.of(EUR, VAL_DATE, InterpolatedNodalCurve.of(
+        Curves.zeroRates(name, ACT_365F), TIMES, DoubleArray.of(rate, rate + 0.001, rate + 0.002), LINEAR));
+  }
+
+  private static ResolvedRepoTrade trade(SecurityId securityId, BuySell buySell, double notional, double rate) {
+    Repo product = Repo.builder()
+        .buySell(buySell)
+        .collateral(SecurityPosition.ofNet(securityId, 1d))
+        .currency(EUR)
+        .notional(notional)
+        .startDate(date(2017, 1, 24))
+        .endDate(date(2017, 3, 24))
+        .dayCount(ACT_360)
+        .rate(rate)
+        .build();
+    return RepoTrade.of(TradeInfo.empty(), product).resolve(REF_DATA);
+  }
+
+}
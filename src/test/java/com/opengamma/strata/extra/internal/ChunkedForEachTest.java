@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.internal;
+
+import static com.opengamma.strata.collect.TestHelper.assertThrows;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link ChunkedForEach}.
+ */
+@Test
+public class ChunkedForEachTest {
+
+  public void test_sequential() {
+    ChunkedForEach test = ChunkedForEach.SEQUENTIAL;
+    assertFalse(test.isParallel());
+    AtomicIntegerArray counts = new AtomicIntegerArray(10);
+    test.forEach(10, counts::incrementAndGet);
+    assertVisitedOnce(counts);
+    assertEquals(test.toString(), "ChunkedForEach[sequential]");
+  }
+
+  public void test_withThreshold() {
+    assertEquals(ChunkedForEach.SEQUENTIAL.withThreshold(2), ChunkedForEach.SEQUENTIAL);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ChunkedForEach test = ChunkedForEach.of(5, executor, 3).withThreshold(2);
+      assertTrue(test.isParallel());
+      assertEquals(test.getThreshold(), 2);
+      assertEquals(test.getParallelism(), 3);
+      assertThrowsIllegalArg(() -> test.withThreshold(0));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_parallel() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ChunkedForEach test = ChunkedForEach.of(5, executor, 4);
+      assertTrue(test.isParallel());
+      assertEquals(test.getThreshold(), 5);
+      assertEquals(test.getParallelism(), 4);
+      Set<Thread> threads = ConcurrentHashMap.newKeySet();
+      AtomicIntegerArray counts = new AtomicIntegerArray(103);
+      test.forEach(103, i -> {
+        threads.add(Thread.currentThread());
+        counts.incrementAndGet(i);
+      });
+      assertVisitedOnce(counts);
+      assertTrue(threads.contains(Thread.currentThread()));
+      // below the threshold, only the calling thread is used
+      threads.clear();
+      test.forEach(4, i -> threads.add(Thread.currentThread()));
+      assertEquals(threads.size(), 1);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_parallel_exception() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ChunkedForEach test = ChunkedForEach.of(1, executor, 2);
+      assertThrows(
+          () -> test.forEach(10, i -> {
+            if (i == 8) {
+              throw new IllegalStateException("Index failed");
+            }
+          }),
+          IllegalStateException.class);
+      assertThrows(
+          () -> test.forEach(10, i -> {
+            if (i == 2) {
+              throw new IllegalStateException("Index failed");
+            }
+          }),
+          IllegalStateException.class);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_of_invalid() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertThrowsIllegalArg(() -> ChunkedForEach.of(0, executor));
+      assertThrowsIllegalArg(() -> ChunkedForEach.of(1, null));
+      assertThrowsIllegalArg(() -> ChunkedForEach.of(1, executor, 0));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private static void assertVisitedOnce(AtomicIntegerArray counts) {
+    for (int i = 0; i < counts.length(); i++) {
+      assertEquals(counts.get(i), 1);
+    }
+  }
+
+}
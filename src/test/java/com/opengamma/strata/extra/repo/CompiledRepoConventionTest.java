@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.currency.Currency.USD;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.FOLLOWING;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.MODIFIED_FOLLOWING;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.MODIFIED_PRECEDING;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.NEAREST;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.PRECEDING;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_365F;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.EUTA;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.GBLO;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.USNY;
+import static com.opengamma.strata.basics.date.Tenor.TENOR_3M;
+import static com.opengamma.strata.collect.TestHelper.assertThrows;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.time.LocalDate;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.ReferenceDataNotFoundException;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.basics.date.DaysAdjustment;
+import com.opengamma.strata.basics.date.HolidayCalendarId;
+
+/**
+ * Test {@link CompiledRepoConvention}.
+ */
+@Test
+public class CompiledRepoConventionTest {
+
+  private static final ReferenceData REF_DATA = ReferenceData.standard();
+  private static final ImmutableRepoConvention EUR_CONVENTION = ImmutableRepoConvention.of(
+      "EUR-Test", EUR, BusinessDayAdjustment.of(FOLLOWING, EUTA), ACT_360, DaysAdjustment.ofBusinessDays(1, EUTA));
+
+  @DataProvider(name = "conventions")
+  public static Object[][] data_conventions() {
+    return new Object[][] {
+        {EUR_CONVENTION},
+        {ImmutableRepoConvention.of(
+            "GBP-Test", GBP, BusinessDayAdjustment.of(MODIFIED_FOLLOWING, GBLO), ACT_365F,
+            DaysAdjustment.ofBusinessDays(0, GBLO))},
+        {ImmutableRepoConvention.of(
+            "USD-Test", USD, BusinessDayAdjustment.of(MODIFIED_PRECEDING, USNY), ACT_360,
+            DaysAdjustment.ofBusinessDays(2, USNY, BusinessDayAdjustment.of(FOLLOWING, GBLO)))},
+        {ImmutableRepoConvention.of(
+            "USD-Calendar", USD, BusinessDayAdjustment.of(PRECEDING, USNY), ACT_360,
+            DaysAdjustment.ofCalendarDays(3, BusinessDayAdjustment.of(MODIFIED_FOLLOWING, USNY.combinedWith(GBLO))))},
+        {ImmutableRepoConvention.of(
+            "EUR-Nearest", EUR, BusinessDayAdjustment.of(NEAREST, EUTA), ACT_360,
+            DaysAdjustment.ofBusinessDays(-1, EUTA, BusinessDayAdjustment.of(NEAREST, EUTA)))},
+        {ImmutableRepoConvention.of(
+            "EUR-None", EUR, BusinessDayAdjustment.NONE, ACT_360, DaysAdjustment.NONE)},
+    };
+  }
+
+  //-------------------------------------------------------------------------
+  @Test(dataProvider = "conventions")
+  public void test_dates(ImmutableRepoConvention convention) {
+    CompiledRepoConvention test = CompiledRepoConvention.of(convention, REF_DATA);
+    assertSame(test.getConvention(), convention);
+    LocalDate start = LocalDate.of(2016, 12, 1);
+    for (int i = 0; i < 500; i++) {
+      LocalDate date = start.plusDays(i);
+      LocalDate expectedSpot = convention.getSpotDateOffset().adjust(date, REF_DATA);
+      assertEquals(test.calculateSpotDateFromTradeDate(date), expectedSpot);
+      assertEquals(test.adjust(date), convention.getBusinessDayAdjustment().adjust(date, REF_DATA));
+      assertEquals(
+          test.calculateAdjustedEndDate(date, TENOR_3M),
+          convention.getBusinessDayAdjustment().adjust(expectedSpot.plus(TENOR_3M), REF_DATA));
+    }
+  }
+
+  @Test(dataProvider = "conventions")
+  public void test_dates_outOfRange(ImmutableRepoConvention convention) {
+    CompiledRepoConvention test = CompiledRepoConvention.of(convention, REF_DATA);
+    LocalDate[] dates = {
+        LocalDate.of(1949, 12, 30), LocalDate.of(1950, 1, 1), LocalDate.of(1950, 1, 2),
+        LocalDate.of(2149, 12, 30), LocalDate.of(2149, 12, 31), LocalDate.of(2150, 1, 3)};
+    for (LocalDate date : dates) {
+      assertEquals(test.calculateSpotDateFromTradeDate(date), convention.getSpotDateOffset().adjust(date, REF_DATA));
+      assertEquals(test.adjust(date), convention.getBusinessDayAdjustment().adjust(date, REF_DATA));
+    }
+  }
+
+  public void test_of() {
+    CompiledRepoConvention test = CompiledRepoConvention.of(EUR_CONVENTION, REF_DATA);
+    // compilation is explicit, each call creating a new compiled form
+    assertNotSame(CompiledRepoConvention.of(EUR_CONVENTION, REF_DATA), test);
+    assertEquals(test.toString(), "CompiledRepoConvention[EUR-Test]");
+  }
+
+  public void test_of_fail() {
+    assertThrowsIllegalArg(() -> CompiledRepoConvention.of(null, REF_DATA));
+    assertThrowsIllegalArg(() -> CompiledRepoConvention.of(EUR_CONVENTION, null));
+    ReferenceData empty = ReferenceData.of(ImmutableMap.of());
+    ImmutableRepoConvention unknown = ImmutableRepoConvention.of(
+        "Unknown", EUR, BusinessDayAdjustment.NONE, ACT_360,
+        DaysAdjustment.ofBusinessDays(1, HolidayCalendarId.of("Unknown")));
+    assertThrows(() -> CompiledRepoConvention.of(unknown, empty), ReferenceDataNotFoundException.class);
+  }
+
+  public void test_compiledReferenceData() {
+    ImmutableRepoConvention other = EUR_CONVENTION.toBuilder().currency(GBP).build();
+    ReferenceData test = CompiledRepoConvention.compiledReferenceData(ImmutableList.of(EUR_CONVENTION), REF_DATA);
+    CompiledRepoConvention compiled = CompiledRepoConvention.find(EUR_CONVENTION, test).get();
+    assertSame(compiled.getConvention(), EUR_CONVENTION);
+    assertFalse(CompiledRepoConvention.find(EUR_CONVENTION, REF_DATA).isPresent());
+    // a different convention with the same name is not compiled again, and does not use the compiled form
+    assertFalse(CompiledRepoConvention.find(other, test).isPresent());
+    assertSame(CompiledRepoConvention.compiledReferenceData(ImmutableList.of(EUR_CONVENTION), test), test);
+    LocalDate start = LocalDate.of(2017, 12, 1);
+    for (int i = 0; i < 60; i++) {
+      LocalDate date = start.plusDays(i);
+      assertEquals(
+          EUR_CONVENTION.calculateSpotDateFromTradeDate(date, test),
+          EUR_CONVENTION.getSpotDateOffset().adjust(date, REF_DATA));
+    }
+    // the other reference data is still available
+    assertEquals(test.getValue(EUTA), REF_DATA.getValue(EUTA));
+  }
+
+  public void test_convention_spotDate() {
+    LocalDate tradeDate = LocalDate.of(2017, 12, 22);
+    assertEquals(EUR_CONVENTION.calculateSpotDateFromTradeDate(tradeDate, REF_DATA), LocalDate.of(2017, 12, 27));
+  }
+
+}
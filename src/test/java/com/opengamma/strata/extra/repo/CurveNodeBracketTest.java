@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import static com.opengamma.strata.basics.date.DayCounts.ACT_365F;
+import static com.opengamma.strata.market.curve.interpolator.CurveExtrapolators.FLAT;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.DOUBLE_QUADRATIC;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LOG_LINEAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.market.curve.Curves;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.interpolator.CurveExtrapolators;
+import com.opengamma.strata.market.curve.interpolator.CurveInterpolator;
+
+/**
+ * Test {@link CurveNodeBracket}.
+ */
+@Test
+public class CurveNodeBracketTest {
+
+  private static final DoubleArray TIMES = DoubleArray.of(0.25, 0.5, 1d, 2d);
+  private static final DoubleArray VALUES = DoubleArray.of(0.998, 0.995, 0.99, 0.975);
+  private static final double[] X_VALUES = {-0.1, 0.25, 0.3, 0.5, 0.75, 1d, 1.5, 2d, 3d};
+  private static final double TOLERANCE = 1e-12;
+
+  //-------------------------------------------------------------------------
+  public void test_isSupported() {
+    assertTrue(CurveNodeBracket.isSupported(curve(LINEAR)));
+    assertTrue(CurveNodeBracket.isSupported(curve(LOG_LINEAR)));
+    assertFalse(CurveNodeBracket.isSupported(curve(DOUBLE_QUADRATIC)));
+    assertFalse(CurveNodeBracket.isSupported(InterpolatedNodalCurve.of(
+        Curves.discountFactors("Repo", ACT_365F), TIMES, VALUES, LINEAR, FLAT, CurveExtrapolators.LINEAR)));
+  }
+
+  public void test_lowerIndex() {
+    double[] times = TIMES.toArray();
+    assertEquals(CurveNodeBracket.lowerIndex(times, 0.1), 0);
+    assertEquals(CurveNodeBracket.lowerIndex(times, 0.25), 0);
+    assertEquals(CurveNodeBracket.lowerIndex(times, 0.5), 1);
+    assertEquals(CurveNodeBracket.lowerIndex(times, 0.6), 1);
+    assertEquals(CurveNodeBracket.lowerIndex(times, 2d), 2);
+    assertEquals(CurveNodeBracket.lowerIndex(times, 5d), 2);
+  }
+
+  public void test_linear() {
+    assertCurve(curve(LINEAR), false);
+  }
+
+  public void test_logLinear() {
+    assertCurve(curve(LOG_LINEAR), true);
+  }
+
+  //-------------------------------------------------------------------------
+  // compares the bracket to the curve
+  private static void assertCurve(InterpolatedNodalCurve curve, boolean logLinear) {
+    double[] times = TIMES.toArray();
+    double[] values = VALUES.toArray();
+    for (double x : X_VALUES) {
+      int lower = CurveNodeBracket.lowerIndex(times, x);
+      double fraction = CurveNodeBracket.fraction(times, lower, x);
+      double yValue = CurveNodeBracket.yValue(logLinear, values[lower], values[lower + 1], fraction);
+      assertEquals(yValue, curve.yValue(x), TOLERANCE);
+      double[] weights = new double[times.length];
+      weights[lower] = CurveNodeBracket.lowerWeight(logLinear, values[lower], yValue, fraction);
+      weights[lower + 1] = CurveNodeBracket.upperWeight(logLinear, values[lower + 1], yValue, fraction);
+      assertTrue(DoubleArray.ofUnsafe(weights)
+          .equalWithTolerance(curve.yValueParameterSensitivity(x).getSensitivity(), TOLERANCE));
+    }
+  }
+
+  private static InterpolatedNodalCurve curve(CurveInterpolator interpolator) {
+    return InterpolatedNodalCurve.of(Curves.discountFactors("Repo", ACT_365F), TIMES, VALUES, interpolator);
+  }
+
+}
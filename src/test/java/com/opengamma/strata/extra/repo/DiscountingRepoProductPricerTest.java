@@ -36,6 +36,7 @@ import com.opengamma.strata.pricer.DiscountFactors;
 import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
 import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
 import com.opengamma.strata.pricer.bond.LegalEntityDiscountingProvider;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
 import com.opengamma.strata.pricer.sensitivity.RatesFiniteDifferenceSensitivityCalculator;
 import com.opengamma.strata.product.LegalEntityId;
 import com.opengamma.strata.product.SecurityId;
@@ -135,6 +136,26 @@ public class DiscountingRepoProductPricerTest {
     assertEquals(computed.getAmount(), 0.0d, TOLERANCE * NOTIONAL);
   }
 
+  public void test_presentValueAdjoints() {
+    double dfStart = 0.999;
+    double dfEnd = 0.997;
+    double[] adjoints = new double[2];
+    LocalDate[] valDates = {VAL_DATE, START_DATE, date(2017, 2, 15), END_DATE, date(2017, 9, 27)};
+    for (LocalDate valDate : valDates) {
+      PRICER.presentValueAdjoints(
+          valDate, START_DATE, END_DATE, PRODUCT.getNotional(), PRODUCT.getInterest(), adjoints);
+      double expected = PRICER.presentValue(PRODUCT, valDate, dfStart, dfEnd).getAmount();
+      assertEquals(adjoints[0] * dfStart + adjoints[1] * dfEnd, expected, TOLERANCE * NOTIONAL);
+    }
+    PRICER.presentValueAdjoints(VAL_DATE, START_DATE, END_DATE, PRODUCT.getNotional(), PRODUCT.getInterest(), adjoints);
+    assertEquals(adjoints[0], -NOTIONAL);
+    assertEquals(adjoints[1], NOTIONAL + PRODUCT.getInterest());
+    PRICER.presentValueAdjoints(
+        date(2017, 9, 27), START_DATE, END_DATE, PRODUCT.getNotional(), PRODUCT.getInterest(), adjoints);
+    assertEquals(adjoints[0], 0d);
+    assertEquals(adjoints[1], 0d);
+  }
+
   public void test_presentValueSensitivity() {
     LegalEntityDiscountingProvider prov = createProvider(VAL_DATE);
     PointSensitivities computed = PRICER.presentValueSensitivity(PRODUCT, prov);
@@ -144,6 +165,26 @@ public class DiscountingRepoProductPricerTest {
     assertTrue(sensiComputed.equalWithTolerance(sensiExpected, NOTIONAL * EPS_FD));
   }
 
+  public void test_presentValueSensitivity_accumulator() {
+    LegalEntityDiscountingProvider prov = createProvider(VAL_DATE);
+    RepoCurveDiscountFactors dsc = RepoCurveDiscountFactors.of(createDiscountFactors(VAL_DATE), GROUP_REPO);
+    RepoSensitivityAccumulator accumulator = new RepoSensitivityAccumulator();
+    PRICER.presentValueSensitivity(PRODUCT, dsc, accumulator);
+    assertEquals(accumulator.size(), 2);
+    PointSensitivities expected = PRICER.presentValueSensitivity(PRODUCT, prov);
+    assertTrue(accumulator.toPointSensitivities().normalized().equalWithTolerance(expected.normalized(), NOTIONAL * TOLERANCE));
+  }
+
+  public void test_presentValueSensitivity_ended() {
+    LocalDate valDate = date(2017, 9, 27);
+    LegalEntityDiscountingProvider prov = createProvider(valDate);
+    assertEquals(PRICER.presentValueSensitivity(PRODUCT, prov), PointSensitivities.empty());
+    RepoCurveDiscountFactors dsc = RepoCurveDiscountFactors.of(createDiscountFactors(valDate), GROUP_REPO);
+    RepoSensitivityAccumulator accumulator = new RepoSensitivityAccumulator();
+    PRICER.presentValueSensitivity(PRODUCT, dsc, accumulator);
+    assertEquals(accumulator.size(), 0);
+  }
+
   public void test_parRate() {
     LegalEntityDiscountingProvider prov = createProvider(VAL_DATE);
     double parRate = PRICER.parRate(PRODUCT, prov);
@@ -191,6 +232,16 @@ public class DiscountingRepoProductPricerTest {
     assertTrue(sensiComputed.equalWithTolerance(sensiExpected, NOTIONAL * EPS_FD));
   }
 
+  public void test_parSpreadSensitivity_accumulator() {
+    LegalEntityDiscountingProvider prov = createProvider(VAL_DATE);
+    RepoCurveDiscountFactors dsc = RepoCurveDiscountFactors.of(createDiscountFactors(VAL_DATE), GROUP_REPO);
+    RepoSensitivityAccumulator accumulator = new RepoSensitivityAccumulator();
+    PRICER.parSpreadSensitivity(PRODUCT, dsc, accumulator);
+    assertEquals(accumulator.size(), 2);
+    PointSensitivities expected = PRICER.parSpreadSensitivity(PRODUCT, prov);
+    assertTrue(accumulator.toPointSensitivities().normalized().equalWithTolerance(expected.normalized(), TOLERANCE));
+  }
+
   public void test_parRateSensitivity() {
     LegalEntityDiscountingProvider prov = createProvider(VAL_DATE);
     PointSensitivities computedSpread = PRICER.parSpreadSensitivity(PRODUCT, prov);
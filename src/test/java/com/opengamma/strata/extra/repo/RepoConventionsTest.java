@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.currency.Currency.USD;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.MODIFIED_FOLLOWING;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_365F;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.EUTA;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.GBLO;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.USGS;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.collect.TestHelper.coverPrivateConstructor;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.time.LocalDate;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.basics.date.DaysAdjustment;
+
+/**
+ * Test {@link RepoConventions} and {@link RepoConventionCsvLookup}.
+ */
+@Test
+public class RepoConventionsTest {
+
+  @DataProvider(name = "conventions")
+  public static Object[][] data_conventions() {
+    return new Object[][] {
+        {RepoConventions.AUD_GC, "AUD-GC"},
+        {RepoConventions.CAD_GC, "CAD-GC"},
+        {RepoConventions.CHF_GC, "CHF-GC"},
+        {RepoConventions.EUR_GC, "EUR-GC"},
+        {RepoConventions.GBP_GC, "GBP-GC"},
+        {RepoConventions.JPY_GC, "JPY-GC"},
+        {RepoConventions.USD_GC, "USD-GC"},
+    };
+  }
+
+  @Test(dataProvider = "conventions")
+  public void test_name(RepoConvention convention, String name) {
+    assertEquals(convention.getName(), name);
+    assertEquals(convention.toString(), name);
+    assertSame(RepoConvention.of(name), convention);
+    assertSame(RepoConvention.of(name.toLowerCase()), convention);
+    assertSame(RepoConvention.extendedEnum().lookupAll().get(name), convention);
+    assertEquals(convention.getCurrency().getCode(), name.substring(0, 3));
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_EUR_GC() {
+    assertEquals(RepoConventions.EUR_GC, ImmutableRepoConvention.of(
+        "EUR-GC", EUR, BusinessDayAdjustment.of(MODIFIED_FOLLOWING, EUTA), ACT_360,
+        DaysAdjustment.ofBusinessDays(2, EUTA)));
+    assertEquals(
+        RepoConventions.EUR_GC.calculateSpotDateFromTradeDate(LocalDate.of(2017, 12, 22), ReferenceData.standard()),
+        LocalDate.of(2017, 12, 28));
+  }
+
+  public void test_GBP_GC() {
+    assertEquals(RepoConventions.GBP_GC, ImmutableRepoConvention.of(
+        "GBP-GC", GBP, BusinessDayAdjustment.of(MODIFIED_FOLLOWING, GBLO), ACT_365F,
+        DaysAdjustment.ofBusinessDays(0, GBLO)));
+  }
+
+  public void test_USD_GC() {
+    assertEquals(RepoConventions.USD_GC, ImmutableRepoConvention.of(
+        "USD-GC", USD, BusinessDayAdjustment.of(MODIFIED_FOLLOWING, USGS), ACT_360,
+        DaysAdjustment.ofBusinessDays(0, USGS)));
+  }
+
+  public void test_lookup() {
+    RepoConventionCsvLookup test = RepoConventionCsvLookup.INSTANCE;
+    assertSame(test.lookup("EUR-GC"), RepoConventions.EUR_GC);
+    assertNull(test.lookup("Rubbish"));
+    ImmutableMap<String, RepoConvention> all = test.lookupAll();
+    assertEquals(all.size(), 7);
+    assertSame(all.get("USD-GC"), RepoConventions.USD_GC);
+  }
+
+  public void test_of_unknown() {
+    assertThrowsIllegalArg(() -> RepoConvention.of("Rubbish"));
+  }
+
+  public void coverage() {
+    coverPrivateConstructor(RepoConventions.class);
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_365F;
+import static com.opengamma.strata.collect.TestHelper.date;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.DOUBLE_QUADRATIC;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static com.opengamma.strata.product.common.BuySell.BUY;
+import static com.opengamma.strata.product.common.BuySell.SELL;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.time.LocalDate;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.collect.tuple.Pair;
+import com.opengamma.strata.extra.bondcurve.SimpleLegalEntitySecurity;
+import com.opengamma.strata.market.curve.Curves;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.param.CurrencyParameterSensitivities;
+import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.pricer.SimpleDiscountFactors;
+import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
+import com.opengamma.strata.pricer.bond.ImmutableLegalEntityDiscountingProvider;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+import com.opengamma.strata.product.common.BuySell;
+
+/**
+ * Test {@link RepoParameterSensitivityAccumulator}.
+ */
+@Test
+public class RepoParameterSensitivityAccumulatorTest {
+
+  private static final LocalDate VAL_DATE = date(2017, 1, 20);
+  private static final LegalEntityId ISSUER_A = LegalEntityId.of("OG", "A");
+  private static final LegalEntityId ISSUER_B = LegalEntityId.of("OG", "B");
+  private static final SecurityId SECURITY_A = SecurityId.of("OG", "bondA");
+  private static final SecurityId SECURITY_B = SecurityId.of("OG", "bondB");
+  private static final RepoGroup REPO_A = RepoGroup.of("A");
+  private static final RepoGroup REPO_B = RepoGroup.of("B");
+  private static final ReferenceData REF_DATA = ReferenceData.standard().combinedWith(ReferenceData.of(ImmutableMap.of(
+      SECURITY_A, SimpleLegalEntitySecurity.of(ISSUER_A), SECURITY_B, SimpleLegalEntitySecurity.of(ISSUER_B))));
+  private static final DoubleArray TIMES = DoubleArray.of(0.01, 0.25, 0.5, 1d);
+  private static final ImmutableLegalEntityDiscountingProvider PROVIDER = ImmutableLegalEntityDiscountingProvider.builder()
+      .valuationDate(VAL_DATE)
+      .repoCurveGroups(ImmutableMap.of(ISSUER_A, REPO_A, ISSUER_B, REPO_B))
+      .repoCurves(ImmutableMap.of(
+          Pair.of(REPO_A, EUR),
+          ZeroRateDiscountFactors.of(EUR, VAL_DATE, InterpolatedNodalCurve.of(
+              Curves.zeroRates("RepoA", ACT_365F), TIMES, DoubleArray.of(0.01, 0.006, 0.015, 0.012), DOUBLE_QUADRATIC)),
+          Pair.of(REPO_B, EUR),
+          SimpleDiscountFactors.of(EUR, VAL_DATE, InterpolatedNodalCurve.of(
+              Curves.discountFactors("RepoB", ACT_365F), TIMES, DoubleArray.of(0.9999, 0.998, 0.995, 0.99), LINEAR))))
+      .build();
+  private static final ResolvedRepo PRODUCT_A1 = product(SECURITY_A, BUY, 1_000_000, 0.009, date(2017, 3, 24));
+  private static final ResolvedRepo PRODUCT_A2 = product(SECURITY_A, SELL, 3_000_000, 0.011, date(2017, 6, 26));
+  private static final ResolvedRepo PRODUCT_B = product(SECURITY_B, SELL, 2_000_000, 0.004, date(2017, 4, 24));
+  private static final DiscountingRepoProductPricer PRICER = DiscountingRepoProductPricer.DEFAULT;
+  private static final double TOLERANCE = 1e-8;
+
+  //-------------------------------------------------------------------------
+  public void test_addAll() {
+    RepoSensitivityAccumulator pointSens = new RepoSensitivityAccumulator();
+    PRICER.presentValueSensitivity(PRODUCT_A1, PROVIDER, pointSens);
+    PRICER.presentValueSensitivity(PRODUCT_A2, PROVIDER, pointSens);
+    PRICER.presentValueSensitivity(PRODUCT_B, PROVIDER, pointSens);
+    RepoParameterSensitivityAccumulator test = new RepoParameterSensitivityAccumulator();
+    test.addAll(pointSens);
+    PointSensitivities expected = PRICER.presentValueSensitivity(PRODUCT_A1, PROVIDER)
+        .combinedWith(PRICER.presentValueSensitivity(PRODUCT_A2, PROVIDER))
+        .combinedWith(PRICER.presentValueSensitivity(PRODUCT_B, PROVIDER));
+    CurrencyParameterSensitivities computed = test.toCurrencyParameterSensitivities();
+    assertEquals(computed.size(), 2);
+    assertTrue(computed.equalWithTolerance(PROVIDER.parameterSensitivity(expected), TOLERANCE));
+  }
+
+  public void test_reset() {
+    RepoSensitivityAccumulator pointSens = new RepoSensitivityAccumulator();
+    PRICER.presentValueSensitivity(PRODUCT_A1, PROVIDER, pointSens);
+    PRICER.presentValueSensitivity(PRODUCT_B, PROVIDER, pointSens);
+    RepoParameterSensitivityAccumulator test = new RepoParameterSensitivityAccumulator();
+    test.addAll(pointSens);
+    test.reset();
+    assertEquals(test.toCurrencyParameterSensitivities(), CurrencyParameterSensitivities.empty());
+    pointSens.reset();
+    PRICER.presentValueSensitivity(PRODUCT_A2, PROVIDER, pointSens);
+    test.addAll(pointSens);
+    CurrencyParameterSensitivities expected =
+        PROVIDER.parameterSensitivity(PRICER.presentValueSensitivity(PRODUCT_A2, PROVIDER));
+    assertEquals(test.toCurrencyParameterSensitivities(), expected);
+  }
+
+  public void test_valuationDate() {
+    RepoParameterSensitivityAccumulator test = new RepoParameterSensitivityAccumulator();
+    test.add(PROVIDER.repoCurveDiscountFactors(ISSUER_A, EUR), 0d, 1d);
+    assertEquals(test.toCurrencyParameterSensitivities(), CurrencyParameterSensitivities.empty());
+  }
+
+  //-------------------------------------------------------------------------
+  private static ResolvedRepo product(
+      SecurityId securityId,
+      BuySell buySell,
+      double notional,
+      double rate,
+      LocalDate endDate) {
+
+    return Repo.builder()
+        .buySell(buySell)
+        .collateral(SecurityPosition.ofNet(securityId, 1d))
+        .currency(EUR)
+        .notional(notional)
+        .startDate(date(2017, 1, 24))
+        .endDate(endDate)
+        .dayCount(ACT_360)
+        .rate(rate)
+        .build()
+        .resolve(REF_DATA);
+  }
+
+}
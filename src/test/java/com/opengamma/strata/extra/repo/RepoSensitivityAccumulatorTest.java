@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import static com.opengamma.strata.basics.currency.Currency.EUR;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_365F;
+import static com.opengamma.strata.collect.TestHelper.assertThrows;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.collect.TestHelper.date;
+import static com.opengamma.strata.market.curve.interpolator.CurveInterpolators.LINEAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.strata.collect.array.DoubleArray;
+import com.opengamma.strata.market.curve.Curves;
+import com.opengamma.strata.market.curve.InterpolatedNodalCurve;
+import com.opengamma.strata.market.curve.RepoGroup;
+import com.opengamma.strata.market.sensitivity.PointSensitivities;
+import com.opengamma.strata.pricer.ZeroRateDiscountFactors;
+import com.opengamma.strata.pricer.ZeroRateSensitivity;
+import com.opengamma.strata.pricer.bond.RepoCurveDiscountFactors;
+import com.opengamma.strata.pricer.bond.RepoCurveZeroRateSensitivity;
+
+/**
+ * Test {@link RepoSensitivityAccumulator}.
+ */
+@Test
+public class RepoSensitivityAccumulatorTest {
+
+  private static final RepoGroup GROUP = RepoGroup.of("ABC");
+  private static final RepoCurveDiscountFactors CURVE = RepoCurveDiscountFactors.of(
+      ZeroRateDiscountFactors.of(EUR, date(2017, 1, 20), InterpolatedNodalCurve.of(
+          Curves.zeroRates("Repo", ACT_365F), DoubleArray.of(0.25, 0.5), DoubleArray.of(0.01, 0.015), LINEAR)),
+      GROUP);
+
+  //-------------------------------------------------------------------------
+  public void test_add() {
+    RepoSensitivityAccumulator test = new RepoSensitivityAccumulator(1);
+    test.add(CURVE, 0.1, 2d);
+    test.add(CURVE, 0.3, -5d);
+    test.add(CURVE, 0.2, 7d);
+    assertEquals(test.size(), 3);
+    assertSame(test.getCurve(1), CURVE);
+    assertEquals(test.getYearFraction(1), 0.3);
+    assertEquals(test.getSensitivity(1), -5d);
+    assertThrows(() -> test.getSensitivity(3), IndexOutOfBoundsException.class);
+    assertEquals(
+        test.toPointSensitivities(),
+        PointSensitivities.of(
+            RepoCurveZeroRateSensitivity.of(ZeroRateSensitivity.of(EUR, 0.1, 2d), GROUP),
+            RepoCurveZeroRateSensitivity.of(ZeroRateSensitivity.of(EUR, 0.3, -5d), GROUP),
+            RepoCurveZeroRateSensitivity.of(ZeroRateSensitivity.of(EUR, 0.2, 7d), GROUP)));
+  }
+
+  public void test_reset() {
+    RepoSensitivityAccumulator test = new RepoSensitivityAccumulator();
+    test.add(CURVE, 0.1, 2d);
+    test.reset();
+    assertEquals(test.size(), 0);
+    assertEquals(test.toPointSensitivities(), PointSensitivities.empty());
+    test.add(CURVE, 0.4, 3d);
+    assertEquals(test.size(), 1);
+    assertEquals(test.getYearFraction(0), 0.4);
+  }
+
+  public void test_capacity() {
+    assertThrowsIllegalArg(() -> new RepoSensitivityAccumulator(0));
+  }
+
+}
@@ -14,6 +14,7 @@ import static com.opengamma.strata.basics.date.HolidayCalendarIds.GBLO;
 import static com.opengamma.strata.basics.date.Tenor.TENOR_1M;
 import static com.opengamma.strata.basics.date.Tenor.TENOR_1W;
 import static com.opengamma.strata.collect.TestHelper.assertSerialization;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
 import static com.opengamma.strata.collect.TestHelper.coverBeanEquals;
 import static com.opengamma.strata.collect.TestHelper.coverImmutableBean;
 import static org.testng.Assert.assertEquals;
@@ -91,6 +92,30 @@ public class RepoTemplateTest {
     assertEquals(trade.getProduct(), productExpected);
   }
 
+  public void test_calculateAdjustedEndDate() {
+    ImmutableRepoConvention convention = ImmutableRepoConvention.of(NAME, EUR, BDA_FOLLOW, ACT_360, PLUS_ONE_DAY);
+    RepoTemplate template = RepoTemplate.of(TENOR_1M, COLLATERAL, convention);
+    CompiledRepoConvention compiled = CompiledRepoConvention.of(convention, REF_DATA);
+    ReferenceData compiledRefData =
+        CompiledRepoConvention.compiledReferenceData(ImmutableList.of(convention), REF_DATA);
+    for (int i = 0; i < 60; i++) {
+      LocalDate tradeDate = LocalDate.of(2015, 1, 23).plusDays(i);
+      RepoTrade trade = template.createTrade(tradeDate, BuySell.BUY, 1d, 0d, REF_DATA);
+      LocalDate expected = BDA_FOLLOW.adjust(trade.getProduct().getEndDate(), REF_DATA);
+      assertEquals(template.calculateAdjustedEndDate(tradeDate, REF_DATA), expected);
+      assertEquals(template.calculateAdjustedEndDate(tradeDate, compiled), expected);
+      assertEquals(template.calculateAdjustedEndDate(tradeDate, compiledRefData), expected);
+      assertEquals(template.createTrade(tradeDate, BuySell.BUY, 1d, 0d, compiledRefData), trade);
+    }
+  }
+
+  public void test_calculateAdjustedEndDate_compiledMismatch() {
+    RepoTemplate template = RepoTemplate.of(TENOR_1M, COLLATERAL, CONVENTION);
+    CompiledRepoConvention compiled = CompiledRepoConvention.of(
+        ImmutableRepoConvention.of("OTHER", EUR, BDA_FOLLOW, ACT_360, PLUS_ONE_DAY), REF_DATA);
+    assertThrowsIllegalArg(() -> template.calculateAdjustedEndDate(LocalDate.of(2015, 1, 23), compiled));
+  }
+
   //-------------------------------------------------------------------------
   public void coverage() {
     RepoTemplate test1 = RepoTemplate.of(TENOR_1M, COLLATERAL, CONVENTION);
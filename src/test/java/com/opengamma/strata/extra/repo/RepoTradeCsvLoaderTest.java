@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import static com.opengamma.strata.basics.currency.Currency.GBP;
+import static com.opengamma.strata.basics.currency.Currency.USD;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_365F;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.collect.TestHelper.date;
+import static com.opengamma.strata.product.common.BuySell.BUY;
+import static com.opengamma.strata.product.common.BuySell.SELL;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharSource;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+import com.opengamma.strata.product.TradeInfo;
+
+/**
+ * Test {@link RepoTradeCsvLoader}.
+ */
+@Test
+public class RepoTradeCsvLoaderTest {
+
+  private static final SecurityId SECURITY_ID_1 = SecurityId.of("OG", "bond1");
+  private static final SecurityId SECURITY_ID_2 = SecurityId.of("OG", "bond2");
+  private static final String HEADER =
+      "Id,Trade Date,Buy Sell,Currency,Notional,Start Date,End Date,Tenor,Rate,Day Count,Collateral,Collateral Quantity\n";
+  private static final String ROW_1 =
+      "T1,2017-02-02,Buy,USD,3000000,2017-02-06,2017-02-20,,0.005,Act/360,OG~bond1|OG~bond2,1|2\n";
+  private static final String ROW_2 =
+      "T2,2017-02-02,Sell,GBP,1000000,2017-02-06,,1W,0.004,Act/365F,OG~bond1,\n";
+
+  private static final RepoTradeCsvLoader LOADER = RepoTradeCsvLoader.standard();
+
+  //-------------------------------------------------------------------------
+  public void test_load() {
+    ImmutableList<RepoTrade> trades = LOADER.load(CharSource.wrap(HEADER + ROW_1 + ROW_2));
+    assertEquals(trades.size(), 2);
+    RepoTrade expected1 = RepoTrade.builder()
+        .info(TradeInfo.builder().id(StandardId.of("OG-Trade", "T1")).tradeDate(date(2017, 2, 2)).build())
+        .product(Repo.builder()
+            .buySell(BUY)
+            .currency(USD)
+            .notional(3_000_000)
+            .startDate(date(2017, 2, 6))
+            .endDate(date(2017, 2, 20))
+            .rate(0.005)
+            .dayCount(ACT_360)
+            .collateral(SecurityPosition.ofNet(SECURITY_ID_1, 1d), SecurityPosition.ofNet(SECURITY_ID_2, 2d))
+            .build())
+        .build();
+    RepoTrade expected2 = RepoTrade.builder()
+        .info(TradeInfo.builder().id(StandardId.of("OG-Trade", "T2")).tradeDate(date(2017, 2, 2)).build())
+        .product(Repo.builder()
+            .buySell(SELL)
+            .currency(GBP)
+            .notional(1_000_000)
+            .startDate(date(2017, 2, 6))
+            .endDate(date(2017, 2, 13))
+            .rate(0.004)
+            .dayCount(ACT_365F)
+            .collateral(SecurityPosition.ofNet(SECURITY_ID_1, 1d))
+            .build())
+        .build();
+    assertEquals(trades, ImmutableList.of(expected1, expected2));
+  }
+
+  public void test_stream_lazy() {
+    // the invalid row is not parsed until the stream reaches it
+    try (Stream<RepoTrade> trades = LOADER.stream(CharSource.wrap(HEADER + ROW_1 + "T3,,Buy\n"))) {
+      Iterator<RepoTrade> it = trades.iterator();
+      assertEquals(it.next().getProduct().getCurrency(), USD);
+      assertThrowsIllegalArg(() -> it.next());
+    }
+  }
+
+  public void test_invalid() {
+    assertThrowsIllegalArg(() -> LOADER.load(CharSource.wrap(
+        HEADER + "T1,2017-02-02,Buy,USD,3000000,2017-02-06,2017-02-20,1W,0.005,Act/360,OG~bond1,\n")));
+    assertThrowsIllegalArg(() -> LOADER.load(CharSource.wrap(
+        HEADER + "T1,2017-02-02,Buy,USD,3000000,2017-02-06,2017-02-20,,0.005,,OG~bond1,\n")));
+    assertThrowsIllegalArg(() -> LOADER.load(CharSource.wrap(
+        HEADER + "T1,2017-02-02,Buy,USD,3000000,2017-02-06,2017-02-20,,0.005,Act/360,OG~bond1,1|2\n")));
+  }
+
+}
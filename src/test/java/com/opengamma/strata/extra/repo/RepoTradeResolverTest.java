@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2019 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.strata.extra.repo;
+
+import static com.opengamma.strata.basics.currency.Currency.USD;
+import static com.opengamma.strata.basics.date.BusinessDayConventions.FOLLOWING;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_360;
+import static com.opengamma.strata.basics.date.DayCounts.ACT_365F;
+import static com.opengamma.strata.basics.date.HolidayCalendarIds.USNY;
+import static com.opengamma.strata.collect.TestHelper.assertThrows;
+import static com.opengamma.strata.collect.TestHelper.assertThrowsIllegalArg;
+import static com.opengamma.strata.product.common.BuySell.BUY;
+import static com.opengamma.strata.product.common.BuySell.SELL;
+import static org.testng.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.strata.basics.ReferenceData;
+import com.opengamma.strata.basics.ReferenceDataNotFoundException;
+import com.opengamma.strata.basics.StandardId;
+import com.opengamma.strata.basics.date.BusinessDayAdjustment;
+import com.opengamma.strata.extra.bondcurve.SimpleLegalEntitySecurity;
+import com.opengamma.strata.product.LegalEntityId;
+import com.opengamma.strata.product.SecurityId;
+import com.opengamma.strata.product.SecurityPosition;
+import com.opengamma.strata.product.TradeInfo;
+
+/**
+ * Test {@link RepoTradeResolver} and {@link ResolvedRepoBook}.
+ */
+@Test
+public class RepoTradeResolverTest {
+
+  private static final LocalDate START_DATE = LocalDate.of(2017, 2, 4);
+  private static final BusinessDayAdjustment BDA = BusinessDayAdjustment.of(FOLLOWING, USNY);
+  private static final LegalEntityId ISSUER_A = LegalEntityId.of("OG", "A");
+  private static final LegalEntityId ISSUER_B = LegalEntityId.of("OG", "B");
+  private static final SecurityId SECURITY_A = SecurityId.of("OG", "bondA");
+  private static final SecurityId SECURITY_B = SecurityId.of("OG", "bondB");
+  private static final ReferenceData REF_DATA = ReferenceData.standard().combinedWith(ReferenceData.of(ImmutableMap.of(
+      SECURITY_A, SimpleLegalEntitySecurity.of(ISSUER_A), SECURITY_B, SimpleLegalEntitySecurity.of(ISSUER_B))));
+  private static final List<RepoTrade> TRADES = trades(100);
+
+  //-------------------------------------------------------------------------
+  public void test_resolve() {
+    RepoTradeResolver test = RepoTradeResolver.of(REF_DATA);
+    ImmutableList<ResolvedRepoTrade> resolved = test.resolve(TRADES);
+    assertEquals(resolved.size(), TRADES.size());
+    for (int i = 0; i < TRADES.size(); i++) {
+      assertEquals(resolved.get(i), TRADES.get(i).resolve(REF_DATA));
+    }
+    assertEquals(test.resolve(ImmutableList.of()), ImmutableList.of());
+  }
+
+  public void test_resolve_parallel() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      RepoTradeResolver test = RepoTradeResolver.of(REF_DATA, 10, executor);
+      List<RepoTrade> trades = trades(1_000);
+      ImmutableList<ResolvedRepoTrade> resolved = test.resolve(trades);
+      for (int i = 0; i < trades.size(); i++) {
+        assertEquals(resolved.get(i), trades.get(i).resolve(REF_DATA));
+      }
+      ResolvedRepoBook book = test.resolveBook(trades);
+      assertEquals(book.resolvedTrades(), resolved);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void test_resolve_fail() {
+    RepoTradeResolver test = RepoTradeResolver.of(REF_DATA);
+    RepoTrade unknown = trade(0, SecurityPosition.ofNet(SecurityId.of("OG", "unknown"), 1d));
+    assertThrows(() -> test.resolve(ImmutableList.of(unknown)), ReferenceDataNotFoundException.class);
+    RepoTrade mixed = trade(0, SecurityPosition.ofNet(SECURITY_A, 1d), SecurityPosition.ofNet(SECURITY_B, 1d));
+    assertThrowsIllegalArg(() -> test.resolveBook(ImmutableList.of(TRADES.get(0), mixed)));
+  }
+
+  public void test_resolveBook() {
+    ResolvedRepoBook test = RepoTradeResolver.of(REF_DATA).resolveBook(TRADES);
+    assertEquals(test.size(), TRADES.size());
+    assertEquals(test.getTrades(), TRADES);
+    assertEquals(test.getLegalEntityIds(), ImmutableList.of(ISSUER_A, ISSUER_B));
+    for (int i = 0; i < TRADES.size(); i++) {
+      ResolvedRepoTrade expected = TRADES.get(i).resolve(REF_DATA);
+      ResolvedRepo product = expected.getProduct();
+      assertEquals(test.info(i), expected.getInfo());
+      assertEquals(test.legalEntityIndex(i), i % 2);
+      assertEquals(test.legalEntityId(i), product.getLegalEntityId());
+      assertEquals(test.currency(i), product.getCurrency());
+      assertEquals(test.startDate(i), product.getStartDate());
+      assertEquals(test.endDate(i), product.getEndDate());
+      assertEquals(test.yearFraction(i), product.getYearFraction());
+      assertEquals(test.notional(i), product.getNotional());
+      assertEquals(test.rate(i), product.getRate());
+      assertEquals(test.interest(i), product.getInterest(), 1e-8);
+      assertEquals(test.resolvedTrade(i), expected);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private static List<RepoTrade> trades(int count) {
+    List<RepoTrade> trades = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      SecurityId securityId = i % 2 == 0 ? SECURITY_A : SECURITY_B;
+      trades.add(trade(i, SecurityPosition.ofNet(securityId, 1d)));
+    }
+    return trades;
+  }
+
+  private static RepoTrade trade(int i, SecurityPosition... collateral) {
+    Repo.Builder builder = Repo.builder()
+        .buySell(i % 3 == 0 ? SELL : BUY)
+        .collateral(collateral)
+        .currency(USD)
+        .notional(1_000_000 + i)
+        .startDate(START_DATE.plusDays(i % 7))
+        .endDate(START_DATE.plusMonths(1 + i % 4))
+        .dayCount(i % 5 == 0 ? ACT_365F : ACT_360)
+        .rate(0.005 + i * 1e-5);
+    if (i % 2 == 0) {
+      builder.businessDayAdjustment(BDA);
+    }
+    return RepoTrade.of(TradeInfo.builder().id(StandardId.of("OG", "T" + i)).build(), builder.build());
+  }
+
+}